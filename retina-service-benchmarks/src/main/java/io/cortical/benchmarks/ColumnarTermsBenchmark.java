@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * The similar terms of a bulk of 5 expressions read into {@link TermColumns} against the lists of {@link Term}s, both
+ * with the streaming deserializers of {@link ModelModule}. Run with <code>-prof gc</code> for the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarTermsBenchmark {
+    /**
+     * The count of terms per expression.
+     */
+    @Param({ "10", "100" })
+    int count;
+    /**
+     *
+     */
+    private ObjectMapper mapper;
+    private JavaType nestedTermsType;
+    private String nestedTermsJson;
+
+    /**
+     * Creates the mapper and the payload.
+     */
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper().registerModule(new ModelModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        nestedTermsType = mapper.getTypeFactory().constructFromCanonical(
+                "java.util.List<java.util.List<io.cortical.rest.model.Term>>");
+        nestedTermsJson = Payloads.nestedTerms(8, 5, count);
+    }
+
+    /**
+     * The terms as lists of objects.
+     *
+     * @return the lists of terms.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object terms() throws IOException {
+        List<List<Term>> terms = mapper.readValue(nestedTermsJson, nestedTermsType);
+        return terms;
+    }
+
+    /**
+     * The terms in columns.
+     *
+     * @return the columns.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object columns() throws IOException {
+        return mapper.readValue(nestedTermsJson, TermColumns.class);
+    }
+}
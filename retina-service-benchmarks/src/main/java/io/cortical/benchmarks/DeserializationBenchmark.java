@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.ApiInvoker.NestedContent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * Deserialization of realistic responses through {@link ApiInvoker#deserialize(String, String, Class, NestedContent)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+    /**
+     * The count of items in a response.
+     */
+    @Param({ "10", "100" })
+    int count;
+    /**
+     *
+     */
+    private String termsJson;
+    private String fingerprintTermsJson;
+    private String contextsJson;
+    private String nestedContextsJson;
+    private String fingerprintsJson;
+    private String metricJson;
+
+    /**
+     * Creates the payloads.
+     */
+    @Setup
+    public void setUp() {
+        termsJson = Payloads.terms(1, count, false);
+        fingerprintTermsJson = Payloads.terms(2, count, true);
+        contextsJson = Payloads.contexts(3, count);
+        nestedContextsJson = Payloads.nestedContexts(4, 5, count);
+        fingerprintsJson = Payloads.fingerprints(5, count);
+        metricJson = Payloads.metric(6);
+    }
+
+    /**
+     * Similar terms without fingerprints.
+     *
+     * @return the terms.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object terms() throws ApiException {
+        return ApiInvoker.deserialize(termsJson, "Array", Term.class, null);
+    }
+
+    /**
+     * Similar terms with fingerprints.
+     *
+     * @return the terms.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object termsWithFingerprints() throws ApiException {
+        return ApiInvoker.deserialize(fingerprintTermsJson, "Array", Term.class, null);
+    }
+
+    /**
+     * Contexts with fingerprints.
+     *
+     * @return the contexts.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object contexts() throws ApiException {
+        return ApiInvoker.deserialize(contextsJson, "Array", Context.class, null);
+    }
+
+    /**
+     * The contexts of a bulk of 5 expressions.
+     *
+     * @return the lists of contexts.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object nestedContexts() throws ApiException {
+        return ApiInvoker.deserialize(nestedContextsJson, "List", Context.class, NestedContent.CONTEXT);
+    }
+
+    /**
+     * The fingerprints of bulk texts.
+     *
+     * @return the fingerprints.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object fingerprints() throws ApiException {
+        return ApiInvoker.deserialize(fingerprintsJson, "List", Fingerprint.class, null);
+    }
+
+    /**
+     * A comparison metric.
+     *
+     * @return the metric.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object metric() throws ApiException {
+        return ApiInvoker.deserialize(metricJson, "", Metric.class, null);
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.services.FingerprintImageRenderer;
+import io.cortical.services.ImagePlotShape;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * The {@link FingerprintImageRenderer} against plotting the same squares in a {@link BufferedImage} encoded by
+ * {@link ImageIO}, for a fingerprint of a 128 x 128 retina.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageRenderingBenchmark {
+    /**
+     * The size of the plots.
+     */
+    @Param({ "2", "5" })
+    int scalar;
+    /**
+     *
+     */
+    private static final int WIDTH = 128;
+    /**
+     *
+     */
+    private FingerprintImageRenderer renderer;
+    private Fingerprint fingerprint;
+
+    /**
+     * Creates the renderer and the fingerprint.
+     */
+    @Setup
+    public void setUp() {
+        renderer = new FingerprintImageRenderer(WIDTH, WIDTH);
+        fingerprint = new Fingerprint(Payloads.positions(new Random(3), Payloads.FINGERPRINT_SIZE));
+    }
+
+    /**
+     * The local renderer.
+     *
+     * @return the PNG image.
+     */
+    @Benchmark
+    public byte[] renderer() {
+        return renderer.renderPng(scalar, ImagePlotShape.SQUARE, fingerprint);
+    }
+
+    /**
+     * A {@link BufferedImage} and {@link ImageIO}.
+     *
+     * @return the PNG image.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public byte[] imageIo() throws IOException {
+        int width = WIDTH * scalar;
+        BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+        int[] white = new int[width];
+        Arrays.fill(white, 0xFFFFFF);
+        for (int y = 0; y < width; y++) {
+            image.setRGB(0, y, width, 1, white, 0, width);
+        }
+        for (int position : fingerprint.getPositions()) {
+            int x = position % WIDTH * scalar;
+            int y = position / WIDTH * scalar;
+            for (int dy = 0; dy < scalar; dy++) {
+                for (int dx = 0; dx < scalar; dx++) {
+                    image.setRGB(x + dx, y + dy, 0xFF6600);
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
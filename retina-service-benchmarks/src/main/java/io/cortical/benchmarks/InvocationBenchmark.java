@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import com.sun.jersey.api.client.filter.LoggingFilter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.api.CompareApi;
+import io.cortical.services.api.client.api.TermsApi;
+import io.cortical.services.api.client.api.TextApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * End-to-end invocation of the generated APIs against an in-process stub server: query building, request
+ * serialization, the HTTP round trip over the loopback interface and response deserialization.
+ * <p>
+ * Run with <code>-t</code> to measure the client under concurrent load.
+ * </p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvocationBenchmark {
+    /**
+     *
+     */
+    private static final String API_KEY = "benchmark";
+    private static final String RETINA = "en_associative";
+    private static final String TEXT_BODY = "{\"text\":\"Gustav Klimt was an Austrian symbolist painter.\"}";
+    private static final String COMPARE_BODY = "[{\"term\":\"painter\"},{\"text\":\"Gustav Klimt\"}]";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /**
+     * Keeps the silenced logger of the request/response dump referenced.
+     */
+    private static final Logger REQUEST_LOGGER = Logger.getLogger(LoggingFilter.class.getName());
+    /**
+     *
+     */
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private TermsApi termsApi;
+    private TextApi textApi;
+    private CompareApi compareApi;
+
+    /**
+     * Starts the stub server.
+     *
+     * @throws IOException : if the server cannot be started.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        REQUEST_LOGGER.setLevel(Level.WARNING);
+        // without TCP_NODELAY, delayed ACKs add ~40ms to every exchange with the JDK server.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        serverExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(serverExecutor);
+        server.createContext("/rest/terms", new StaticHandler(Payloads.terms(1, 1, true)));
+        server.createContext("/rest/text", new StaticHandler(Payloads.fingerprints(2, 1)));
+        server.createContext("/rest/compare", new StaticHandler(Payloads.metric(3)));
+        server.start();
+
+        String basePath = "http://127.0.0.1:" + server.getAddress().getPort() + "/rest";
+        termsApi = new TermsApi(API_KEY);
+        termsApi.setBasePath(basePath);
+        textApi = new TextApi(API_KEY);
+        textApi.setBasePath(basePath);
+        compareApi = new CompareApi(API_KEY);
+        compareApi.setBasePath(basePath);
+    }
+
+    /**
+     * Stops the stub server.
+     */
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * GET of a term with its fingerprint.
+     *
+     * @return the terms.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public List<Term> getTerm() throws ApiException {
+        return termsApi.getTerm("painter", Boolean.TRUE, RETINA, 0, 10);
+    }
+
+    /**
+     * POST of a text, returning its fingerprint.
+     *
+     * @return the fingerprints.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public List<Fingerprint> getFingerprintForText() throws ApiException {
+        return textApi.getRepresentationForText(TEXT_BODY, RETINA);
+    }
+
+    /**
+     * POST of two expressions, returning their metric.
+     *
+     * @return the metric.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Metric compare() throws ApiException {
+        return compareApi.compare(COMPARE_BODY, RETINA);
+    }
+
+    /**
+     * Consumes the request and answers a fixed JSON body.
+     */
+    private static class StaticHandler implements HttpHandler {
+        private final byte[] body;
+
+        StaticHandler(String body) {
+            this.body = body.getBytes(UTF8);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] buffer = new byte[4096];
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read(buffer) >= 0) {
+                    // drain the request body.
+                }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
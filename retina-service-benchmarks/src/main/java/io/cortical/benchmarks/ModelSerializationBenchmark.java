@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.cortical.rest.model.ExpressionFactory.ExpressionModel;
+import io.cortical.rest.model.Model;
+import io.cortical.rest.model.Text;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static io.cortical.rest.model.ExpressionFactory.and;
+import static io.cortical.rest.model.ExpressionFactory.fingerprint;
+import static io.cortical.rest.model.ExpressionFactory.or;
+import static io.cortical.rest.model.ExpressionFactory.sub;
+import static io.cortical.rest.model.ExpressionFactory.term;
+import static io.cortical.rest.model.ExpressionFactory.text;
+
+
+/**
+ *
+ * Serialization of the request bodies: {@link Model#toJson()}, the bulk variants and
+ * {@link ApiInvoker#serialize(Object)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelSerializationBenchmark {
+    /**
+     *
+     */
+    private static final String TEXT = "Gustav Klimt was an Austrian symbolist painter and one of the most prominent "
+            + "members of the Vienna Secession movement.";
+    /**
+     * The count of models serialized in a single bulk request.
+     */
+    @Param({ "1", "100" })
+    int bulkSize;
+    /**
+     *
+     */
+    private Text[] texts;
+    private ExpressionModel[] expressions;
+    private ExpressionModel expression;
+
+    /**
+     * Creates the models.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        texts = new Text[bulkSize];
+        expressions = new ExpressionModel[bulkSize];
+        for (int i = 0; i < bulkSize; i++) {
+            texts[i] = text(TEXT + " " + i);
+            expressions[i] = and(term("painter" + i), text(TEXT),
+                    fingerprint(Payloads.positions(random, Payloads.FINGERPRINT_SIZE)));
+        }
+        expression = sub(or(term("jaguar"), term("lion")), and(term("car"),
+                fingerprint(Payloads.positions(random, Payloads.FINGERPRINT_SIZE))));
+    }
+
+    /**
+     * A single nested expression with a fingerprint.
+     *
+     * @return the JSON.
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Benchmark
+    public String expressionToJson() throws JsonProcessingException {
+        return expression.toJson();
+    }
+
+    /**
+     * The bulk texts request body.
+     *
+     * @return the JSON.
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Benchmark
+    public String textsToJson() throws JsonProcessingException {
+        return Model.toJson(texts);
+    }
+
+    /**
+     * The bulk expressions request body.
+     *
+     * @return the JSON.
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Benchmark
+    public String expressionsToJson() throws JsonProcessingException {
+        return Model.toJson(expressions);
+    }
+
+    /**
+     * The bulk compare request body.
+     *
+     * @return the JSON.
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Benchmark
+    public String comparisonsToJsonBulk() throws JsonProcessingException {
+        Model[][] pairs = new Model[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            pairs[i] = new Model[] { texts[i], expressions[i] };
+        }
+        return Model.toJsonBulk(pairs);
+    }
+
+    /**
+     * The serialization applied by the invoker to non-String bodies.
+     *
+     * @return the JSON.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public String invokerSerialize() throws ApiException {
+        return ApiInvoker.serialize(texts);
+    }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ *
+ * Deterministic JSON payloads shaped like the responses of the Retina server.
+ */
+public final class Payloads {
+    /**
+     * The size of the semantic space of a retina (128 x 128).
+     */
+    public static final int RETINA_SIZE = 16384;
+    /**
+     * The count of positions of a fingerprint at the server's default sparsity of 2%.
+     */
+    public static final int FINGERPRINT_SIZE = 328;
+    /**
+     *
+     */
+    private static final String[] POS_TYPES = { "NOUN", "VERB", "ADJECTIVE" };
+
+    private Payloads() {
+    }
+
+    /**
+     * Generates sorted, distinct fingerprint positions.
+     *
+     * @param random : the source of the positions.
+     * @param count : the count of positions.
+     * @return the positions.
+     */
+    public static int[] positions(Random random, int count) {
+        boolean[] set = new boolean[RETINA_SIZE];
+        int[] positions = new int[count];
+        for (int i = 0; i < count;) {
+            int position = random.nextInt(RETINA_SIZE);
+            if (!set[position]) {
+                set[position] = true;
+                positions[i++] = position;
+            }
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Generates the JSON of a fingerprint.
+     *
+     * @param random : the source of the positions.
+     * @return the fingerprint JSON object.
+     */
+    public static String fingerprint(Random random) {
+        StringBuilder json = new StringBuilder();
+        appendFingerprint(json, random);
+        return json.toString();
+    }
+
+    /**
+     * Generates the JSON of a list of fingerprints, as returned by the bulk text endpoint.
+     *
+     * @param seed : the random seed.
+     * @param count : the count of fingerprints.
+     * @return the JSON array.
+     */
+    public static String fingerprints(long seed, int count) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendFingerprint(json, random);
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Generates the JSON of a list of terms, as returned by the terms endpoints.
+     *
+     * @param seed : the random seed.
+     * @param count : the count of terms.
+     * @param withFingerprint : whether the terms carry their fingerprint.
+     * @return the JSON array.
+     */
+    public static String terms(long seed, int count, boolean withFingerprint) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"term\":\"term").append(i).append("\",\"df\":").append(random.nextDouble() / 100)
+                    .append(",\"score\":").append(random.nextInt(200)).append(".0,\"pos_types\":[\"")
+                    .append(POS_TYPES[i % POS_TYPES.length]).append("\"],\"fingerprint\":");
+            if (withFingerprint) {
+                appendFingerprint(json, random);
+            }
+            else {
+                json.append("{\"positions\":[]}");
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Generates the JSON of a list of lists of terms, as returned by the bulk expression similar terms endpoint.
+     *
+     * @param seed : the random seed.
+     * @param lists : the count of lists.
+     * @param count : the count of terms per list.
+     * @return the JSON array.
+     */
+    public static String nestedTerms(long seed, int lists, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < lists; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(terms(seed + i, count, true));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Generates the JSON of a list of contexts, as returned by the contexts endpoints.
+     *
+     * @param seed : the random seed.
+     * @param count : the count of contexts.
+     * @return the JSON array.
+     */
+    public static String contexts(long seed, int count) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"context_label\":\"context").append(i).append("\",\"fingerprint\":");
+            appendFingerprint(json, random);
+            json.append(",\"context_id\":").append(i).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Generates the JSON of a list of lists of contexts, as returned by the bulk expression contexts endpoint.
+     *
+     * @param seed : the random seed.
+     * @param lists : the count of lists.
+     * @param count : the count of contexts per list.
+     * @return the JSON array.
+     */
+    public static String nestedContexts(long seed, int lists, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < lists; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(contexts(seed + i, count));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Generates the JSON of a comparison metric.
+     *
+     * @param seed : the random seed.
+     * @return the JSON object.
+     */
+    public static String metric(long seed) {
+        Random random = new Random(seed);
+        return "{\"cosineSimilarity\":" + random.nextDouble() + ",\"euclideanDistance\":" + random.nextDouble()
+                + ",\"jaccardDistance\":" + random.nextDouble() + ",\"overlappingAll\":" + random.nextInt(328)
+                + ",\"overlappingLeftRight\":" + random.nextDouble() + ",\"overlappingRightLeft\":"
+                + random.nextDouble() + ",\"sizeLeft\":" + FINGERPRINT_SIZE + ",\"sizeRight\":" + FINGERPRINT_SIZE
+                + ",\"weightedScoring\":" + random.nextDouble() * 100 + "}";
+    }
+
+    private static void appendFingerprint(StringBuilder json, Random random) {
+        json.append("{\"positions\":[");
+        int[] positions = positions(random, FINGERPRINT_SIZE);
+        for (int i = 0; i < positions.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(positions[i]);
+        }
+        json.append("]}");
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.FingerprintBitmap;
+import io.cortical.rest.model.FingerprintMatrix;
+import io.cortical.rest.model.FingerprintMatrix.Kernel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * The overlaps of a query with cached fingerprints of a 128 x 128 retina: the kernels of {@link FingerprintMatrix}
+ * against the merge of sorted positions and {@link FingerprintBitmap#andCardinality(FingerprintBitmap)}. The
+ * matrices of 1,000 rows fit in the caches, those of 100,000 rows do not. The scores are per scan of all the rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimilarityBenchmark {
+    /**
+     * The count of cached fingerprints.
+     */
+    @Param({ "1000", "100000" })
+    int rows;
+    /**
+     *
+     */
+    private FingerprintMatrix matrix;
+    private long[] query;
+    private int[] overlaps;
+    private int[] queryPositions;
+    private int[][] positions;
+    private FingerprintBitmap queryBitmap;
+    private FingerprintBitmap[] bitmaps;
+
+    /**
+     * Creates the fingerprints.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        matrix = new FingerprintMatrix(Payloads.RETINA_SIZE, rows);
+        positions = new int[rows][];
+        bitmaps = new FingerprintBitmap[rows];
+        for (int row = 0; row < rows; row++) {
+            int[] fingerprint = Payloads.positions(random, Payloads.FINGERPRINT_SIZE);
+            matrix.add(fingerprint);
+            positions[row] = fingerprint;
+            bitmaps[row] = FingerprintBitmap.of(Payloads.RETINA_SIZE, fingerprint);
+        }
+        queryPositions = Payloads.positions(random, Payloads.FINGERPRINT_SIZE);
+        query = matrix.query(queryPositions);
+        queryBitmap = FingerprintBitmap.of(Payloads.RETINA_SIZE, queryPositions);
+        overlaps = new int[rows];
+    }
+
+    /**
+     * One word at a time.
+     *
+     * @return the overlaps.
+     */
+    @Benchmark
+    public int[] scalar() {
+        matrix.overlaps(query, 0, rows, overlaps, Kernel.SCALAR);
+        return overlaps;
+    }
+
+    /**
+     * The vector lanes, or one word at a time without the retina-service-vector jar and
+     * <code>--add-modules jdk.incubator.vector</code>.
+     *
+     * @return the overlaps.
+     */
+    @Benchmark
+    public int[] vector() {
+        matrix.overlaps(query, 0, rows, overlaps, Kernel.VECTOR);
+        return overlaps;
+    }
+
+    /**
+     * The merge of the sorted positions.
+     *
+     * @return the overlaps.
+     */
+    @Benchmark
+    public int[] positions() {
+        for (int row = 0; row < rows; row++) {
+            int[] left = queryPositions;
+            int[] right = positions[row];
+            int count = 0;
+            for (int i = 0, j = 0; i < left.length && j < right.length;) {
+                if (left[i] < right[j]) {
+                    i++;
+                }
+                else if (left[i] > right[j]) {
+                    j++;
+                }
+                else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            overlaps[row] = count;
+        }
+        return overlaps;
+    }
+
+    /**
+     * The compressed bitmaps.
+     *
+     * @return the overlaps.
+     */
+    @Benchmark
+    public int[] bitmap() {
+        for (int row = 0; row < rows; row++) {
+            overlaps[row] = queryBitmap.andCardinality(bitmaps[row]);
+        }
+        return overlaps;
+    }
+}
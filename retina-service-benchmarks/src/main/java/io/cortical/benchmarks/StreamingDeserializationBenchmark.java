@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.CategoryFilter;
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.Term;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * The streaming deserializers of {@link ModelModule} against the default bean deserializers of Jackson.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingDeserializationBenchmark {
+    /**
+     * The count of items in a response.
+     */
+    @Param({ "10", "100" })
+    int count;
+    /**
+     * <code>true</code> for the streaming deserializers.
+     */
+    @Param({ "false", "true" })
+    boolean streaming;
+    /**
+     *
+     */
+    private ObjectMapper mapper;
+    private JavaType termsType;
+    private JavaType nestedContextsType;
+    private String termsJson;
+    private String nestedContextsJson;
+    private String metricJson;
+    private String categoryFilterJson;
+
+    /**
+     * Creates the mapper and the payloads.
+     */
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        if (streaming) {
+            mapper.registerModule(new ModelModule());
+        }
+        termsType = mapper.getTypeFactory().constructCollectionType(List.class, Term.class);
+        nestedContextsType = mapper.getTypeFactory().constructFromCanonical(
+                "java.util.List<java.util.List<io.cortical.rest.model.Context>>");
+        termsJson = Payloads.terms(2, count, true);
+        nestedContextsJson = Payloads.nestedContexts(4, 5, count);
+        metricJson = Payloads.metric(6);
+        StringBuilder json = new StringBuilder("{\"categoryName\":\"filter\",\"positions\":[");
+        int[] positions = Payloads.positions(new Random(7), Payloads.FINGERPRINT_SIZE * count / 10);
+        for (int i = 0; i < positions.length; i++) {
+            json.append(i == 0 ? "" : ",").append(positions[i]);
+        }
+        categoryFilterJson = json.append("]}").toString();
+    }
+
+    /**
+     * Similar terms with fingerprints.
+     *
+     * @return the terms.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object termsWithFingerprints() throws IOException {
+        return mapper.readValue(termsJson, termsType);
+    }
+
+    /**
+     * The contexts of a bulk of 5 expressions.
+     *
+     * @return the lists of contexts.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object nestedContexts() throws IOException {
+        return mapper.readValue(nestedContextsJson, nestedContextsType);
+    }
+
+    /**
+     * A comparison metric.
+     *
+     * @return the metric.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object metric() throws IOException {
+        return mapper.readValue(metricJson, Metric.class);
+    }
+
+    /**
+     * A category filter of <code>count / 10</code> fingerprints.
+     *
+     * @return the filter.
+     * @throws IOException : should never be thrown
+     */
+    @Benchmark
+    public Object categoryFilter() throws IOException {
+        return mapper.readValue(categoryFilterJson, CategoryFilter.class);
+    }
+}
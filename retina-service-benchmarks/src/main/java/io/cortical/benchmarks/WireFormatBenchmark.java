@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.benchmarks;
+
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.ApiInvoker.NestedContent;
+import io.cortical.services.api.client.EncodedEntity;
+import io.cortical.services.api.client.JsonUtil;
+import io.cortical.services.api.client.WireFormat;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ *
+ * Deserialization of the fingerprint-heavy responses in JSON and in Smile, through
+ * {@link ApiInvoker#deserialize(Object, String, Class, NestedContent)}. The sizes of the payloads are printed by the
+ * setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+    /**
+     * The count of items in a response.
+     */
+    @Param({ "10", "100" })
+    int count;
+    /**
+     *
+     */
+    private String termsJson;
+    private String fingerprintsJson;
+    private String nestedContextsJson;
+    private EncodedEntity termsSmile;
+    private EncodedEntity fingerprintsSmile;
+    private EncodedEntity nestedContextsSmile;
+
+    /**
+     * Creates the payloads.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Setup
+    public void setUp() throws IOException {
+        WireFormat smile = WireFormat.smile();
+        termsJson = Payloads.terms(2, count, true);
+        fingerprintsJson = Payloads.fingerprints(5, count);
+        nestedContextsJson = Payloads.nestedContexts(4, 5, count);
+        termsSmile = encode(smile, termsJson);
+        fingerprintsSmile = encode(smile, fingerprintsJson);
+        nestedContextsSmile = encode(smile, nestedContextsJson);
+    }
+
+    private static EncodedEntity encode(WireFormat format, String json) throws IOException {
+        byte[] bytes = format.getMapper().writeValueAsBytes(JsonUtil.getJsonMapper().readTree(json));
+        return new EncodedEntity(format, bytes);
+    }
+
+    /**
+     * Terms with fingerprints in JSON.
+     *
+     * @return the terms.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object termsJson() throws ApiException {
+        return ApiInvoker.deserialize(termsJson, "Array", Term.class, null);
+    }
+
+    /**
+     * Terms with fingerprints in Smile.
+     *
+     * @return the terms.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object termsSmile() throws ApiException {
+        return ApiInvoker.deserialize(termsSmile, "Array", Term.class, null);
+    }
+
+    /**
+     * The fingerprints of bulk texts in JSON.
+     *
+     * @return the fingerprints.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object fingerprintsJson() throws ApiException {
+        return ApiInvoker.deserialize(fingerprintsJson, "List", Fingerprint.class, null);
+    }
+
+    /**
+     * The fingerprints of bulk texts in Smile.
+     *
+     * @return the fingerprints.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object fingerprintsSmile() throws ApiException {
+        return ApiInvoker.deserialize(fingerprintsSmile, "List", Fingerprint.class, null);
+    }
+
+    /**
+     * The contexts of a bulk of 5 expressions in JSON.
+     *
+     * @return the lists of contexts.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object nestedContextsJson() throws ApiException {
+        return ApiInvoker.deserialize(nestedContextsJson, "List", Context.class, NestedContent.CONTEXT);
+    }
+
+    /**
+     * The contexts of a bulk of 5 expressions in Smile.
+     *
+     * @return the lists of contexts.
+     * @throws ApiException : should never be thrown
+     */
+    @Benchmark
+    public Object nestedContextsSmile() throws ApiException {
+        return ApiInvoker.deserialize(nestedContextsSmile, "List", Context.class, NestedContent.CONTEXT);
+    }
+}
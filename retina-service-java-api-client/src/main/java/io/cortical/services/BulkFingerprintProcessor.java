@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Text;
+import io.cortical.services.api.client.RateLimiter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.logging.LogFactory.getLog;
+
+
+/**
+ *
+ * A Reactive Streams {@link Processor} fingerprinting a stream of {@link Text}s.
+ * <p>
+ * The incoming texts are batched into bulk text requests ({@link Texts#getFingerprintBulk(Double, Text...)}), of
+ * which at most <code>maxInFlight</code> are outstanding at any time. A batch is sent as soon as it is full, or
+ * earlier if no request is in flight, so the batch size adapts to the server's response time. The fingerprints are
+ * emitted in the order of the incoming texts and only as requested by the subscriber: texts are requested from the
+ * upstream publisher only while there is room for them, so a slow subscriber slows down the whole pipeline instead of
+ * buffering without bounds.
+ * </p>
+ * <p>
+ * An error of the upstream publisher is signalled once the texts received before it are fingerprinted and their
+ * fingerprints delivered, so that the subscriber knows which texts were fingerprinted. A failed bulk request, or a
+ * non-positive request of the subscriber, terminates the stream at once; so does a bulk response whose count of
+ * fingerprints differs from the count of texts sent, since its fingerprints cannot be matched with the texts.
+ * </p>
+ * <p>
+ * With a {@link RateLimiter}, a batch reserves its tokens when it is sent and is run by the scheduler once they are
+ * refilled, so that no thread waits for the limiter.
+ * </p>
+ * <p>
+ * The processor accepts a single subscriber and a single upstream subscription.
+ * </p>
+ */
+public class BulkFingerprintProcessor implements Processor<Text, Fingerprint> {
+    /**
+     *
+     */
+    private static final Log LOG = getLog(BulkFingerprintProcessor.class);
+    /**
+     *
+     */
+    private final Texts api;
+    private final Double sparsity;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Executor executor;
+    private final RateLimiter rateLimiter;
+    /**
+     * Serializes the signals sent to the subscriber and the upstream subscription.
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+    /**
+     * Guards the state below.
+     */
+    private final Object lock = new Object();
+    private final Deque<Batch> batches = new ArrayDeque<Batch>();
+    private Subscription upstream;
+    private Subscriber<? super Fingerprint> downstream;
+    private List<Text> buffer;
+    private long upstreamRequested;
+    private long demand;
+    private int inFlight;
+    private boolean upstreamDone;
+    private Throwable error;
+    private Throwable upstreamError;
+    private boolean cancelled;
+    private boolean terminated;
+
+    /**
+     * Creates a new instance of {@link BulkFingerprintProcessor}.
+     *
+     * @param api : the Texts API used to retrieve the fingerprints.
+     * @param sparsity : the sparsity applied to the fingerprints, <code>null</code> for the server's default.
+     * @param batchSize : the maximum count of texts sent in a single bulk request.
+     * @param maxInFlight : the maximum count of bulk requests which are outstanding at the same time.
+     * @param executor : the executor sending the bulk requests.
+     */
+    public BulkFingerprintProcessor(Texts api, Double sparsity, int batchSize, int maxInFlight, Executor executor) {
+        this(api, sparsity, batchSize, maxInFlight, executor, null);
+    }
+
+    /**
+     * Creates a new instance of {@link BulkFingerprintProcessor} pacing the bulk requests.
+     *
+     * @param api : the Texts API used to retrieve the fingerprints.
+     * @param sparsity : the sparsity applied to the fingerprints, <code>null</code> for the server's default.
+     * @param batchSize : the maximum count of texts sent in a single bulk request.
+     * @param maxInFlight : the maximum count of bulk requests which are outstanding at the same time.
+     * @param scheduler : the executor sending the bulk requests once the limiter lets them through.
+     * @param rateLimiter : the limiter of the {@link io.cortical.services.api.client.ApiInvoker} of the api.
+     */
+    public BulkFingerprintProcessor(Texts api, Double sparsity, int batchSize, int maxInFlight,
+            ScheduledExecutorService scheduler, RateLimiter rateLimiter) {
+        this(api, sparsity, batchSize, maxInFlight, (Executor) scheduler, rateLimiter);
+        if (rateLimiter == null) {
+            throw new IllegalArgumentException("The rate limiter cannot be null.");
+        }
+    }
+
+    private BulkFingerprintProcessor(Texts api, Double sparsity, int batchSize, int maxInFlight, Executor executor,
+            RateLimiter rateLimiter) {
+        if (api == null) {
+            throw new IllegalArgumentException("The api cannot be null.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive.");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("The count of requests in flight must be positive.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor cannot be null.");
+        }
+        this.api = api;
+        this.sparsity = sparsity;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void subscribe(Subscriber<? super Fingerprint> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("The subscriber cannot be null.");
+        }
+        boolean accepted;
+        synchronized (lock) {
+            accepted = downstream == null;
+            if (accepted) {
+                downstream = subscriber;
+            }
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The processor accepts a single subscriber only."));
+            return;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        drain();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("The subscription cannot be null.");
+        }
+        boolean accepted;
+        synchronized (lock) {
+            accepted = upstream == null && !cancelled;
+            if (accepted) {
+                upstream = subscription;
+            }
+        }
+        if (!accepted) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onNext(Text text) {
+        if (text == null) {
+            throw new NullPointerException("The text cannot be null.");
+        }
+        synchronized (lock) {
+            if (cancelled || terminated) {
+                return;
+            }
+            if (buffer == null) {
+                buffer = new ArrayList<Text>(batchSize);
+            }
+            buffer.add(text);
+            upstreamRequested--;
+        }
+        drain();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("The throwable cannot be null.");
+        }
+        synchronized (lock) {
+            if (!upstreamDone) {
+                upstreamDone = true;
+                upstreamError = throwable;
+            }
+        }
+        drain();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainLoop();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        for (;;) {
+            Subscriber<? super Fingerprint> subscriber;
+            Subscription subscription;
+            Fingerprint next = null;
+            Throwable failure = null;
+            boolean upstreamFailed = false;
+            Batch toSend = null;
+            long toRequest = 0;
+            boolean complete = false;
+
+            synchronized (lock) {
+                if (cancelled || terminated || downstream == null) {
+                    return;
+                }
+                subscriber = downstream;
+                subscription = upstream;
+                Batch head = batches.peek();
+
+                if (head != null && head.isDelivered()) {
+                    batches.poll();
+                    continue;
+                }
+                if (error != null) {
+                    failure = error;
+                }
+                else if (head != null && head.done && head.failure != null) {
+                    failure = head.failure;
+                }
+                else if (demand > 0 && head != null && head.done) {
+                    next = head.results.get(head.cursor++);
+                    demand--;
+                }
+                else if (buffer != null && batches.size() < maxInFlight
+                        && (buffer.size() >= batchSize || inFlight == 0 || upstreamDone)) {
+                    toSend = new Batch(buffer.toArray(new Text[buffer.size()]));
+                    buffer = null;
+                    batches.add(toSend);
+                    inFlight++;
+                }
+                else if (subscription != null && !upstreamDone) {
+                    int buffered = buffer == null ? 0 : buffer.size();
+                    toRequest = batchSize - buffered - upstreamRequested;
+                    upstreamRequested += Math.max(0, toRequest);
+                }
+                if (upstreamDone && error == null && buffer == null && batches.isEmpty()) {
+                    if (upstreamError != null) {
+                        failure = upstreamError;
+                        upstreamFailed = true;
+                    }
+                    else {
+                        complete = true;
+                    }
+                }
+                if (failure != null || complete) {
+                    terminated = true;
+                }
+            }
+
+            if (failure != null) {
+                if (subscription != null && !upstreamFailed) {
+                    subscription.cancel();
+                }
+                subscriber.onError(failure);
+                return;
+            }
+            if (complete) {
+                subscriber.onComplete();
+                return;
+            }
+            if (next != null) {
+                subscriber.onNext(next);
+            }
+            else if (toSend != null) {
+                send(toSend);
+            }
+            else if (toRequest > 0) {
+                subscription.request(toRequest);
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        try {
+            if (rateLimiter == null) {
+                executor.execute(batch);
+            }
+            else {
+                rateLimiter.schedule(Executors.callable(batch), payloadBytes(batch.texts),
+                        (ScheduledExecutorService) executor);
+            }
+        }
+        catch (RejectedExecutionException e) {
+            synchronized (lock) {
+                inFlight--;
+                batch.complete(null, e);
+            }
+        }
+    }
+
+    /**
+     * Estimates the payload of a bulk request, in characters rather than bytes: the limiter charges the difference
+     * once the request is sent.
+     */
+    private static long payloadBytes(Text[] texts) {
+        long bytes = 2;
+        for (Text text : texts) {
+            bytes += "{\"text\":\"\"},".length() + (text.getText() == null ? 0 : text.getText().length());
+        }
+        return bytes;
+    }
+
+    private List<Fingerprint> fetch(Text[] texts) throws Exception {
+        if (texts.length == 1 && sparsity == null && !isEmpty(texts[0].getText())) {
+            return api.getFingerprints(texts[0].getText());
+        }
+        return api.getFingerprintBulk(sparsity, texts);
+    }
+
+    /**
+     *
+     * A bulk request and its results.
+     */
+    private final class Batch implements Runnable {
+        private final Text[] texts;
+        private List<Fingerprint> results;
+        private Throwable failure;
+        private boolean done;
+        private int cursor;
+
+        Batch(Text[] texts) {
+            this.texts = texts;
+        }
+
+        @Override
+        public void run() {
+            List<Fingerprint> fingerprints = null;
+            Throwable exception = null;
+            try {
+                LOG.debug("Retrieve fingerprints for a batch of " + texts.length + " texts.");
+                fingerprints = fetch(texts);
+                if (fingerprints == null) {
+                    exception = new IllegalStateException("No fingerprints received for a batch of " + texts.length
+                            + " texts.");
+                }
+                else if (fingerprints.size() != texts.length) {
+                    exception = new IllegalStateException(fingerprints.size() + " fingerprints received for a batch of "
+                            + texts.length + " texts.");
+                }
+            }
+            catch (Exception e) {
+                exception = e;
+            }
+            synchronized (lock) {
+                inFlight--;
+                complete(fingerprints, exception);
+            }
+            drain();
+        }
+
+        void complete(List<Fingerprint> fingerprints, Throwable exception) {
+            this.results = fingerprints;
+            this.failure = exception;
+            this.done = true;
+        }
+
+        boolean isDelivered() {
+            return done && failure == null && cursor >= results.size();
+        }
+    }
+
+    /**
+     *
+     * The subscription handed to the subscriber.
+     */
+    private final class DownstreamSubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (lock) {
+                if (n <= 0) {
+                    if (error == null) {
+                        error = new IllegalArgumentException("The requested count must be positive (rule 3.9).");
+                    }
+                }
+                else {
+                    demand += n;
+                    if (demand < 0) {
+                        demand = Long.MAX_VALUE;
+                    }
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Subscription subscription;
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                buffer = null;
+                batches.clear();
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
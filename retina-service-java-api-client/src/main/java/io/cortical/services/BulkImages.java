@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.services.api.client.JsonUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Writes bulk images to an {@link ImageSink} one at a time, instead of holding them all in a list of {@link
+ * io.cortical.rest.model.Image}s: the images of a bulk response are decoded from base64 while they are read, and the
+ * images rendered locally are rendered in parallel.
+ */
+public final class BulkImages {
+    /**
+     * The properties of an image.
+     */
+    private static final String IMAGE_DATA = "image_data";
+    private static final String FINGERPRINT = "fingerprint";
+    
+    private BulkImages() {
+    }
+    
+    /**
+     * Creates a sink writing each image to a file of a directory, named after the prefix and the index of the image,
+     * e.g. <code>image7.png</code>.
+     * 
+     * @param directory : the directory of the files.
+     * @param prefix : the prefix of the names of the files.
+     * @return the sink.
+     */
+    public static ImageSink directory(final Path directory, final String prefix) {
+        return new ImageSink() {
+            @Override
+            public WritableByteChannel open(int index) throws IOException {
+                return FileChannel.open(directory.resolve(prefix + index + ".png"), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            }
+        };
+    }
+    
+    /**
+     * Reads a bulk images response and writes the images to the sink as they are read; the PNG data are decoded from
+     * base64 into the channels in chunks, so that no image is held in memory. The response is closed.
+     * 
+     * @param response : the JSON array of the images.
+     * @param sink : the sink of the images.
+     * @return the fingerprints of the images, in order; <code>null</code> items if not included. A <code>null</code>
+     *         image of the array keeps its index, with a <code>null</code> fingerprint and nothing written to the sink.
+     * @throws IOException : if the response cannot be read or is not an array of images, or an image cannot be
+     *         written.
+     */
+    public static List<Fingerprint> write(InputStream response, ImageSink sink) throws IOException {
+        List<Fingerprint> fingerprints = new ArrayList<>();
+        try (JsonParser parser = JsonUtil.getJsonMapper().getFactory().createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Not an array of images: " + parser.getCurrentToken());
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                int index = fingerprints.size();
+                fingerprints.add(null);
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Not an image at index " + index + ": " + token);
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if (IMAGE_DATA.equals(name) && token == JsonToken.VALUE_STRING) {
+                        try (OutputStream out = Channels.newOutputStream(sink.open(index))) {
+                            parser.readBinaryValue(out);
+                        }
+                    }
+                    else if (FINGERPRINT.equals(name)
+                            && token == JsonToken.START_OBJECT) {
+                        fingerprints.set(index, parser.readValueAs(Fingerprint.class));
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        finally {
+            response.close();
+        }
+        return fingerprints;
+    }
+    
+    /**
+     * Renders the images of fingerprints in parallel, and writes each image to the sink once rendered. Each task
+     * renders with its own {@link FingerprintImageRenderer}. The first failure stops the rendering.
+     * 
+     * @param rows : the count of rows of the retina.
+     * @param columns : the count of columns of the retina.
+     * @param scalar : scaling factor of the images, the default one if null.
+     * @param shape : shape of the plots, the default one if null.
+     * @param fingerprints : the fingerprints.
+     * @param sink : the sink of the images, opened from the threads of the executor.
+     * @param executor : the executor rendering the images.
+     * @param parallelism : the count of images rendered at the same time.
+     * @throws IOException : if an image cannot be written.
+     * @throws InterruptedException : if interrupted while waiting for the images.
+     */
+    public static void render(final int rows, final int columns, final Integer scalar, final ImagePlotShape shape,
+            final List<Fingerprint> fingerprints, final ImageSink sink, ExecutorService executor, int parallelism)
+            throws IOException, InterruptedException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        final AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    FingerprintImageRenderer renderer = new FingerprintImageRenderer(rows, columns);
+                    try {
+                        for (int index = next.getAndIncrement(); index < fingerprints.size();
+                                index = next.getAndIncrement()) {
+                            ByteBuffer png = ByteBuffer.wrap(renderer.renderPng(scalar, shape,
+                                    fingerprints.get(index)));
+                            try (WritableByteChannel channel = sink.open(index)) {
+                                while (png.hasRemaining()) {
+                                    channel.write(png);
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                    catch (IOException | RuntimeException e) {
+                        next.set(fingerprints.size());
+                        throw e;
+                    }
+                }
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            try {
+                result.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
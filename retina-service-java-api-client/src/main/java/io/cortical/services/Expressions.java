@@ -13,6 +13,7 @@ import io.cortical.rest.model.Context;
 import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Model;
 import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
 import io.cortical.services.api.client.ApiException;
 import java.util.List;
 
@@ -38,6 +39,39 @@ public interface Expressions {
     List<List<Term>> getSimilarTermsBulk(Integer contextId, PosType posType, Pagination pagination,
             Boolean includeFingerprint, Double sparsity, Model... models) throws JsonProcessingException, ApiException;
     
+    /**
+     * Retrieve similar terms for each item in the model's array, into columns: unlike the lists of {@link Term}s, the
+     * columns take a handful of arrays whatever the count of terms and fingerprints.
+     * 
+     * @param contextId : the id of the relevant context (or null if all contexts are to be used).
+     * @param posType : a part of speech type.
+     * @param pagination : a response's items pagination mechanism configuration.
+     * @param includeFingerprint : true if a fingerprint field should  be provided for each of the response items.
+     * @param sparsity : a value used for re-sparsifying the evaluated expression.
+     * @param models : model(s) for which a group of terms is generated.
+     * @return the terms, in a group for each item in the models.
+     * @throws JsonProcessingException if it is impossible to generate the request using the model(s).
+     * @throws ApiException : if there are server or connection issues.
+     */
+    TermColumns getSimilarTermsBulkColumns(Integer contextId, PosType posType, Pagination pagination,
+            Boolean includeFingerprint, Double sparsity, Model... models) throws JsonProcessingException, ApiException;
+    
+    /**
+     * Retrieve similar terms for each item in the model's array, into columns.
+     * 
+     * @param contextId : the id of the relevant context (or null if all contexts are to be used).
+     * @param posType : a part of speech type.
+     * @param pagination : a response's items pagination mechanism configuration.
+     * @param includeFingerprint : true if a fingerprint field should  be provided for each of the response items.
+     * @param sparsity : a value used for re-sparsifying the evaluated expression.
+     * @param jsonModel : model(s) for which a group of terms is generated in the json representation.
+     * @return the terms, in a group for each item in the models.
+     * @throws JsonProcessingException if it is impossible to generate the request using the model(s).
+     * @throws ApiException : if there are server or connection issues.
+     */
+    TermColumns getSimilarTermsBulkColumns(Integer contextId, PosType posType, Pagination pagination,
+            Boolean includeFingerprint, Double sparsity, String jsonModel) throws JsonProcessingException, ApiException;
+    
     /**
      * Retrieve similar terms for the each item in the model's array.
      * <br/> The default pagination configuration is:
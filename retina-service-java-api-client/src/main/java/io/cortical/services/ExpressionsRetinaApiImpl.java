@@ -12,6 +12,7 @@ import io.cortical.rest.model.Context;
 import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Model;
 import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.api.ExpressionsApi;
 import java.util.List;
@@ -64,6 +65,16 @@ class ExpressionsRetinaApiImpl extends BaseRetinaApi implements Expressions {
     }
     
     
+    /** {@inheritDoc} */
+    @Override
+    public TermColumns getSimilarTermsBulkColumns(Integer contextId, PosType posType, Pagination pagination,
+            Boolean includeFingerprint, Double sparsity, Model... models) throws JsonProcessingException, ApiException {
+        validateRequiredModels(models);
+        return getSimilarTermsBulkColumns(contextId, posType, pagination, includeFingerprint, sparsity,
+                toJson(models));
+    }
+    
+    
     /** {@inheritDoc} */
     @Override
     public List<Fingerprint> resolveBulk(Double sparsity, Model... models) throws JsonProcessingException, ApiException {
@@ -262,6 +273,22 @@ class ExpressionsRetinaApiImpl extends BaseRetinaApi implements Expressions {
     }
     
     
+    /** {@inheritDoc} */
+    @Override
+    public TermColumns getSimilarTermsBulkColumns(Integer contextId, PosType posType, Pagination pagination,
+            Boolean includeFingerprint, Double sparsity, String jsonModel) throws JsonProcessingException, ApiException {
+        pagination = initPagination(pagination);
+        String posTypeName = null;
+        if (posType != null) {
+            posTypeName = posType.name();
+        }
+        LOG.debug("Retrieve similar terms columns for bulk expression: model: " + jsonModel + " pagination: "
+                + pagination.toString() + "  sparsity: " + sparsity + "  include fingerprint: " + includeFingerprint);
+        return this.expressionsApi.getSimilarTermsForBulkExpressionContextColumns(jsonModel, contextId, posTypeName,
+                includeFingerprint, retinaName, pagination.getStartIndex(), pagination.getMaxResults(), sparsity);
+    }
+    
+    
     /** {@inheritDoc} */
     @Override
     public List<Fingerprint> resolveBulk(Double sparsity, String jsonModels) throws JsonProcessingException,
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import io.cortical.rest.DefaultValues;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Image;
+import io.cortical.rest.model.Retina;
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM1;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM2;
+
+
+/**
+ * Renders the images of fingerprints locally, instead of the {@link Images} API: each position is plotted as a
+ * <code>scalar x scalar</code> circle or square on the grid of the retina, on a white background, and the image is
+ * encoded in PNG. The positions of a single fingerprint are plotted in {@code PARAM_INTERNAL_IMAGE_COLOR}; the
+ * positions of two compared fingerprints in {@code PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM1} and
+ * {@code PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM2}, and their common positions in {@code PARAM_INTERNAL_IMAGE_COLOR}.
+ * <p>
+ * The pixels are indexed in a palette and written to a buffer reused by the renderer, with the deflater, so that an
+ * image takes a single array once encoded. The renderer uses no AWT toolkit and runs headless. The instances are not
+ * thread-safe: use one renderer per thread.
+ * </p>
+ */
+public class FingerprintImageRenderer {
+    /**
+     *
+     */
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int DEFAULT_SCALAR = Integer.parseInt(DefaultValues.DEF_VALUE_PLOT_SCALAR);
+    private static final ImagePlotShape DEFAULT_SHAPE = ImagePlotShape.valueOf(
+            DefaultValues.DEF_VALUE_PLOT_SHAPE.toUpperCase());
+    private static final ImageEncoding DEFAULT_ENCODING = defaultEncoding();
+    private static final int MAX_PIXELS = Integer.MAX_VALUE - 8;
+    /**
+     * The palettes, indexed by the bits of the fingerprints plotted on a pixel.
+     */
+    private static final Color[] SINGLE_PALETTE = { Color.WHITE, PARAM_INTERNAL_IMAGE_COLOR };
+    private static final Color[] OVERLAY_PALETTE = { Color.WHITE, PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM1,
+        PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM2, PARAM_INTERNAL_IMAGE_COLOR };
+    /**
+     *
+     */
+    private final int rows;
+    private final int columns;
+    /**
+     * The scanlines of the image being rendered, each prefixed by its filter byte.
+     */
+    private byte[] pixels = new byte[0];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] chunk = new byte[8192];
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Creates a new instance of {@link FingerprintImageRenderer}.
+     *
+     * @param rows : the count of rows of the retina.
+     * @param columns : the count of columns of the retina.
+     */
+    public FingerprintImageRenderer(int rows, int columns) {
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("The retina must have rows and columns: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates a new instance of {@link FingerprintImageRenderer}.
+     *
+     * @param retina : the retina of the fingerprints.
+     */
+    public FingerprintImageRenderer(Retina retina) {
+        this(retina.getNumberOfRows(), retina.getNumberOfColumns());
+    }
+
+    /**
+     * Renders the image of a fingerprint, like {@link Images#getImage(Integer, ImagePlotShape, ImageEncoding, Double,
+     * io.cortical.rest.model.Model)}.
+     *
+     * @param scalar : scaling factor of the image, {@link DefaultValues#DEF_VALUE_PLOT_SCALAR} if null.
+     * @param shape : shape of the plots, {@link DefaultValues#DEF_VALUE_PLOT_SHAPE} if null.
+     * @param imageEncoding : the encoding of the image, {@link DefaultValues#DEF_VALUE_IMAGE_ENCODING} if null.
+     * @param fingerprint : the fingerprint.
+     * @return the encoded image.
+     */
+    public ByteArrayInputStream getImage(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
+            Fingerprint fingerprint) {
+        return encode(imageEncoding, renderPng(scalar, shape, fingerprint));
+    }
+
+    /**
+     * Renders the overlay image of two fingerprints, like {@link Images#compare(Integer, ImagePlotShape, ImageEncoding,
+     * io.cortical.rest.model.Model, io.cortical.rest.model.Model)}.
+     *
+     * @param scalar : scaling factor of the image, {@link DefaultValues#DEF_VALUE_PLOT_SCALAR} if null.
+     * @param shape : shape of the plots, {@link DefaultValues#DEF_VALUE_PLOT_SHAPE} if null.
+     * @param imageEncoding : the encoding of the image, {@link DefaultValues#DEF_VALUE_IMAGE_ENCODING} if null.
+     * @param fingerprint1 : the first fingerprint.
+     * @param fingerprint2 : the second fingerprint.
+     * @return the encoded image.
+     */
+    public ByteArrayInputStream compare(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
+            Fingerprint fingerprint1, Fingerprint fingerprint2) {
+        return encode(imageEncoding, renderOverlayPng(scalar, shape, fingerprint1, fingerprint2));
+    }
+
+    /**
+     * Renders the images of fingerprints, like {@link Images#getImageBulk(Boolean, Integer, ImagePlotShape, Double,
+     * io.cortical.rest.model.Model...)}.
+     *
+     * @param includeFingerprint : true if the fingerprints should be set on the images.
+     * @param scalar : scaling factor of the images, {@link DefaultValues#DEF_VALUE_PLOT_SCALAR} if null.
+     * @param shape : shape of the plots, {@link DefaultValues#DEF_VALUE_PLOT_SHAPE} if null.
+     * @param fingerprints : the fingerprints.
+     * @return the images, with their PNG data.
+     */
+    public List<Image> getImageBulk(Boolean includeFingerprint, Integer scalar, ImagePlotShape shape,
+            Fingerprint... fingerprints) {
+        List<Image> images = new ArrayList<>(fingerprints.length);
+        for (Fingerprint fingerprint : fingerprints) {
+            images.add(new Image(renderPng(scalar, shape, fingerprint),
+                    Boolean.TRUE.equals(includeFingerprint) ? fingerprint : null));
+        }
+        return images;
+    }
+
+    /**
+     * Renders the PNG image of a fingerprint.
+     *
+     * @param scalar : scaling factor of the image, {@link DefaultValues#DEF_VALUE_PLOT_SCALAR} if null.
+     * @param shape : shape of the plots, {@link DefaultValues#DEF_VALUE_PLOT_SHAPE} if null.
+     * @param fingerprint : the fingerprint.
+     * @return the PNG image.
+     */
+    public byte[] renderPng(Integer scalar, ImagePlotShape shape, Fingerprint fingerprint) {
+        int size = prepare(scalar);
+        plot(fingerprint, 1, size, shape);
+        return png(size, SINGLE_PALETTE);
+    }
+
+    /**
+     * Renders the PNG overlay image of two fingerprints.
+     *
+     * @param scalar : scaling factor of the image, {@link DefaultValues#DEF_VALUE_PLOT_SCALAR} if null.
+     * @param shape : shape of the plots, {@link DefaultValues#DEF_VALUE_PLOT_SHAPE} if null.
+     * @param fingerprint1 : the first fingerprint.
+     * @param fingerprint2 : the second fingerprint.
+     * @return the PNG image.
+     */
+    public byte[] renderOverlayPng(Integer scalar, ImagePlotShape shape, Fingerprint fingerprint1,
+            Fingerprint fingerprint2) {
+        int size = prepare(scalar);
+        plot(fingerprint1, 1, size, shape);
+        plot(fingerprint2, 2, size, shape);
+        return png(size, OVERLAY_PALETTE);
+    }
+
+    /**
+     * Clears the pixels of an image.
+     *
+     * @return the size of the plots.
+     */
+    private int prepare(Integer scalar) {
+        int size = scalar == null ? DEFAULT_SCALAR : scalar;
+        if (size <= 0) {
+            throw new IllegalArgumentException("The scalar must be positive: " + scalar);
+        }
+        long length = (long) rows * size * ((long) columns * size + 1);
+        if (length > MAX_PIXELS) {
+            throw new IllegalArgumentException("The scalar is too large for a " + rows + "x" + columns
+                    + " retina: " + scalar);
+        }
+        if (pixels.length < length) {
+            pixels = new byte[(int) length];
+        }
+        else {
+            Arrays.fill(pixels, 0, (int) length, (byte) 0);
+        }
+        return size;
+    }
+
+    /**
+     * Sets a bit in the pixels of the plots of the positions of a fingerprint.
+     */
+    private void plot(Fingerprint fingerprint, int bit, int size, ImagePlotShape shape) {
+        if (fingerprint == null || fingerprint.getPositions() == null) {
+            return;
+        }
+        boolean[] mask = mask(size, shape == null ? DEFAULT_SHAPE : shape);
+        int stride = columns * size + 1;
+        for (int position : fingerprint.getPositions()) {
+            if (position < 0 || position >= rows * columns) {
+                throw new IllegalArgumentException("Position out of the retina: " + position);
+            }
+            int origin = position / columns * size * stride + 1 + position % columns * size;
+            for (int y = 0, m = 0; y < size; y++) {
+                for (int x = 0, pixel = origin + y * stride; x < size; x++, pixel++, m++) {
+                    if (mask[m]) {
+                        pixels[pixel] |= bit;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the pixels of a plot.
+     */
+    private static boolean[] mask(int size, ImagePlotShape shape) {
+        boolean[] mask = new boolean[size * size];
+        double radius = size / 2.0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double dx = x + 0.5 - radius;
+                double dy = y + 0.5 - radius;
+                mask[y * size + x] = shape == ImagePlotShape.SQUARE || dx * dx + dy * dy <= radius * radius;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Encodes the pixels in a PNG image with an 8 bits palette, the scanlines being unfiltered.
+     */
+    private byte[] png(int size, Color[] palette) {
+        int width = columns * size;
+        int height = rows * size;
+        out.reset();
+        out.write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = 3;
+        writeChunk("IHDR", header, header.length);
+
+        byte[] colors = new byte[palette.length * 3];
+        for (int i = 0; i < palette.length; i++) {
+            colors[i * 3] = (byte) palette[i].getRed();
+            colors[i * 3 + 1] = (byte) palette[i].getGreen();
+            colors[i * 3 + 2] = (byte) palette[i].getBlue();
+        }
+        writeChunk("PLTE", colors, colors.length);
+
+        deflater.reset();
+        deflater.setInput(pixels, 0, height * (width + 1));
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            if (length > 0) {
+                writeChunk("IDAT", chunk, length);
+            }
+        }
+        writeChunk("IEND", chunk, 0);
+        return out.toByteArray();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) {
+        byte[] bytes = new byte[4];
+        putInt(bytes, 0, length);
+        out.write(bytes, 0, 4);
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(name, 0, 4);
+        out.write(data, 0, length);
+        crc.reset();
+        crc.update(name);
+        crc.update(data, 0, length);
+        putInt(bytes, 0, (int) crc.getValue());
+        out.write(bytes, 0, 4);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static ImageEncoding defaultEncoding() {
+        for (ImageEncoding encoding : ImageEncoding.values()) {
+            if (encoding.machineRepresentation().equals(DefaultValues.DEF_VALUE_IMAGE_ENCODING)) {
+                return encoding;
+            }
+        }
+        return ImageEncoding.BASE64_PNG;
+    }
+
+    private static ByteArrayInputStream encode(ImageEncoding imageEncoding, byte[] png) {
+        if ((imageEncoding == null ? DEFAULT_ENCODING : imageEncoding) == ImageEncoding.BINARY_PNG) {
+            return new ByteArrayInputStream(png);
+        }
+        return new ByteArrayInputStream(Base64Variants.getDefaultVariant().encode(png)
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+}
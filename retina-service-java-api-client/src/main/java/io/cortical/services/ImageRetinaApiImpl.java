@@ -8,11 +8,19 @@
 package io.cortical.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Image;
 import io.cortical.rest.model.Model;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.api.ImageApi;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import static io.cortical.rest.RestServiceConstants.NULL_API_KEY_MSG;
@@ -31,6 +39,10 @@ class ImageRetinaApiImpl extends BaseRetinaApi implements Images {
      * 
      */
     private static final Log LOG = getLog(ImageRetinaApiImpl.class);
+    /**
+     * The maximum count of bytes transferred to a file at once.
+     */
+    private static final long TRANSFER_SIZE = 1 << 16;
     /**
      * 
      */
@@ -66,6 +78,26 @@ class ImageRetinaApiImpl extends BaseRetinaApi implements Images {
         return getImageBulk(includeFingerprint, scalar, shape, sparsity, toJson(models));
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public List<Fingerprint> getImageBulk(ImageSink sink, Boolean includeFingerprint, Integer scalar,
+            ImagePlotShape shape, Double sparsity, Model... models) throws IOException, ApiException {
+        validateRequiredModels(models);
+        String jsonModel = toJson(models);
+        LOG.debug("Stream images for bulk expressions: model: " + jsonModel + "  scalar: " + scalar + "  sparsity: "
+                + sparsity + "  shape: " + name(shape) + "  include fingerprint: " + includeFingerprint);
+        String shapeString = null;
+        if (shape != null) {
+            shapeString = shape.name().toLowerCase();
+        }
+        InputStream response = api.getImageForBulkExpressionsStream(jsonModel, includeFingerprint, retinaName, scalar,
+                shapeString, sparsity);
+        if (response == null) {
+            return null;
+        }
+        return BulkImages.write(response, sink);
+    }
+    
     /** {@inheritDoc} */
     @Override
     public ByteArrayInputStream getImage(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
@@ -83,6 +115,59 @@ class ImageRetinaApiImpl extends BaseRetinaApi implements Images {
         return compare(scalar, shape, imageEncoding, toJson(models));
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public InputStream getImageStream(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
+            Double sparsity, Model model) throws JsonProcessingException, ApiException {
+        validateRequiredModels(model);
+        String jsonModel = model.toJson();
+        LOG.debug("Stream image for expression: model: " + jsonModel + "  scalar: " + scalar + "  sparsity: "
+                + sparsity + "  shape: " + name(shape) + "  image encoding: " + name(imageEncoding));
+        String shapeString = null;
+        if (shape != null) {
+            shapeString = shape.name().toLowerCase();
+        }
+        String encodingString = null;
+        if (imageEncoding != null) {
+            encodingString = imageEncoding.machineRepresentation();
+        }
+        return api.getImageForExpressionStream(jsonModel, retinaName, scalar, shapeString, encodingString, sparsity);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long getImage(Path path, Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
+            Double sparsity, Model model) throws IOException, ApiException {
+        return transfer(getImageStream(scalar, shape, imageEncoding, sparsity, model), path);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public InputStream compareStream(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding,
+            Model model1, Model model2) throws JsonProcessingException, ApiException {
+        Model[] models = { model1, model2 };
+        validateRequiredModels(models);
+        String jsonModel = toJson(models);
+        LOG.debug("Stream image for comparison: model: " + jsonModel + "  scalar: " + scalar + "  shape: "
+                + name(shape) + "  image encoding: " + name(imageEncoding));
+        String shapeString = null;
+        if (shape != null) {
+            shapeString = shape.name().toLowerCase();
+        }
+        String encodingString = null;
+        if (imageEncoding != null) {
+            encodingString = imageEncoding.machineRepresentation();
+        }
+        return api.getOverlayImageStream(jsonModel, retinaName, shapeString, scalar, encodingString);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public long compare(Path path, Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding, Model model1,
+            Model model2) throws IOException, ApiException {
+        return transfer(compareStream(scalar, shape, imageEncoding, model1, model2), path);
+    }
+    
     /** {@inheritDoc} */
     @Override
     public List<Image> getImageBulk(ImagePlotShape shape, Double sparsity, Model... models)
@@ -214,6 +299,24 @@ class ImageRetinaApiImpl extends BaseRetinaApi implements Images {
         return compare(null, null, jsonModels);
     }
     
+    /**
+     * Transfers an image from its connection to a file, in chunks of the file channel.
+     */
+    private static long transfer(InputStream image, Path path) throws IOException {
+        if (image == null) {
+            return -1;
+        }
+        try (ReadableByteChannel source = Channels.newChannel(image);
+                FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (long count; (count = file.transferFrom(source, position, TRANSFER_SIZE)) > 0;) {
+                position += count;
+            }
+            return position;
+        }
+    }
+    
     private String name(Enum<?> enumItem) {
         if (enumItem != null) {
             return enumItem.name();
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * 
+ * The destination of the PNG data of bulk images, written by {@link BulkImages} as each image is read or rendered.
+ */
+public interface ImageSink {
+    /**
+     * Opens the channel receiving the PNG data of an image; the channel is closed once the image is written. The
+     * parallel rendering opens the channels from several threads.
+     * 
+     * @param index : the index of the image in the bulk.
+     * @return the channel.
+     * @throws IOException : if the channel cannot be opened.
+     */
+    WritableByteChannel open(int index) throws IOException;
+}
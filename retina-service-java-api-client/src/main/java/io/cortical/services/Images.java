@@ -9,10 +9,14 @@ package io.cortical.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.cortical.rest.DefaultValues;
+import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Image;
 import io.cortical.rest.model.Model;
 import io.cortical.services.api.client.ApiException;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 
@@ -36,6 +40,24 @@ public interface Images {
     List<Image> getImageBulk(Boolean includeFingerprint, Integer scalar, ImagePlotShape shape, Double sparsity,
             Model... models) throws JsonProcessingException, ApiException;
     
+    /**
+     * Writes the {@link Image}s of the input models to a sink as they are received, instead of returning them in a list:
+     * the PNG data of each image are decoded from base64 straight into the channel of the sink, e.g. a file of
+     * {@link BulkImages#directory(java.nio.file.Path, String)}.
+     * 
+     * @param sink : the sink of the PNG data of the images.
+     * @param includeFingerprint : true if the fingerprint should  be provided in the response.
+     * @param scalar : scaling factor of the image to generate
+     * @param shape : shape of the plots used in the overlay image
+     * @param sparsity : a sparsity value which can be applied to the image
+     * @param models : models for which the images are generated.
+     * @return the fingerprints of the images, in order; <code>null</code> items if not included.
+     * @throws IOException if it is impossible to generate the request, to read the response or to write an image.
+     * @throws ApiException : if there are some server or connection issues.
+     */
+    List<Fingerprint> getImageBulk(ImageSink sink, Boolean includeFingerprint, Integer scalar, ImagePlotShape shape,
+            Double sparsity, Model... models) throws IOException, ApiException;
+    
     /**
      * Returns a List of {@link Image}s for the input models.
      * 
@@ -165,6 +187,72 @@ public interface Images {
      */
     ByteArrayInputStream compare(Model model1, Model model2) throws JsonProcessingException, ApiException;
     
+    /**
+     * Generate an image for the model, returned as it is received: the stream reads the connection, and must be
+     * closed to free it.
+     * 
+     * @param scalar : scaling factor of the image to generate
+     * @param shape : shape of the plots used in the overlay image
+     * @param imageEncoding :  the encoding of the image.
+     * @param sparsity : a sparsity value which can be applied to the image
+     * @param model : a model for which the fingerprint's image is generated.
+     * @return the stream of the image data, <code>null</code> if the server returned none.
+     * @throws JsonProcessingException if it is impossible to generate the request using the input model(s).
+     * @throws ApiException : if there are some server or connection issues.
+     */
+    InputStream getImageStream(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding, Double sparsity,
+            Model model) throws JsonProcessingException, ApiException;
+    
+    /**
+     * Generate an image for the model into a file, transferred from the connection without holding the image in
+     * memory.
+     * 
+     * @param path : the file of the image, created or overwritten.
+     * @param scalar : scaling factor of the image to generate
+     * @param shape : shape of the plots used in the overlay image
+     * @param imageEncoding :  the encoding of the image.
+     * @param sparsity : a sparsity value which can be applied to the image
+     * @param model : a model for which the fingerprint's image is generated.
+     * @return the count of bytes written, <code>-1</code> if the server returned no image.
+     * @throws IOException if it is impossible to generate the request, to read the response or to write the file.
+     * @throws ApiException : if there are some server or connection issues.
+     */
+    long getImage(Path path, Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding, Double sparsity,
+            Model model) throws IOException, ApiException;
+    
+    /**
+     * Returns a visualization of the comparison of two fingerprints, as it is received: the stream reads the
+     * connection, and must be closed to free it.
+     * 
+     * @param scalar : scaling factor of the image to generate
+     * @param shape : shape of the plots used in the overlay image
+     * @param imageEncoding :  the encoding of the image.
+     * @param model1 : a model for which the fingerprint's image is generated.
+     * @param model2 : a model for which the fingerprint's image is generated.
+     * @return the stream of the image data, <code>null</code> if the server returned none.
+     * @throws JsonProcessingException if it is impossible to generate the request using the input model(s).
+     * @throws ApiException : if there are some server or connection issues.
+     */
+    InputStream compareStream(Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding, Model model1,
+            Model model2) throws JsonProcessingException, ApiException;
+    
+    /**
+     * Returns a visualization of the comparison of two fingerprints into a file, transferred from the connection
+     * without holding the image in memory.
+     * 
+     * @param path : the file of the image, created or overwritten.
+     * @param scalar : scaling factor of the image to generate
+     * @param shape : shape of the plots used in the overlay image
+     * @param imageEncoding :  the encoding of the image.
+     * @param model1 : a model for which the fingerprint's image is generated.
+     * @param model2 : a model for which the fingerprint's image is generated.
+     * @return the count of bytes written, <code>-1</code> if the server returned no image.
+     * @throws IOException if it is impossible to generate the request, to read the response or to write the file.
+     * @throws ApiException : if there are some server or connection issues.
+     */
+    long compare(Path path, Integer scalar, ImagePlotShape shape, ImageEncoding imageEncoding, Model model1,
+            Model model2) throws IOException, ApiException;
+    
     /**
      * Returns a List of {@link Image}s for the input models.
      * 
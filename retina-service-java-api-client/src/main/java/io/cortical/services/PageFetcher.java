@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.cortical.services.api.client.ApiException;
+import java.util.List;
+
+
+/**
+ *
+ * Retrieves a single page of a paginated Retina API result.
+ *
+ * @param <T> the type of the page items.
+ */
+public interface PageFetcher<T> {
+    /**
+     * Retrieve the items of one page.
+     *
+     * @param pagination : the start index and the size of the requested page.
+     * @return the items of the page, <code>null</code> or a list shorter than the requested size if there are no
+     *         further items.
+     * @throws JsonProcessingException if it is impossible to generate the request.
+     * @throws ApiException : if there are server or connection issues.
+     */
+    List<T> fetchPage(Pagination pagination) throws JsonProcessingException, ApiException;
+}
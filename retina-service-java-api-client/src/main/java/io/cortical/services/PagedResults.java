@@ -0,0 +1,471 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Model;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.Text;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.RateLimiter;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import static io.cortical.rest.RestServiceConstants.NULL_MODEL_MSG;
+
+
+/**
+ *
+ * Iterates over all items of a paginated Retina API result, fetching the pages on demand.
+ * <p>
+ * Pages are only requested while the consumer keeps iterating: iteration stops at the first page which is shorter
+ * than the requested page size, once {@link #setMaxItems(int)} items have been requested, or when the iterator is
+ * closed. With a read-ahead configured (see {@link #setReadAhead(int, ExecutorService)}) at most that many pages are
+ * requested in advance of the page being consumed; outstanding pages are cancelled as soon as the end of the result is
+ * reached or the iterator is closed. With a {@link RateLimiter} (see
+ * {@link #setReadAhead(int, ScheduledExecutorService, RateLimiter)}) a page requested in advance reserves its tokens
+ * and is fetched once they are refilled, so that no thread of the executor waits for the limiter.
+ * </p>
+ *
+ * @param <T> the type of the result items.
+ */
+public class PagedResults<T> implements Iterable<T> {
+    /**
+     *
+     */
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    private int startIndex;
+    private int maxItems = Integer.MAX_VALUE;
+    private int readAhead;
+    private ExecutorService executor;
+    private RateLimiter rateLimiter;
+
+    /**
+     * Creates a new instance of {@link PagedResults}.
+     *
+     * @param fetcher : retrieves a single page.
+     * @param pageSize : the count of items requested per page.
+     */
+    public PagedResults(PageFetcher<T> fetcher, int pageSize) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException("The page fetcher cannot be null.");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive.");
+        }
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Gets the index of the first requested item.
+     *
+     * @return the startIndex
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * Sets the index of the first requested item.
+     *
+     * @param startIndex the startIndex to set
+     */
+    public void setStartIndex(int startIndex) {
+        if (startIndex < 0) {
+            throw new IllegalArgumentException("The start index cannot be negative.");
+        }
+        this.startIndex = startIndex;
+    }
+
+    /**
+     * Gets the maximum count of items to be requested.
+     *
+     * @return the maxItems
+     */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Sets the maximum count of items to be requested. The last page is shortened accordingly.
+     *
+     * @param maxItems the maxItems to set
+     */
+    public void setMaxItems(int maxItems) {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("The max items count cannot be negative.");
+        }
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Gets the count of pages requested in advance.
+     *
+     * @return the readAhead
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Configures the read-ahead.
+     *
+     * @param readAhead : the count of pages requested in advance of the page being consumed, 0 to disable read-ahead.
+     * @param executor : the executor fetching the pages in advance.
+     */
+    public void setReadAhead(int readAhead, ExecutorService executor) {
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("The read-ahead cannot be negative.");
+        }
+        if (readAhead > 0 && executor == null) {
+            throw new IllegalArgumentException("A read-ahead requires an executor.");
+        }
+        this.readAhead = readAhead;
+        this.executor = executor;
+        this.rateLimiter = null;
+    }
+
+    /**
+     * Configures a read-ahead paced by a rate limiter.
+     *
+     * @param readAhead : the count of pages requested in advance of the page being consumed, 0 to disable read-ahead.
+     * @param scheduler : the executor fetching the pages in advance once the limiter lets them through.
+     * @param rateLimiter : the limiter of the {@link io.cortical.services.api.client.ApiInvoker} of the fetcher.
+     */
+    public void setReadAhead(int readAhead, ScheduledExecutorService scheduler, RateLimiter rateLimiter) {
+        if (rateLimiter == null) {
+            throw new IllegalArgumentException("The rate limiter cannot be null.");
+        }
+        setReadAhead(readAhead, scheduler);
+        this.rateLimiter = rateLimiter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PagedIterator<T> iterator() {
+        return new PagedIterator<T>(fetcher, pageSize, startIndex, maxItems, readAhead, executor, rateLimiter);
+    }
+
+    /**
+     * Pages through the contexts of a term.
+     *
+     * @param api : the Terms API.
+     * @param term : the input term.
+     * @param includeFingerprint : true if the fingerprint should be provided in the response.
+     * @param pageSize : the count of contexts requested per page.
+     * @return the paged contexts.
+     */
+    public static PagedResults<Context> contexts(final Terms api, final String term, final Boolean includeFingerprint,
+            int pageSize) {
+        validateApi(api);
+        return new PagedResults<Context>(new PageFetcher<Context>() {
+            @Override
+            public List<Context> fetchPage(Pagination pagination) throws ApiException {
+                return api.getContexts(term, pagination, includeFingerprint);
+            }
+        }, pageSize);
+    }
+
+    /**
+     * Pages through the similar terms of a term.
+     *
+     * @param api : the Terms API.
+     * @param term : the input term.
+     * @param contextId : the context id.
+     * @param posType : the posType used for filtering.
+     * @param includeFingerprint : true if the fingerprint should be provided in the response.
+     * @param pageSize : the count of terms requested per page.
+     * @return the paged similar terms.
+     */
+    public static PagedResults<Term> similarTerms(final Terms api, final String term, final Integer contextId,
+            final PosType posType, final Boolean includeFingerprint, int pageSize) {
+        validateApi(api);
+        return new PagedResults<Term>(new PageFetcher<Term>() {
+            @Override
+            public List<Term> fetchPage(Pagination pagination) throws ApiException {
+                return api.getSimilarTerms(term, contextId, posType, pagination, includeFingerprint);
+            }
+        }, pageSize);
+    }
+
+    /**
+     * Pages through the contexts of an expression.
+     *
+     * @param api : the Expressions API.
+     * @param includeFingerprint : true if a fingerprint field should be provided for each of the response items.
+     * @param sparsity : a value used for re-sparsifying the evaluated expression.
+     * @param model : the expression.
+     * @param pageSize : the count of contexts requested per page.
+     * @return the paged contexts.
+     * @throws JsonProcessingException if it is impossible to generate the request using the model.
+     */
+    public static PagedResults<Context> contexts(final Expressions api, final Boolean includeFingerprint,
+            final Double sparsity, Model model, int pageSize) throws JsonProcessingException {
+        validateApi(api);
+        final String jsonModel = toJson(model);
+        return new PagedResults<Context>(new PageFetcher<Context>() {
+            @Override
+            public List<Context> fetchPage(Pagination pagination) throws JsonProcessingException, ApiException {
+                return api.getContexts(pagination, includeFingerprint, sparsity, jsonModel);
+            }
+        }, pageSize);
+    }
+
+    /**
+     * Pages through the similar terms of an expression.
+     *
+     * @param api : the Expressions API.
+     * @param contextId : the context id.
+     * @param posType : the posType used for filtering.
+     * @param includeFingerprint : true if a fingerprint field should be provided for each of the response items.
+     * @param sparsity : a value used for re-sparsifying the evaluated expression.
+     * @param model : the expression.
+     * @param pageSize : the count of terms requested per page.
+     * @return the paged similar terms.
+     * @throws JsonProcessingException if it is impossible to generate the request using the model.
+     */
+    public static PagedResults<Term> similarTerms(final Expressions api, final Integer contextId,
+            final PosType posType, final Boolean includeFingerprint, final Double sparsity, Model model, int pageSize)
+            throws JsonProcessingException {
+        validateApi(api);
+        final String jsonModel = toJson(model);
+        return new PagedResults<Term>(new PageFetcher<Term>() {
+            @Override
+            public List<Term> fetchPage(Pagination pagination) throws JsonProcessingException, ApiException {
+                return api.getSimilarTerms(contextId, posType, pagination, includeFingerprint, sparsity, jsonModel);
+            }
+        }, pageSize);
+    }
+
+    /**
+     * Pages through the slices of a text.
+     *
+     * @param api : the Texts API.
+     * @param text : the input text.
+     * @param includeFingerprint : true if the fingerprint should be provided in the response.
+     * @param pageSize : the count of slices requested per page.
+     * @return the paged slices.
+     */
+    public static PagedResults<Text> slices(final Texts api, final String text, final Boolean includeFingerprint,
+            int pageSize) {
+        validateApi(api);
+        return new PagedResults<Text>(new PageFetcher<Text>() {
+            @Override
+            public List<Text> fetchPage(Pagination pagination) throws ApiException {
+                return api.getSlices(text, pagination, includeFingerprint);
+            }
+        }, pageSize);
+    }
+
+    private static void validateApi(Object api) {
+        if (api == null) {
+            throw new IllegalArgumentException("The api cannot be null.");
+        }
+    }
+
+    private static String toJson(Model model) throws JsonProcessingException {
+        if (model == null) {
+            throw new IllegalArgumentException(NULL_MODEL_MSG);
+        }
+        return model.toJson();
+    }
+
+    /**
+     *
+     * An iterator over the items of a paginated result.
+     * <p>
+     * Failures while fetching a page are rethrown as {@link IllegalStateException} with the original
+     * {@link ApiException} or {@link JsonProcessingException} as cause.
+     * </p>
+     *
+     * @param <T> the type of the result items.
+     */
+    public static final class PagedIterator<T> implements Iterator<T>, Closeable {
+        /**
+         *
+         */
+        private final PageFetcher<T> fetcher;
+        private final int pageSize;
+        private final int maxItems;
+        private final int readAhead;
+        private final ExecutorService executor;
+        private final RateLimiter rateLimiter;
+        private final Deque<PageRequest<T>> pending = new ArrayDeque<PageRequest<T>>();
+        private int nextIndex;
+        private int requested;
+        private boolean endReached;
+        private boolean closed;
+        private Iterator<T> current;
+
+        PagedIterator(PageFetcher<T> fetcher, int pageSize, int startIndex, int maxItems, int readAhead,
+                ExecutorService executor, RateLimiter rateLimiter) {
+            this.fetcher = fetcher;
+            this.pageSize = pageSize;
+            this.nextIndex = startIndex;
+            this.maxItems = maxItems;
+            this.readAhead = readAhead;
+            this.executor = executor;
+            this.rateLimiter = rateLimiter;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (closed || !advance()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The paged results are read only.");
+        }
+
+        /**
+         * Stops the iteration and cancels the pages requested in advance.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            current = null;
+            cancelPending();
+        }
+
+        private boolean advance() {
+            if (pending.isEmpty() && !schedule()) {
+                close();
+                return false;
+            }
+            PageRequest<T> request = pending.poll();
+            // keep the read-ahead window filled while waiting for the current page.
+            while (pending.size() < readAhead) {
+                if (!schedule()) {
+                    break;
+                }
+            }
+            List<T> page;
+            try {
+                page = request.get();
+            }
+            catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (page == null || page.size() < request.pagination.getMaxResults()) {
+                endReached = true;
+                cancelPending();
+            }
+            if (page == null) {
+                page = Collections.emptyList();
+            }
+            else if (page.size() > request.pagination.getMaxResults()) {
+                page = page.subList(0, request.pagination.getMaxResults());
+            }
+            current = page.iterator();
+            return true;
+        }
+
+        private boolean schedule() {
+            if (endReached || requested >= maxItems) {
+                return false;
+            }
+            int size = Math.min(pageSize, maxItems - requested);
+            final Pagination pagination = new Pagination(nextIndex, size);
+            nextIndex += size;
+            requested += size;
+
+            Future<List<T>> future = null;
+            if (readAhead > 0) {
+                Callable<List<T>> fetch = new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws Exception {
+                        return fetcher.fetchPage(pagination);
+                    }
+                };
+                // the payload of a page request is small: the limiter charges it once the request is sent.
+                future = rateLimiter == null ? executor.submit(fetch)
+                        : rateLimiter.schedule(fetch, 0, (ScheduledExecutorService) executor);
+            }
+            pending.add(new PageRequest<T>(fetcher, pagination, future));
+            return true;
+        }
+
+        private void cancelPending() {
+            for (PageRequest<T> request : pending) {
+                request.cancel();
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     *
+     * A requested page, either fetched in advance or on demand.
+     */
+    private static final class PageRequest<T> {
+        private final PageFetcher<T> fetcher;
+        private final Pagination pagination;
+        private final Future<List<T>> future;
+
+        PageRequest(PageFetcher<T> fetcher, Pagination pagination, Future<List<T>> future) {
+            this.fetcher = fetcher;
+            this.pagination = pagination;
+            this.future = future;
+        }
+
+        List<T> get() {
+            try {
+                if (future == null) {
+                    return fetcher.fetchPage(pagination);
+                }
+                return future.get();
+            }
+            catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to fetch the page: " + pagination, e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while fetching the page: " + pagination, e);
+            }
+            catch (JsonProcessingException | ApiException e) {
+                throw new IllegalStateException("Unable to fetch the page: " + pagination, e);
+            }
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package io.cortical.services;
 
+import java.util.ArrayList;
+import java.util.List;
 import static io.cortical.rest.RestServiceConstants.NULL_SERVER_IP_MSG;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
@@ -16,22 +18,69 @@ import static org.apache.commons.lang3.StringUtils.isEmpty;
  * 
  */
 public abstract class RetinaApiUtils {
+    /**
+     * 
+     */
+    private static final String HTTP = "http://";
+    private static final String HTTPS = "https://";
+    
     /**
      * Generate the base path for the retina.
      * 
-     * @param ip : retina server ip.
-     * @param port : retina service port. 
+     * @param ip : retina server ip, prefixed with <code>https://</code> for TLS.
+     * @param port : retina service port, <code>null</code> for 80, or 443 with TLS.
      * @return : the retina's API base path.
      */
     public static String generateBasepath(final String ip, Short port) {
         if (isEmpty(ip)) {
             throw new IllegalArgumentException(NULL_SERVER_IP_MSG);
         }
+        String scheme = HTTP;
+        String host = ip;
+        if (ip.startsWith(HTTPS)) {
+            scheme = HTTPS;
+            host = ip.substring(HTTPS.length());
+        }
+        else if (ip.startsWith(HTTP)) {
+            host = ip.substring(HTTP.length());
+        }
+        if (isEmpty(host)) {
+            throw new IllegalArgumentException(NULL_SERVER_IP_MSG);
+        }
         if (port == null) {
-            port = 80;
+            port = HTTPS.equals(scheme) ? (short) 443 : (short) 80;
         }
         StringBuilder basePath = new StringBuilder();
-        basePath.append("http://").append(ip).append(":").append(port).append("/rest");
+        basePath.append(scheme).append(host).append(":").append(port).append("/rest");
         return basePath.toString();
     }
+    
+    /**
+     * Generate the base paths of a pool of retina servers.
+     * 
+     * @param endpoints : the retina server ips, each optionally prefixed with <code>https://</code> and followed by
+     *            <code>:port</code>.
+     * @return : the retina's API base paths.
+     */
+    public static List<String> generateBasepaths(final List<String> endpoints) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException(NULL_SERVER_IP_MSG);
+        }
+        List<String> basePaths = new ArrayList<String>(endpoints.size());
+        for (String endpoint : endpoints) {
+            int colon = -1;
+            if (endpoint != null) {
+                int scheme = endpoint.indexOf("://");
+                colon = endpoint.indexOf(':', scheme < 0 ? 0 : scheme + 3);
+            }
+            if (colon < 0) {
+                basePaths.add(generateBasepath(endpoint, null));
+            }
+            else {
+                basePaths.add(generateBasepath(endpoint.substring(0, colon),
+                        Short.valueOf(endpoint.substring(colon + 1))));
+            }
+        }
+        return basePaths;
+    }
 }
@@ -7,10 +7,22 @@
  ******************************************************************************/
 package io.cortical.services;
 
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.LoadBalancer;
+import io.cortical.services.api.client.api.ClassifyApi;
+import io.cortical.services.api.client.api.CompareApi;
+import io.cortical.services.api.client.api.ExpressionsApi;
+import io.cortical.services.api.client.api.ImageApi;
+import io.cortical.services.api.client.api.TermsApi;
+import io.cortical.services.api.client.api.TextApi;
+import java.util.List;
 import org.apache.commons.logging.Log;
+import static io.cortical.rest.RestServiceConstants.NULL_API_INVOKER_MSG;
 import static io.cortical.rest.RestServiceConstants.NULL_API_KEY_MSG;
 import static io.cortical.rest.RestServiceConstants.NULL_RETINA_MSG;
 import static io.cortical.services.RetinaApiUtils.generateBasepath;
+import static io.cortical.services.RetinaApiUtils.generateBasepaths;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.logging.LogFactory.getLog;
 
@@ -34,6 +46,11 @@ public class RetinaApis {
     private final Terms termsApi;
     private final Texts textApi;
     private final Classify classifyApi;
+    /**
+     * 
+     */
+    private final ApiInvoker apiInvoker;
+    private final String basePath;
     
     /**
      * Creates a new instance of {@link RetinaApis}.
@@ -43,20 +60,7 @@ public class RetinaApis {
      * @param apiKey
      */
     public RetinaApis(final String retinaName, final String ip, final String apiKey) {
-        String basePath = generateBasepath(ip, null);
-        if (isEmpty(retinaName)) {
-            throw new IllegalArgumentException(NULL_RETINA_MSG);
-        }
-        if (isEmpty(apiKey)) {
-            throw new IllegalArgumentException(NULL_API_KEY_MSG);
-        }
-        LOG.info("Initialize retina API for retina name: " + retinaName);
-        compareApi = new CompareRetinaApiImpl(retinaName, basePath, apiKey);
-        expressionsApi = new ExpressionsRetinaApiImpl(apiKey, basePath, retinaName);
-        imageApi = new ImageRetinaApiImpl(apiKey, basePath, retinaName);
-        termsApi = new TermsRetinaApiImpl(apiKey, basePath, retinaName);
-        textApi = new TextRetinaApiImpl(apiKey, basePath, retinaName);
-        classifyApi = new ClassifyRetinaApiImpl(apiKey, basePath, retinaName);
+        this(retinaName, ip, null, apiKey);
     }
     
     
@@ -69,20 +73,116 @@ public class RetinaApis {
      * @param apiKey
      */
     public RetinaApis(final String retinaName, final String ip, final Short port, final String apiKey) {
-        String basePath = generateBasepath(ip, port);
+        this(retinaName, ip, port, apiKey, ApiInvoker.getInstance());
+    }
+    
+    
+    /**
+     * Creates a new instance of {@link RetinaApis} sending its requests with its own {@link ApiInvoker}, e.g. to
+     * pace them with a {@link io.cortical.services.api.client.RateLimiter} matching the quota of the api-key.
+     * 
+     * @param retinaName : the retina name.
+     * @param ip : the retina server ip.
+     * @param port : the retina service port, <code>null</code> for 80.
+     * @param apiKey : the api-key.
+     * @param apiInvoker : the invoker sending the requests.
+     */
+    public RetinaApis(final String retinaName, final String ip, final Short port, final String apiKey,
+            final ApiInvoker apiInvoker) {
+        this(apiInvoker, generateBasepath(ip, port), retinaName, apiKey);
+    }
+    
+    
+    /**
+     * Creates a new instance of {@link RetinaApis} spreading its requests over a pool of retina servers, with its own
+     * {@link ApiInvoker}.
+     * 
+     * @param retinaName : the retina name.
+     * @param endpoints : the retina server ips, each optionally followed by <code>:port</code>.
+     * @param apiKey : the api-key.
+     */
+    public RetinaApis(final String retinaName, final List<String> endpoints, final String apiKey) {
+        this(retinaName, endpoints, apiKey, new ApiInvoker());
+    }
+    
+    
+    /**
+     * Creates a new instance of {@link RetinaApis} spreading its requests over a pool of retina servers. The
+     * {@link LoadBalancer} of the pool is added to the invoker, next to those of the other pools; the instances over
+     * the same pool share its balancer.
+     * 
+     * @param retinaName : the retina name.
+     * @param endpoints : the retina server ips, each optionally followed by <code>:port</code>.
+     * @param apiKey : the api-key.
+     * @param apiInvoker : the invoker sending the requests.
+     * @throws IllegalArgumentException : if the pool shares some, but not all, of its servers with another pool of
+     *         the invoker.
+     */
+    public RetinaApis(final String retinaName, final List<String> endpoints, final String apiKey,
+            final ApiInvoker apiInvoker) {
+        this(apiInvoker, balance(apiInvoker, generateBasepaths(endpoints)), retinaName, apiKey);
+    }
+    
+    
+    private RetinaApis(final ApiInvoker apiInvoker, final String basePath, final String retinaName,
+            final String apiKey) {
         if (isEmpty(retinaName)) {
             throw new IllegalArgumentException(NULL_RETINA_MSG);
         }
         if (isEmpty(apiKey)) {
             throw new IllegalArgumentException(NULL_API_KEY_MSG);
         }
+        if (apiInvoker == null) {
+            throw new IllegalArgumentException(NULL_API_INVOKER_MSG);
+        }
         LOG.info("Initialize retina API for retina name: " + retinaName);
-        compareApi = new CompareRetinaApiImpl(retinaName, basePath, apiKey);
-        expressionsApi = new ExpressionsRetinaApiImpl(apiKey, basePath, retinaName);
-        imageApi = new ImageRetinaApiImpl(apiKey, basePath, retinaName);
-        termsApi = new TermsRetinaApiImpl(apiKey, basePath, retinaName);
-        textApi = new TextRetinaApiImpl(apiKey, basePath, retinaName);
-        classifyApi = new ClassifyRetinaApiImpl(apiKey, basePath, retinaName);
+        this.apiInvoker = apiInvoker;
+        this.basePath = basePath;
+        CompareApi compare = new CompareApi(apiKey, apiInvoker);
+        compare.setBasePath(basePath);
+        compareApi = new CompareRetinaApiImpl(compare, retinaName);
+        ExpressionsApi expressions = new ExpressionsApi(apiKey, apiInvoker);
+        expressions.setBasePath(basePath);
+        expressionsApi = new ExpressionsRetinaApiImpl(expressions, retinaName);
+        ImageApi image = new ImageApi(apiKey, apiInvoker);
+        image.setBasePath(basePath);
+        imageApi = new ImageRetinaApiImpl(image, retinaName);
+        TermsApi terms = new TermsApi(apiKey, apiInvoker);
+        terms.setBasePath(basePath);
+        termsApi = new TermsRetinaApiImpl(terms, retinaName);
+        TextApi text = new TextApi(apiKey, apiInvoker);
+        text.setBasePath(basePath);
+        textApi = new TextRetinaApiImpl(text, retinaName);
+        ClassifyApi classify = new ClassifyApi(apiKey, apiInvoker);
+        classify.setBasePath(basePath);
+        classifyApi = new ClassifyRetinaApiImpl(classify, retinaName);
+    }
+    
+    
+    /**
+     * Adds a {@link LoadBalancer} over a pool to an invoker.
+     * 
+     * @return the base path of the first node of the pool.
+     */
+    private static String balance(final ApiInvoker apiInvoker, final List<String> basePaths) {
+        if (apiInvoker == null) {
+            throw new IllegalArgumentException(NULL_API_INVOKER_MSG);
+        }
+        apiInvoker.addLoadBalancer(new LoadBalancer(basePaths));
+        return basePaths.get(0);
+    }
+    
+    
+    /**
+     * Opens connections to the retina server, or to each server of the pool, and initializes the JSON readers and
+     * writers, so that the first calls do not pay for them.
+     * 
+     * @param connections : the count of connections to open to each server.
+     * @throws ApiException : if a server could not be reached.
+     */
+    public void warmUp(final int connections) throws ApiException {
+        LOG.info("Warm up " + connections + " connections to: " + basePath);
+        apiInvoker.warmUp(basePath, connections);
     }
     
     
@@ -10,8 +10,10 @@ package io.cortical.services;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Retina;
+import io.cortical.rest.model.TermDictionary;
 import io.cortical.rest.model.Text;
 import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.JsonUtil;
 import io.cortical.services.api.client.api.TextApi;
 import java.util.List;
 import org.apache.commons.logging.Log;
@@ -65,7 +67,14 @@ class TextRetinaApiImpl extends BaseRetinaApi implements Texts {
             throw new IllegalArgumentException(NULL_TEXT_MSG);
         }
         LOG.debug("Retrieve keywords for the text: " + text);
-        return this.api.getKeywordsForText(text, retinaName);
+        List<String> keywords = this.api.getKeywordsForText(text, retinaName);
+        TermDictionary dictionary = JsonUtil.getTermDictionary();
+        if (keywords != null && dictionary != null) {
+            for (int i = 0; i < keywords.size(); i++) {
+                keywords.set(i, dictionary.intern(keywords.get(i)));
+            }
+        }
+        return keywords;
     }
     
     /** {@inheritDoc} */
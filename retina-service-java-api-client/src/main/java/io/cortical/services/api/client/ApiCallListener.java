@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+/**
+ *
+ * Receives the timings of the calls made by an {@link ApiInvoker}.
+ * <p>
+ * Both methods are invoked on the calling thread. {@link #callCompleted(ApiCallTrace)} is invoked once the response
+ * was deserialized, or directly after the request if the call has no result, streams its response, its response is
+ * not JSON or the call failed.
+ * </p>
+ */
+public interface ApiCallListener {
+    /**
+     * Invoked before the request body is serialized.
+     *
+     * @param trace : the trace of the call; only its method, path and retina name are set.
+     */
+    void callStarted(ApiCallTrace trace);
+
+    /**
+     * Invoked once the call is completed.
+     *
+     * @param trace : the trace of the call.
+     */
+    void callCompleted(ApiCallTrace trace);
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+/**
+ *
+ * The timings and sizes of a single call made by an {@link ApiInvoker}.
+ */
+public class ApiCallTrace {
+    /**
+     *
+     */
+    private final String method;
+    private final String path;
+    private final String retinaName;
+    private int status;
+    private long requestBytes;
+    private long responseBytes = -1;
+    private long serializationNanos;
+    private long networkNanos;
+    private long deserializationNanos;
+    private Object attachment;
+    /**
+     * The listener to notify and the response awaiting deserialization.
+     */
+    ApiCallListener listener;
+    Object response;
+
+    ApiCallTrace(String method, String path, String retinaName) {
+        this.method = method;
+        this.path = path;
+        this.retinaName = retinaName;
+    }
+
+    /**
+     * Gets the HTTP method.
+     *
+     * @return the method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the REST endpoint path.
+     *
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the name of the retina queried.
+     *
+     * @return the retina name, <code>null</code> if the endpoint does not refer to a retina.
+     */
+    public String getRetinaName() {
+        return retinaName;
+    }
+
+    /**
+     * Gets the HTTP status code.
+     *
+     * @return the status, 0 if no response was received.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the size of the request body.
+     *
+     * @return the size in bytes.
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Gets the size of the response body.
+     *
+     * @return the size in bytes, -1 if unknown.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Gets the time spent serializing the request body.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /**
+     * Gets the time spent sending the request and receiving the response, including the retries and their backoffs.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getNetworkNanos() {
+        return networkNanos;
+    }
+
+    /**
+     * Gets the time spent deserializing the response.
+     *
+     * @return the time in nanoseconds, 0 if the response was not deserialized.
+     */
+    public long getDeserializationNanos() {
+        return deserializationNanos;
+    }
+
+    /**
+     * Gets the object attached by the listener.
+     *
+     * @return the attachment
+     */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    /**
+     * Allows a listener to attach an object to the call, e.g. to carry state from
+     * {@link ApiCallListener#callStarted(ApiCallTrace)} to {@link ApiCallListener#callCompleted(ApiCallTrace)}.
+     *
+     * @param attachment : the attachment to set
+     */
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    void setSerializationNanos(long serializationNanos) {
+        this.serializationNanos = serializationNanos;
+    }
+
+    void setNetworkNanos(long networkNanos) {
+        this.networkNanos = networkNanos;
+    }
+
+    void setDeserializationNanos(long deserializationNanos) {
+        this.deserializationNanos = deserializationNanos;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return method + " " + path + " retina=" + retinaName + " status=" + status + " request=" + requestBytes
+                + "B response=" + responseBytes + "B serialization=" + serializationNanos + "ns network="
+                + networkNanos + "ns deserialization=" + deserializationNanos + "ns";
+    }
+}
@@ -8,16 +8,49 @@
 package io.cortical.services.api.client;
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.WebResource.Builder;
 import com.sun.jersey.api.client.filter.LoggingFilter;
+import com.sun.jersey.client.urlconnection.HttpURLConnectionFactory;
+import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
+import io.cortical.rest.model.CategoryFilter;
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Image;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.Retina;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.Text;
+import io.cortical.services.api.client.metrics.MetricsRegistry;
+import io.cortical.services.api.client.metrics.NoopMetricsRegistry;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response.Status.Family;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.util.URIUtil;
 
@@ -25,7 +58,62 @@ import org.apache.commons.httpclient.util.URIUtil;
 public class ApiInvoker {
     private static ApiInvoker INSTANCE = new ApiInvoker();
     private Map<String, Client> hostMap = new HashMap<String, Client>();
+    /**
+     * The clients of the streamed calls, which do not log the responses: the logging would read them entirely.
+     */
+    private Map<String, Client> streamHostMap = new HashMap<String, Client>();
     private Map<String, String> defaultHeaderMap = new HashMap<String, String>();
+    private volatile MetricsRegistry metricsRegistry = NoopMetricsRegistry.INSTANCE;
+    private volatile ApiCallListener callListener;
+    private volatile RetryPolicy retryPolicy;
+    private volatile HedgingPolicy hedgingPolicy;
+    private volatile OverloadPolicy overloadPolicy;
+    private volatile RateLimiter rateLimiter;
+    /**
+     * The balancers of the pools, over disjoint sets of nodes; replaced on change.
+     */
+    private volatile List<LoadBalancer> loadBalancers = Collections.emptyList();
+    private int connectTimeout = 10000;
+    private int readTimeout = 60000;
+    private volatile SSLContext sslContext;
+    private Http2Transport http2Transport;
+    private volatile WireFormat[] wireFormats = new WireFormat[0];
+    /**
+     * The media types of the <code>Accept</code> header, in order of preference.
+     */
+    private volatile String[] acceptedTypes = {"application/json", "image/png"};
+    /**
+     * The media types of the <code>Accept</code> header of the streamed responses.
+     */
+    private static final String[] STREAMED_TYPES = {"application/json", "image/png"};
+    /**
+     * The socket factory of the TLS connections; a single instance lets the connections be pooled and their sessions
+     * be resumed.
+     */
+    private volatile SSLSocketFactory sslSocketFactory;
+    /**
+     * Opens the connections of the clients.
+     */
+    private final HttpURLConnectionFactory connectionFactory = new HttpURLConnectionFactory() {
+        @Override
+        public HttpURLConnection getHttpURLConnection(URL url) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            SSLSocketFactory factory = sslSocketFactory;
+            if (factory != null && connection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(factory);
+            }
+            return connection;
+        }
+    };
+    /**
+     * The types whose JSON readers and writers are initialized by {@link #warmUp(String, int)}.
+     */
+    private static final Class<?>[] MODEL_TYPES = {Fingerprint.class, Term.class, Context.class, Text.class,
+        Metric.class, Retina.class, Image.class, CategoryFilter.class};
+    /**
+     * The call of the current thread whose response awaits deserialization.
+     */
+    private static final ThreadLocal<ApiCallTrace> PENDING_CALL = new ThreadLocal<ApiCallTrace>();
     
     /** Allows retrieving an instance of {@link ApiInvoker}.
     * @return a {@link ApiInvoker} object.
@@ -63,42 +151,70 @@ public class ApiInvoker {
     * @param nestedContent contains the name of the Pojo, contained in a List of Lists. <code>null</code> if no nested content is present. 
     * @throws APIException if an exception occurs during deserialization
     **/
-    public static Object deserialize(String json, String containerType, Class cls, NestedContent nestedContent) throws ApiException {
-        try{
-
-            if(("List".equals(containerType) || "Array".equals(containerType)) && nestedContent != null){
-                if(NestedContent.CONTEXT.equals(nestedContent)){
-                    JavaType typeInfo = JsonUtil.getJsonMapper().getTypeFactory().constructFromCanonical("java.util.List<java.util.List<io.cortical.rest.model.Context>>");
-                    Object response = (java.lang.Object) JsonUtil.getJsonMapper().readValue(json, typeInfo);
-                    return response;
-                }else if(NestedContent.TERM.equals(nestedContent)){
-                    JavaType typeInfo = JsonUtil.getJsonMapper().getTypeFactory().constructFromCanonical("java.util.List<java.util.List<io.cortical.rest.model.Term>>");
-                    Object response = (java.lang.Object) JsonUtil.getJsonMapper().readValue(json, typeInfo);
-                    return response;
-                }else{
-                    return null;
-                }                        
-               
-            }
-            else if("List".equals(containerType) || "Array".equals(containerType)) {
-                JavaType typeInfo = JsonUtil.getJsonMapper().getTypeFactory().constructCollectionType(List.class, cls);
-                List response = (List<?>) JsonUtil.getJsonMapper().readValue(json, typeInfo);
-                return response;
-            }
-            else if(String.class.equals(cls)) {
+    public static Object deserialize(String json, String containerType, Class<?> cls, NestedContent nestedContent) throws ApiException {
+        return deserialize((Object) json, containerType, cls, nestedContent);
+    }
+
+    /** 
+    * Deserialize a received response, a JSON String or an {@link EncodedEntity}.
+    * @param response the received response
+    * @param containerType the containerType
+    * @param cls the class of the object 
+    * @param nestedContent contains the name of the Pojo, contained in a List of Lists. <code>null</code> if no nested content is present. 
+    * @throws APIException if an exception occurs during deserialization
+    **/
+    public static Object deserialize(Object response, String containerType, Class<?> cls, NestedContent nestedContent) throws ApiException {
+        ApiCallTrace trace = PENDING_CALL.get();
+        if (trace == null) {
+            return readResponse(response, containerType, cls, nestedContent);
+        }
+        long start = System.nanoTime();
+        try {
+            return readResponse(response, containerType, cls, nestedContent);
+        }
+        finally {
+            PENDING_CALL.remove();
+            if (trace.response == response) {
+                trace.setDeserializationNanos(System.nanoTime() - start);
+            }
+            complete(trace);
+        }
+    }
+
+    private static Object readResponse(Object response, String containerType, Class<?> cls, NestedContent nestedContent) throws ApiException {
+        try {
+            if (response instanceof EncodedEntity) {
+                EncodedEntity entity = (EncodedEntity) response;
+                ObjectMapper mapper = entity.getFormat().getMapper();
+                return mapper.readValue(entity.getBytes(), responseType(mapper, containerType, cls, nestedContent));
+            }
+            String json = (String) response;
+            if(!"List".equals(containerType) && !"Array".equals(containerType) && String.class.equals(cls)) {
                 if(json != null && json.startsWith("\"") && json.endsWith("\"") && json.length() > 1)
                     return json.substring(1, json.length() - 2);
                 else
                     return json;
             }
-            else {
-                return JsonUtil.getJsonMapper().readValue(json, cls);
-            }
+            ObjectMapper mapper = JsonUtil.getJsonMapper();
+            return mapper.readValue(json, responseType(mapper, containerType, cls, nestedContent));
         }
         catch (IOException e) {
             throw new ApiException(500, e.getMessage());
         }
     }
+
+    private static JavaType responseType(ObjectMapper mapper, String containerType, Class<?> cls, NestedContent nestedContent) {
+        if(("List".equals(containerType) || "Array".equals(containerType)) && nestedContent != null){
+            if(NestedContent.CONTEXT.equals(nestedContent)){
+                return mapper.getTypeFactory().constructFromCanonical("java.util.List<java.util.List<io.cortical.rest.model.Context>>");
+            }
+            return mapper.getTypeFactory().constructFromCanonical("java.util.List<java.util.List<io.cortical.rest.model.Term>>");
+        }
+        else if("List".equals(containerType) || "Array".equals(containerType)) {
+            return mapper.getTypeFactory().constructCollectionType(List.class, cls);
+        }
+        return mapper.constructType(cls);
+    }
     
     /** 
     * Serialize an Object.
@@ -135,8 +251,46 @@ public class ApiInvoker {
     **/
     public Object invokeAPI(String host, String path, String method, Map<String, String> queryParams, Object body
         , Map<String, String> headerParams, String contentType) throws ApiException {
-        Client client = getClient(host);
+        return invoke(host, path, method, queryParams, body, headerParams, true, false);
+    }
+
+    /** 
+    * Invokes the API for a call without result, e.g. an update or a delete: the response is read and dropped.
+    * @param host the targeted host
+    * @param path the targeted rest endpoint
+    * @param method the HTTP method
+    * @param queryParams the query parameters
+    * @param body the obligatory body of a post
+    * @param headerParams the HTTP header parameters
+    * @param contentType the content type
+    * @throws APIException if an exception occurs during querying of the API.
+    **/
+    public void invokeAPIWithoutResult(String host, String path, String method, Map<String, String> queryParams,
+            Object body, Map<String, String> headerParams, String contentType) throws ApiException {
+        invoke(host, path, method, queryParams, body, headerParams, false, false);
+    }
+
+    /** 
+    * Invokes the API and returns the body of a successful response as a stream, in JSON or PNG whatever the wire
+    * formats, for the caller to read as it arrives and to close. The stream reads the connection itself: the
+    * response is neither buffered nor logged. The request is not hedged.
+    * @param host the targeted host
+    * @param path the targeted rest endpoint
+    * @param method the HTTP method
+    * @param queryParams the query parameters
+    * @param body the obligatory body of a post
+    * @param headerParams the HTTP header parameters
+    * @param contentType the content type
+    * @return the body, <code>null</code> if the response has none.
+    * @throws APIException if an exception occurs during querying of the API.
+    **/
+    public InputStream invokeAPIForStream(String host, String path, String method, Map<String, String> queryParams,
+            Object body, Map<String, String> headerParams, String contentType) throws ApiException {
+        return (InputStream) invoke(host, path, method, queryParams, body, headerParams, false, true);
+    }
 
+    private Object invoke(String host, String path, String method, Map<String, String> queryParams, Object body,
+            Map<String, String> headerParams, boolean result, boolean stream) throws ApiException {
         StringBuilder b = new StringBuilder();
 
         for(String key : queryParams.keySet()) {
@@ -159,66 +313,737 @@ public class ApiInvoker {
             throw new ApiException(0, e.getStackTrace().toString());
         }
         
-        Builder builder = client.resource(host + path + querystring).accept(new String[]{"application/json", "image/png"});
-        for(String key : headerParams.keySet()) {
-            builder.header(key, headerParams.get(key));
-        }
-
+        String target = path + querystring;
+        Map<String, String> headers = new HashMap<String, String>(headerParams);
         for(String key : defaultHeaderMap.keySet()) {
             if(!headerParams.containsKey(key)) {
-                builder.header(key, defaultHeaderMap.get(key));
+                headers.put(key, defaultHeaderMap.get(key));
+            }
+        }
+        if (!"GET".equals(method) && !"POST".equals(method) && !"PUT".equals(method) && !"DELETE".equals(method)) {
+            throw new ApiException(500, "unknown method type " + method);
+        }
+        ApiCallListener listener = callListener;
+        if (listener == null) {
+            return execute(host, target, headers, path, method, body, null, stream);
+        }
+        ApiCallTrace pending = PENDING_CALL.get();
+        if (pending != null) {
+            PENDING_CALL.remove();
+            complete(pending);
+        }
+        ApiCallTrace trace = new ApiCallTrace(method, path, queryParams.get("retina_name"));
+        trace.listener = listener;
+        listener.callStarted(trace);
+        boolean awaitsDeserialization = false;
+        try {
+            Object response = execute(host, target, headers, path, method, body, trace, stream);
+            if (result && (response instanceof String || response instanceof EncodedEntity)) {
+                // completed once the caller deserialized the response.
+                trace.response = response;
+                PENDING_CALL.set(trace);
+                awaitsDeserialization = true;
             }
+            return response;
         }
-        ClientResponse response = null;
+        finally {
+            if (!awaitsDeserialization) {
+                complete(trace);
+            }
+        }
+    }
+
+    private Object execute(String host, String target, Map<String, String> headers, String path, String method,
+            Object body, ApiCallTrace trace, boolean stream) throws ApiException {
+        long serializationStart = System.nanoTime();
+        String payload = serialize(body);
+        if (trace != null) {
+            trace.setSerializationNanos(System.nanoTime() - serializationStart);
+        }
+        RetryPolicy policy = retryPolicy;
+        if (policy != null && !policy.isIdempotent(method, path)) {
+            policy = null;
+        }
+        if (policy != null) {
+            policy.getBudget().requestStarted();
+        }
+        HedgingPolicy hedging = hedgingPolicy;
+        if (hedging != null && (stream || !hedging.isHedged(method, path))) {
+            hedging = null;
+        }
+        long requestBytes = utf8Length(payload);
+        long callStart = System.nanoTime();
+        for (int attempt = 1;; attempt++) {
+            Exchange exchange = hedging == null
+                    ? exchange(host, target, headers, path, method, body, payload, stream, true)
+                    : hedgedExchange(hedging, host, target, headers, path, method, body, payload);
+            if (trace != null) {
+                trace.setNetworkNanos(System.nanoTime() - callStart);
+                trace.setStatus(exchange.status);
+                trace.setRequestBytes(requestBytes);
+                trace.setResponseBytes(exchange.responseBytes);
+            }
+            ApiException failure = exchange.failure;
+            if (failure == null) {
+                return exchange.entity;
+            }
+            if (exchange.rejected || policy == null || !policy.isRetryable(exchange.status)) {
+                throw failure;
+            }
+            long backoff = policy.backoffNanos(attempt, exchange.retryAfter);
+            if (backoff < 0 || !policy.getBudget().tryRetry()) {
+                throw failure;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    private WireFormat wireFormat(String contentType) {
+        for (WireFormat format : wireFormats) {
+            if (format.matches(contentType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the {@link RateLimiter}, if any.
+     * @return <code>null</code> once the request may be sent, the rejected exchange if interrupted.
+     **/
+    private Exchange pace(String payload) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            try {
+                limiter.acquire(utf8Length(payload));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Exchange exchange = new Exchange();
+                exchange.failure = new ApiException(0, "Interrupted while waiting for the rate limiter");
+                exchange.rejected = true;
+                return exchange;
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Sends a request to the host, or to a node of its pool, and reads its response.
+     **/
+    private Exchange exchange(String host, String target, Map<String, String> headers, String path, String method,
+            Object body, String payload, boolean stream, boolean paced) {
+        if (paced) {
+            Exchange rejected = pace(payload);
+            if (rejected != null) {
+                return rejected;
+            }
+        }
+        Exchange exchange = new Exchange();
+        LoadBalancer balancer = getLoadBalancer(host);
+        LoadBalancer.Node node = null;
+        if (balancer != null) {
+            node = balancer.choose(target, payload);
+            host = node.getBasePath();
+        }
+        WebResource resource = getClient(host, stream).resource(host + target);
+        OverloadPolicy overload = overloadPolicy;
+        OverloadPolicy.Guard guard = null;
+        if (overload != null) {
+            try {
+                guard = overload.acquire(resource.getURI().getAuthority(), path);
+            }
+            catch (ApiException e) {
+                if (node != null) {
+                    balancer.release(node, -1, 0);
+                }
+                exchange.status = e.getCode();
+                exchange.failure = e;
+                exchange.rejected = true;
+                return exchange;
+            }
+        }
+        MetricsRegistry metrics = metricsRegistry;
+        metrics.requestStarted(method, path);
+        long start = System.nanoTime();
+        try {
+            Builder builder = resource.accept(stream ? STREAMED_TYPES : acceptedTypes);
+            for(String key : headers.keySet()) {
+                builder.header(key, headers.get(key));
+            }
+            ClientResponse response = dispatch(builder, method, body, payload);
+            exchange.status = response.getStatus();
+            WireFormat format = wireFormat(response.getHeaders().getFirst("Content-Type"));
+            // statuses unknown to Jersey, e.g. 429, have no ClientResponse.Status.
+            if(exchange.status == ClientResponse.Status.NO_CONTENT.getStatusCode()) {
+                exchange.responseBytes = 0;
+                // frees the connection of a streamed response.
+                response.close();
+            }
+            else if(exchange.status >= 200 && exchange.status < 300 && stream) {
+                exchange.responseBytes = response.getLength();
+                exchange.entity = response.getEntityInputStream();
+            }
+            else if(exchange.status >= 200 && exchange.status < 300 && format != null) {
+                byte[] entity = response.getEntity(byte[].class);
+                exchange.responseBytes = entity.length;
+                exchange.entity = new EncodedEntity(format, entity);
+            }
+            else if(exchange.status >= 200 && exchange.status < 300) {
+                    // Handle the casting of the response based on the type.
+                    if (!response.getHeaders().get("Content-Type").get(0).equals(MediaType.APPLICATION_JSON)) {
+                                exchange.responseBytes = response.getLength();
+                                exchange.entity = response.getEntityInputStream();
+                        }
+                        else {
+                                String entity = response.getEntity(String.class);
+                                exchange.responseBytes = utf8Length(entity);
+                                exchange.entity = entity;
+                        }
+            }
+            else {
+                String entity = response.getEntity(String.class);
+                exchange.responseBytes = utf8Length(entity);
+                exchange.retryAfter = response.getHeaders().getFirst("Retry-After");
+                exchange.failure = new ApiException(exchange.status, entity);
+            }
+        }
+        catch (ClientHandlerException e) {
+            // no response: connection refused or reset, read timeout...
+            exchange.failure = new ApiException(exchange.status, String.valueOf(e.getMessage()));
+        }
+        finally {
+            exchange.latencyNanos = System.nanoTime() - start;
+            if (guard != null) {
+                guard.release(exchange.status, exchange.latencyNanos);
+            }
+            if (node != null) {
+                balancer.release(node, exchange.status, exchange.latencyNanos);
+            }
+            metrics.requestCompleted(method, path, exchange.status, exchange.latencyNanos, utf8Length(payload),
+                    exchange.responseBytes);
+        }
+        return exchange;
+    }
+
+    /**
+     * Sends a request and, if it is still pending after the hedging delay, a duplicate; the first successful
+     * response wins and the other request is cancelled. The request is paced before the delay starts, and the
+     * duplicate is not paced: the hedging budget bounds it.
+     **/
+    private Exchange hedgedExchange(final HedgingPolicy hedging, final String host, final String target,
+            final Map<String, String> headers, final String path, final String method, final Object body,
+            final String payload) throws ApiException {
+        Exchange rejected = pace(payload);
+        if (rejected != null) {
+            return rejected;
+        }
+        hedging.getBudget().requestStarted();
+        Callable<Exchange> request = new Callable<Exchange>() {
+            @Override
+            public Exchange call() {
+                Exchange exchange = exchange(host, target, headers, path, method, body, payload, false, false);
+                if (exchange.failure == null) {
+                    hedging.recordLatency(method, path, exchange.latencyNanos);
+                }
+                return exchange;
+            }
+        };
+        CompletionService<Exchange> completion = new ExecutorCompletionService<Exchange>(hedging.getExecutor());
+        List<Future<Exchange>> requests = new ArrayList<Future<Exchange>>(2);
+        try {
+            requests.add(completion.submit(request));
+            Future<Exchange> first = completion.poll(hedging.delayNanos(method, path), TimeUnit.NANOSECONDS);
+            if (first == null && hedging.getBudget().tryRetry()) {
+                requests.add(completion.submit(request));
+                hedging.hedgeSent();
+            }
+            if (first == null) {
+                first = completion.take();
+            }
+            Exchange exchange = first.get();
+            if (exchange.failure != null && requests.size() == 2) {
+                // the other request may still succeed.
+                exchange = completion.take().get();
+            }
+            return exchange;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(0, "Interrupted while waiting for the response");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            for (Future<Exchange> future : requests) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static ClientResponse dispatch(Builder builder, String method, Object body, String payload) {
         if("GET".equals(method)) {
-            response = (ClientResponse) builder.get(ClientResponse.class);
+            return builder.get(ClientResponse.class);
         }
         else if ("POST".equals(method)) {
             if(body == null)
-                response = builder.post(ClientResponse.class, serialize(body));
+                return builder.post(ClientResponse.class, payload);
             else
-                response = builder.type("application/json").post(ClientResponse.class, serialize(body));
+                return builder.type("application/json").post(ClientResponse.class, payload);
         }
         else if ("PUT".equals(method)) {
             if(body == null)
-                response = builder.put(ClientResponse.class, serialize(body));
+                return builder.put(ClientResponse.class, payload);
             else
-                response = builder.type("application/json").put(ClientResponse.class, serialize(body));
+                return builder.type("application/json").put(ClientResponse.class, payload);
         }
-        else if ("DELETE".equals(method)) {
+        else {
             if(body == null)
-                response = builder.delete(ClientResponse.class, serialize(body));
+                return builder.delete(ClientResponse.class, payload);
             else
-                response = builder.type("application/json").delete(ClientResponse.class, serialize(body));
+                return builder.type("application/json").delete(ClientResponse.class, payload);
         }
-        else {
-            throw new ApiException(500, "unknown method type " + method);
+    }
+
+    /**
+     * The outcome of a single request.
+     **/
+    private static final class Exchange {
+        private int status;
+        private long responseBytes = -1;
+        private long latencyNanos;
+        private Object entity;
+        private String retryAfter;
+        private ApiException failure;
+        /**
+         * Whether the request was not sent, being rejected by the {@link OverloadPolicy} or interrupted.
+         */
+        private boolean rejected;
+    }
+
+    private static void complete(ApiCallTrace trace) {
+        trace.response = null;
+        trace.listener.callCompleted(trace);
+    }
+
+    /**
+     * Allows setting the listener receiving the timings of the API calls.
+     * @param callListener the listener, <code>null</code> to disable the timings.
+     **/
+    public void setCallListener(ApiCallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    /**
+     * Allows retrieving the listener receiving the timings of the API calls.
+     * @return the {@link ApiCallListener}, <code>null</code> if none is set.
+     **/
+    public ApiCallListener getCallListener() {
+        return callListener;
+    }
+
+    /**
+     * Allows setting the policy retrying the failed idempotent calls.
+     * @param retryPolicy the policy, <code>null</code> to disable the retries.
+     **/
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Allows retrieving the policy retrying the failed idempotent calls.
+     * @return the {@link RetryPolicy}, <code>null</code> if the calls are not retried.
+     **/
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Allows setting the policy hedging the slow idempotent calls.
+     * @param hedgingPolicy the policy, <code>null</code> to disable the hedging.
+     **/
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Allows retrieving the policy hedging the slow idempotent calls.
+     * @return the {@link HedgingPolicy}, <code>null</code> if the calls are not hedged.
+     **/
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Allows setting the policy failing fast the calls to an overloaded or failing endpoint.
+     * @param overloadPolicy the policy, <code>null</code> to disable the circuit breakers and concurrency limits.
+     **/
+    public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    /**
+     * Allows retrieving the policy failing fast the calls to an overloaded or failing endpoint.
+     * @return the {@link OverloadPolicy}, <code>null</code> if the calls are not guarded.
+     **/
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Allows setting the limiter pacing the requests to the quota of the api-key; retries are paced too, but not the
+     * duplicates of hedged requests, which the budget of the {@link HedgingPolicy} bounds.
+     * @param rateLimiter the limiter, <code>null</code> to send the requests unpaced.
+     **/
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Allows retrieving the limiter pacing the requests to the quota of the api-key.
+     * @return the {@link RateLimiter}, <code>null</code> if the requests are not paced.
+     **/
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Allows setting the load balancer spreading the calls to the base path of any of its nodes over its pool; the
+     * balancers added before are removed.
+     * @param loadBalancer the balancer, <code>null</code> to send the calls to their base path.
+     **/
+    public synchronized void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancers = loadBalancer == null ? Collections.<LoadBalancer>emptyList()
+                : Collections.singletonList(loadBalancer);
+    }
+
+    /**
+     * Allows adding the load balancer of a pool, next to those of the other pools: the calls to the base path of any
+     * of its nodes are spread over its pool.
+     * @param loadBalancer the balancer.
+     * @return the balancer added, or the one added before over the same nodes.
+     * @throws IllegalArgumentException if the pool shares some, but not all, of its nodes with another pool.
+     **/
+    public synchronized LoadBalancer addLoadBalancer(LoadBalancer loadBalancer) {
+        if (loadBalancer == null) {
+            throw new IllegalArgumentException("The load balancer cannot be null.");
+        }
+        Set<String> basePaths = basePaths(loadBalancer);
+        for (LoadBalancer balancer : loadBalancers) {
+            Set<String> balanced = basePaths(balancer);
+            if (balanced.equals(basePaths)) {
+                return balancer;
+            }
+            balanced.retainAll(basePaths);
+            if (!balanced.isEmpty()) {
+                throw new IllegalArgumentException("The nodes " + balanced + " are balanced by another pool.");
+            }
+        }
+        List<LoadBalancer> balancers = new ArrayList<LoadBalancer>(loadBalancers);
+        balancers.add(loadBalancer);
+        this.loadBalancers = Collections.unmodifiableList(balancers);
+        return loadBalancer;
+    }
+
+    /**
+     * Allows retrieving the load balancer spreading the calls to a base path over a pool of servers.
+     * @param basePath the base path of the calls.
+     * @return the {@link LoadBalancer} of the pool of the base path, <code>null</code> if its calls are not balanced.
+     **/
+    public LoadBalancer getLoadBalancer(String basePath) {
+        for (LoadBalancer balancer : loadBalancers) {
+            if (balancer.contains(basePath)) {
+                return balancer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Allows retrieving the load balancers of the pools of servers.
+     * @return the {@link LoadBalancer}s, empty if no call is balanced.
+     **/
+    public List<LoadBalancer> getLoadBalancers() {
+        return loadBalancers;
+    }
+
+    private static Set<String> basePaths(LoadBalancer balancer) {
+        Set<String> basePaths = new HashSet<String>();
+        for (LoadBalancer.Node node : balancer.getNodes()) {
+            basePaths.add(node.getBasePath());
+        }
+        return basePaths;
+    }
+
+    /**
+     * Allows setting the TLS context of the <code>https</code> connections, e.g. to trust a private certificate
+     * authority. A single socket factory of the context is used by all the connections, so that they are pooled and
+     * their TLS sessions resumed from the client session cache of the context, whose size and timeout may be tuned.
+     * @param sslContext the context, <code>null</code> for the default context of the JVM.
+     **/
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        this.sslSocketFactory = sslContext == null ? null : sslContext.getSocketFactory();
+    }
+
+    /**
+     * Allows retrieving the TLS context of the <code>https</code> connections.
+     * @return the {@link SSLContext}, <code>null</code> if the default context of the JVM is used.
+     **/
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Allows receiving the responses in binary formats, e.g. Smile, where the server supports them; the other
+     * responses are read as JSON.
+     * @param formats the formats, in order of preference, none to only accept JSON.
+     **/
+    public void setWireFormats(WireFormat... formats) {
+        List<String> types = new ArrayList<String>();
+        for (WireFormat format : formats) {
+            types.add(format.getMediaType());
+        }
+        types.add(formats.length == 0 ? "application/json" : "application/json;q=0.9");
+        types.add("image/png");
+        this.wireFormats = formats.clone();
+        this.acceptedTypes = types.toArray(new String[types.size()]);
+    }
+
+    /**
+     * Gets the binary formats accepted for the responses.
+     * @return the formats, in order of preference.
+     **/
+    public WireFormat[] getWireFormats() {
+        return wireFormats.clone();
+    }
+
+    /**
+     * Allows sending the requests over HTTP/2, multiplexing the concurrent calls to a server over few connections.
+     * The TLS context of the invoker does not apply to this transport, which has its own.
+     * @param http2Transport the transport, <code>null</code> to use a connection per concurrent call (HTTP/1.1).
+     **/
+    public synchronized void setHttp2Transport(Http2Transport http2Transport) {
+        this.http2Transport = http2Transport;
+        // the clients are created again with the transport.
+        hostMap.clear();
+        streamHostMap.clear();
+    }
+
+    /**
+     * Allows retrieving the HTTP/2 transport of the requests.
+     * @return the {@link Http2Transport}, <code>null</code> if the requests are sent over HTTP/1.1.
+     **/
+    public synchronized Http2Transport getHttp2Transport() {
+        return http2Transport;
+    }
+
+    /**
+     * Prepares the calls to a host, or to every node of its pool: opens concurrent connections which are kept alive
+     * for the following calls, including the TLS handshakes, and initializes the JSON readers and writers. The JVM
+     * keeps at most <code>http.maxConnections</code> (5 by default) idle connections per server.
+     * @param host the targeted host
+     * @param connections the count of connections to open to each server
+     * @throws ApiException if a server could not be reached.
+     **/
+    public void warmUp(String host, int connections) throws ApiException {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("The count of connections must be positive.");
         }
-        if(response.getClientResponseStatus() == ClientResponse.Status.NO_CONTENT) {
-            return null;
+        for (Class<?> type : MODEL_TYPES) {
+            JsonUtil.getJsonMapper().canSerialize(type);
+            JsonUtil.getJsonMapper().canDeserialize(JsonUtil.getJsonMapper().constructType(type));
         }
-        else if(response.getClientResponseStatus().getFamily() == Family.SUCCESSFUL) {
-                // Handle the casting of the response based on the type.
-                if (!response.getHeaders().get("Content-Type").get(0).equals(MediaType.APPLICATION_JSON)) {
-                            return response.getEntityInputStream();
-                    }
-                    return (String) response.getEntity(String.class);
+        List<String> hosts = new ArrayList<String>();
+        LoadBalancer balancer = getLoadBalancer(host);
+        if (balancer != null) {
+            for (LoadBalancer.Node node : balancer.getNodes()) {
+                hosts.add(node.getBasePath());
+            }
         }
         else {
-            throw new ApiException(
-                                response.getClientResponseStatus().getStatusCode(),
-                                response.getEntity(String.class));
+            hosts.add(host);
+        }
+        final Map<String, String> headers = new HashMap<String, String>(defaultHeaderMap);
+        int count = hosts.size() * connections;
+        // the requests wait for each other, so that each opens its own connection.
+        final CyclicBarrier start = new CyclicBarrier(count);
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<ApiException>> results = new ArrayList<Future<ApiException>>(count);
+            for (final String server : hosts) {
+                for (int i = 0; i < connections; i++) {
+                    results.add(executor.submit(new Callable<ApiException>() {
+                        @Override
+                        public ApiException call() throws Exception {
+                            start.await();
+                            return warmUpRequest(server, headers);
+                        }
+                    }));
+                }
+            }
+            ApiException failure = null;
+            for (Future<ApiException> result : results) {
+                ApiException exception = result.get();
+                if (failure == null) {
+                    failure = exception;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(0, "Interrupted while warming up");
+        }
+        catch (ExecutionException e) {
+            throw new ApiException(0, String.valueOf(e.getCause()));
+        }
+        finally {
+            executor.shutdownNow();
         }
     }
 
-    private Client getClient(String host) {
-        if(!hostMap.containsKey(host)) {
-            Client client = Client.create();
-            client.addFilter(new LoggingFilter());
-            hostMap.put(host, client);
+    /**
+     * Sends a request listing the retinas, outside of the policies of the invoker.
+     * @return the failure, <code>null</code> if the request succeeded.
+     **/
+    private ApiException warmUpRequest(String host, Map<String, String> headers) {
+        try {
+            Builder builder = getClient(host, false).resource(host + "/retinas").accept(MediaType.APPLICATION_JSON);
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+            ClientResponse response = builder.get(ClientResponse.class);
+            // reading the entity to its end returns the connection to the pool.
+            String entity = response.getEntity(String.class);
+            return response.getStatus() == 200 ? null : new ApiException(response.getStatus(), entity);
+        }
+        catch (ClientHandlerException e) {
+            return new ApiException(0, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Allows setting the connect timeout of the requests, 10 seconds by default.
+     * @param connectTimeout the timeout in milliseconds, 0 to wait indefinitely.
+     **/
+    public synchronized void setConnectTimeout(int connectTimeout) {
+        if (connectTimeout < 0) {
+            throw new IllegalArgumentException("The timeout must not be negative.");
+        }
+        this.connectTimeout = connectTimeout;
+        for (Client client : hostMap.values()) {
+            client.setConnectTimeout(connectTimeout);
+        }
+        for (Client client : streamHostMap.values()) {
+            client.setConnectTimeout(connectTimeout);
+        }
+    }
+
+    /**
+     * Allows retrieving the connect timeout of the requests.
+     * @return the timeout in milliseconds.
+     **/
+    public synchronized int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Allows setting the read timeout of the requests, 60 seconds by default.
+     * @param readTimeout the timeout in milliseconds, 0 to wait indefinitely.
+     **/
+    public synchronized void setReadTimeout(int readTimeout) {
+        if (readTimeout < 0) {
+            throw new IllegalArgumentException("The timeout must not be negative.");
+        }
+        this.readTimeout = readTimeout;
+        for (Client client : hostMap.values()) {
+            client.setReadTimeout(readTimeout);
+        }
+        for (Client client : streamHostMap.values()) {
+            client.setReadTimeout(readTimeout);
+        }
+    }
+
+    /**
+     * Allows retrieving the read timeout of the requests.
+     * @return the timeout in milliseconds.
+     **/
+    public synchronized int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Allows setting the registry receiving the measurements of the API calls.
+     * @param metricsRegistry the registry, <code>null</code> to disable the measurements.
+     **/
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry == null ? NoopMetricsRegistry.INSTANCE : metricsRegistry;
+    }
+
+    /**
+     * Allows retrieving the registry receiving the measurements of the API calls.
+     * @return the {@link MetricsRegistry}.
+     **/
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Counts the bytes of the UTF-8 encoding of a String without encoding it.
+     **/
+    static long utf8Length(String str) {
+        if (str == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private synchronized Client getClient(String host, boolean stream) {
+        Map<String, Client> clients = stream ? streamHostMap : hostMap;
+        if(!clients.containsKey(host)) {
+            Client client = new Client(http2Transport == null ? new URLConnectionClientHandler(connectionFactory)
+                    : http2Transport.newClientHandler());
+            client.setConnectTimeout(connectTimeout);
+            client.setReadTimeout(readTimeout);
+            if (stream) {
+                client.getProperties().put(Http2Transport.PROPERTY_STREAMED, Boolean.TRUE);
+            }
+            else {
+                client.addFilter(new LoggingFilter());
+            }
+            clients.put(host, client);
         }
-        return hostMap.get(host);
+        return clients.get(host);
     }
 }
 
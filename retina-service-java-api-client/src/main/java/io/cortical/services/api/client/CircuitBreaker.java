@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Stops the calls to an endpoint whose recent calls mostly failed, and probes it again after a while.
+ * <p>
+ * The breaker is closed while less than <code>failureRateThreshold</code> of the last <code>windowSize</code> calls
+ * failed. It then opens and rejects every call for <code>openDuration</code>, after which it is half open: up to
+ * <code>probes</code> calls are let through, and it closes once they all succeeded or opens again on the first
+ * failure.
+ * </p>
+ */
+public class CircuitBreaker {
+    /**
+     *
+     * The states of a breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     *
+     */
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int probes;
+    private final boolean[] window;
+    private State state = State.CLOSED;
+    private int windowCount;
+    private int windowIndex;
+    private int windowFailures;
+    private long openedNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    /**
+     * Creates a new instance of {@link CircuitBreaker}.
+     *
+     * @param failureRateThreshold : the share of failed calls in the range 0..1 opening the breaker.
+     * @param windowSize : the count of recent calls considered.
+     * @param minimumCalls : the count of calls required before the breaker may open.
+     * @param openDuration : the duration the breaker stays open.
+     * @param probes : the count of calls let through when half open.
+     * @param unit : the unit of the duration.
+     */
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, long openDuration, int probes,
+            TimeUnit unit) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("The failure rate threshold must be in the range ]0, 1].");
+        }
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize || probes <= 0) {
+            throw new IllegalArgumentException("Invalid window: " + minimumCalls + " of " + windowSize
+                    + " calls, " + probes + " probes");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.openDurationNanos = unit.toNanos(openDuration);
+        this.probes = probes;
+    }
+
+    /**
+     * Asks whether a call may be sent; every permitted call must be followed by {@link #onResult(boolean)}.
+     *
+     * @return <code>true</code> if the call is permitted.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedNanos < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= probes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param failed : <code>true</code> if the call failed.
+     */
+    public synchronized void onResult(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (failed) {
+                open();
+            }
+            else if (++probeSuccesses >= probes) {
+                close();
+            }
+        }
+        else if (state == State.CLOSED) {
+            if (windowCount == window.length && window[windowIndex]) {
+                windowFailures--;
+            }
+            window[windowIndex] = failed;
+            windowIndex = (windowIndex + 1) % window.length;
+            windowCount = Math.min(window.length, windowCount + 1);
+            if (failed) {
+                windowFailures++;
+                if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+                    open();
+                }
+            }
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedNanos = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowCount = 0;
+        windowIndex = 0;
+        windowFailures = 0;
+    }
+
+    /**
+     * Gets the state of the breaker.
+     *
+     * @return the state.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedNanos >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+/**
+ *
+ * Limits the count of concurrent calls to an endpoint, adapting the limit to the observed latency (AIMD).
+ * <p>
+ * The limit grows by one per limit-many successful calls while the calls use at least half of it, and is multiplied
+ * by <code>backoffRatio</code> when a call was dropped (timeout, 429, 503) or the smoothed latency exceeds
+ * <code>tolerance</code> times the baseline latency. The smoothed latency is an exponential moving average of the
+ * recent latencies, so that the jitter of single calls does not count as congestion. The baseline follows the smoothed
+ * latency down at once and up slowly, so that a durably slower server is eventually considered normal.
+ * </p>
+ * <p>
+ * The limit is decreased at most once per window of limit-many calls, i.e. roughly once per round trip of the calls
+ * in flight, since the calls sent before a decrease would otherwise shrink the limit again for the same congestion.
+ * </p>
+ */
+public class ConcurrencyLimiter {
+    /**
+     * The weight of a latency in the smoothed latency.
+     */
+    private static final double SMOOTHING = 0.1;
+    /**
+     * The weight of the smoothed latency in the upwards drift of the baseline.
+     */
+    private static final double BASELINE_DRIFT = 0.001;
+    /**
+     *
+     */
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private double limit;
+    private int inFlight;
+    private double smoothedNanos;
+    private double baselineNanos;
+    private int callsSinceDecrease;
+
+    /**
+     * Creates a new instance of {@link ConcurrencyLimiter}.
+     *
+     * @param initialLimit : the initial limit.
+     * @param minLimit : the lowest limit.
+     * @param maxLimit : the highest limit.
+     * @param tolerance : the ratio to the baseline latency above which a call is considered slow, e.g. 2.
+     * @param backoffRatio : the factor applied to the limit on a dropped or slow call, e.g. 0.9.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits: " + minLimit + " <= " + initialLimit + " <= "
+                    + maxLimit);
+        }
+        if (tolerance <= 1 || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("The tolerance must be above 1 and the backoff ratio in ]0, 1[.");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.callsSinceDecrease = maxLimit;
+    }
+
+    /**
+     * Asks whether a call may be sent; every permitted call must be followed by {@link #release(long, boolean)}.
+     *
+     * @return <code>true</code> if the call is permitted.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param latencyNanos : the latency of the call.
+     * @param dropped : <code>true</code> if the server did not handle the call, e.g. a timeout or a 503.
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+        int utilisation = inFlight;
+        inFlight--;
+        callsSinceDecrease++;
+        if (!dropped) {
+            if (smoothedNanos == 0) {
+                smoothedNanos = latencyNanos;
+                baselineNanos = latencyNanos;
+            }
+            else {
+                smoothedNanos += (latencyNanos - smoothedNanos) * SMOOTHING;
+                baselineNanos = Math.min(smoothedNanos, baselineNanos + (smoothedNanos - baselineNanos)
+                        * BASELINE_DRIFT);
+            }
+        }
+        if (dropped || smoothedNanos > tolerance * baselineNanos) {
+            if (callsSinceDecrease >= limit) {
+                decrease();
+                callsSinceDecrease = 0;
+            }
+        }
+        else if (utilisation * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Releases a permitted call which was not sent.
+     */
+    synchronized void cancel() {
+        inFlight--;
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the count of concurrent calls permitted.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Gets the count of calls in flight.
+     *
+     * @return the count.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
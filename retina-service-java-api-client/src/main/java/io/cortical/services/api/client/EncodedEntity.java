@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+/**
+ *
+ * A response entity in a binary {@link WireFormat}, returned by
+ * {@link ApiInvoker#invokeAPI(String, String, String, java.util.Map, Object, java.util.Map, String)} in place of the
+ * JSON string and read by {@link ApiInvoker#deserialize(Object, String, Class, ApiInvoker.NestedContent)}.
+ */
+public final class EncodedEntity {
+    /**
+     *
+     */
+    private final WireFormat format;
+    private final byte[] bytes;
+
+    /**
+     * Creates a new instance of {@link EncodedEntity}.
+     *
+     * @param format : the format of the entity.
+     * @param bytes : the encoded entity.
+     */
+    public EncodedEntity(WireFormat format, byte[] bytes) {
+        if (format == null || bytes == null) {
+            throw new IllegalArgumentException("An entity needs a format and bytes.");
+        }
+        this.format = format;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Gets the format of the entity.
+     *
+     * @return the format.
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the encoded entity.
+     *
+     * @return the bytes, not copied.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import io.cortical.services.api.client.metrics.Histogram;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Decides when an {@link ApiInvoker} hedges a slow call by sending a duplicate request.
+ * <p>
+ * GETs and POSTs to the hedged endpoints (by default <code>/compare</code> and <code>/expressions</code>) are sent from
+ * a thread pool. If no response arrived after the hedging delay, a duplicate is sent; the first successful response is
+ * used and the other request is cancelled. The delay adapts to the endpoint: it is a percentile (95 by default) of the
+ * latencies of its recent successful requests, bounded by <code>minDelay</code> and <code>maxDelay</code>. The hedges
+ * are taken from a {@link RetryBudget}, which caps the extra load (5% of the hedged calls by default).
+ * </p>
+ * <p>
+ * A cancelled request is abandoned, its thread interrupted and its response discarded; the blocking I/O of the client
+ * may still read the response to its end.
+ * </p>
+ */
+public class HedgingPolicy {
+    /**
+     * The endpoints hedged by default, besides the GETs.
+     */
+    public static final Set<String> DEFAULT_HEDGED_POST_PATHS = Collections.unmodifiableSet(new LinkedHashSet<String>(
+            Arrays.asList("/compare", "/expressions")));
+    /**
+     * The count of samples after which the latency window of an endpoint is rotated.
+     */
+    private static final int WINDOW_SIZE = 1000;
+    /**
+     * The count of samples required before the percentile is used instead of the maximum delay.
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     *
+     */
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<String, LatencyWindow>();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final ExecutorService executor;
+    private RetryBudget budget = new RetryBudget(0.05, 1);
+    private Set<String> hedgedPostPaths = DEFAULT_HEDGED_POST_PATHS;
+
+    /**
+     * Creates a new instance of {@link HedgingPolicy} hedging at the 95th percentile, between 10ms and 1s.
+     */
+    public HedgingPolicy() {
+        this(95, 10, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance of {@link HedgingPolicy}.
+     *
+     * @param percentile : the percentile of the endpoint latency after which a call is hedged.
+     * @param minDelay : the minimum hedging delay.
+     * @param maxDelay : the maximum hedging delay, used until enough latencies were measured.
+     * @param unit : the unit of the delays.
+     */
+    public HedgingPolicy(double percentile, long minDelay, long maxDelay, TimeUnit unit) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be in the range ]0, 100].");
+        }
+        if (minDelay < 0 || maxDelay < minDelay) {
+            throw new IllegalArgumentException("Invalid delay: " + minDelay + ".." + maxDelay);
+        }
+        this.percentile = percentile;
+        this.minDelayNanos = unit.toNanos(minDelay);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "retina-hedging-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Checks whether a call may be hedged.
+     *
+     * @param method : the HTTP method.
+     * @param path : the REST endpoint path.
+     * @return <code>true</code> if the endpoint is hedged.
+     */
+    public boolean isHedged(String method, String path) {
+        return "GET".equals(method) || "POST".equals(method) && RetryPolicy.matches(hedgedPostPaths, path);
+    }
+
+    /**
+     * Gets the hedging delay of an endpoint.
+     *
+     * @param method : the HTTP method.
+     * @param path : the REST endpoint path.
+     * @return the delay in nanoseconds.
+     */
+    public long delayNanos(String method, String path) {
+        LatencyWindow window = windows.get(method + " " + path);
+        if (window == null) {
+            return maxDelayNanos;
+        }
+        Histogram latencies = window.previous;
+        if (latencies == null) {
+            latencies = window.current;
+            if (latencies.getCount() < MIN_SAMPLES) {
+                return maxDelayNanos;
+            }
+        }
+        long delay = TimeUnit.MICROSECONDS.toNanos(latencies.getValueAtPercentile(percentile));
+        return Math.max(minDelayNanos, Math.min(maxDelayNanos, delay));
+    }
+
+    /**
+     * Records the latency of a successful request.
+     *
+     * @param method : the HTTP method.
+     * @param path : the REST endpoint path.
+     * @param latencyNanos : the latency in nanoseconds.
+     */
+    void recordLatency(String method, String path, long latencyNanos) {
+        String key = method + " " + path;
+        LatencyWindow window = windows.get(key);
+        if (window == null) {
+            LatencyWindow created = new LatencyWindow();
+            window = windows.putIfAbsent(key, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        window.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    void hedgeSent() {
+        hedgeCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the count of duplicate requests sent.
+     *
+     * @return the count.
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Gets the executor sending the hedged requests.
+     *
+     * @return the executor.
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the budget the hedges are taken from.
+     *
+     * @return the budget.
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget the hedges are taken from.
+     *
+     * @param budget : the budget.
+     */
+    public void setBudget(RetryBudget budget) {
+        if (budget == null) {
+            throw new IllegalArgumentException("The budget must not be null.");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the hedged POST endpoints; an endpoint also covers its sub-paths, e.g. <code>/compare</code> covers
+     * <code>/compare/bulk</code>. Only side-effect free endpoints may be hedged.
+     *
+     * @param hedgedPostPaths : the endpoint paths.
+     */
+    public void setHedgedPostPaths(Set<String> hedgedPostPaths) {
+        this.hedgedPostPaths = Collections.unmodifiableSet(new LinkedHashSet<String>(hedgedPostPaths));
+    }
+
+    /**
+     *
+     * The latencies of the recent requests of an endpoint: the current window and the last full one.
+     */
+    private static final class LatencyWindow {
+        private volatile Histogram current = new Histogram();
+        private volatile Histogram previous;
+
+        void record(long latencyMicros) {
+            Histogram histogram = current;
+            histogram.record(latencyMicros);
+            if (histogram.getCount() == WINDOW_SIZE) {
+                previous = histogram;
+                current = new Histogram();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.TerminatingClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.core.header.InBoundHeaders;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509TrustManager;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ *
+ * Sends the requests of an {@link ApiInvoker} over HTTP/2, multiplexing the concurrent calls to a server over few
+ * connections instead of one connection per call.
+ * <p>
+ * The <code>https</code> base paths negotiate HTTP/2 with ALPN (JDK 8u252 or later) and fall back to HTTP/1.1. The
+ * <code>http</code> base paths use HTTP/2 with prior knowledge (h2c), which the server must support, unless
+ * <code>priorKnowledge</code> is disabled. The calls to a server are limited to <code>maxConcurrentStreams</code>;
+ * the further calls wait for a stream to be free. The responses are read entirely before being returned, but for the
+ * streamed calls of {@link ApiInvoker#invokeAPIForStream}: their stream reads the connection, and holds the stream
+ * of the server until it is closed.
+ * </p>
+ * <p>
+ * The transport relies on OkHttp, an optional dependency of this client which must be added to use it.
+ * </p>
+ */
+public class Http2Transport implements Closeable {
+    /**
+     * The property of the Jersey clients whose responses are streamed.
+     */
+    static final String PROPERTY_STREAMED = "io.cortical.services.api.client.streamed";
+    /**
+     *
+     */
+    private final OkHttpClient tlsClient;
+    private final OkHttpClient plainClient;
+    private final int maxConcurrentStreams;
+    private final ConcurrentMap<String, Semaphore> streams = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Creates a new instance of {@link Http2Transport} with 100 concurrent streams per server, and h2c for the
+     * <code>http</code> base paths.
+     */
+    public Http2Transport() {
+        this(100, true);
+    }
+
+    /**
+     * Creates a new instance of {@link Http2Transport}.
+     *
+     * @param maxConcurrentStreams : the maximum count of concurrent calls to a server.
+     * @param priorKnowledge : <code>true</code> to use h2c for the <code>http</code> base paths, <code>false</code> to
+     *            use HTTP/1.1.
+     */
+    public Http2Transport(int maxConcurrentStreams, boolean priorKnowledge) {
+        this(maxConcurrentStreams, priorKnowledge, null, null);
+    }
+
+    /**
+     * Creates a new instance of {@link Http2Transport} with a TLS configuration, e.g. to trust a private certificate
+     * authority.
+     *
+     * @param maxConcurrentStreams : the maximum count of concurrent calls to a server.
+     * @param priorKnowledge : <code>true</code> to use h2c for the <code>http</code> base paths, <code>false</code> to
+     *            use HTTP/1.1.
+     * @param sslSocketFactory : the socket factory of the TLS connections, <code>null</code> for the default one.
+     * @param trustManager : the trust manager of the socket factory.
+     */
+    public Http2Transport(int maxConcurrentStreams, boolean priorKnowledge, SSLSocketFactory sslSocketFactory,
+            X509TrustManager trustManager) {
+        if (maxConcurrentStreams <= 0) {
+            throw new IllegalArgumentException("The count of concurrent streams must be positive.");
+        }
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        if (sslSocketFactory != null) {
+            builder.sslSocketFactory(sslSocketFactory, trustManager);
+        }
+        this.tlsClient = builder.build();
+        this.plainClient = priorKnowledge
+                ? tlsClient.newBuilder().protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)).build()
+                : tlsClient;
+    }
+
+    /**
+     * Gets the maximum count of concurrent calls to a server.
+     *
+     * @return the count.
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Creates the Jersey handler sending the requests of a client.
+     *
+     * @return the handler.
+     */
+    ClientHandler newClientHandler() {
+        return new Handler();
+    }
+
+    /**
+     * Closes the idle connections; the connections in use are closed once their calls completed.
+     */
+    @Override
+    public void close() {
+        tlsClient.connectionPool().evictAll();
+        plainClient.connectionPool().evictAll();
+    }
+
+    private Semaphore streams(String authority) {
+        Semaphore semaphore = streams.get(authority);
+        if (semaphore == null) {
+            Semaphore created = new Semaphore(maxConcurrentStreams, true);
+            semaphore = streams.putIfAbsent(authority, created);
+            if (semaphore == null) {
+                semaphore = created;
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     *
+     * Translates the Jersey requests into OkHttp calls.
+     */
+    private final class Handler extends TerminatingClientHandler {
+        /**
+         * The clients with the timeouts of the requests, derived from the shared ones.
+         */
+        private volatile TimedClients timed;
+
+        /** {@inheritDoc} */
+        @Override
+        public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+            TimedClients clients = clients(request.getProperties());
+            OkHttpClient client = "https".equals(request.getURI().getScheme()) ? clients.tls : clients.plain;
+            Request.Builder builder = new Request.Builder();
+            try {
+                builder.url(request.getURI().toURL());
+                for (Map.Entry<String, List<Object>> header : request.getHeaders().entrySet()) {
+                    for (Object value : header.getValue()) {
+                        builder.addHeader(header.getKey(), headerValueToString(value));
+                    }
+                }
+                builder.method(request.getMethod(), body(request));
+            }
+            catch (IOException e) {
+                throw new ClientHandlerException(e);
+            }
+            Semaphore semaphore = streams(request.getURI().getAuthority());
+            try {
+                semaphore.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientHandlerException(e);
+            }
+            Response response = null;
+            try {
+                response = client.newCall(builder.build()).execute();
+                ResponseBody responseBody = response.body();
+                InBoundHeaders headers = new InBoundHeaders();
+                for (String name : response.headers().names()) {
+                    for (String value : response.headers(name)) {
+                        headers.add(name, value);
+                    }
+                }
+                if (responseBody != null && Boolean.TRUE.equals(request.getProperties().get(PROPERTY_STREAMED))) {
+                    // the entity may have been decompressed, its length is then unknown.
+                    if (responseBody.contentLength() < 0) {
+                        headers.remove("Content-Length");
+                    }
+                    else {
+                        headers.putSingle("Content-Length", String.valueOf(responseBody.contentLength()));
+                    }
+                    ClientResponse streamed = new ClientResponse(response.code(), headers,
+                            new StreamedEntity(responseBody.byteStream(), semaphore), getMessageBodyWorkers());
+                    // closed and released with the entity.
+                    response = null;
+                    semaphore = null;
+                    return streamed;
+                }
+                byte[] entity = responseBody == null ? new byte[0] : responseBody.bytes();
+                // the entity may have been decompressed.
+                headers.putSingle("Content-Length", String.valueOf(entity.length));
+                return new ClientResponse(response.code(), headers, new ByteArrayInputStream(entity),
+                        getMessageBodyWorkers());
+            }
+            catch (IOException e) {
+                throw new ClientHandlerException(e);
+            }
+            finally {
+                if (response != null) {
+                    response.close();
+                }
+                if (semaphore != null) {
+                    semaphore.release();
+                }
+            }
+        }
+
+        private RequestBody body(ClientRequest request) throws IOException {
+            if (request.getEntity() == null) {
+                boolean required = "POST".equals(request.getMethod()) || "PUT".equals(request.getMethod());
+                return required ? RequestBody.create(null, new byte[0]) : null;
+            }
+            RequestEntityWriter writer = getRequestEntityWriter(request);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeRequestEntity(out);
+            return RequestBody.create(MediaType.parse(String.valueOf(writer.getMediaType())), out.toByteArray());
+        }
+
+        private TimedClients clients(Map<String, Object> properties) {
+            int connectTimeout = timeout(properties.get(ClientConfig.PROPERTY_CONNECT_TIMEOUT));
+            int readTimeout = timeout(properties.get(ClientConfig.PROPERTY_READ_TIMEOUT));
+            TimedClients clients = timed;
+            if (clients == null || clients.connectTimeout != connectTimeout || clients.readTimeout != readTimeout) {
+                clients = new TimedClients(connectTimeout, readTimeout);
+                timed = clients;
+            }
+            return clients;
+        }
+
+        private int timeout(Object value) {
+            return value instanceof Integer ? (Integer) value : 0;
+        }
+    }
+
+    /**
+     *
+     * The entity of a streamed response, which frees the stream of the server once closed.
+     */
+    private static final class StreamedEntity extends FilterInputStream {
+        private Semaphore semaphore;
+
+        StreamedEntity(InputStream in, Semaphore semaphore) {
+            super(in);
+            this.semaphore = semaphore;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                if (semaphore != null) {
+                    semaphore.release();
+                    semaphore = null;
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * The clients sharing the connections of the transport, with the timeouts of a Jersey client.
+     */
+    private final class TimedClients {
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final OkHttpClient tls;
+        private final OkHttpClient plain;
+
+        TimedClients(int connectTimeout, int readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.tls = withTimeouts(tlsClient);
+            this.plain = plainClient == tlsClient ? tls : withTimeouts(plainClient);
+        }
+
+        private OkHttpClient withTimeouts(OkHttpClient client) {
+            return client.newBuilder().connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout, TimeUnit.MILLISECONDS).writeTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+    }
+}
@@ -11,18 +11,51 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.TermDictionary;
 
 /** Generated. **/
 public class JsonUtil {
     public static ObjectMapper mapper;
+    /**
+     * The streaming deserializers, shared by the mappers so that they share the dictionary of the terms.
+     */
+    private static final ModelModule MODEL_MODULE = new ModelModule();
 
     static {
-    	mapper = new ObjectMapper();
-	    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-	    mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-	    mapper.registerModule(new JodaModule());
+    	mapper = configure(new ObjectMapper());
 	}
 
+    /**
+     * Applies the settings of the JSON mapper to a mapper, e.g. of a binary format, including the streaming
+     * deserializers of the model.
+     * @param objectMapper the mapper
+     * @return the mapper.
+     **/
+    static ObjectMapper configure(ObjectMapper objectMapper) {
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.registerModule(new JodaModule());
+        objectMapper.registerModule(MODEL_MODULE);
+        return objectMapper;
+    }
+
+    /**
+     * Sets the dictionary in which the terms, the context labels and the keywords of the responses are interned. The
+     * dictionary applies to all the mappers, including the ones of the {@link WireFormat}s.
+     * @param termDictionary the dictionary, <code>null</code> not to intern the terms.
+     **/
+    public static void setTermDictionary(TermDictionary termDictionary) {
+        MODEL_MODULE.setTermDictionary(termDictionary);
+    }
+
+    /**
+     * @return the dictionary in which the terms of the responses are interned, <code>null</code> if none.
+     **/
+    public static TermDictionary getTermDictionary() {
+        return MODEL_MODULE.getTermDictionary();
+    }
+
     /** Allows retrieving an instance of {@link ObjectMapper}. **/
 	public static ObjectMapper getJsonMapper() {
 		return mapper;
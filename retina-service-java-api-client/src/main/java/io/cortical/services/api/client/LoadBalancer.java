@@ -0,0 +1,491 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Spreads the calls of an {@link ApiInvoker} over a pool of Retina servers.
+ * <p>
+ * A call to the base path of any node of the pool is sent to the node chosen by the {@link Strategy}:
+ * </p>
+ * <ul>
+ * <li>{@link Strategy#POWER_OF_TWO_CHOICES}, the default: of two random nodes, the one with the fewer outstanding
+ * requests, or on a tie with the lower average latency. Retries and hedges choose again, and therefore usually reach
+ * another node.</li>
+ * <li>{@link Strategy#CONSISTENT_HASHING}: the requests for the same term, text or expression, i.e. with the same
+ * path, query and body, go to the same node so that they hit its caches. Each node owns many points of a hash ring
+ * and a request goes to the owner of the next point after its hash, skipping the ejected nodes and the nodes whose
+ * outstanding requests exceed the average by the load factor (1.25 by default). A hot key thus spills over to the
+ * following nodes, and the keys of an ejected node are spread over the others while the other keys stay in place.
+ * </li>
+ * </ul>
+ * <p>
+ * The nodes are health checked passively: a node is ejected from the pool for a while after consecutive failures (I/O
+ * errors and 5xx responses), or when its average latency exceeds the median latency of the others by a ratio. The
+ * ejection lasts longer every time a node is ejected again, up to a maximum (5 minutes by default), and a node which
+ * stays in the pool for that maximum is forgiven one of its past ejections. At most half of the nodes are ejected at
+ * once; if all the nodes are ejected anyway, the calls are spread over all of them.
+ * </p>
+ */
+public class LoadBalancer {
+    /**
+     * The weight of a latency in the average latency of a node.
+     */
+    private static final double LATENCY_WEIGHT = 0.1;
+    /**
+     * The count of latencies measured before a node may be ejected as slow.
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * The count of points of each node on the hash ring.
+     */
+    private static final int POINTS_PER_NODE = 100;
+    /**
+     *
+     * The ways of choosing the node of a request.
+     */
+    public enum Strategy {
+        POWER_OF_TWO_CHOICES, CONSISTENT_HASHING
+    }
+
+    /**
+     *
+     */
+    private final List<Node> nodes;
+    private final long[] ring;
+    private final Node[] ringNodes;
+    private volatile Strategy strategy = Strategy.POWER_OF_TWO_CHOICES;
+    private volatile double loadFactor = 1.25;
+    private volatile int consecutiveFailures = 5;
+    private volatile long ejectionNanos = TimeUnit.SECONDS.toNanos(30);
+    private volatile long maxEjectionNanos = TimeUnit.MINUTES.toNanos(5);
+    private volatile double slowRatio = 3;
+    private volatile double maxEjectedRatio = 0.5;
+
+    /**
+     * Creates a new instance of {@link LoadBalancer}.
+     *
+     * @param basePaths : the base paths of the nodes, e.g. <code>http://10.0.0.1:80/rest</code>.
+     */
+    public LoadBalancer(List<String> basePaths) {
+        if (basePaths == null || basePaths.isEmpty()) {
+            throw new IllegalArgumentException("The pool must contain at least one node.");
+        }
+        List<Node> list = new ArrayList<Node>(basePaths.size());
+        for (String basePath : basePaths) {
+            list.add(new Node(basePath));
+        }
+        this.nodes = Collections.unmodifiableList(list);
+        Map<Long, Node> points = new TreeMap<Long, Node>();
+        for (Node node : list) {
+            for (int i = 0; i < POINTS_PER_NODE; i++) {
+                points.put(hash(node.basePath + "#" + i, null), node);
+            }
+        }
+        this.ring = new long[points.size()];
+        this.ringNodes = new Node[points.size()];
+        int index = 0;
+        for (Map.Entry<Long, Node> point : points.entrySet()) {
+            ring[index] = point.getKey();
+            ringNodes[index++] = point.getValue();
+        }
+    }
+
+    /**
+     * Creates a new instance of {@link LoadBalancer}.
+     *
+     * @param basePaths : the base paths of the nodes.
+     */
+    public LoadBalancer(String... basePaths) {
+        this(Arrays.asList(basePaths));
+    }
+
+    /**
+     * Checks whether a base path is the one of a node of the pool.
+     *
+     * @param basePath : the base path.
+     * @return <code>true</code> if the calls to this base path are balanced.
+     */
+    public boolean contains(String basePath) {
+        for (Node node : nodes) {
+            if (node.basePath.equals(basePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the nodes of the pool.
+     *
+     * @return the nodes.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Chooses the node of a request; the outcome of the request must be reported with
+     * {@link #release(Node, int, long)}.
+     *
+     * @param target : the path and the query of the request.
+     * @param payload : the body of the request, may be <code>null</code>.
+     * @return the node.
+     */
+    Node choose(String target, String payload) {
+        if (strategy == Strategy.CONSISTENT_HASHING && nodes.size() > 1) {
+            Node chosen = owner(hash(target, payload));
+            chosen.outstanding.incrementAndGet();
+            return chosen;
+        }
+        long now = System.nanoTime();
+        List<Node> available = new ArrayList<Node>(nodes.size());
+        for (Node node : nodes) {
+            if (!node.isEjected(now)) {
+                available.add(node);
+            }
+        }
+        if (available.isEmpty()) {
+            available = nodes;
+        }
+        Node chosen = available.get(0);
+        if (available.size() > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(available.size());
+            int second = random.nextInt(available.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            chosen = better(available.get(first), available.get(second));
+        }
+        chosen.outstanding.incrementAndGet();
+        return chosen;
+    }
+
+    /**
+     * Finds the first node after a hash on the ring which is not ejected nor overloaded.
+     */
+    private Node owner(long hash) {
+        long now = System.nanoTime();
+        int available = 0;
+        long outstanding = 1;
+        for (Node node : nodes) {
+            if (!node.isEjected(now)) {
+                available++;
+                outstanding += node.outstanding.get();
+            }
+        }
+        boolean ignoreEjection = available == 0;
+        double maxLoad = Math.ceil(loadFactor * outstanding / (ignoreEjection ? nodes.size() : available));
+        int start = Arrays.binarySearch(ring, hash);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        Node fallback = null;
+        for (int i = 0; i < ring.length; i++) {
+            Node node = ringNodes[(start + i) % ring.length];
+            if (ignoreEjection || !node.isEjected(now)) {
+                if (node.outstanding.get() < maxLoad) {
+                    return node;
+                }
+                if (fallback == null) {
+                    fallback = node;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Hashes a string and an optional second string with 64 bit FNV-1a, followed by the MurmurHash3 finalizer.
+     */
+    static long hash(String first, String second) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < first.length(); i++) {
+            hash = (hash ^ first.charAt(i)) * 0x100000001b3L;
+        }
+        if (second != null) {
+            for (int i = 0; i < second.length(); i++) {
+                hash = (hash ^ second.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static Node better(Node first, Node second) {
+        int outstanding = first.outstanding.get() - second.outstanding.get();
+        if (outstanding != 0) {
+            return outstanding < 0 ? first : second;
+        }
+        return first.latencyNanos <= second.latencyNanos ? first : second;
+    }
+
+    /**
+     * Records the outcome of a request.
+     *
+     * @param node : the node chosen for the request.
+     * @param status : the HTTP status, 0 for an I/O error, -1 if the request was not sent.
+     * @param latencyNanos : the latency of the request.
+     */
+    synchronized void release(Node node, int status, long latencyNanos) {
+        node.outstanding.decrementAndGet();
+        long now = System.nanoTime();
+        if (node.ejectedUntil != 0 && !node.isEjected(now)) {
+            // back in the pool: its past is forgotten.
+            node.ejectedUntil = 0;
+            node.failures = 0;
+            node.samples = 0;
+            node.healthySince = now;
+        }
+        if (status < 0 || node.ejectedUntil != 0) {
+            return;
+        }
+        if (status == 0 || status >= 500 && status != 501) {
+            if (++node.failures >= consecutiveFailures) {
+                eject(node, now);
+            }
+            return;
+        }
+        node.failures = 0;
+        if (node.ejections > 0 && now - node.healthySince >= maxEjectionNanos) {
+            node.ejections--;
+            node.healthySince = now;
+        }
+        node.latencyNanos = node.samples == 0 ? latencyNanos
+                : node.latencyNanos + (long) ((latencyNanos - node.latencyNanos) * LATENCY_WEIGHT);
+        node.samples++;
+        if (node.samples >= MIN_SAMPLES) {
+            long median = medianLatency(node, now);
+            if (median > 0 && node.latencyNanos > slowRatio * median) {
+                eject(node, now);
+            }
+        }
+    }
+
+    /**
+     * Gets the median latency of the other nodes in the pool, 0 if unknown.
+     */
+    private long medianLatency(Node node, long now) {
+        List<Long> latencies = new ArrayList<Long>(nodes.size());
+        for (Node other : nodes) {
+            if (other != node && !other.isEjected(now) && other.samples > 0) {
+                latencies.add(other.latencyNanos);
+            }
+        }
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() / 2);
+    }
+
+    private void eject(Node node, long now) {
+        int ejected = 0;
+        for (Node other : nodes) {
+            if (other.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if (ejected + 1 > maxEjectedRatio * nodes.size()) {
+            node.failures = 0;
+            return;
+        }
+        long maxEjections = Math.max(1, maxEjectionNanos / ejectionNanos);
+        if (node.ejections < maxEjections) {
+            node.ejections++;
+        }
+        node.ejectedUntil = now + Math.min(maxEjectionNanos, ejectionNanos * node.ejections);
+    }
+
+    /**
+     * Sets the way of choosing the node of a request.
+     *
+     * @param strategy : the strategy.
+     */
+    public void setStrategy(Strategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("The strategy must not be null.");
+        }
+        this.strategy = strategy;
+    }
+
+    /**
+     * Gets the way of choosing the node of a request.
+     *
+     * @return the strategy.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Sets the ratio to the average count of outstanding requests per node above which a node is skipped by the
+     * consistent hashing, 1.25 by default.
+     *
+     * @param loadFactor : the ratio, at least 1.
+     */
+    public void setLoadFactor(double loadFactor) {
+        if (loadFactor < 1) {
+            throw new IllegalArgumentException("The load factor must be at least 1.");
+        }
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * Sets the count of consecutive failures ejecting a node, 5 by default.
+     *
+     * @param consecutiveFailures : the count.
+     */
+    public void setConsecutiveFailures(int consecutiveFailures) {
+        if (consecutiveFailures <= 0) {
+            throw new IllegalArgumentException("The count of failures must be positive.");
+        }
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    /**
+     * Sets the duration of the first ejection of a node, 30 seconds by default; the following ones last a multiple of
+     * it, up to the maximum.
+     *
+     * @param duration : the duration.
+     * @param unit : the unit of the duration.
+     */
+    public void setEjectionDuration(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("The duration must be positive.");
+        }
+        this.ejectionNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Sets the longest ejection of a node, 5 minutes by default; a node in the pool for that long is forgiven one of
+     * its past ejections.
+     *
+     * @param duration : the duration.
+     * @param unit : the unit of the duration.
+     */
+    public void setMaxEjectionDuration(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("The duration must be positive.");
+        }
+        this.maxEjectionNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Sets the ratio to the median latency of the other nodes above which a node is ejected as slow, 3 by default.
+     *
+     * @param slowRatio : the ratio, above 1.
+     */
+    public void setSlowRatio(double slowRatio) {
+        if (slowRatio <= 1) {
+            throw new IllegalArgumentException("The ratio must be above 1.");
+        }
+        this.slowRatio = slowRatio;
+    }
+
+    /**
+     * Sets the largest share of the nodes which may be ejected at once, 0.5 by default.
+     *
+     * @param maxEjectedRatio : the share in the range 0..1.
+     */
+    public void setMaxEjectedRatio(double maxEjectedRatio) {
+        if (maxEjectedRatio < 0 || maxEjectedRatio > 1) {
+            throw new IllegalArgumentException("The ratio must be in the range [0, 1].");
+        }
+        this.maxEjectedRatio = maxEjectedRatio;
+    }
+
+    /**
+     *
+     * A server of the pool.
+     */
+    public static final class Node {
+        private final String basePath;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile long latencyNanos;
+        private volatile long ejectedUntil;
+        private int samples;
+        private int failures;
+        private volatile int ejections;
+        private long healthySince;
+
+        private Node(String basePath) {
+            this.basePath = basePath;
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+
+        /**
+         * Gets the base path of the node.
+         *
+         * @return the base path.
+         */
+        public String getBasePath() {
+            return basePath;
+        }
+
+        /**
+         * Gets the count of requests sent to the node and not answered yet.
+         *
+         * @return the count.
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * Gets the average latency of the recent successful requests.
+         *
+         * @return the latency in nanoseconds, 0 if unknown.
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * Gets the count of past ejections which lengthen the next one.
+         *
+         * @return the count.
+         */
+        public int getEjections() {
+            return ejections;
+        }
+
+        /**
+         * Checks whether the node is ejected from the pool.
+         *
+         * @return <code>true</code> if the node is ejected.
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return basePath;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Protects an {@link ApiInvoker} from a degraded server with a {@link CircuitBreaker} and a
+ * {@link ConcurrencyLimiter} per host and endpoint.
+ * <p>
+ * A call rejected by either fails immediately with an {@link ApiException} of status 503, without being sent or
+ * retried. The breakers count I/O errors, 429 and 5xx responses as failures; the limiters consider I/O errors, 429 and
+ * 503 responses as dropped calls. Override {@link #newCircuitBreaker()} and {@link #newConcurrencyLimiter()} to change
+ * their settings.
+ * </p>
+ */
+public class OverloadPolicy {
+    /**
+     *
+     */
+    private final ConcurrentMap<String, Guard> guards = new ConcurrentHashMap<String, Guard>();
+
+    /**
+     * Creates the breaker of an endpoint: opens when half of the last 20 calls (at least 10) failed, for 10 seconds,
+     * and closes after 3 successful probes.
+     *
+     * @return the breaker.
+     */
+    protected CircuitBreaker newCircuitBreaker() {
+        return new CircuitBreaker(0.5, 20, 10, 10, 3, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the concurrency limiter of an endpoint: starts at 20 concurrent calls, between 1 and 200, and is
+     * reduced by 10%, at most once per window of limit-many calls, while the smoothed latency exceeds twice the
+     * baseline latency or calls are dropped.
+     *
+     * @return the limiter.
+     */
+    protected ConcurrencyLimiter newConcurrencyLimiter() {
+        return new ConcurrencyLimiter(20, 1, 200, 2, 0.9);
+    }
+
+    /**
+     * Gets the breaker of an endpoint.
+     *
+     * @param host : the host and port of the server.
+     * @param path : the REST endpoint path.
+     * @return the breaker.
+     */
+    public CircuitBreaker getCircuitBreaker(String host, String path) {
+        return guard(host, path).breaker;
+    }
+
+    /**
+     * Gets the concurrency limiter of an endpoint.
+     *
+     * @param host : the host and port of the server.
+     * @param path : the REST endpoint path.
+     * @return the limiter.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter(String host, String path) {
+        return guard(host, path).limiter;
+    }
+
+    /**
+     * Asks whether a call may be sent.
+     *
+     * @param host : the host and port of the server.
+     * @param path : the REST endpoint path.
+     * @return the guard to notify of the outcome of the call.
+     * @throws ApiException : with status 503 if the call is rejected.
+     */
+    Guard acquire(String host, String path) throws ApiException {
+        Guard guard = guard(host, path);
+        if (!guard.limiter.tryAcquire()) {
+            throw new ApiException(503, "Concurrency limit of " + guard.limiter.getLimit() + " reached for " + host
+                    + path);
+        }
+        if (!guard.breaker.tryAcquire()) {
+            guard.limiter.cancel();
+            throw new ApiException(503, "Circuit breaker open for " + host + path);
+        }
+        return guard;
+    }
+
+    private Guard guard(String host, String path) {
+        String key = host + path;
+        Guard guard = guards.get(key);
+        if (guard == null) {
+            Guard created = new Guard(newCircuitBreaker(), newConcurrencyLimiter());
+            guard = guards.putIfAbsent(key, created);
+            if (guard == null) {
+                guard = created;
+            }
+        }
+        return guard;
+    }
+
+    /**
+     *
+     * The breaker and the limiter of an endpoint.
+     */
+    static final class Guard {
+        private final CircuitBreaker breaker;
+        private final ConcurrencyLimiter limiter;
+
+        Guard(CircuitBreaker breaker, ConcurrencyLimiter limiter) {
+            this.breaker = breaker;
+            this.limiter = limiter;
+        }
+
+        /**
+         * Records the outcome of the call.
+         *
+         * @param status : the HTTP status, 0 for an I/O error.
+         * @param latencyNanos : the latency of the call.
+         */
+        void release(int status, long latencyNanos) {
+            limiter.release(latencyNanos, status == 0 || status == 429 || status == 503);
+            breaker.onResult(status == 0 || status == 429 || status >= 500);
+        }
+    }
+}
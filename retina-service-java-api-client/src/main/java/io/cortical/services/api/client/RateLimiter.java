@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Paces the requests of an {@link ApiInvoker} to stay within the quota of an api-key.
+ * <p>
+ * Two token buckets are refilled continuously: one with requests, one with bytes of request payload. Each can store
+ * up to <code>burstSeconds</code> of its rate, so that an idle client may send a short burst. A request reserves its
+ * tokens from both buckets at once and waits until they are available; since the reservations are served in their
+ * order of arrival, the threads share the quota fairly. A payload larger than the burst waits until enough bytes were
+ * refilled.
+ * </p>
+ * <p>
+ * {@link #reserve(long)} and {@link #tryAcquire(long, long, TimeUnit)} never block, for callers scheduling their
+ * requests asynchronously. {@link #schedule(Callable, long, ScheduledExecutorService)} runs a call once its tokens
+ * are refilled: the first {@link #acquire(long)} of the call then returns at once, instead of holding a thread of the
+ * executor while waiting.
+ * </p>
+ */
+public class RateLimiter {
+    /**
+     *
+     */
+    private final Bucket requests;
+    private final Bucket bytes;
+    /**
+     * The payload bytes reserved for the next request of the thread, by {@link #schedule}.
+     */
+    private final ThreadLocal<Long> reserved = new ThreadLocal<Long>();
+
+    /**
+     * Creates a new instance of {@link RateLimiter} allowing bursts of one second.
+     *
+     * @param requestsPerSecond : the request rate.
+     * @param bytesPerSecond : the payload rate, 0 for no limit.
+     */
+    public RateLimiter(double requestsPerSecond, double bytesPerSecond) {
+        this(requestsPerSecond, bytesPerSecond, 1);
+    }
+
+    /**
+     * Creates a new instance of {@link RateLimiter}.
+     *
+     * @param requestsPerSecond : the request rate.
+     * @param bytesPerSecond : the payload rate, 0 for no limit.
+     * @param burstSeconds : the duration of the rates an idle limiter may let through at once.
+     */
+    public RateLimiter(double requestsPerSecond, double bytesPerSecond, double burstSeconds) {
+        if (requestsPerSecond <= 0 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid rates: " + requestsPerSecond + " requests/s, "
+                    + bytesPerSecond + " bytes/s");
+        }
+        if (burstSeconds <= 0) {
+            throw new IllegalArgumentException("The burst duration must be positive.");
+        }
+        long now = System.nanoTime();
+        this.requests = new Bucket(requestsPerSecond, burstSeconds, now);
+        this.bytes = bytesPerSecond == 0 ? null : new Bucket(bytesPerSecond, burstSeconds, now);
+    }
+
+    /**
+     * Reserves the tokens of a request without blocking.
+     *
+     * @param payloadBytes : the size of the request payload.
+     * @return the delay in nanoseconds after which the request may be sent, 0 if it may be sent now.
+     */
+    public synchronized long reserve(long payloadBytes) {
+        long now = System.nanoTime();
+        long available = requests.reserve(1, now);
+        if (bytes != null) {
+            available = Math.max(available, bytes.reserve(payloadBytes, now));
+        }
+        return Math.max(0, available - now);
+    }
+
+    /**
+     * Reserves the tokens of a request if they are available within a timeout; does not block.
+     *
+     * @param payloadBytes : the size of the request payload.
+     * @param timeout : the longest acceptable delay.
+     * @param unit : the unit of the timeout.
+     * @return the delay in nanoseconds after which the request may be sent, or -1 if nothing was reserved.
+     */
+    public synchronized long tryAcquire(long payloadBytes, long timeout, TimeUnit unit) {
+        long now = System.nanoTime();
+        long deadline = now + unit.toNanos(timeout);
+        if (requests.availableAt(1, now) > deadline
+                || bytes != null && bytes.availableAt(payloadBytes, now) > deadline) {
+            return -1;
+        }
+        return reserve(payloadBytes);
+    }
+
+    /**
+     * Waits until a request may be sent. The first request of a call run by {@link #schedule} does not wait: the
+     * bytes of its payload beyond those reserved are charged to the following requests.
+     *
+     * @param payloadBytes : the size of the request payload.
+     * @throws InterruptedException : if the thread is interrupted while waiting, the tokens stay consumed.
+     */
+    public void acquire(long payloadBytes) throws InterruptedException {
+        Long reservedBytes = reserved.get();
+        if (reservedBytes != null) {
+            reserved.remove();
+            if (payloadBytes > reservedBytes) {
+                charge(payloadBytes - reservedBytes);
+            }
+            return;
+        }
+        TimeUnit.NANOSECONDS.sleep(reserve(payloadBytes));
+    }
+
+    /**
+     * Reserves the tokens of a request without blocking, and runs the call sending it once they are refilled.
+     *
+     * @param call : the call sending the request with the {@link ApiInvoker} of this limiter.
+     * @param payloadBytes : the size of the request payload, or an estimate of it.
+     * @param scheduler : the executor running the call.
+     * @param <T> : the result of the call.
+     * @return the future of the call.
+     */
+    public <T> ScheduledFuture<T> schedule(final Callable<T> call, final long payloadBytes,
+            ScheduledExecutorService scheduler) {
+        return scheduler.schedule(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                reserved.set(payloadBytes);
+                try {
+                    return call.call();
+                }
+                finally {
+                    reserved.remove();
+                }
+            }
+        }, reserve(payloadBytes), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void charge(long payloadBytes) {
+        if (bytes != null) {
+            bytes.reserve(payloadBytes, System.nanoTime());
+        }
+    }
+
+    /**
+     *
+     * A token bucket whose tokens may be reserved in advance; <code>nextFreeNanos</code> is the time at which the
+     * reserved tokens are refilled.
+     */
+    private static final class Bucket {
+        private final double intervalNanos;
+        private final double maxTokens;
+        private double tokens;
+        private long nextFreeNanos;
+
+        Bucket(double perSecond, double burstSeconds, long now) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / perSecond;
+            this.maxTokens = Math.max(1, perSecond * burstSeconds);
+            this.tokens = maxTokens;
+            this.nextFreeNanos = now;
+        }
+
+        private void refill(long now) {
+            if (now > nextFreeNanos) {
+                tokens = Math.min(maxTokens, tokens + (now - nextFreeNanos) / intervalNanos);
+                nextFreeNanos = now;
+            }
+        }
+
+        long availableAt(double count, long now) {
+            refill(now);
+            return nextFreeNanos + (long) (Math.max(0, count - tokens) * intervalNanos);
+        }
+
+        long reserve(double count, long now) {
+            long available = availableAt(count, now);
+            double stored = Math.min(count, tokens);
+            tokens -= stored;
+            nextFreeNanos += (long) ((count - stored) * intervalNanos);
+            return available;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Limits the retries to a share of the requests, shared by all the calls of an {@link ApiInvoker}.
+ * <p>
+ * Every retryable request deposits <code>ratio</code> tokens and every retry withdraws one, so during an outage the
+ * retries add at most <code>ratio</code> to the load instead of multiplying it by the count of attempts. A reserve of
+ * <code>minRetriesPerSecond</code> tokens is refilled over time, so rare failures of a lightly loaded client are still
+ * retried.
+ * </p>
+ */
+public class RetryBudget {
+    /**
+     * The tokens are counted in thousandths.
+     */
+    private static final long UNIT = 1000;
+    /**
+     *
+     */
+    private final long depositPerRequest;
+    private final long refillPerSecond;
+    private final long capacity;
+    private final long maxElapsedNanos;
+    private final AtomicLong balance;
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new instance of {@link RetryBudget}.
+     *
+     * @param ratio : the count of retries allowed per request, e.g. 0.1 for 10%.
+     * @param minRetriesPerSecond : the count of retries allowed per second regardless of the request count.
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("The ratio must not be negative.");
+        }
+        if (minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("The minimum count of retries must not be negative.");
+        }
+        this.depositPerRequest = (long) (ratio * UNIT);
+        this.refillPerSecond = minRetriesPerSecond * UNIT;
+        // about 10 seconds worth of retries can be accumulated.
+        this.capacity = Math.max(UNIT, 10 * refillPerSecond + (long) (ratio * 100 * UNIT));
+        this.balance = new AtomicLong(refillPerSecond);
+        // the time it takes to refill the whole capacity, so that the elapsed time times the rate cannot overflow.
+        this.maxElapsedNanos = refillPerSecond == 0 ? 0
+                : (long) Math.ceil((double) capacity * TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+    }
+
+    /**
+     * Deposits the tokens of a new retryable request.
+     */
+    public void requestStarted() {
+        add(depositPerRequest);
+    }
+
+    /**
+     * Withdraws the token of a retry.
+     *
+     * @return <code>true</code> if the retry is allowed, <code>false</code> if the budget is exhausted.
+     */
+    public boolean tryRetry() {
+        refill();
+        long current;
+        do {
+            current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+        }
+        while (!balance.compareAndSet(current, current - UNIT));
+        return true;
+    }
+
+    /**
+     * Gets the count of retries currently allowed.
+     *
+     * @return the count.
+     */
+    public long getAvailableRetries() {
+        refill();
+        return balance.get() / UNIT;
+    }
+
+    private void refill() {
+        if (refillPerSecond == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        long elapsed = Math.min(now - last, maxElapsedNanos);
+        long tokens = elapsed * refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        if (tokens > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            add(tokens);
+        }
+    }
+
+    private void add(long tokens) {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        }
+        while (!balance.compareAndSet(current, Math.min(capacity, current + tokens)));
+    }
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Decides whether and when an {@link ApiInvoker} retries a failed call.
+ * <p>
+ * Only idempotent calls are retried: GETs, and POSTs to the side-effect free endpoints (by default every POST endpoint
+ * of the Retina API, which all compute a result without changing the server state). A call is retried on I/O errors
+ * and on the statuses 429, 500, 502, 503 and 504, after an exponential backoff with full jitter. A
+ * <code>Retry-After</code> header raises the backoff; a call is not retried if the server asks to wait longer than
+ * <code>maxRetryAfter</code>. All the retries are taken from a shared {@link RetryBudget}.
+ * </p>
+ */
+public class RetryPolicy {
+    /**
+     * The side-effect free POST endpoints.
+     */
+    public static final Set<String> DEFAULT_IDEMPOTENT_POST_PATHS = Collections.unmodifiableSet(new LinkedHashSet<String>(
+            Arrays.asList("/compare", "/expressions", "/text", "/image", "/classify/create_category_filter")));
+    /**
+     *
+     */
+    private static final Set<Integer> RETRYABLE_STATUSES = new HashSet<Integer>(Arrays.asList(0, 429, 500, 502, 503,
+            504));
+    private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+    /**
+     *
+     */
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private long maxRetryAfterNanos = TimeUnit.SECONDS.toNanos(30);
+    private RetryBudget budget = new RetryBudget(0.1, 10);
+    private Set<String> idempotentPostPaths = DEFAULT_IDEMPOTENT_POST_PATHS;
+
+    /**
+     * Creates a new instance of {@link RetryPolicy} with 3 attempts and a backoff from 100ms to 5s.
+     */
+    public RetryPolicy() {
+        this(3, 100, 5000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance of {@link RetryPolicy}.
+     *
+     * @param maxAttempts : the maximum count of attempts of a call, including the first one.
+     * @param initialBackoff : the maximum backoff before the first retry, doubled at every retry.
+     * @param maxBackoff : the cap of the backoff.
+     * @param unit : the unit of the backoffs.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required.");
+        }
+        if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + ".." + maxBackoff);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * Checks whether a call may be retried.
+     *
+     * @param method : the HTTP method.
+     * @param path : the REST endpoint path.
+     * @return <code>true</code> if the endpoint is idempotent.
+     */
+    public boolean isIdempotent(String method, String path) {
+        if ("GET".equals(method)) {
+            return true;
+        }
+        return "POST".equals(method) && matches(idempotentPostPaths, path);
+    }
+
+    /**
+     * Checks whether a path is one of the endpoints or one of their sub-paths.
+     */
+    static boolean matches(Set<String> endpoints, String path) {
+        for (String endpoint : endpoints) {
+            if (path.equals(endpoint) || path.startsWith(endpoint + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a failure is transient.
+     *
+     * @param status : the HTTP status, 0 for an I/O error.
+     * @return <code>true</code> if the call may succeed when retried.
+     */
+    public boolean isRetryable(int status) {
+        return RETRYABLE_STATUSES.contains(status);
+    }
+
+    /**
+     * Computes the delay before a retry.
+     *
+     * @param attempt : the count of attempts made so far.
+     * @param retryAfter : the <code>Retry-After</code> header of the failed response, <code>null</code> if absent.
+     * @return the delay in nanoseconds, -1 if the call must not be retried.
+     */
+    public long backoffNanos(int attempt, String retryAfter) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+        long cap = initialBackoffNanos << Math.min(attempt - 1, 30);
+        if (cap <= 0 || cap > maxBackoffNanos) {
+            cap = maxBackoffNanos;
+        }
+        long backoff = cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+        long requested = parseRetryAfter(retryAfter);
+        if (requested > maxRetryAfterNanos) {
+            return -1;
+        }
+        return Math.max(backoff, requested);
+    }
+
+    /**
+     * Parses a <code>Retry-After</code> header, either a count of seconds or an HTTP date.
+     *
+     * @param retryAfter : the header value, <code>null</code> if absent.
+     * @return the requested delay in nanoseconds, 0 if absent or invalid.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        }
+        catch (NumberFormatException e) {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                long delayMillis = format.parse(value).getTime() - System.currentTimeMillis();
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+            }
+            catch (ParseException invalid) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum count of attempts of a call.
+     *
+     * @return the count, including the first attempt.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets the budget the retries are taken from.
+     *
+     * @return the budget.
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget the retries are taken from.
+     *
+     * @param budget : the budget.
+     */
+    public void setBudget(RetryBudget budget) {
+        if (budget == null) {
+            throw new IllegalArgumentException("The budget must not be null.");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the longest <code>Retry-After</code> delay honoured; calls asked to wait longer fail immediately.
+     *
+     * @param maxRetryAfter : the delay.
+     * @param unit : the unit of the delay.
+     */
+    public void setMaxRetryAfter(long maxRetryAfter, TimeUnit unit) {
+        this.maxRetryAfterNanos = unit.toNanos(maxRetryAfter);
+    }
+
+    /**
+     * Sets the side-effect free POST endpoints; an endpoint also covers its sub-paths, e.g. <code>/compare</code>
+     * covers <code>/compare/bulk</code>.
+     *
+     * @param idempotentPostPaths : the endpoint paths.
+     */
+    public void setIdempotentPostPaths(Set<String> idempotentPostPaths) {
+        this.idempotentPostPaths = Collections.unmodifiableSet(new LinkedHashSet<String>(idempotentPostPaths));
+    }
+}
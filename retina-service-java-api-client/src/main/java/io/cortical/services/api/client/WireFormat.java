@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ *
+ * A binary Jackson format the responses of the Retina server may be encoded in, instead of JSON.
+ * <p>
+ * The formats given to {@link ApiInvoker#setWireFormats(WireFormat...)} are listed in the <code>Accept</code> header
+ * of the requests, ahead of JSON. A response whose <code>Content-Type</code> is one of them is decoded with the mapper
+ * of the format; any other response, e.g. from a server which only produces JSON, is read as before. The request
+ * bodies are still sent as JSON.
+ * </p>
+ * <p>
+ * {@link #smile()} requires the optional <code>jackson-dataformat-smile</code> dependency. Other formats, e.g. CBOR,
+ * are created from their Jackson factory with {@link #WireFormat(String, JsonFactory)}.
+ * </p>
+ */
+public final class WireFormat {
+    /**
+     * The media type of Smile.
+     */
+    public static final String SMILE_MEDIA_TYPE = "application/x-jackson-smile";
+    /**
+     *
+     */
+    private final String mediaType;
+    private final ObjectMapper mapper;
+
+    /**
+     * Creates a new instance of {@link WireFormat}, whose mapper has the settings of the JSON one.
+     *
+     * @param mediaType : the media type of the format, e.g. <code>application/cbor</code>.
+     * @param factory : the Jackson factory of the format.
+     */
+    public WireFormat(String mediaType, JsonFactory factory) {
+        if (mediaType == null || mediaType.trim().isEmpty() || factory == null) {
+            throw new IllegalArgumentException("A wire format needs a media type and a factory.");
+        }
+        this.mediaType = mediaType.trim();
+        this.mapper = JsonUtil.configure(new ObjectMapper(factory));
+    }
+
+    /**
+     * Creates the Smile format.
+     *
+     * @return the format.
+     */
+    public static WireFormat smile() {
+        return Smile.create();
+    }
+
+    /**
+     * Gets the media type of the format.
+     *
+     * @return the media type.
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Gets the mapper decoding the responses.
+     *
+     * @return the mapper.
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Tells whether a <code>Content-Type</code> is the media type of the format, ignoring its parameters.
+     *
+     * @param contentType : the content type, may be <code>null</code>.
+     * @return <code>true</code> if it is the media type of the format.
+     */
+    boolean matches(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int parameters = contentType.indexOf(';');
+        String type = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        return mediaType.equalsIgnoreCase(type.trim());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return mediaType;
+    }
+
+    /**
+     *
+     * Loads the Smile classes only when the format is used.
+     */
+    private static final class Smile {
+        static WireFormat create() {
+            return new WireFormat(SMILE_MEDIA_TYPE, new SmileFactory());
+        }
+    }
+}
@@ -11,6 +11,7 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.CategoryFilter;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,7 +24,15 @@ public class ClassifyApi {
 
     /** Generated. **/
     public ClassifyApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public ClassifyApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -74,9 +83,9 @@ public class ClassifyApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        CategoryFilter result = (CategoryFilter) ApiInvoker.deserialize( (String) response, ""
+                        CategoryFilter result = (CategoryFilter) ApiInvoker.deserialize(response, ""
                                 , CategoryFilter.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
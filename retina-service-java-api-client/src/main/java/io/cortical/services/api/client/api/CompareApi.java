@@ -10,6 +10,7 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.Metric;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,7 +24,15 @@ public class CompareApi {
     
     /** Generated. **/
     public CompareApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public CompareApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);
     }
@@ -72,9 +81,9 @@ public class CompareApi {
             Object response =
                     apiInvoker.invokeAPI(basePath, path, "POST", queryParams, body, headerParams, contentType);
             if (response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                     Metric result =
-                            (Metric) ApiInvoker.deserialize((String) response, "", Metric.class, null);
+                            (Metric) ApiInvoker.deserialize(response, "", Metric.class, null);
                     return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -122,9 +131,9 @@ public class CompareApi {
             Object response =
                     apiInvoker.invokeAPI(basePath, path, "POST", queryParams, body, headerParams, contentType);
             if (response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                     Metric[] result =
-                             (Metric[]) ApiInvoker.deserialize((String) response, "", Metric[].class, null);
+                             (Metric[]) ApiInvoker.deserialize(response, "", Metric[].class, null);
                     return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -10,8 +10,10 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.Context;
 import io.cortical.rest.model.Fingerprint;
 import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +27,15 @@ public class ExpressionsApi {
 
     /** Generated. **/
     public ExpressionsApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public ExpressionsApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -76,9 +86,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize( (String) response, ""
+                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize(response, ""
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -130,9 +140,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Context> result = (List<Context>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Context> result = (List<Context>) ApiInvoker.deserialize(response, "Array"
                                 , Context.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -188,9 +198,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Term> result = (List<Term>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Term> result = (List<Term>) ApiInvoker.deserialize(response, "Array"
                                 , Term.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -236,9 +246,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize(response, "Array"
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -290,9 +300,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<List<Context>> result = (List<List<Context>>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<List<Context>> result = (List<List<Context>>) ApiInvoker.deserialize(response, "Array"
                                 , java.lang.Object.class, ApiInvoker.NestedContent.CONTEXT);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -348,9 +358,9 @@ public class ExpressionsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<List<Term>> result = (List<List<Term>>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<List<Term>> result = (List<List<Term>>) ApiInvoker.deserialize(response, "Array"
                                 , java.lang.Object.class, ApiInvoker.NestedContent.TERM);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -371,5 +381,61 @@ public class ExpressionsApi {
             }
         }
         return null;}
+    /** Generated. 
+    *@throws ApiException if an error occurs during querying of the API.
+    *@return TermColumns **/
+    public TermColumns getSimilarTermsForBulkExpressionContextColumns (String body, Integer context_id, String pos_type, Boolean get_fingerprint, String retina_name, Integer start_index, Integer max_results, Double sparsity) throws ApiException {
+        // verify required params are set
+        if(retina_name == null || body == null ) {
+             throw new ApiException(400, "missing required params");
+        }
+        // create path and map variables
+        String path = "/expressions/similar_terms/bulk".replaceAll("\\{format\\}","json");
+
+        // query params
+        Map<String, String> queryParams = new HashMap<String, String>();
+        Map<String, String> headerParams = new HashMap<String, String>();
+
+        if(!"null".equals(String.valueOf(retina_name)))
+            queryParams.put("retina_name", String.valueOf(retina_name));
+        if(!"null".equals(String.valueOf(context_id)))
+            queryParams.put("context_id", String.valueOf(context_id));
+        if(!"null".equals(String.valueOf(start_index)))
+            queryParams.put("start_index", String.valueOf(start_index));
+        if(!"null".equals(String.valueOf(max_results)))
+            queryParams.put("max_results", String.valueOf(max_results));
+        if(!"null".equals(String.valueOf(pos_type)))
+            queryParams.put("pos_type", String.valueOf(pos_type));
+        if(!"null".equals(String.valueOf(sparsity)))
+            queryParams.put("sparsity", String.valueOf(sparsity));
+        if(!"null".equals(String.valueOf(get_fingerprint)))
+            queryParams.put("get_fingerprint", String.valueOf(get_fingerprint));
+        String contentType = "application/json";
+
+        try {
+            Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
+                , body, headerParams, contentType);
+            if(response != null) {
+                if (response instanceof String || response instanceof EncodedEntity) {
+                        TermColumns result = (TermColumns) ApiInvoker.deserialize(response, ""
+                                , TermColumns.class, null);return result;
+                }
+                else if (response instanceof java.io.ByteArrayInputStream) {
+                        TermColumns result =    (TermColumns) response;return result;
+                }
+                
+            }
+            else {
+                return null;
+            }
+        } catch (ApiException ex) {
+            if(ex.getCode() == 404) {
+            	return null;
+            }
+            else {
+                throw ex;
+            }
+        }
+        return null;}
     }
 
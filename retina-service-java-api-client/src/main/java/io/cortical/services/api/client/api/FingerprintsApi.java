@@ -10,6 +10,7 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.Fingerprint;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,7 +23,15 @@ public class FingerprintsApi {
 
     /** Generated. **/
     public FingerprintsApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public FingerprintsApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -73,9 +82,9 @@ public class FingerprintsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize( (String) response, ""
+                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize(response, ""
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -121,9 +130,9 @@ public class FingerprintsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize( (String) response, ""
+                        Fingerprint result = (Fingerprint) ApiInvoker.deserialize(response, ""
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -168,20 +177,8 @@ public class FingerprintsApi {
         String contentType = "application/json";
 
         try {
-            Object response = apiInvoker.invokeAPI(basePath, path, "PUT", queryParams
+            apiInvoker.invokeAPIWithoutResult(basePath, path, "PUT", queryParams
                 , null, headerParams, contentType);
-            if(response != null) {
-                if (response instanceof String) {
-                        return ;
-                }
-                else if (response instanceof java.io.ByteArrayInputStream) {
-                        return ;
-                }
-                
-            }
-            else {
-                return ;
-            }
         } catch (ApiException ex) {
             if(ex.getCode() == 404) {
             	return ;
@@ -213,20 +210,8 @@ public class FingerprintsApi {
         String contentType = "application/json";
 
         try {
-            Object response = apiInvoker.invokeAPI(basePath, path, "DELETE", queryParams
+            apiInvoker.invokeAPIWithoutResult(basePath, path, "DELETE", queryParams
                 , null, headerParams, contentType);
-            if(response != null) {
-                if (response instanceof String) {
-                        return ;
-                }
-                else if (response instanceof java.io.ByteArrayInputStream) {
-                        return ;
-                }
-                
-            }
-            else {
-                return ;
-            }
         } catch (ApiException ex) {
             if(ex.getCode() == 404) {
             	return ;
@@ -10,6 +10,7 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.Image;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +24,15 @@ public class ImageApi {
 
     /** Generated. **/
     public ImageApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public ImageApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -80,9 +89,9 @@ public class ImageApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        java.io.ByteArrayInputStream result = (java.io.ByteArrayInputStream) ApiInvoker.deserialize( (String) response, ""
+                        java.io.ByteArrayInputStream result = (java.io.ByteArrayInputStream) ApiInvoker.deserialize(response, ""
                                 , java.io.ByteArrayInputStream.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -132,9 +141,9 @@ public class ImageApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        java.io.ByteArrayInputStream result = (java.io.ByteArrayInputStream) ApiInvoker.deserialize( (String) response, ""
+                        java.io.ByteArrayInputStream result = (java.io.ByteArrayInputStream) ApiInvoker.deserialize(response, ""
                                 , java.io.ByteArrayInputStream.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -186,9 +195,9 @@ public class ImageApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Image> result = (List<Image>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Image> result = (List<Image>) ApiInvoker.deserialize(response, "Array"
                                 , Image.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -209,5 +218,120 @@ public class ImageApi {
             }
         }
         return null;}
+    /** Generated. 
+    *@throws ApiException if an error occurs during querying of the API.
+    *@return java.io.InputStream **/
+    public java.io.InputStream getImageForBulkExpressionsStream (String body, Boolean get_fingerprint, String retina_name, Integer image_scalar, String plot_shape, Double sparsity) throws ApiException {
+        // verify required params are set
+        if(retina_name == null || body == null ) {
+             throw new ApiException(400, "missing required params");
+        }
+        // create path and map variables
+        String path = "/image/bulk".replaceAll("\\{format\\}","json");
+
+        // query params
+        Map<String, String> queryParams = new HashMap<String, String>();
+        Map<String, String> headerParams = new HashMap<String, String>();
+
+        if(!"null".equals(String.valueOf(retina_name)))
+            queryParams.put("retina_name", String.valueOf(retina_name));
+        if(!"null".equals(String.valueOf(image_scalar)))
+            queryParams.put("image_scalar", String.valueOf(image_scalar));
+        if(!"null".equals(String.valueOf(plot_shape)))
+            queryParams.put("plot_shape", String.valueOf(plot_shape));
+        if(!"null".equals(String.valueOf(sparsity)))
+            queryParams.put("sparsity", String.valueOf(sparsity));
+        if(!"null".equals(String.valueOf(get_fingerprint)))
+            queryParams.put("get_fingerprint", String.valueOf(get_fingerprint));
+        String contentType = "application/json";
+
+        try {
+            return apiInvoker.invokeAPIForStream(basePath, path, "POST", queryParams
+                , body, headerParams, contentType);
+        } catch (ApiException ex) {
+            if(ex.getCode() == 404) {
+            	return null;
+            }
+            else {
+                throw ex;
+            }
+        }
+    }
+    /** Generated. 
+    *@throws ApiException if an error occurs during querying of the API.
+    *@return java.io.InputStream **/
+    public java.io.InputStream getImageForExpressionStream (String body, String retina_name, Integer image_scalar, String plot_shape, String image_encoding, Double sparsity) throws ApiException {
+        // verify required params are set
+        if(retina_name == null || body == null ) {
+             throw new ApiException(400, "missing required params");
+        }
+        // create path and map variables
+        String path = "/image".replaceAll("\\{format\\}","json");
+
+        // query params
+        Map<String, String> queryParams = new HashMap<String, String>();
+        Map<String, String> headerParams = new HashMap<String, String>();
+
+        if(!"null".equals(String.valueOf(retina_name)))
+            queryParams.put("retina_name", String.valueOf(retina_name));
+        if(!"null".equals(String.valueOf(image_scalar)))
+            queryParams.put("image_scalar", String.valueOf(image_scalar));
+        if(!"null".equals(String.valueOf(plot_shape)))
+            queryParams.put("plot_shape", String.valueOf(plot_shape));
+        if(!"null".equals(String.valueOf(image_encoding)))
+            queryParams.put("image_encoding", String.valueOf(image_encoding));
+        if(!"null".equals(String.valueOf(sparsity)))
+            queryParams.put("sparsity", String.valueOf(sparsity));
+        String contentType = "application/json";
+
+        try {
+            return apiInvoker.invokeAPIForStream(basePath, path, "POST", queryParams
+                , body, headerParams, contentType);
+        } catch (ApiException ex) {
+            if(ex.getCode() == 404) {
+            	return null;
+            }
+            else {
+                throw ex;
+            }
+        }
+    }
+    /** Generated. 
+    *@throws ApiException if an error occurs during querying of the API.
+    *@return java.io.InputStream **/
+    public java.io.InputStream getOverlayImageStream (String body, String retina_name, String plot_shape, Integer image_scalar, String image_encoding) throws ApiException {
+        // verify required params are set
+        if(retina_name == null || body == null ) {
+             throw new ApiException(400, "missing required params");
+        }
+        // create path and map variables
+        String path = "/image/compare".replaceAll("\\{format\\}","json");
+
+        // query params
+        Map<String, String> queryParams = new HashMap<String, String>();
+        Map<String, String> headerParams = new HashMap<String, String>();
+
+        if(!"null".equals(String.valueOf(retina_name)))
+            queryParams.put("retina_name", String.valueOf(retina_name));
+        if(!"null".equals(String.valueOf(plot_shape)))
+            queryParams.put("plot_shape", String.valueOf(plot_shape));
+        if(!"null".equals(String.valueOf(image_scalar)))
+            queryParams.put("image_scalar", String.valueOf(image_scalar));
+        if(!"null".equals(String.valueOf(image_encoding)))
+            queryParams.put("image_encoding", String.valueOf(image_encoding));
+        String contentType = "application/json";
+
+        try {
+            return apiInvoker.invokeAPIForStream(basePath, path, "POST", queryParams
+                , body, headerParams, contentType);
+        } catch (ApiException ex) {
+            if(ex.getCode() == 404) {
+            	return null;
+            }
+            else {
+                throw ex;
+            }
+        }
+    }
     }
 
@@ -10,6 +10,7 @@ package io.cortical.services.api.client.api;
 import io.cortical.rest.model.Retina;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +24,15 @@ public class RetinasApi {
 
     /** Generated. **/
     public RetinasApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public RetinasApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -68,9 +77,9 @@ public class RetinasApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Retina> result = (List<Retina>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Retina> result = (List<Retina>) ApiInvoker.deserialize(response, "Array"
                                 , Retina.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -11,6 +11,7 @@ import io.cortical.rest.model.Context;
 import io.cortical.rest.model.Term;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +25,15 @@ public class TermsApi {
 
     /** Generated. **/
     public TermsApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public TermsApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -81,9 +90,9 @@ public class TermsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Term> result = (List<Term>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Term> result = (List<Term>) ApiInvoker.deserialize(response, "Array"
                                 , Term.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -135,9 +144,9 @@ public class TermsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Context> result = (List<Context>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Context> result = (List<Context>) ApiInvoker.deserialize(response, "Array"
                                 , Context.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -193,9 +202,9 @@ public class TermsApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "GET", queryParams
                 , null, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Term> result = (List<Term>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Term> result = (List<Term>) ApiInvoker.deserialize(response, "Array"
                                 , Term.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
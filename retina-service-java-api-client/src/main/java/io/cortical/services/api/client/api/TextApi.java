@@ -12,6 +12,7 @@ import io.cortical.rest.model.Retina;
 import io.cortical.rest.model.Text;
 import io.cortical.services.api.client.ApiException;
 import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.EncodedEntity;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +26,15 @@ public class TextApi {
 
     /** Generated. **/
     public TextApi(String apiKey) {
-        apiInvoker = ApiInvoker.getInstance();
+        this(apiKey, ApiInvoker.getInstance());
+    }
+
+    /** Generated.
+    *@param apiKey the api-key sent with the requests
+    *@param apiInvoker the {@link ApiInvoker} sending the requests
+    **/
+    public TextApi(String apiKey, ApiInvoker apiInvoker) {
+        this.apiInvoker = apiInvoker;
         this.key = apiKey;
         apiInvoker.addDefaultHeader("api-key", apiKey);    
     }
@@ -74,9 +83,9 @@ public class TextApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize(response, "Array"
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -120,9 +129,9 @@ public class TextApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<String> result = (List<String>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<String> result = (List<String>) ApiInvoker.deserialize(response, "Array"
                                 , String.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -168,9 +177,9 @@ public class TextApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<String> result = (List<String>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<String> result = (List<String>) ApiInvoker.deserialize(response, "Array"
                                 , String.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -220,9 +229,9 @@ public class TextApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Text> result = (List<Text>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Text> result = (List<Text>) ApiInvoker.deserialize(response, "Array"
                                 , Text.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -268,9 +277,9 @@ public class TextApi {
             Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                 , body, headerParams, contentType);
             if(response != null) {
-                if (response instanceof String) {
+                if (response instanceof String || response instanceof EncodedEntity) {
                         @SuppressWarnings("unchecked")
-                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize( (String) response, "Array"
+                        List<Fingerprint> result = (List<Fingerprint>) ApiInvoker.deserialize(response, "Array"
                                 , Fingerprint.class, null);return result;
                 }
                 else if (response instanceof java.io.ByteArrayInputStream) {
@@ -313,9 +322,9 @@ public class TextApi {
              Object response = apiInvoker.invokeAPI(basePath, path, "POST", queryParams
                  , body, headerParams, contentType);
              if(response != null) {
-                 if (response instanceof String) {
+                 if (response instanceof String || response instanceof EncodedEntity) {
                          @SuppressWarnings("unchecked")
-                         Retina result = (Retina) ApiInvoker.deserialize( (String) response, ""
+                         Retina result = (Retina) ApiInvoker.deserialize(response, ""
                                  , Retina.class, null);return result;
                  }
                  else if (response instanceof java.io.ByteArrayInputStream) {
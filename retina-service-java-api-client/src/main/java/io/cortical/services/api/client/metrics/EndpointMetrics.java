@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *
+ * The measurements of a single REST endpoint, e.g. <code>POST /compare/bulk</code>.
+ */
+public class EndpointMetrics {
+    /**
+     *
+     */
+    private final String method;
+    private final String endpoint;
+    private final long createdNanos = System.nanoTime();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final Histogram latencyMicros = new Histogram();
+    private final Histogram requestSizes = new Histogram();
+    private final Histogram responseSizes = new Histogram();
+
+    /**
+     * Creates a new instance of {@link EndpointMetrics}.
+     *
+     * @param method : the HTTP method.
+     * @param endpoint : the REST endpoint path.
+     */
+    public EndpointMetrics(String method, String endpoint) {
+        this.method = method;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Records the start of a request.
+     */
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records the completion of a request.
+     *
+     * @param status : the HTTP status code, 0 if no response was received.
+     * @param latencyNanos : the latency in nanoseconds.
+     * @param requestSize : the size of the request body in bytes.
+     * @param responseSize : the size of the response body in bytes, -1 if unknown.
+     */
+    public void completed(int status, long latencyNanos, long requestSize, long responseSize) {
+        inFlight.decrementAndGet();
+        requestCount.incrementAndGet();
+        statusCounter(status).incrementAndGet();
+        latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (requestSize >= 0) {
+            requestBytes.addAndGet(requestSize);
+            requestSizes.record(requestSize);
+        }
+        if (responseSize >= 0) {
+            responseBytes.addAndGet(responseSize);
+            responseSizes.record(responseSize);
+        }
+    }
+
+    private AtomicLong statusCounter(int status) {
+        AtomicLong counter = statusCounts.get(status);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = statusCounts.putIfAbsent(status, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Gets the HTTP method.
+     *
+     * @return the method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the REST endpoint path.
+     *
+     * @return the endpoint
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Gets the count of requests currently in flight.
+     *
+     * @return the inFlight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets the count of completed requests.
+     *
+     * @return the requestCount
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the count of failed requests: no response or an HTTP status of 400 and above.
+     *
+     * @return the errorCount
+     */
+    public long getErrorCount() {
+        long errors = 0;
+        for (Map.Entry<Integer, AtomicLong> entry : statusCounts.entrySet()) {
+            if (entry.getKey() == 0 || entry.getKey() >= 400) {
+                errors += entry.getValue().get();
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Gets the count of completed requests per HTTP status code, 0 standing for requests without a response.
+     *
+     * @return the counts, sorted by status code.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the total size of the request bodies in bytes.
+     *
+     * @return the requestBytes
+     */
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * Gets the total size of the response bodies in bytes (as far as known).
+     *
+     * @return the responseBytes
+     */
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Gets the average count of completed requests per second since the creation of these metrics.
+     *
+     * @return the throughput in requests per second.
+     */
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - createdNanos;
+        return elapsed <= 0 ? 0 : requestCount.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Gets the latency distribution in microseconds.
+     *
+     * @return the latencyMicros
+     */
+    public Histogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    /**
+     * Gets the distribution of the request body sizes in bytes.
+     *
+     * @return the requestSizes
+     */
+    public Histogram getRequestSizes() {
+        return requestSizes;
+    }
+
+    /**
+     * Gets the distribution of the response body sizes in bytes.
+     *
+     * @return the responseSizes
+     */
+    public Histogram getResponseSizes() {
+        return responseSizes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return method + " " + endpoint + "  requests: " + getRequestCount() + "  errors: " + getErrorCount()
+                + "  in flight: " + getInFlight() + "  status: " + getStatusCounts() + "  latency (us) p50: "
+                + latencyMicros.getValueAtPercentile(50) + "  p99: " + latencyMicros.getValueAtPercentile(99)
+                + "  p99.9: " + latencyMicros.getValueAtPercentile(99.9) + "  max: " + latencyMicros.getMax()
+                + "  request bytes: " + getRequestBytes() + "  response bytes: " + getResponseBytes();
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ *
+ * A {@link MetricsRegistry} keeping {@link EndpointMetrics} per HTTP method and endpoint in memory.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+    /**
+     *
+     */
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestStarted(String method, String endpoint) {
+        metricsFor(method, endpoint).started();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestCompleted(String method, String endpoint, int status, long latencyNanos, long requestBytes,
+            long responseBytes) {
+        metricsFor(method, endpoint).completed(status, latencyNanos, requestBytes, responseBytes);
+    }
+
+    /**
+     * Gets the metrics of an endpoint.
+     *
+     * @param method : the HTTP method.
+     * @param endpoint : the REST endpoint path.
+     * @return the metrics, <code>null</code> if the endpoint was not called yet.
+     */
+    public EndpointMetrics getEndpointMetrics(String method, String endpoint) {
+        return endpoints.get(key(method, endpoint));
+    }
+
+    /**
+     * Gets the metrics of all called endpoints.
+     *
+     * @return the metrics.
+     */
+    public Collection<EndpointMetrics> getEndpointMetrics() {
+        return new ArrayList<EndpointMetrics>(endpoints.values());
+    }
+
+    private EndpointMetrics metricsFor(String method, String endpoint) {
+        String key = key(method, endpoint);
+        EndpointMetrics metrics = endpoints.get(key);
+        if (metrics == null) {
+            EndpointMetrics created = new EndpointMetrics(method, endpoint);
+            metrics = endpoints.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    private static String key(String method, String endpoint) {
+        return method + " " + endpoint;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (EndpointMetrics metrics : endpoints.values()) {
+            report.append(metrics).append('\n');
+        }
+        return report.toString();
+    }
+}
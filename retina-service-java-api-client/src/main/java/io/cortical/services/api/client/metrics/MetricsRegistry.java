@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client.metrics;
+
+
+/**
+ *
+ * Receives the measurements of the calls made by the {@link io.cortical.services.api.client.ApiInvoker}.
+ * <p>
+ * Implementations are called on the request threads and must be thread safe and non blocking. Implement this
+ * interface to export the measurements to a monitoring system, or use {@link InMemoryMetricsRegistry}.
+ * </p>
+ */
+public interface MetricsRegistry {
+    /**
+     * A request is about to be sent.
+     *
+     * @param method : the HTTP method.
+     * @param endpoint : the REST endpoint path, e.g. <code>/compare/bulk</code>.
+     */
+    void requestStarted(String method, String endpoint);
+
+    /**
+     * A request has completed, successfully or not.
+     *
+     * @param method : the HTTP method.
+     * @param endpoint : the REST endpoint path, e.g. <code>/compare/bulk</code>.
+     * @param status : the HTTP status code, 0 if no response was received.
+     * @param latencyNanos : the time from sending the request until the response body was read, in nanoseconds.
+     * @param requestBytes : the size of the request body in bytes.
+     * @param responseBytes : the size of the response body in bytes, -1 if unknown.
+     */
+    void requestCompleted(String method, String endpoint, int status, long latencyNanos, long requestBytes,
+            long responseBytes);
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client.metrics;
+
+
+/**
+ *
+ * A {@link MetricsRegistry} discarding all measurements. The default registry of the invoker.
+ */
+public final class NoopMetricsRegistry implements MetricsRegistry {
+    /**
+     * The single instance.
+     */
+    public static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+
+    private NoopMetricsRegistry() {
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestStarted(String method, String endpoint) {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestCompleted(String method, String endpoint, int status, long latencyNanos, long requestBytes,
+            long responseBytes) {
+    }
+}
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Text;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.RateLimiter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+
+/**
+ *
+ * {@link BulkFingerprintProcessor} test class.
+ */
+public class TestBulkFingerprintProcessor {
+    /**
+     *
+     */
+    private static final int TEXT_COUNT = 95;
+    /**
+     *
+     */
+    @Mock
+    private Texts texts;
+    private ExecutorService executor;
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    private final AtomicInteger bulkCalls = new AtomicInteger();
+
+    /**
+     * initialization.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Before
+    public void before() throws Exception {
+        initMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+        when(texts.getFingerprintBulk(isNull(Double.class), Matchers.<Text>anyVararg())).thenAnswer(
+                new Answer<List<Fingerprint>>() {
+                    @Override
+                    public List<Fingerprint> answer(InvocationOnMock invocation) throws Throwable {
+                        Object[] arguments = invocation.getArguments();
+                        List<Fingerprint> fingerprints = new ArrayList<>();
+                        for (int i = 1; i < arguments.length; i++) {
+                            fingerprints.add(fingerprintOf((Text) arguments[i]));
+                        }
+                        bulkCalls.incrementAndGet();
+                        synchronized (maxBatchSize) {
+                            maxBatchSize.set(Math.max(maxBatchSize.get(), fingerprints.size()));
+                        }
+                        Thread.sleep(2);
+                        return fingerprints;
+                    }
+                });
+        when(texts.getFingerprints(anyString())).thenAnswer(new Answer<List<Fingerprint>>() {
+            @Override
+            public List<Fingerprint> answer(InvocationOnMock invocation) throws Throwable {
+                List<Fingerprint> fingerprints = new ArrayList<>();
+                fingerprints.add(fingerprintOf(new Text((String) invocation.getArguments()[0])));
+                return fingerprints;
+            }
+        });
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The fingerprints are emitted in the order of the texts.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void orderedFingerprintsTest() throws InterruptedException {
+        BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 10, 3, executor);
+        new TextPublisher(TEXT_COUNT).subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(7);
+        processor.subscribe(subscriber);
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.failure);
+        assertEquals(TEXT_COUNT, subscriber.received.size());
+        for (int i = 0; i < TEXT_COUNT; i++) {
+            assertEquals(i, subscriber.received.get(i).getPositions()[0]);
+        }
+        assertTrue(maxBatchSize.get() <= 10);
+    }
+
+    /**
+     * No more fingerprints than requested are emitted.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void demandTest() throws InterruptedException {
+        BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 4, 2, executor);
+        TextPublisher publisher = new TextPublisher(TEXT_COUNT);
+        publisher.subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.request(5);
+        Thread.sleep(200);
+        assertEquals(5, subscriber.received.size());
+        assertTrue(publisher.emitted.get() <= 5 + 2 * 4 + 4);
+
+        subscriber.subscription.cancel();
+        assertTrue(publisher.cancelled);
+    }
+
+    /**
+     * A failing bulk request terminates the stream with the failure.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void failureTest() throws Exception {
+        ApiException exception = new ApiException(500, "failure");
+        doThrow(exception).when(texts).getFingerprintBulk(isNull(Double.class), Matchers.<Text>anyVararg());
+        doThrow(exception).when(texts).getFingerprints(anyString());
+        BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 10, 3, executor);
+        TextPublisher publisher = new TextPublisher(TEXT_COUNT);
+        publisher.subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(TEXT_COUNT);
+        processor.subscribe(subscriber);
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertEquals(exception, subscriber.failure);
+        assertTrue(publisher.cancelled);
+    }
+
+    /**
+     * A bulk response with fewer fingerprints than texts terminates the stream.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void countMismatchTest() throws Exception {
+        doReturn(new ArrayList<Fingerprint>()).when(texts).getFingerprintBulk(isNull(Double.class),
+                Matchers.<Text>anyVararg());
+        BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 10, 3, executor);
+        TextPublisher publisher = new TextPublisher(TEXT_COUNT);
+        publisher.subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(TEXT_COUNT);
+        processor.subscribe(subscriber);
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertTrue(subscriber.failure instanceof IllegalStateException);
+        assertTrue(publisher.cancelled);
+    }
+
+    /**
+     * The batches of a paced processor are sent by the scheduler, spaced by the rate of the limiter.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void rateLimitedTest() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            long start = System.nanoTime();
+            BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 10, 3, scheduler,
+                    new RateLimiter(20, 0, 0.05));
+            new TextPublisher(TEXT_COUNT).subscribe(processor);
+            CollectingSubscriber subscriber = new CollectingSubscriber(TEXT_COUNT);
+            processor.subscribe(subscriber);
+
+            assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+            assertNull(subscriber.failure);
+            assertEquals(TEXT_COUNT, subscriber.received.size());
+            for (int i = 0; i < TEXT_COUNT; i++) {
+                assertEquals(i, subscriber.received.get(i).getPositions()[0]);
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(bulkCalls.get() >= TEXT_COUNT / 10);
+            assertTrue(elapsed >= (bulkCalls.get() - 1) * 50 - 10);
+        }
+        finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * An error of the publisher is signalled after the fingerprints of the texts received before it.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void upstreamErrorTest() throws InterruptedException {
+        IllegalStateException exception = new IllegalStateException("source failed");
+        BulkFingerprintProcessor processor = new BulkFingerprintProcessor(texts, null, 10, 3, executor);
+        new TextPublisher(25, exception).subscribe(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(7);
+        processor.subscribe(subscriber);
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertEquals(exception, subscriber.failure);
+        assertEquals(25, subscriber.received.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, subscriber.received.get(i).getPositions()[0]);
+        }
+    }
+
+    private static Fingerprint fingerprintOf(Text text) {
+        return new Fingerprint(new int[] { Integer.parseInt(text.getText()) });
+    }
+
+    /**
+     * Publishes the texts "0".."count-1" synchronously on request, then completes or fails.
+     */
+    private static class TextPublisher implements Publisher<Text> {
+        private final Iterator<Integer> numbers;
+        private final Throwable failure;
+        private final AtomicInteger emitted = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private long requested;
+        private volatile boolean cancelled;
+
+        TextPublisher(int count) {
+            this(count, null);
+        }
+
+        TextPublisher(int count, Throwable failure) {
+            this.failure = failure;
+            List<Integer> list = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                list.add(i);
+            }
+            numbers = list.iterator();
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super Text> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    synchronized (TextPublisher.this) {
+                        requested += n;
+                    }
+                    if (wip.getAndIncrement() != 0) {
+                        return;
+                    }
+                    do {
+                        while (!cancelled && take()) {
+                            if (!numbers.hasNext()) {
+                                if (failure != null) {
+                                    subscriber.onError(failure);
+                                }
+                                else {
+                                    subscriber.onComplete();
+                                }
+                                cancelled = true;
+                                break;
+                            }
+                            emitted.incrementAndGet();
+                            subscriber.onNext(new Text(String.valueOf(numbers.next())));
+                        }
+                    } while (wip.decrementAndGet() != 0);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+        private synchronized boolean take() {
+            if (requested == 0) {
+                return false;
+            }
+            requested--;
+            return true;
+        }
+    }
+
+    /**
+     * Collects the fingerprints, requesting a fixed count at a time.
+     */
+    private static class CollectingSubscriber implements Subscriber<Fingerprint> {
+        private final List<Fingerprint> received = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int chunk;
+        private volatile Subscription subscription;
+        private volatile Throwable failure;
+
+        CollectingSubscriber(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            if (chunk > 0) {
+                s.request(chunk);
+            }
+        }
+
+        @Override
+        public void onNext(Fingerprint fingerprint) {
+            synchronized (received) {
+                received.add(fingerprint);
+                if (chunk > 0 && received.size() % chunk == 0) {
+                    subscription.request(chunk);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
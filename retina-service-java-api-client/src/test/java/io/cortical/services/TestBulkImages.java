@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import io.cortical.rest.model.Fingerprint;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+
+/**
+ *
+ * {@link BulkImages} test class.
+ */
+public class TestBulkImages {
+    /**
+     *
+     */
+    private final ConcurrentMap<Integer, ByteArrayOutputStream> images = new ConcurrentHashMap<>();
+    private final ImageSink sink = new ImageSink() {
+        @Override
+        public WritableByteChannel open(int index) {
+            ByteArrayOutputStream image = new ByteArrayOutputStream();
+            images.put(index, image);
+            return Channels.newChannel(image);
+        }
+    };
+
+    /**
+     * The images of a response are decoded into the sink, with their fingerprints.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void writeTest() throws IOException {
+        byte[] first = new byte[10000];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = (byte) (i * 31);
+        }
+        String json = "[{\"image_data\":\"" + DatatypeConverter.printBase64Binary(first) + "\",\"fingerprint\":"
+                + "{\"positions\":[1,2]},\"extra\":{\"a\":[1]}},{\"fingerprint\":null,\"image_data\":\"AQID\"}]";
+        List<Fingerprint> fingerprints = BulkImages.write(new ByteArrayInputStream(
+                json.getBytes(StandardCharsets.UTF_8)), sink);
+        assertEquals(2, fingerprints.size());
+        assertArrayEquals(new int[] {1, 2}, fingerprints.get(0).getPositions());
+        assertNull(fingerprints.get(1));
+        assertArrayEquals(first, images.get(0).toByteArray());
+        assertArrayEquals(new byte[] {1, 2, 3}, images.get(1).toByteArray());
+    }
+
+    /**
+     * A null image keeps its index, and any other item which is not an image fails the response.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void nullAndInvalidItemsTest() throws IOException {
+        List<Fingerprint> fingerprints = BulkImages.write(new ByteArrayInputStream(
+                "[null,{\"image_data\":\"AQID\"}]".getBytes(StandardCharsets.UTF_8)), sink);
+        assertEquals(2, fingerprints.size());
+        assertNull(images.get(0));
+        assertArrayEquals(new byte[] {1, 2, 3}, images.get(1).toByteArray());
+
+        try {
+            BulkImages.write(new ByteArrayInputStream("[{\"image_data\":\"AQID\"},1,{\"image_data\":\"AQID\"}]"
+                    .getBytes(StandardCharsets.UTF_8)), sink);
+            fail("invalid item ignored");
+        }
+        catch (IOException e) {
+            assertEquals("Not an image at index 1: VALUE_NUMBER_INT", e.getMessage());
+        }
+    }
+
+    /**
+     * The images rendered in parallel are the images rendered one by one; a failure of the sink is thrown.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void renderTest() throws Exception {
+        List<Fingerprint> fingerprints = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            fingerprints.add(new Fingerprint(new int[] {i, i + 100, 511 - i}));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BulkImages.render(16, 32, 2, ImagePlotShape.CIRCLE, fingerprints, sink, executor, 4);
+            FingerprintImageRenderer renderer = new FingerprintImageRenderer(16, 32);
+            assertEquals(50, images.size());
+            for (int i = 0; i < fingerprints.size(); i++) {
+                assertArrayEquals(renderer.renderPng(2, ImagePlotShape.CIRCLE, fingerprints.get(i)),
+                        images.get(i).toByteArray());
+            }
+
+            try {
+                BulkImages.render(16, 32, 2, null, fingerprints, new ImageSink() {
+                    @Override
+                    public WritableByteChannel open(int index) throws IOException {
+                        throw new IOException("disk full");
+                    }
+                }, executor, 4);
+                fail("failure of the sink ignored");
+            }
+            catch (IOException e) {
+                assertEquals("disk full", e.getMessage());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Image;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.Test;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM1;
+import static io.cortical.rest.RestServiceConstants.PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM2;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ *
+ * {@link FingerprintImageRenderer} test class.
+ */
+public class TestFingerprintImageRenderer {
+    /**
+     *
+     */
+    private static final int WHITE = Color.WHITE.getRGB();
+    /**
+     *
+     */
+    private final FingerprintImageRenderer renderer = new FingerprintImageRenderer(16, 32);
+
+    /**
+     * The positions are plotted on the grid of the retina, as squares or circles.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void renderTest() throws IOException {
+        Fingerprint fingerprint = new Fingerprint(new int[] { 0, 33, 511 });
+        BufferedImage image = read(renderer.renderPng(4, ImagePlotShape.SQUARE, fingerprint));
+        assertEquals(128, image.getWidth());
+        assertEquals(64, image.getHeight());
+        int color = PARAM_INTERNAL_IMAGE_COLOR.getRGB();
+        assertEquals(color, image.getRGB(0, 0));
+        assertEquals(color, image.getRGB(3, 3));
+        assertEquals(WHITE, image.getRGB(4, 0));
+        assertEquals(color, image.getRGB(4, 4));
+        assertEquals(color, image.getRGB(127, 63));
+        assertEquals(WHITE, image.getRGB(64, 32));
+
+        image = read(renderer.renderPng(8, ImagePlotShape.CIRCLE, fingerprint));
+        assertEquals(256, image.getWidth());
+        assertEquals(WHITE, image.getRGB(0, 0));
+        assertEquals(color, image.getRGB(4, 4));
+        assertEquals(color, image.getRGB(0, 4));
+
+        image = read(renderer.renderPng(null, null, new Fingerprint(new int[0])));
+        assertEquals(64, image.getWidth());
+        assertEquals(WHITE, image.getRGB(0, 0));
+    }
+
+    /**
+     * The overlay shows the positions of each fingerprint, and their common positions.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void compareTest() throws IOException {
+        ByteArrayInputStream png = renderer.compare(1, ImagePlotShape.SQUARE, ImageEncoding.BINARY_PNG,
+                new Fingerprint(new int[] { 1, 2 }), new Fingerprint(new int[] { 2, 3 }));
+        BufferedImage image = ImageIO.read(png);
+        assertEquals(PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM1.getRGB(), image.getRGB(1, 0));
+        assertEquals(PARAM_INTERNAL_IMAGE_COLOR.getRGB(), image.getRGB(2, 0));
+        assertEquals(PARAM_INTERNAL_IMAGE_COLOR_OVERLAY_TERM2.getRGB(), image.getRGB(3, 0));
+        assertEquals(WHITE, image.getRGB(4, 0));
+    }
+
+    /**
+     * The images are encoded in base64 by default, and carry their fingerprint if requested.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void encodingTest() throws IOException {
+        Fingerprint fingerprint = new Fingerprint(new int[] { 5, 100 });
+        byte[] png = renderer.renderPng(2, ImagePlotShape.CIRCLE, fingerprint);
+        ByteArrayInputStream image = renderer.getImage(2, ImagePlotShape.CIRCLE, null, fingerprint);
+        byte[] bytes = new byte[image.available()];
+        assertEquals(bytes.length, image.read(bytes));
+        String base64 = new String(bytes, "US-ASCII");
+        assertArrayEquals(png, DatatypeConverter.parseBase64Binary(base64));
+
+        List<Image> images = renderer.getImageBulk(true, 2, ImagePlotShape.CIRCLE, fingerprint, fingerprint);
+        assertEquals(2, images.size());
+        assertArrayEquals(png, images.get(1).getImageData());
+        assertSame(fingerprint, images.get(0).getFingerprint());
+        assertNull(renderer.getImageBulk(null, 2, null, fingerprint).get(0).getFingerprint());
+    }
+
+    /**
+     * The positions out of the retina are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void positionOutOfRetinaTest() {
+        renderer.renderPng(1, null, new Fingerprint(new int[] { 512 }));
+    }
+
+    /**
+     * A scalar whose image exceeds the largest array is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void scalarTooLargeTest() {
+        renderer.renderPng(3000, null, new Fingerprint(new int[] { 1 }));
+    }
+
+    private static BufferedImage read(byte[] png) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+}
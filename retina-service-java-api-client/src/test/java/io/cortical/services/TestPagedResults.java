@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import static io.cortical.services.ApiTestUtils.NOT_NULL_RETINA;
+import io.cortical.rest.model.Context;
+import io.cortical.services.PagedResults.PagedIterator;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.RateLimiter;
+import io.cortical.services.api.client.api.TermsApi;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import static io.cortical.rest.model.TestDataMother.createContexts;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+
+/**
+ *
+ * {@link PagedResults} test class.
+ */
+public class TestPagedResults {
+    /**
+     *
+     */
+    private static final String TERM = "term";
+    private static final int TOTAL_ITEMS = 7;
+    private static final int PAGE_SIZE = 3;
+    /**
+     *
+     */
+    @Mock
+    private TermsApi termApi;
+    private TermsRetinaApiImpl termRetinaApiImpl;
+
+    /**
+     * initialization.
+     */
+    @Before
+    public void before() {
+        initMocks(this);
+        termRetinaApiImpl = new TermsRetinaApiImpl(termApi, NOT_NULL_RETINA);
+    }
+
+    /**
+     * All pages are fetched until a short page is returned.
+     */
+    @Test
+    public void iterateAllPagesTest() {
+        CountingFetcher fetcher = new CountingFetcher(TOTAL_ITEMS);
+        List<Integer> items = drain(new PagedResults<Integer>(fetcher, PAGE_SIZE));
+
+        assertEquals(TOTAL_ITEMS, items.size());
+        for (int i = 0; i < TOTAL_ITEMS; i++) {
+            assertEquals(Integer.valueOf(i), items.get(i));
+        }
+        assertEquals(3, fetcher.calls.get());
+    }
+
+    /**
+     * No further page is requested once the consumer stops iterating.
+     */
+    @Test
+    public void stopEarlyTest() {
+        CountingFetcher fetcher = new CountingFetcher(100);
+        PagedIterator<Integer> iterator = new PagedResults<Integer>(fetcher, PAGE_SIZE).iterator();
+        for (int i = 0; i < 4; i++) {
+            iterator.next();
+        }
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        assertEquals(2, fetcher.calls.get());
+    }
+
+    /**
+     * The last page is shortened to the max items count.
+     */
+    @Test
+    public void maxItemsTest() {
+        CountingFetcher fetcher = new CountingFetcher(100);
+        PagedResults<Integer> results = new PagedResults<Integer>(fetcher, PAGE_SIZE);
+        results.setStartIndex(10);
+        results.setMaxItems(5);
+        List<Integer> items = drain(results);
+
+        assertEquals(5, items.size());
+        assertEquals(Integer.valueOf(10), items.get(0));
+        assertEquals(Integer.valueOf(14), items.get(4));
+        assertEquals(2, fetcher.calls.get());
+    }
+
+    /**
+     * Pages fetched in advance are delivered in order.
+     */
+    @Test
+    public void readAheadTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountingFetcher fetcher = new CountingFetcher(50);
+            PagedResults<Integer> results = new PagedResults<Integer>(fetcher, PAGE_SIZE);
+            results.setReadAhead(2, executor);
+            List<Integer> items = drain(results);
+
+            assertEquals(50, items.size());
+            for (int i = 0; i < items.size(); i++) {
+                assertEquals(Integer.valueOf(i), items.get(i));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Pages fetched in advance with a rate limiter are fetched once their tokens are refilled: the requests of the
+     * fetcher do not wait for the limiter.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void rateLimitedReadAheadTest() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            final RateLimiter limiter = new RateLimiter(10, 0, 0.1);
+            final AtomicInteger maxWaitMillis = new AtomicInteger();
+            CountingFetcher fetcher = new CountingFetcher(TOTAL_ITEMS) {
+                @Override
+                public List<Integer> fetchPage(Pagination pagination) {
+                    long start = System.nanoTime();
+                    try {
+                        limiter.acquire(0);
+                    }
+                    catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    int wait = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    synchronized (maxWaitMillis) {
+                        maxWaitMillis.set(Math.max(maxWaitMillis.get(), wait));
+                    }
+                    return super.fetchPage(pagination);
+                }
+            };
+            PagedResults<Integer> results = new PagedResults<Integer>(fetcher, PAGE_SIZE);
+            results.setReadAhead(2, scheduler, limiter);
+            long start = System.nanoTime();
+            List<Integer> items = drain(results);
+
+            assertEquals(TOTAL_ITEMS, items.size());
+            for (int i = 0; i < items.size(); i++) {
+                assertEquals(Integer.valueOf(i), items.get(i));
+            }
+            assertEquals(3, fetcher.calls.get());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+            assertTrue(maxWaitMillis.get() < 50);
+        }
+        finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * {@link PagedResults#contexts(Terms, String, Boolean, int)} test method.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void termContextsTest() throws ApiException {
+        when(termApi.getContextsForTerm(eq(TERM), isNull(Boolean.class), eq(NOT_NULL_RETINA), eq(0), eq(5)))
+                .thenReturn(createContexts(5));
+        when(termApi.getContextsForTerm(eq(TERM), isNull(Boolean.class), eq(NOT_NULL_RETINA), eq(5), eq(5)))
+                .thenReturn(createContexts(2));
+
+        int count = 0;
+        for (@SuppressWarnings("unused") Context context : PagedResults.contexts(termRetinaApiImpl, TERM, null, 5)) {
+            count++;
+        }
+        assertEquals(7, count);
+        verify(termApi, times(1)).getContextsForTerm(eq(TERM), isNull(Boolean.class), eq(NOT_NULL_RETINA), eq(0),
+                eq(5));
+        verify(termApi, times(1)).getContextsForTerm(eq(TERM), isNull(Boolean.class), eq(NOT_NULL_RETINA), eq(5),
+                eq(5));
+        verifyNoMoreInteractions(termApi);
+    }
+
+    private static List<Integer> drain(PagedResults<Integer> results) {
+        List<Integer> items = new ArrayList<>();
+        for (Integer item : results) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Serves the consecutive numbers 0..total-1 and counts the requested pages.
+     */
+    private static class CountingFetcher implements PageFetcher<Integer> {
+        private final int total;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingFetcher(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public List<Integer> fetchPage(Pagination pagination) {
+            calls.incrementAndGet();
+            List<Integer> page = new ArrayList<>();
+            int end = Math.min(total, pagination.getStartIndex() + pagination.getMaxResults());
+            for (int i = pagination.getStartIndex(); i < end; i++) {
+                page.add(i);
+            }
+            return page;
+        }
+    }
+}
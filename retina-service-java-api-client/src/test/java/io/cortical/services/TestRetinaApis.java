@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services;
+
+import static io.cortical.rest.model.ExpressionFactory.and;
+import static io.cortical.rest.model.ExpressionFactory.term;
+import static io.cortical.rest.model.ExpressionFactory.text;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.cortical.rest.model.CategoryFilter;
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.Image;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.Retina;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
+import io.cortical.rest.model.TermDictionary;
+import io.cortical.rest.model.Text;
+import io.cortical.services.Compare.CompareModels;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.JsonUtil;
+import io.cortical.services.api.client.RateLimiter;
+import io.cortical.services.stub.StubFingerprints;
+import io.cortical.services.stub.StubRetinaServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+
+/**
+ *
+ * {@link RetinaApis} test class, calling the APIs end to end against a {@link StubRetinaServer}.
+ */
+public class TestRetinaApis {
+    /**
+     *
+     */
+    private static final String API_KEY = "stub";
+    private static final String TEXT = "Gustav Klimt was an Austrian painter. He lived in Vienna.";
+    /**
+     *
+     */
+    private StubRetinaServer server;
+    private RetinaApis retinaApis;
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = new StubRetinaServer();
+        server.start();
+        retinaApis = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, server.getIp(), (short) server.getPort(),
+                API_KEY);
+    }
+
+    /**
+     * stops the server.
+     */
+    @After
+    public void after() {
+        server.close();
+    }
+
+    /**
+     * {@link RetinaApis#getInfo(String, Short, String)} test method.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void retinasTest() throws ApiException {
+        Retinas retinas = RetinaApis.getInfo(server.getIp(), (short) server.getPort(), API_KEY);
+        assertEquals(2, retinas.getAllRetinas().size());
+        Retina retina = retinas.retinaByName(StubRetinaServer.DEFAULT_RETINA);
+        assertEquals(StubRetinaServer.DEFAULT_RETINA, retina.getRetinaName());
+        assertEquals(StubFingerprints.RETINA_WIDTH, retina.getNumberOfRows());
+    }
+
+    /**
+     * {@link Terms} test method.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void termsTest() throws ApiException {
+        List<Term> terms = retinaApis.termsApi().getTerm("Apple", true);
+        assertEquals(1, terms.size());
+        assertArrayEquals(StubFingerprints.forTerm("apple"), terms.get(0).getFingerprint().getPositions());
+
+        List<Context> contexts = retinaApis.termsApi().getContexts("apple", new Pagination(2, 3), false);
+        assertEquals(3, contexts.size());
+        assertEquals(2, contexts.get(0).getContextId());
+
+        List<Term> similarTerms = retinaApis.termsApi().getSimilarTerms("apple", 1, PosType.NOUN);
+        assertEquals(10, similarTerms.size());
+        assertEquals("apple_context1_similar0", similarTerms.get(0).getTerm());
+    }
+
+    /**
+     * {@link Texts} test method.
+     *
+     * @throws ApiException : should never be thrown
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Test
+    public void textsTest() throws ApiException, JsonProcessingException {
+        List<Fingerprint> fingerprints = retinaApis.textApi().getFingerprints(TEXT);
+        assertArrayEquals(StubFingerprints.forText(TEXT), fingerprints.get(0).getPositions());
+
+        assertTrue(retinaApis.textApi().getKeywords(TEXT).contains("vienna"));
+        assertEquals(2, retinaApis.textApi().getTokens(TEXT, new PosTag[] { PosTag.NN }).size());
+        List<Text> slices = retinaApis.textApi().getSlices(TEXT, true);
+        assertEquals(2, slices.size());
+        assertArrayEquals(StubFingerprints.forText("He lived in Vienna."), slices.get(1).getFingerprint()
+                .getPositions());
+
+        List<Fingerprint> bulk = retinaApis.textApi().getFingerprintBulk(0.01, text("one"), text("two"));
+        assertEquals(2, bulk.size());
+        assertEquals(163, bulk.get(0).getPositions().length);
+
+        assertNotNull(retinaApis.textApi().identifyRetinaByText(TEXT));
+    }
+
+    /**
+     * The terms and the keywords of the responses are interned in the dictionary set on the mappers.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void termDictionaryTest() throws ApiException {
+        TermDictionary dictionary = new TermDictionary(1000);
+        JsonUtil.setTermDictionary(dictionary);
+        try {
+            Term first = retinaApis.termsApi().getSimilarTerms("apple", 1, PosType.NOUN).get(0);
+            Term second = retinaApis.termsApi().getSimilarTerms("apple", 1, PosType.NOUN).get(0);
+            assertSame(first.getTerm(), second.getTerm());
+            assertSame(first.getTerm(), dictionary.term(dictionary.id("apple_context1_similar0")));
+
+            String keyword = retinaApis.textApi().getKeywords(TEXT).get(0);
+            assertSame(keyword, retinaApis.textApi().getKeywords(TEXT).get(0));
+            assertTrue(dictionary.id(keyword) >= 0);
+        }
+        finally {
+            JsonUtil.setTermDictionary(null);
+        }
+    }
+
+    /**
+     * {@link Expressions} and {@link Compare} test method.
+     *
+     * @throws ApiException : should never be thrown
+     * @throws JsonProcessingException : should never be thrown
+     */
+    @Test
+    public void expressionsAndCompareTest() throws ApiException, JsonProcessingException {
+        Fingerprint fingerprint = retinaApis.expressionsApi().resolve(and(term("apple"), term("apple")));
+        assertArrayEquals(StubFingerprints.forTerm("apple"), fingerprint.getPositions());
+        assertEquals(2, retinaApis.expressionsApi().resolveBulk(term("apple"), term("pear")).size());
+        assertEquals(10, retinaApis.expressionsApi().getSimilarTerms(term("apple")).size());
+        assertEquals(2, retinaApis.expressionsApi().getContextsBulk(false, (Double) null, term("apple"), text(TEXT)).size());
+        List<List<Term>> bulk = retinaApis.expressionsApi().getSimilarTermsBulk(null, null, null, true, null,
+                term("apple"), term("pear"));
+        TermColumns columns = retinaApis.expressionsApi().getSimilarTermsBulkColumns(null, null, null, true, null,
+                term("apple"), term("pear"));
+        assertEquals(bulk.size(), columns.getGroupCount());
+        assertEquals(bulk.get(1).size(), columns.getGroupEnd(1) - columns.getGroupStart(1));
+        assertEquals(bulk.get(1).get(0).toJson(), columns.toTerm(columns.getGroupStart(1)).toJson());
+
+        Metric metric = retinaApis.compareApi().compare(term("apple"), term("apple"));
+        assertEquals(StubFingerprints.FINGERPRINT_SIZE, metric.getOverlappingAll());
+        assertEquals(1.0, metric.getCosineSimilarity(), 1e-9);
+        Metric[] metrics = retinaApis.compareApi().compareBulk(new CompareModels(term("apple"), term("pear")),
+                new CompareModels(term("apple"), text(TEXT)));
+        assertEquals(2, metrics.length);
+        assertEquals(StubFingerprints.overlap(StubFingerprints.forTerm("apple"), StubFingerprints.forTerm("pear")),
+                metrics[0].getOverlappingAll());
+    }
+
+    /**
+     * {@link Images} and {@link Classify} test method.
+     *
+     * @throws ApiException : should never be thrown
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void imagesAndClassifyTest() throws ApiException, IOException {
+        ByteArrayInputStream png = retinaApis.imageApi().getImage(1, ImagePlotShape.SQUARE, ImageEncoding.BINARY_PNG,
+                null, term("apple"));
+        assertEquals(StubFingerprints.RETINA_WIDTH, ImageIO.read(png).getWidth());
+        try (InputStream stream = retinaApis.imageApi().getImageStream(1, ImagePlotShape.SQUARE,
+                ImageEncoding.BINARY_PNG, null, term("apple"))) {
+            // read from the connection.
+            assertFalse(stream instanceof ByteArrayInputStream);
+            assertEquals(StubFingerprints.RETINA_WIDTH, ImageIO.read(stream).getWidth());
+        }
+        List<Image> images = retinaApis.imageApi().getImageBulk(true, 1, null, null, term("apple"), term("pear"));
+        assertEquals(2, images.size());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(images.get(0).getImageData())));
+        Path directory = Files.createTempDirectory("images");
+        try {
+            List<Fingerprint> fingerprints = retinaApis.imageApi().getImageBulk(BulkImages.directory(directory,
+                    "image"), true, 1, null, null, term("apple"), term("pear"));
+            assertEquals(2, fingerprints.size());
+            assertArrayEquals(images.get(1).getFingerprint().getPositions(), fingerprints.get(1).getPositions());
+            assertArrayEquals(images.get(1).getImageData(), Files.readAllBytes(directory.resolve("image1.png")));
+
+            Path image = directory.resolve("image.png");
+            long length = retinaApis.imageApi().getImage(image, 1, null, ImageEncoding.BINARY_PNG, null,
+                    term("apple"));
+            assertEquals(Files.size(image), length);
+            assertEquals(StubFingerprints.RETINA_WIDTH, ImageIO.read(image.toFile()).getWidth());
+            ByteArrayInputStream overlay = retinaApis.imageApi().compare(1, null, ImageEncoding.BINARY_PNG,
+                    term("apple"), term("pear"));
+            byte[] expected = new byte[overlay.available()];
+            overlay.read(expected);
+            assertEquals(expected.length, retinaApis.imageApi().compare(image, 1, null, ImageEncoding.BINARY_PNG,
+                    term("apple"), term("pear")));
+            assertArrayEquals(expected, Files.readAllBytes(image));
+        }
+        finally {
+            Files.deleteIfExists(directory.resolve("image.png"));
+            for (int i = 0; i < 2; i++) {
+                Files.deleteIfExists(directory.resolve("image" + i + ".png"));
+            }
+            Files.delete(directory);
+        }
+
+        CategoryFilter filter = retinaApis.classifyApi().createCategoryFilter("fruit",
+                "{\"positiveExamples\":[{\"text\":\"apple\"}],\"negativeExamples\":[]}");
+        assertEquals("fruit", filter.getCategoryName());
+        assertEquals(StubFingerprints.FINGERPRINT_SIZE, filter.getPositions().size());
+    }
+
+    /**
+     * Latency and error injection test method.
+     *
+     * @throws ApiException : should be thrown
+     */
+    @Test
+    public void injectedErrorsTest() throws ApiException {
+        server.setErrors(1, 503);
+        try {
+            retinaApis.termsApi().getTerm("apple");
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount("/terms"));
+
+        server.setErrors(0, 503);
+        server.setLatency(50, 0, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        retinaApis.termsApi().getTerm("apple");
+        assertTrue(System.nanoTime() - start >= 50000000L);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    /**
+     * The requests of a {@link RetinaApis} with its own {@link ApiInvoker} are paced by its {@link RateLimiter}.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void rateLimiterTest() throws ApiException {
+        ApiInvoker invoker = new ApiInvoker();
+        invoker.setRateLimiter(new RateLimiter(20, 0, 0.05));
+        RetinaApis paced = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, server.getIp(), (short) server.getPort(),
+                API_KEY, invoker);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            paced.termsApi().getTerm("apple");
+        }
+        // one request of burst, then one every 50ms.
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(240));
+        assertEquals(6, server.getRequestCount());
+        assertNull(ApiInvoker.getInstance().getRateLimiter());
+    }
+
+    /**
+     * The requests of a {@link RetinaApis} over a pool are spread over its servers, and a failing server is ejected.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void loadBalancingTest() throws Exception {
+        try (StubRetinaServer failing = new StubRetinaServer()) {
+            failing.start();
+            RetinaApis pool = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, Arrays.asList(
+                    server.getIp() + ":" + server.getPort(), failing.getIp() + ":" + failing.getPort()), API_KEY);
+            for (int i = 0; i < 20; i++) {
+                pool.termsApi().getTerm("apple");
+            }
+            assertTrue(server.getRequestCount() > 0);
+            assertTrue(failing.getRequestCount() > 0);
+
+            failing.setErrors(1, 500);
+            server.resetRequestCounts();
+            failing.resetRequestCounts();
+            int failures = 0;
+            for (int i = 0; i < 40; i++) {
+                try {
+                    pool.termsApi().getTerm("apple");
+                }
+                catch (ApiException e) {
+                    assertEquals(500, e.getCode());
+                    failures++;
+                }
+            }
+            // ejected after 5 consecutive failures.
+            assertEquals(5, failures);
+            assertEquals(5, failing.getRequestCount());
+            assertEquals(35, server.getRequestCount());
+        }
+    }
+
+    /**
+     * Two pools on one invoker keep their own balancers; a pool overlapping another one is refused.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void twoPoolsTest() throws Exception {
+        try (StubRetinaServer second = new StubRetinaServer();
+                StubRetinaServer third = new StubRetinaServer();
+                StubRetinaServer fourth = new StubRetinaServer()) {
+            second.start();
+            third.start();
+            fourth.start();
+            ApiInvoker invoker = new ApiInvoker();
+            List<String> firstPool = Arrays.asList(server.getIp() + ":" + server.getPort(),
+                    second.getIp() + ":" + second.getPort());
+            RetinaApis first = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, firstPool, API_KEY, invoker);
+            RetinaApis other = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, Arrays.asList(
+                    third.getIp() + ":" + third.getPort(), fourth.getIp() + ":" + fourth.getPort()), API_KEY,
+                    invoker);
+            RetinaApis same = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, firstPool, API_KEY, invoker);
+            assertEquals(2, invoker.getLoadBalancers().size());
+            for (int i = 0; i < 20; i++) {
+                first.termsApi().getTerm("apple");
+                same.termsApi().getTerm("apple");
+            }
+            assertTrue(server.getRequestCount() > 0);
+            assertTrue(second.getRequestCount() > 0);
+            assertEquals(0, third.getRequestCount() + fourth.getRequestCount());
+
+            server.resetRequestCounts();
+            second.resetRequestCounts();
+            for (int i = 0; i < 20; i++) {
+                other.termsApi().getTerm("apple");
+            }
+            assertTrue(third.getRequestCount() > 0);
+            assertTrue(fourth.getRequestCount() > 0);
+            assertEquals(0, server.getRequestCount() + second.getRequestCount());
+
+            try {
+                new RetinaApis(StubRetinaServer.DEFAULT_RETINA, Arrays.asList(server.getIp() + ":" + server.getPort(),
+                        third.getIp() + ":" + third.getPort()), API_KEY, invoker);
+                fail();
+            }
+            catch (IllegalArgumentException e) {
+                assertEquals(2, invoker.getLoadBalancers().size());
+            }
+        }
+    }
+
+    /**
+     * {@link RetinaApis#warmUp(int)} opens the connections to every server of the pool.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void warmUpTest() throws Exception {
+        try (StubRetinaServer other = new StubRetinaServer()) {
+            other.start();
+            RetinaApis pool = new RetinaApis(StubRetinaServer.DEFAULT_RETINA, Arrays.asList(
+                    server.getIp() + ":" + server.getPort(), other.getIp() + ":" + other.getPort()), API_KEY);
+            pool.warmUp(3);
+            assertEquals(3, server.getRequestCount("/retinas"));
+            assertEquals(3, other.getRequestCount("/retinas"));
+        }
+        server.stop();
+        try {
+            retinaApis.warmUp(1);
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(0, e.getCode());
+        }
+    }
+
+    /**
+     * {@link RetinaApiUtils} test method.
+     */
+    @Test
+    public void basePathTest() {
+        assertEquals("http://10.0.0.1:80/rest", RetinaApiUtils.generateBasepath("10.0.0.1", null));
+        assertEquals("https://retina.example.com:443/rest",
+                RetinaApiUtils.generateBasepath("https://retina.example.com", null));
+        assertEquals("https://retina.example.com:8443/rest",
+                RetinaApiUtils.generateBasepath("https://retina.example.com", (short) 8443));
+        assertEquals(Arrays.asList("http://a:80/rest", "http://b:8080/rest", "https://c:443/rest",
+                "https://d:8443/rest"), RetinaApiUtils.generateBasepaths(Arrays.asList("a", "b:8080", "https://c",
+                "https://d:8443")));
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.cortical.rest.model.Term;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ *
+ * {@link ApiCallListener} test class.
+ */
+public class TestApiCallListener {
+    /**
+     *
+     */
+    private static final String TERMS_JSON = "[{\"term\":\"apple\",\"df\":0.0013,\"score\":0.0,\"pos_types\":[\"NOUN\"]}]";
+    private static final String RETINA = "en_associative";
+    /**
+     *
+     */
+    private HttpServer server;
+    private String basePath;
+    private ApiInvoker invoker;
+    private final List<ApiCallTrace> started = new ArrayList<>();
+    private final List<ApiCallTrace> completed = new ArrayList<>();
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/terms", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, 200, TERMS_JSON);
+            }
+        });
+        server.createContext("/missing", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, 404, "\"not found\"");
+            }
+        });
+        server.start();
+        basePath = "http://127.0.0.1:" + server.getAddress().getPort();
+        invoker = new ApiInvoker();
+        invoker.setCallListener(new ApiCallListener() {
+            @Override
+            public void callStarted(ApiCallTrace trace) {
+                started.add(trace);
+            }
+
+            @Override
+            public void callCompleted(ApiCallTrace trace) {
+                completed.add(trace);
+            }
+        });
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * A JSON response completes the trace once it was deserialized.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void deserializedResponseTest() throws ApiException {
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("retina_name", RETINA);
+        Object response = invoker.invokeAPI(basePath, "/terms", "GET", queryParams, null,
+                new HashMap<String, String>(), "application/json");
+
+        assertEquals(1, started.size());
+        assertEquals(0, completed.size());
+        @SuppressWarnings("unchecked")
+        List<Term> terms = (List<Term>) ApiInvoker.deserialize((String) response, "List", Term.class, null);
+        assertEquals("apple", terms.get(0).getTerm());
+
+        assertEquals(1, completed.size());
+        ApiCallTrace trace = completed.get(0);
+        assertEquals("GET", trace.getMethod());
+        assertEquals("/terms", trace.getPath());
+        assertEquals(RETINA, trace.getRetinaName());
+        assertEquals(200, trace.getStatus());
+        assertEquals(0, trace.getRequestBytes());
+        assertEquals(TERMS_JSON.length(), trace.getResponseBytes());
+        assertTrue(trace.getNetworkNanos() > 0);
+        assertTrue(trace.getDeserializationNanos() > 0);
+    }
+
+    /**
+     * A response which is never deserialized is completed by the next call of the thread.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void undeserializedResponseTest() throws ApiException {
+        invoker.invokeAPI(basePath, "/terms", "POST", new HashMap<String, String>(), "\"apple\"",
+                new HashMap<String, String>(), "application/json");
+        invoker.invokeAPI(basePath, "/terms", "GET", new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+
+        assertEquals(2, started.size());
+        assertEquals(1, completed.size());
+        assertEquals("POST", completed.get(0).getMethod());
+        assertEquals(7, completed.get(0).getRequestBytes());
+        assertEquals(0, completed.get(0).getDeserializationNanos());
+    }
+
+    /**
+     * A call without result completes the trace directly, and leaves no pending trace for the next deserialization.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void callWithoutResultTest() throws ApiException {
+        invoker.invokeAPIWithoutResult(basePath, "/terms", "DELETE", new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+
+        assertEquals(1, completed.size());
+        assertEquals("DELETE", completed.get(0).getMethod());
+        ApiInvoker.deserialize(TERMS_JSON, "List", Term.class, null);
+        assertEquals(1, completed.size());
+        assertEquals(0, completed.get(0).getDeserializationNanos());
+    }
+
+    /**
+     * A streamed call completes the trace directly.
+     *
+     * @throws IOException : should never be thrown
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void streamedCallTest() throws IOException, ApiException {
+        try (InputStream stream = invoker.invokeAPIForStream(basePath, "/terms", "GET",
+                new HashMap<String, String>(), null, new HashMap<String, String>(), "application/json")) {
+            assertEquals(1, completed.size());
+            assertEquals(200, completed.get(0).getStatus());
+            assertEquals('[', stream.read());
+        }
+        ApiInvoker.deserialize(TERMS_JSON, "List", Term.class, null);
+        assertEquals(1, completed.size());
+    }
+
+    /**
+     * A pending trace is completed, without deserialization time, when another response is deserialized.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void otherResponseDeserializedTest() throws ApiException {
+        invoker.invokeAPI(basePath, "/terms", "GET", new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+        ApiInvoker.deserialize(new String(TERMS_JSON), "List", Term.class, null);
+
+        assertEquals(1, completed.size());
+        assertEquals(0, completed.get(0).getDeserializationNanos());
+        ApiInvoker.deserialize(TERMS_JSON, "List", Term.class, null);
+        assertEquals(1, completed.size());
+    }
+
+    /**
+     * A failed call completes the trace directly.
+     */
+    @Test
+    public void failedCallTest() {
+        try {
+            invoker.invokeAPI(basePath, "/missing", "GET", new HashMap<String, String>(), null,
+                    new HashMap<String, String>(), "application/json");
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+        assertEquals(1, completed.size());
+        assertEquals(404, completed.get(0).getStatus());
+        assertEquals(null, completed.get(0).getRetinaName());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
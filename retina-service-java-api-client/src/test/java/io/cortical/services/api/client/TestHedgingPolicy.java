@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link HedgingPolicy} test class.
+ */
+public class TestHedgingPolicy {
+    /**
+     *
+     */
+    private static final String JSON = "[\"apple\"]";
+    /**
+     *
+     */
+    private HttpServer server;
+    private String basePath;
+    private ApiInvoker invoker;
+    /**
+     * The delay of the first response in milliseconds; the following ones are immediate.
+     */
+    private volatile long firstDelay;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (requests.incrementAndGet() == 1) {
+                    try {
+                        Thread.sleep(firstDelay);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = JSON.getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        basePath = "http://127.0.0.1:" + server.getAddress().getPort();
+        invoker = new ApiInvoker();
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private Object call(String method, String path) throws ApiException {
+        return invoker.invokeAPI(basePath, path, method, new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+    }
+
+    /**
+     * A slow call is answered by its hedge.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void slowCallTest() throws ApiException {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 50, TimeUnit.MILLISECONDS);
+        policy.setBudget(new RetryBudget(1, 10));
+        invoker.setHedgingPolicy(policy);
+        firstDelay = 5000;
+
+        long start = System.nanoTime();
+        assertEquals(JSON, call("POST", "/compare"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2, requests.get());
+        assertEquals(1, policy.getHedgeCount());
+    }
+
+    /**
+     * The hedge of a paced call does not wait for the rate limiter, nor consume its tokens.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void rateLimitedHedgeTest() throws ApiException {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 50, TimeUnit.MILLISECONDS);
+        policy.setBudget(new RetryBudget(1, 10));
+        invoker.setHedgingPolicy(policy);
+        RateLimiter limiter = new RateLimiter(1, 0, 1);
+        invoker.setRateLimiter(limiter);
+        firstDelay = 5000;
+
+        long start = System.nanoTime();
+        assertEquals(JSON, call("POST", "/compare"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+        assertEquals(1, policy.getHedgeCount());
+        long next = limiter.reserve(0);
+        assertTrue(next > 0 && next <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * A call is not hedged once the budget is exhausted, or if its endpoint is not hedged.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void notHedgedTest() throws ApiException {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 20, TimeUnit.MILLISECONDS);
+        policy.setBudget(new RetryBudget(0, 0));
+        invoker.setHedgingPolicy(policy);
+        firstDelay = 200;
+
+        assertEquals(JSON, call("GET", "/terms"));
+        assertEquals(1, requests.get());
+        assertEquals(0, policy.getHedgeCount());
+
+        assertFalse(policy.isHedged("POST", "/text"));
+        assertFalse(policy.isHedged("PUT", "/fingerprints/update"));
+        assertTrue(policy.isHedged("POST", "/expressions/bulk"));
+    }
+
+    /**
+     * The delay follows the latencies of the endpoint.
+     */
+    @Test
+    public void adaptiveDelayTest() {
+        HedgingPolicy policy = new HedgingPolicy(95, 1, 500, TimeUnit.MILLISECONDS);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), policy.delayNanos("POST", "/compare"));
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency("POST", "/compare", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        long delay = policy.delayNanos("POST", "/compare");
+        assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(94));
+        assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(97));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), policy.delayNanos("POST", "/expressions"));
+
+        // the window of the slow latencies is replaced once a full window of fast latencies was recorded.
+        for (int i = 0; i < 2000; i++) {
+            policy.recordLatency("POST", "/compare", 0);
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), policy.delayNanos("POST", "/compare"));
+    }
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.api.TermsApi;
+import io.cortical.services.stub.StubRetinaServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link Http2Transport} test class.
+ */
+public class TestHttp2Transport {
+    /**
+     *
+     */
+    private static final String JSON = "[\"apple\"]";
+    private static final int CALLS = 12;
+    /**
+     *
+     */
+    private MockWebServer server;
+    private ApiInvoker invoker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = new MockWebServer();
+        server.setProtocols(Arrays.asList(Protocol.H2_PRIOR_KNOWLEDGE));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = inFlight.incrementAndGet();
+                while (true) {
+                    int max = maxInFlight.get();
+                    if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                Thread.sleep(50);
+                inFlight.decrementAndGet();
+                return new MockResponse().setHeader("Content-Type", "application/json").setBody(
+                        request.getBody().size() > 0 ? JSON : "[]");
+            }
+        });
+        server.start();
+        invoker = new ApiInvoker();
+    }
+
+    /**
+     * cleanup.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @After
+    public void after() throws IOException {
+        server.shutdown();
+    }
+
+    private List<Object> concurrentCalls(final String basePath) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLS);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < CALLS; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws ApiException {
+                        return invoker.invokeAPI(basePath, "/compare", "POST", new HashMap<String, String>(),
+                                "[{\"term\":\"apple\"}]", new HashMap<String, String>(), "application/json");
+                    }
+                }));
+            }
+            List<Object> responses = new ArrayList<Object>();
+            for (Future<Object> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The concurrent calls are multiplexed over a single h2c connection.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void multiplexingTest() throws Exception {
+        try (Http2Transport transport = new Http2Transport()) {
+            invoker.setHttp2Transport(transport);
+            for (Object response : concurrentCalls(server.url("/rest").toString())) {
+                assertEquals(JSON, response);
+            }
+        }
+        assertEquals(CALLS, server.getRequestCount());
+        Set<Integer> sequenceNumbers = new HashSet<Integer>();
+        for (int i = 0; i < CALLS; i++) {
+            sequenceNumbers.add(server.takeRequest().getSequenceNumber());
+        }
+        // the sequence numbers restart on each connection.
+        assertEquals(CALLS, sequenceNumbers.size());
+        assertTrue(maxInFlight.get() > 1);
+    }
+
+    /**
+     * The concurrent calls to a server are limited to the maximum count of streams.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void maxConcurrentStreamsTest() throws Exception {
+        try (Http2Transport transport = new Http2Transport(2, true)) {
+            invoker.setHttp2Transport(transport);
+            concurrentCalls(server.url("/rest").toString());
+        }
+        assertEquals(CALLS, server.getRequestCount());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    /**
+     * The streamed responses are read from the connection, and hold their stream until closed.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void streamedTest() throws Exception {
+        try (Http2Transport transport = new Http2Transport(1, true)) {
+            invoker.setHttp2Transport(transport);
+            for (int i = 0; i < 3; i++) {
+                try (InputStream stream = invoker.invokeAPIForStream(server.url("/rest").toString(), "/compare",
+                        "POST", new HashMap<String, String>(), "[{\"term\":\"apple\"}]",
+                        new HashMap<String, String>(), "application/json")) {
+                    assertFalse(stream instanceof ByteArrayInputStream);
+                    byte[] json = new byte[JSON.length()];
+                    int length = 0;
+                    for (int n; length < json.length && (n = stream.read(json, length, json.length - length)) > 0;) {
+                        length += n;
+                    }
+                    assertEquals(JSON, new String(json, 0, length, "UTF-8"));
+                    assertEquals(-1, stream.read());
+                }
+            }
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    /**
+     * The generated APIs work over the transport with HTTP/1.1.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void http11Test() throws Exception {
+        try (StubRetinaServer stub = new StubRetinaServer();
+                Http2Transport transport = new Http2Transport(10, false)) {
+            stub.start();
+            invoker.setHttp2Transport(transport);
+            TermsApi api = new TermsApi("stub", invoker);
+            api.setBasePath(stub.getBasePath());
+            List<Term> terms = api.getTerm("apple", false, StubRetinaServer.DEFAULT_RETINA, 0, 10);
+            assertEquals(1, terms.size());
+            assertEquals("apple", terms.get(0).getTerm());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import io.cortical.services.api.client.LoadBalancer.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link LoadBalancer} test class.
+ */
+public class TestLoadBalancer {
+    /**
+     *
+     */
+    private static final String NODE_1 = "http://10.0.0.1:80/rest";
+    private static final String NODE_2 = "http://10.0.0.2:80/rest";
+    private static final String NODE_3 = "http://10.0.0.3:80/rest";
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Of two nodes, the one with the fewer outstanding requests is chosen.
+     */
+    @Test
+    public void leastOutstandingTest() {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2);
+        assertTrue(balancer.contains(NODE_2));
+        assertFalse(balancer.contains("http://10.0.0.4:80/rest"));
+        Node busy = balancer.choose("/terms", null);
+        for (int i = 0; i < 10; i++) {
+            Node node = balancer.choose("/terms", null);
+            assertTrue(node != busy);
+            balancer.release(node, 200, MILLI);
+        }
+        assertEquals(1, busy.getOutstanding());
+        balancer.release(busy, 200, MILLI);
+        assertEquals(0, busy.getOutstanding());
+    }
+
+    /**
+     * A node is ejected after consecutive failures, for a while, and at most half of the nodes are ejected.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void failureEjectionTest() throws InterruptedException {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2, NODE_3);
+        balancer.setConsecutiveFailures(2);
+        balancer.setEjectionDuration(100, TimeUnit.MILLISECONDS);
+        Node first = balancer.getNodes().get(0);
+        Node second = balancer.getNodes().get(1);
+
+        balancer.release(first, 200, MILLI);
+        balancer.release(first, 0, MILLI);
+        assertFalse(first.isEjected());
+        balancer.release(first, 503, MILLI);
+        assertTrue(first.isEjected());
+        for (int i = 0; i < 10; i++) {
+            Node node = balancer.choose("/terms", null);
+            assertTrue(node != first);
+            balancer.release(node, 200, MILLI);
+        }
+        // a second node would eject more than half of the pool.
+        balancer.release(second, 500, MILLI);
+        balancer.release(second, 500, MILLI);
+        assertFalse(second.isEjected());
+
+        Thread.sleep(150);
+        assertFalse(first.isEjected());
+    }
+
+    /**
+     * The ejections last longer up to the maximum, and a node healthy for that long is forgiven one ejection.
+     *
+     * @throws InterruptedException : should never be thrown
+     */
+    @Test
+    public void ejectionBackoffTest() throws InterruptedException {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2, NODE_3);
+        balancer.setConsecutiveFailures(1);
+        balancer.setEjectionDuration(10, TimeUnit.MILLISECONDS);
+        balancer.setMaxEjectionDuration(30, TimeUnit.MILLISECONDS);
+        Node node = balancer.getNodes().get(0);
+        for (int i = 1; i <= 5; i++) {
+            balancer.release(node, 500, MILLI);
+            assertTrue(node.isEjected());
+            assertEquals(Math.min(i, 3), node.getEjections());
+            Thread.sleep(Math.min(i, 3) * 10 + 5);
+            assertFalse(node.isEjected());
+        }
+        balancer.release(node, 200, MILLI);
+        Thread.sleep(35);
+        balancer.release(node, 200, MILLI);
+        assertEquals(2, node.getEjections());
+        Thread.sleep(35);
+        balancer.release(node, 200, MILLI);
+        assertEquals(1, node.getEjections());
+        balancer.release(node, 500, MILLI);
+        assertEquals(2, node.getEjections());
+        Thread.sleep(25);
+        assertFalse(node.isEjected());
+    }
+
+    /**
+     * A node much slower than the others is ejected.
+     */
+    @Test
+    public void slowEjectionTest() {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2, NODE_3);
+        Node slow = balancer.getNodes().get(2);
+        for (int i = 0; i < 30; i++) {
+            balancer.release(balancer.getNodes().get(0), 200, 10 * MILLI);
+            balancer.release(balancer.getNodes().get(1), 200, 12 * MILLI);
+            balancer.release(slow, 200, 20 * MILLI);
+        }
+        assertFalse(slow.isEjected());
+        for (int i = 0; i < 30 && !slow.isEjected(); i++) {
+            balancer.release(slow, 200, 100 * MILLI);
+        }
+        assertTrue(slow.isEjected());
+        for (int i = 0; i < 10; i++) {
+            Node node = balancer.choose("/terms", null);
+            assertTrue(node != slow);
+            balancer.release(node, 200, 10 * MILLI);
+        }
+    }
+
+    /**
+     * The requests with the same key go to the same node, and only the keys of an ejected node move.
+     */
+    @Test
+    public void consistentHashingTest() {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2, NODE_3);
+        balancer.setStrategy(LoadBalancer.Strategy.CONSISTENT_HASHING);
+        Map<String, Node> owners = new HashMap<String, Node>();
+        Map<Node, Integer> counts = new HashMap<Node, Integer>();
+        for (int i = 0; i < 300; i++) {
+            String term = "term" + i;
+            Node node = balancer.choose("/terms?term=" + term, null);
+            balancer.release(node, 200, MILLI);
+            assertSame(node, balancer.choose("/terms?term=" + term, null));
+            balancer.release(node, 200, MILLI);
+            owners.put(term, node);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+        for (Node node : balancer.getNodes()) {
+            assertTrue(counts.get(node) > 50);
+        }
+        // the body is part of the key.
+        Set<Node> bodies = new HashSet<Node>();
+        for (int i = 0; i < 10; i++) {
+            Node node = balancer.choose("/compare", "[" + i + "]");
+            balancer.release(node, 200, MILLI);
+            bodies.add(node);
+        }
+        assertTrue(bodies.size() > 1);
+
+        Node ejected = balancer.getNodes().get(0);
+        balancer.setConsecutiveFailures(1);
+        balancer.release(ejected, 500, MILLI);
+        assertTrue(ejected.isEjected());
+        for (Map.Entry<String, Node> owner : owners.entrySet()) {
+            Node node = balancer.choose("/terms?term=" + owner.getKey(), null);
+            balancer.release(node, 200, MILLI);
+            if (owner.getValue() == ejected) {
+                assertTrue(node != ejected);
+            }
+            else {
+                assertSame(owner.getValue(), node);
+            }
+        }
+    }
+
+    /**
+     * A hot key spills over to the next node once its node has more outstanding requests than the bound.
+     */
+    @Test
+    public void boundedLoadTest() {
+        LoadBalancer balancer = new LoadBalancer(NODE_1, NODE_2, NODE_3);
+        balancer.setStrategy(LoadBalancer.Strategy.CONSISTENT_HASHING);
+        List<Node> chosen = new ArrayList<Node>();
+        for (int i = 0; i < 30; i++) {
+            chosen.add(balancer.choose("/terms?term=apple", null));
+        }
+        for (Node node : balancer.getNodes()) {
+            // at most 1.25 times the average load, rounded up.
+            assertTrue(node.getOutstanding() <= 13);
+            assertTrue(node.getOutstanding() >= 4);
+        }
+        Node owner = chosen.get(0);
+        for (Node node : balancer.getNodes()) {
+            assertTrue(owner.getOutstanding() >= node.getOutstanding());
+        }
+        for (Node node : chosen) {
+            balancer.release(node, 200, MILLI);
+        }
+    }
+}
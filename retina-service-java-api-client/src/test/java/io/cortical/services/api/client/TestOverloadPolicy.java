@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ *
+ * {@link OverloadPolicy} test class.
+ */
+public class TestOverloadPolicy {
+    /**
+     *
+     */
+    private static final String JSON = "[\"apple\"]";
+    /**
+     *
+     */
+    private HttpServer server;
+    private String basePath;
+    private String authority;
+    private ApiInvoker invoker;
+    private volatile int status = 500;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                byte[] body = JSON.getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        authority = "127.0.0.1:" + server.getAddress().getPort();
+        basePath = "http://" + authority;
+        invoker = new ApiInvoker();
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private Object call(String path) throws ApiException {
+        return invoker.invokeAPI(basePath, path, "POST", new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+    }
+
+    /**
+     * The breaker opens after the failures, rejects the calls without sending them, and closes once the probe
+     * succeeded.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void circuitBreakerTest() throws Exception {
+        OverloadPolicy policy = new OverloadPolicy() {
+            @Override
+            protected CircuitBreaker newCircuitBreaker() {
+                return new CircuitBreaker(0.5, 4, 4, 200, 1, TimeUnit.MILLISECONDS);
+            }
+        };
+        invoker.setOverloadPolicy(policy);
+        invoker.setRetryPolicy(new RetryPolicy(5, 1, 1, TimeUnit.MILLISECONDS));
+        try {
+            call("/compare");
+            fail();
+        }
+        catch (ApiException e) {
+            // the fifth attempt was rejected by the open breaker.
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(4, requests.get());
+        CircuitBreaker breaker = policy.getCircuitBreaker(authority, "/compare");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            call("/compare");
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(4, requests.get());
+        // other endpoints are not affected.
+        assertEquals(CircuitBreaker.State.CLOSED, policy.getCircuitBreaker(authority, "/text").getState());
+
+        Thread.sleep(250);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        status = 200;
+        assertEquals(JSON, call("/compare"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * A failed probe opens the breaker again.
+     */
+    @Test
+    public void failedProbeTest() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 2, 2, 10, 2, TimeUnit.MILLISECONDS);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(true);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(false);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(true);
+        // 1 failure of the last 2 calls.
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(true);
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(20);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onResult(true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * The limit grows while the latency is stable, and shrinks at most once per window on slow or dropped calls.
+     */
+    @Test
+    public void concurrencyLimiterTest() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 4, 2, 0.5);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(1000, false);
+            assertTrue(limiter.tryAcquire());
+        }
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        // a single slow call is smoothed out.
+        limiter.release(5000, false);
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        limiter.release(5000, false);
+        limiter.release(5000, false);
+        assertEquals(2, limiter.getLimit());
+        // the next decrease waits for a window of 2 calls.
+        limiter.release(1000, true);
+        assertEquals(2, limiter.getLimit());
+        limiter.release(1000, true);
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * A latency jittering between 1 and 3 times the baseline does not shrink the limit.
+     */
+    @Test
+    public void concurrencyLimiterJitterTest() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 1, 20, 2, 0.9);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            while (limiter.tryAcquire()) {
+                // fills the limit.
+            }
+            limiter.release(1000 + (long) (2000 * random.nextDouble()), false);
+        }
+        assertTrue("limit: " + limiter.getLimit(), limiter.getLimit() >= 18);
+    }
+
+    /**
+     * A call over the concurrency limit is rejected without being sent.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void limitReachedTest() throws ApiException {
+        OverloadPolicy policy = new OverloadPolicy() {
+            @Override
+            protected ConcurrencyLimiter newConcurrencyLimiter() {
+                return new ConcurrencyLimiter(1, 1, 1, 2, 0.5);
+            }
+        };
+        invoker.setOverloadPolicy(policy);
+        status = 200;
+        OverloadPolicy.Guard guard = policy.acquire(authority, "/terms");
+        try {
+            call("/terms");
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(0, requests.get());
+        guard.release(200, 1000);
+        assertEquals(JSON, call("/terms"));
+        assertEquals(1, requests.get());
+        assertEquals(0, policy.getConcurrencyLimiter(authority, "/terms").getInFlight());
+    }
+}
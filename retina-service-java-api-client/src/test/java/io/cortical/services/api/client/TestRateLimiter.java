@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link RateLimiter} test class.
+ */
+public class TestRateLimiter {
+    /**
+     *
+     */
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The burst is let through at once, the following requests are spaced by the rate.
+     */
+    @Test
+    public void requestRateTest() {
+        RateLimiter limiter = new RateLimiter(10, 0, 0.5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.reserve(100));
+        }
+        long first = limiter.reserve(100);
+        long second = limiter.reserve(100);
+        assertTrue(first > 0 && first <= SECOND / 10);
+        // the reservations are served in their order of arrival.
+        assertTrue(second - first > SECOND / 10 - SECOND / 100);
+    }
+
+    /**
+     * A payload larger than the burst waits until its bytes were refilled, and delays the following requests.
+     */
+    @Test
+    public void byteRateTest() {
+        RateLimiter limiter = new RateLimiter(1000, 1000, 1);
+        assertEquals(0, limiter.reserve(500));
+        long delay = limiter.reserve(2500);
+        assertTrue(delay > SECOND + SECOND / 2 && delay <= 2 * SECOND);
+        long next = limiter.reserve(100);
+        assertTrue(next - delay > SECOND / 20);
+    }
+
+    /**
+     * The non blocking acquire reserves nothing if the request would wait too long.
+     */
+    @Test
+    public void tryAcquireTest() {
+        RateLimiter limiter = new RateLimiter(1, 0, 1);
+        assertEquals(0, limiter.tryAcquire(0, 0, TimeUnit.SECONDS));
+        assertEquals(-1, limiter.tryAcquire(0, 100, TimeUnit.MILLISECONDS));
+        long delay = limiter.tryAcquire(0, 2, TimeUnit.SECONDS);
+        assertTrue(delay > SECOND / 2 && delay <= SECOND);
+        assertEquals(-1, limiter.tryAcquire(0, 1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A scheduled call runs once its tokens are refilled, and its first request does not wait for them again.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void scheduleTest() throws Exception {
+        final RateLimiter limiter = new RateLimiter(10, 0, 0.1);
+        assertEquals(0, limiter.reserve(0));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final long start = System.nanoTime();
+            long[] times = limiter.schedule(new Callable<long[]>() {
+                @Override
+                public long[] call() throws InterruptedException {
+                    long started = System.nanoTime();
+                    limiter.acquire(0);
+                    return new long[] { started - start, System.nanoTime() - started };
+                }
+            }, 0, scheduler).get();
+            assertTrue(times[0] > SECOND / 20);
+            assertTrue(times[1] < SECOND / 20);
+            // the tokens of the call were consumed once.
+            long next = limiter.reserve(0);
+            assertTrue(next > SECOND / 20 && next <= SECOND / 10);
+        }
+        finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The payload bytes of a scheduled call beyond those reserved are charged to the following requests.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void chargeTest() throws Exception {
+        final RateLimiter limiter = new RateLimiter(1000, 1000, 1);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            limiter.schedule(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    limiter.acquire(1500);
+                    return null;
+                }
+            }, 500, scheduler).get();
+            long delay = limiter.reserve(0);
+            assertTrue(delay > SECOND * 4 / 10 && delay <= SECOND / 2);
+        }
+        finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.cortical.services.api.client.metrics.InMemoryMetricsRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ *
+ * {@link RetryPolicy} test class.
+ */
+public class TestRetryPolicy {
+    /**
+     *
+     */
+    private static final String JSON = "[\"apple\"]";
+    /**
+     *
+     */
+    private HttpServer server;
+    private String basePath;
+    private ApiInvoker invoker;
+    private InMemoryMetricsRegistry metrics;
+    /**
+     * The statuses and Retry-After headers of the next responses, 200 once empty.
+     */
+    private final Queue<String[]> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String[] failure = failures.poll();
+                byte[] body = (failure == null ? JSON : "\"failure\"").getBytes(Charset.forName("UTF-8"));
+                if (failure != null && failure.length > 1) {
+                    exchange.getResponseHeaders().add("Retry-After", failure[1]);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(failure == null ? 200 : Integer.parseInt(failure[0]), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        basePath = "http://127.0.0.1:" + server.getAddress().getPort();
+        invoker = new ApiInvoker();
+        metrics = new InMemoryMetricsRegistry();
+        invoker.setMetricsRegistry(metrics);
+        invoker.setRetryPolicy(new RetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private Object call(String method, String path) throws ApiException {
+        return invoker.invokeAPI(basePath, path, method, new HashMap<String, String>(), null,
+                new HashMap<String, String>(), "application/json");
+    }
+
+    /**
+     * A transient failure of an idempotent call is retried.
+     *
+     * @throws ApiException : should never be thrown
+     */
+    @Test
+    public void transientFailureTest() throws ApiException {
+        failures.add(new String[] { "503" });
+        failures.add(new String[] { "429", "0" });
+
+        assertEquals(JSON, call("POST", "/compare/bulk"));
+        assertEquals(3, requests.get());
+        assertEquals(3, metrics.getEndpointMetrics("POST", "/compare/bulk").getRequestCount());
+    }
+
+    /**
+     * The calls fail once the attempts are exhausted, and are not retried on client errors or when not idempotent.
+     */
+    @Test
+    public void notRetriedTest() {
+        for (int i = 0; i < 5; i++) {
+            failures.add(new String[] { "503" });
+        }
+        assertFailure("GET", "/terms", 503);
+        assertEquals(3, requests.getAndSet(0));
+
+        failures.clear();
+        failures.add(new String[] { "400" });
+        assertFailure("GET", "/terms", 400);
+        assertEquals(1, requests.getAndSet(0));
+
+        failures.add(new String[] { "503" });
+        assertFailure("PUT", "/fingerprints/update", 503);
+        assertEquals(1, requests.getAndSet(0));
+
+        failures.add(new String[] { "503", "3600" });
+        assertFailure("GET", "/terms", 503);
+        assertEquals(1, requests.getAndSet(0));
+    }
+
+    /**
+     * An exhausted budget stops the retries.
+     */
+    @Test
+    public void budgetTest() {
+        RetryPolicy policy = new RetryPolicy(5, 0, 0, TimeUnit.MILLISECONDS);
+        policy.setBudget(new RetryBudget(0, 0));
+        invoker.setRetryPolicy(policy);
+        failures.add(new String[] { "503" });
+        assertFailure("GET", "/terms", 503);
+        assertEquals(1, requests.get());
+
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        assertFalse(budget.tryRetry());
+        budget.requestStarted();
+        budget.requestStarted();
+        assertEquals(1, budget.getAvailableRetries());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    /**
+     * The backoff grows exponentially up to its cap and honours Retry-After.
+     */
+    @Test
+    public void backoffTest() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 400, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoffNanos(1, null) <= TimeUnit.MILLISECONDS.toNanos(100));
+            assertTrue(policy.backoffNanos(3, null) <= TimeUnit.MILLISECONDS.toNanos(400));
+            assertTrue(policy.backoffNanos(9, null) <= TimeUnit.MILLISECONDS.toNanos(400));
+        }
+        assertEquals(-1, policy.backoffNanos(10, null));
+        assertTrue(policy.backoffNanos(1, "2") >= TimeUnit.SECONDS.toNanos(2));
+        assertEquals(-1, policy.backoffNanos(1, "60"));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertTrue(RetryPolicy.parseRetryAfter("Fri, 31 Dec 9999 23:59:59 GMT") > 0);
+
+        assertTrue(policy.isIdempotent("GET", "/terms"));
+        assertTrue(policy.isIdempotent("POST", "/expressions/similar_terms/bulk"));
+        assertFalse(policy.isIdempotent("POST", "/compares"));
+        assertFalse(policy.isIdempotent("DELETE", "/fingerprints/delete"));
+    }
+
+    /**
+     * An I/O error is reported as an {@link ApiException} with status 0 once the attempts are exhausted.
+     */
+    @Test
+    public void ioErrorTest() {
+        server.stop(0);
+        assertFailure("GET", "/terms", 0);
+        assertEquals(3, metrics.getEndpointMetrics("GET", "/terms").getRequestCount());
+    }
+
+    private void assertFailure(String method, String path, int status) {
+        try {
+            call(method, path);
+            fail();
+        }
+        catch (ApiException e) {
+            assertEquals(status, e.getCode());
+        }
+    }
+}
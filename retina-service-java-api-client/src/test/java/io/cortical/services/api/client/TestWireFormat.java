@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client;
+
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.api.TermsApi;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link WireFormat} test class.
+ */
+public class TestWireFormat {
+    /**
+     *
+     */
+    private static final String TERMS_JSON = "[{\"term\":\"apple\",\"df\":0.01,\"score\":1.0,\"pos_types\":[\"NOUN\"],"
+            + "\"fingerprint\":{\"positions\":[1,5,300,16383]}}]";
+    private static final int[] POSITIONS = {1, 5, 300, 16383};
+    /**
+     *
+     */
+    private MockWebServer server;
+    private ApiInvoker invoker;
+    private TermsApi api;
+    private volatile boolean smileSupported;
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        final WireFormat smile = WireFormat.smile();
+        final byte[] termsSmile = smile.getMapper().writeValueAsBytes(
+                JsonUtil.getJsonMapper().readTree(TERMS_JSON));
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String accept = request.getHeader("Accept");
+                if (smileSupported && accept != null && accept.contains(WireFormat.SMILE_MEDIA_TYPE)) {
+                    return new MockResponse().setHeader("Content-Type", WireFormat.SMILE_MEDIA_TYPE)
+                            .setBody(new Buffer().write(termsSmile));
+                }
+                return new MockResponse().setHeader("Content-Type", "application/json").setBody(TERMS_JSON);
+            }
+        });
+        server.start();
+        invoker = new ApiInvoker();
+        invoker.setWireFormats(smile);
+        api = new TermsApi("key", invoker);
+        api.setBasePath(server.url("/rest").toString());
+    }
+
+    /**
+     * cleanup.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @After
+    public void after() throws IOException {
+        server.shutdown();
+    }
+
+    private void assertTerms(List<Term> terms) {
+        assertEquals(1, terms.size());
+        assertEquals("apple", terms.get(0).getTerm());
+        assertArrayEquals(POSITIONS, terms.get(0).getFingerprint().getPositions());
+    }
+
+    /**
+     * The binary format is preferred and decoded.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void smileTest() throws Exception {
+        smileSupported = true;
+        Object response = invoker.invokeAPI(server.url("/rest").toString(), "/terms", "GET",
+                new HashMap<String, String>(), null, new HashMap<String, String>(),
+                "application/json");
+        assertTrue(response instanceof EncodedEntity);
+        assertTerms(api.getTerm("apple", true, "en_associative", 0, 10));
+        String accept = server.takeRequest().getHeader("Accept");
+        assertTrue(accept, accept.startsWith(WireFormat.SMILE_MEDIA_TYPE));
+        assertTrue(accept, accept.contains("application/json;q=0.9"));
+    }
+
+    /**
+     * A server producing only JSON is still understood.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void jsonFallbackTest() throws Exception {
+        smileSupported = false;
+        assertTerms(api.getTerm("apple", true, "en_associative", 0, 10));
+        invoker.setWireFormats();
+        assertTerms(api.getTerm("apple", true, "en_associative", 0, 10));
+        server.takeRequest();
+        assertFalse(server.takeRequest().getHeader("Accept").contains(WireFormat.SMILE_MEDIA_TYPE));
+    }
+
+    /**
+     * The content types are matched without their parameters.
+     */
+    @Test
+    public void matchesTest() {
+        WireFormat smile = WireFormat.smile();
+        assertTrue(smile.matches("application/x-jackson-smile"));
+        assertTrue(smile.matches("Application/X-Jackson-Smile; charset=binary"));
+        assertFalse(smile.matches("application/json"));
+        assertFalse(smile.matches(null));
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.api.client.metrics;
+
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link InMemoryMetricsRegistry} test class.
+ */
+public class TestInMemoryMetricsRegistry {
+    /**
+     *
+     */
+    private static final String ENDPOINT = "/terms";
+    /**
+     *
+     */
+    private InMemoryMetricsRegistry registry;
+
+    /**
+     * initialization.
+     */
+    @Before
+    public void before() {
+        registry = new InMemoryMetricsRegistry();
+    }
+
+    /**
+     * The percentiles are reported with a relative error below 1/{@value Histogram#SUB_BUCKET_COUNT}.
+     */
+    @Test
+    public void histogramPercentilesTest() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+        assertWithin(50000, histogram.getValueAtPercentile(50));
+        assertWithin(99000, histogram.getValueAtPercentile(99));
+        assertWithin(99900, histogram.getValueAtPercentile(99.9));
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Small values are recorded exactly.
+     */
+    @Test
+    public void histogramSmallValuesTest() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(7);
+        assertEquals(0, histogram.getValueAtPercentile(25));
+        assertEquals(3, histogram.getValueAtPercentile(50));
+        assertEquals(7, histogram.getValueAtPercentile(100));
+        assertEquals(0, new Histogram().getValueAtPercentile(99));
+    }
+
+    /**
+     * The requests are counted per endpoint and status.
+     */
+    @Test
+    public void endpointCountersTest() {
+        registry.requestStarted("GET", ENDPOINT);
+        registry.requestStarted("GET", ENDPOINT);
+        registry.requestStarted("POST", ENDPOINT);
+        registry.requestCompleted("GET", ENDPOINT, 200, 2000000, 0, 120);
+        registry.requestCompleted("GET", ENDPOINT, 500, 1000000, 0, 30);
+
+        EndpointMetrics get = registry.getEndpointMetrics("GET", ENDPOINT);
+        assertEquals(0, get.getInFlight());
+        assertEquals(2, get.getRequestCount());
+        assertEquals(1, get.getErrorCount());
+        assertEquals(150, get.getResponseBytes());
+        assertWithin(2000, get.getLatencyMicros().getMax());
+        Map<Integer, Long> statusCounts = get.getStatusCounts();
+        assertEquals(Long.valueOf(1), statusCounts.get(200));
+        assertEquals(Long.valueOf(1), statusCounts.get(500));
+
+        EndpointMetrics post = registry.getEndpointMetrics("POST", ENDPOINT);
+        assertEquals(1, post.getInFlight());
+        assertEquals(0, post.getRequestCount());
+        assertNull(registry.getEndpointMetrics("DELETE", ENDPOINT));
+        assertEquals(2, registry.getEndpointMetrics().size());
+    }
+
+    /**
+     * Failed connections and unknown response sizes are reported.
+     */
+    @Test
+    public void connectionFailureTest() {
+        registry.requestStarted("POST", ENDPOINT);
+        registry.requestCompleted("POST", ENDPOINT, 0, 1000, 42, -1);
+
+        EndpointMetrics post = registry.getEndpointMetrics("POST", ENDPOINT);
+        assertEquals(1, post.getErrorCount());
+        assertEquals(42, post.getRequestBytes());
+        assertEquals(0, post.getResponseBytes());
+        assertEquals(0, post.getResponseSizes().getCount());
+        assertTrue(registry.toString().contains("POST " + ENDPOINT));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / Histogram.SUB_BUCKET_COUNT + 1);
+    }
+}
@@ -0,0 +1,453 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.example;
+
+import com.sun.jersey.api.client.filter.LoggingFilter;
+import io.cortical.rest.model.Model;
+import io.cortical.rest.model.Text;
+import io.cortical.services.Compare.CompareModels;
+import io.cortical.services.PosType;
+import io.cortical.services.RetinaApiUtils;
+import io.cortical.services.RetinaApis;
+import io.cortical.services.api.client.ApiInvoker;
+import io.cortical.services.api.client.metrics.EndpointMetrics;
+import io.cortical.services.api.client.metrics.Histogram;
+import io.cortical.services.api.client.metrics.InMemoryMetricsRegistry;
+import io.cortical.services.stub.StubRetinaServer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.logging.Log;
+import static io.cortical.rest.model.ExpressionFactory.and;
+import static io.cortical.rest.model.ExpressionFactory.or;
+import static io.cortical.rest.model.ExpressionFactory.sub;
+import static io.cortical.rest.model.ExpressionFactory.term;
+import static io.cortical.rest.model.ExpressionFactory.text;
+import static org.apache.commons.logging.LogFactory.getLog;
+
+
+/**
+ *
+ * Drives a mixed workload against a Retina server and reports the throughput, the latency percentiles and the error
+ * rates per operation and per endpoint.
+ * <p>
+ * Without <code>--url</code> an embedded {@link StubRetinaServer} is started, so the client can be load tested
+ * offline. Options, all optional:
+ * </p>
+ * <ul>
+ * <li><code>--url=http[s]://host[:port]</code> : the Retina server, the base path <code>/rest</code> is appended; the
+ * port is at most 32767.</li>
+ * <li><code>--api-key=key</code>, <code>--retina=en_associative</code></li>
+ * <li><code>--concurrency=8</code> : the count of concurrent callers.</li>
+ * <li><code>--rate=0</code> : the target count of operations per second, 0 to let each caller run in a closed loop.
+ * With a rate, latencies are measured from the intended start of each operation so queueing delays are not
+ * hidden.</li>
+ * <li><code>--duration=30</code>, <code>--warmup=5</code> : the measured and warm-up durations in seconds.</li>
+ * <li><code>--mix=compare:3,bulk_text:2,expression:2,similar_terms:2,image:1</code> : the operation weights.</li>
+ * <li><code>--stub-latency=0</code>, <code>--stub-errors=0</code> : the latency in milliseconds and the error rate
+ * injected by the embedded stub server.</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    /**
+     *
+     */
+    private static final Log LOG = getLog(LoadGenerator.class);
+    private static final String DEFAULT_MIX = "compare:3,bulk_text:2,expression:2,similar_terms:2,image:1";
+    private static final int BULK_SIZE = 10;
+    private static final String[] TERMS = { "apple", "banana", "jaguar", "car", "painter", "vienna", "tiger",
+        "fruit", "engine", "museum" };
+    private static final String[] TEXTS = {
+        "Gustav Klimt was an Austrian symbolist painter and one of the most prominent members of the Vienna "
+                + "Secession movement.",
+        "Shellshock can serve as a highway for worms and malware to hit your Unix, Linux, and Mac servers.",
+        "Toll IPEC has been an industry leader in environmental sustainability through its purchase of compressed "
+                + "natural gas powered trucks.",
+        "The jaguar is a large cat species and the only living member of the genus Panthera native to the Americas." };
+    /**
+     * Keeps the silenced logger of the request/response dump referenced.
+     */
+    private static final Logger REQUEST_LOGGER = Logger.getLogger(LoggingFilter.class.getName());
+
+    /**
+     *
+     * The operations of the workload.
+     */
+    enum Operation {
+        COMPARE {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                apis.compareApi().compare(term(pick(TERMS, random)), text(pick(TEXTS, random)));
+            }
+        },
+        BULK_TEXT {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                Text[] texts = new Text[BULK_SIZE];
+                for (int i = 0; i < texts.length; i++) {
+                    texts[i] = text(pick(TEXTS, random) + " " + i);
+                }
+                apis.textApi().getFingerprintBulk(null, texts);
+            }
+        },
+        EXPRESSION {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                Model expression = sub(or(term(pick(TERMS, random)), term(pick(TERMS, random))),
+                        and(term(pick(TERMS, random)), text(pick(TEXTS, random))));
+                apis.expressionsApi().resolve(expression);
+            }
+        },
+        SIMILAR_TERMS {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                apis.termsApi().getSimilarTerms(pick(TERMS, random), null, PosType.NOUN);
+            }
+        },
+        IMAGE {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                apis.imageApi().getImage(term(pick(TERMS, random))).close();
+            }
+        },
+        COMPARE_BULK {
+            @Override
+            void run(RetinaApis apis, ThreadLocalRandom random) throws Exception {
+                CompareModels[] pairs = new CompareModels[BULK_SIZE];
+                for (int i = 0; i < pairs.length; i++) {
+                    pairs[i] = new CompareModels(term(pick(TERMS, random)), text(pick(TEXTS, random)));
+                }
+                apis.compareApi().compareBulk(pairs);
+            }
+        };
+
+        abstract void run(RetinaApis apis, ThreadLocalRandom random) throws Exception;
+
+        private static String pick(String[] values, ThreadLocalRandom random) {
+            return values[random.nextInt(values.length)];
+        }
+    }
+
+    /**
+     *
+     * The end-to-end latencies and failures of an operation.
+     */
+    static final class OperationStats {
+        private final Histogram latencyMicros = new Histogram();
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    /**
+     *
+     */
+    private final RetinaApis apis;
+    private final int concurrency;
+    private final double rate;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private volatile Map<Operation, OperationStats> stats;
+
+    /**
+     * Creates a new instance of {@link LoadGenerator}.
+     *
+     * @param apis : the APIs to call.
+     * @param concurrency : the count of concurrent callers.
+     * @param rate : the target count of operations per second, 0 for closed-loop callers.
+     * @param mix : the operation weights.
+     */
+    LoadGenerator(RetinaApis apis, int concurrency, double rate, Map<Operation, Integer> mix) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        if (rate < 0) {
+            throw new IllegalArgumentException("The rate must not be negative.");
+        }
+        this.apis = apis;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        List<Operation> weighted = new ArrayList<Operation>();
+        List<Integer> cumulative = new ArrayList<Integer>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                weighted.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The mix must contain at least one operation.");
+        }
+        this.operations = weighted.toArray(new Operation[weighted.size()]);
+        this.cumulativeWeights = new int[cumulative.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] = cumulative.get(i);
+        }
+        resetStats();
+    }
+
+    /**
+     * Runs the workload.
+     *
+     * @param duration : the duration.
+     * @param unit : the unit of the duration.
+     * @throws InterruptedException : if interrupted while waiting for the callers.
+     */
+    public void run(long duration, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(duration);
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+        try {
+            if (rate > 0) {
+                dispatchAtRate(callers, deadline);
+            }
+            else {
+                for (int i = 0; i < concurrency; i++) {
+                    callers.execute(new ClosedLoopCaller(deadline));
+                }
+            }
+        }
+        finally {
+            callers.shutdown();
+            callers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Starts the operations at fixed intervals, whether or not the previous ones completed. The latency of an
+     * operation is measured from its intended start, including the time it waited for a free caller.
+     */
+    private void dispatchAtRate(ExecutorService callers, long deadline) throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long intendedStart = System.nanoTime();
+        while (intendedStart < deadline) {
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            final long start = intendedStart;
+            callers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    call(start);
+                }
+            });
+            intendedStart += interval;
+        }
+    }
+
+    private void call(long start) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = nextOperation(random);
+        OperationStats operationStats = stats.get(operation);
+        try {
+            operation.run(apis, random);
+        }
+        catch (Exception e) {
+            operationStats.errors.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(operation + " failed", e);
+            }
+        }
+        operationStats.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    private Operation nextOperation(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0;; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+    }
+
+    /**
+     * Resets the operation statistics, e.g. after a warm-up.
+     */
+    public void resetStats() {
+        Map<Operation, OperationStats> newStats = new EnumMap<Operation, OperationStats>(Operation.class);
+        for (Operation operation : operations) {
+            newStats.put(operation, new OperationStats());
+        }
+        stats = newStats;
+    }
+
+    /**
+     * Formats the operation statistics.
+     *
+     * @param seconds : the measured duration in seconds.
+     * @return the report.
+     */
+    public String report(double seconds) {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latencyMicros;
+            report.append(String.format(Locale.ENGLISH, "%-14s %9.1f ops/s  errors: %6.2f%%  latency (us) p50: %8d"
+                    + "  p99: %8d  p99.9: %8d  max: %8d%n", entry.getKey().name().toLowerCase(Locale.ENGLISH),
+                    latency.getCount() / seconds, errorRate(entry.getValue().errors.get(), latency.getCount()),
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMax()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Formats the HTTP statistics of the endpoints.
+     *
+     * @param metrics : the endpoint metrics.
+     * @param seconds : the measured duration in seconds.
+     * @return the report.
+     */
+    public static String report(InMemoryMetricsRegistry metrics, double seconds) {
+        StringBuilder report = new StringBuilder();
+        for (EndpointMetrics endpoint : metrics.getEndpointMetrics()) {
+            Histogram latency = endpoint.getLatencyMicros();
+            report.append(String.format(Locale.ENGLISH, "%-6s %-24s %9.1f req/s  errors: %6.2f%%  latency (us) p50: "
+                    + "%8d  p99: %8d  p99.9: %8d  max: %8d%n", endpoint.getMethod(), endpoint.getEndpoint(),
+                    endpoint.getRequestCount() / seconds, errorRate(endpoint.getErrorCount(),
+                            endpoint.getRequestCount()), latency.getValueAtPercentile(50),
+                    latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9), latency.getMax()));
+        }
+        return report.toString();
+    }
+
+    private static double errorRate(long errors, long count) {
+        return count == 0 ? 0 : errors * 100.0 / count;
+    }
+
+    /**
+     * Parses an operation mix like <code>compare:3,image:1</code>.
+     *
+     * @param mix : the mix.
+     * @return the weights per operation.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<Operation, Integer>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ENGLISH)), Integer.valueOf(parts[1]
+                    .trim()));
+        }
+        return weights;
+    }
+
+    /**
+     *
+     * Start point.
+     * @param args : the options, see the class description.
+     * @throws Exception : if the load test cannot be run.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int concurrency = Integer.parseInt(option(options, "concurrency", "8"));
+        double rate = Double.parseDouble(option(options, "rate", "0"));
+        long duration = Long.parseLong(option(options, "duration", "30"));
+        long warmup = Long.parseLong(option(options, "warmup", "5"));
+        String retina = option(options, "retina", StubRetinaServer.DEFAULT_RETINA);
+        String apiKey = option(options, "api-key", "load-test");
+
+        // the per request dump of the client would dominate the measurements.
+        REQUEST_LOGGER.setLevel(Level.WARNING);
+        StubRetinaServer stub = null;
+        String host;
+        Short port;
+        if (options.containsKey("url")) {
+            URI url = URI.create(options.get("url"));
+            if (url.getHost() == null) {
+                throw new IllegalArgumentException("No host in the url: " + url);
+            }
+            host = "https".equalsIgnoreCase(url.getScheme()) ? "https://" + url.getHost() : url.getHost();
+            if (url.getPort() < 0) {
+                // the default port of the scheme.
+                port = null;
+            }
+            else if (url.getPort() == 0 || url.getPort() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("The port must be in the range 1.." + Short.MAX_VALUE + ": "
+                        + url.getPort());
+            }
+            else {
+                port = (short) url.getPort();
+            }
+        }
+        else {
+            stub = new StubRetinaServer();
+            stub.setLatency(Long.parseLong(option(options, "stub-latency", "0")), 0, TimeUnit.MILLISECONDS);
+            stub.setErrors(Double.parseDouble(option(options, "stub-errors", "0")), 503);
+            stub.start();
+            host = stub.getIp();
+            port = (short) stub.getPort();
+        }
+        try {
+            RetinaApis apis = new RetinaApis(retina, host, port, apiKey);
+            LoadGenerator generator = new LoadGenerator(apis, concurrency, rate, parseMix(option(options, "mix",
+                    DEFAULT_MIX)));
+            LOG.info("Load test of " + RetinaApiUtils.generateBasepath(host, port) + " with " + concurrency
+                    + " callers" + (rate > 0 ? " at " + rate + " ops/s" : "") + ", warm-up " + warmup + "s, duration " + duration
+                    + "s");
+            generator.run(warmup, TimeUnit.SECONDS);
+
+            InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+            ApiInvoker.getInstance().setMetricsRegistry(metrics);
+            generator.resetStats();
+            long start = System.nanoTime();
+            generator.run(duration, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+            LOG.info("Operations:\n" + generator.report(seconds));
+            LOG.info("Endpoints:\n" + report(metrics, seconds));
+        }
+        finally {
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     *
+     * Calls operations back to back until the deadline.
+     */
+    private final class ClosedLoopCaller implements Runnable {
+        private final long deadline;
+
+        ClosedLoopCaller(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                call(System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+/**
+ *
+ * The flight recorder event of a single Retina API call. The event duration covers the whole call, from the
+ * serialization of the request to the deserialization of the response.
+ */
+@Name(ApiCallEvent.NAME)
+@Label("Retina API Call")
+@Category({ "cortical.io", "Retina API" })
+@Description("A call of the Retina REST API.")
+public class ApiCallEvent extends Event {
+    /**
+     *
+     */
+    public static final String NAME = "io.cortical.RetinaApiCall";
+
+    @Label("Endpoint")
+    @Description("The REST endpoint path.")
+    String endpoint;
+
+    @Label("Method")
+    String method;
+
+    @Label("Retina")
+    String retinaName;
+
+    @Label("Status")
+    @Description("The HTTP status code, 0 if no response was received.")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @Description("The size of the response body, -1 if unknown.")
+    @DataAmount
+    long responseBytes;
+
+    @Label("Serialization Time")
+    @Timespan
+    long serializationTime;
+
+    @Label("Network Time")
+    @Timespan
+    long networkTime;
+
+    @Label("Deserialization Time")
+    @Timespan
+    long deserializationTime;
+}
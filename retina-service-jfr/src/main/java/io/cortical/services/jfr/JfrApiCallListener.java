@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.jfr;
+
+import io.cortical.services.api.client.ApiCallListener;
+import io.cortical.services.api.client.ApiCallTrace;
+import io.cortical.services.api.client.ApiInvoker;
+
+
+/**
+ *
+ * Emits an {@link ApiCallEvent} for every call of an {@link ApiInvoker}.
+ * <p>
+ * While the event is not enabled in a running recording, a call costs a single event allocation.
+ * </p>
+ */
+public class JfrApiCallListener implements ApiCallListener {
+
+    /**
+     * Registers a new listener with the shared {@link ApiInvoker}.
+     *
+     * @return the registered listener.
+     */
+    public static JfrApiCallListener install() {
+        return install(ApiInvoker.getInstance());
+    }
+
+    /**
+     * Registers a new listener with an {@link ApiInvoker}.
+     *
+     * @param invoker : the invoker whose calls are recorded.
+     * @return the registered listener.
+     */
+    public static JfrApiCallListener install(ApiInvoker invoker) {
+        JfrApiCallListener listener = new JfrApiCallListener();
+        invoker.setCallListener(listener);
+        return listener;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void callStarted(ApiCallTrace trace) {
+        ApiCallEvent event = new ApiCallEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            trace.setAttachment(event);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void callCompleted(ApiCallTrace trace) {
+        if (!(trace.getAttachment() instanceof ApiCallEvent)) {
+            return;
+        }
+        ApiCallEvent event = (ApiCallEvent) trace.getAttachment();
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = trace.getPath();
+            event.method = trace.getMethod();
+            event.retinaName = trace.getRetinaName();
+            event.status = trace.getStatus();
+            event.requestBytes = trace.getRequestBytes();
+            event.responseBytes = trace.getResponseBytes();
+            event.serializationTime = trace.getSerializationNanos();
+            event.networkTime = trace.getNetworkNanos();
+            event.deserializationTime = trace.getDeserializationNanos();
+            event.commit();
+        }
+    }
+}
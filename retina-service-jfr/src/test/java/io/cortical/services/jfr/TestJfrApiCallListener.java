@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.jfr;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.cortical.rest.model.Term;
+import io.cortical.services.api.client.ApiException;
+import io.cortical.services.api.client.ApiInvoker;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link JfrApiCallListener} test class.
+ */
+public class TestJfrApiCallListener {
+    /**
+     *
+     */
+    private static final String TERMS_JSON = "[{\"term\":\"apple\",\"df\":0.0013,\"score\":0.0,\"pos_types\":[\"NOUN\"]}]";
+    /**
+     *
+     */
+    private HttpServer server;
+    private String basePath;
+    private ApiInvoker invoker;
+
+    /**
+     * initialization.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/terms", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] bytes = TERMS_JSON.getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+        basePath = "http://127.0.0.1:" + server.getAddress().getPort();
+        invoker = new ApiInvoker();
+        JfrApiCallListener.install(invoker);
+    }
+
+    /**
+     * cleanup.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * A recorded call emits an event carrying the timings.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void recordedCallTest() throws Exception {
+        File file = File.createTempFile("retina-api", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(ApiCallEvent.NAME).withThreshold(Duration.ZERO);
+                recording.start();
+                callTerms("en_associative");
+                recording.stop();
+                recording.dump(file.toPath());
+            }
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                if (ApiCallEvent.NAME.equals(event.getEventType().getName())) {
+                    events.add(event);
+                }
+            }
+
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("/terms", event.getString("endpoint"));
+            assertEquals("GET", event.getString("method"));
+            assertEquals("en_associative", event.getString("retinaName"));
+            assertEquals(200, event.getInt("status"));
+            assertEquals(TERMS_JSON.length(), event.getLong("responseBytes"));
+            assertTrue(event.getDuration("networkTime").toNanos() > 0);
+            assertTrue(event.getDuration("deserializationTime").toNanos() > 0);
+            assertTrue(event.getDuration().compareTo(event.getDuration("networkTime")) >= 0);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private void callTerms(String retinaName) throws ApiException {
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("retina_name", retinaName);
+        Object response = invoker.invokeAPI(basePath, "/terms", "GET", queryParams, null,
+                new HashMap<String, String>(), "application/json");
+        @SuppressWarnings("unchecked")
+        List<Term> terms = (List<Term>) ApiInvoker.deserialize((String) response, "List", Term.class, null);
+        assertEquals("apple", terms.get(0).getTerm());
+    }
+}
@@ -26,6 +26,7 @@ public abstract class RestServiceConstants {
     public static final String NULL_MODEL_MSG = "The model cannot be null or empty.";
     public static final String NULL_API_KEY_MSG = "The apiKey cannot be null.";
     public static final String NULL_BASE_PATH_MSG = "The base path cannot be null.";
+    public static final String NULL_API_INVOKER_MSG = "The apiInvoker cannot be null.";
     public static final String NULL_SERVER_IP_MSG = "The retina server ip cannot be null.";
     public static final String NULL_TERM_MSG = "The term cannot be null.";
     public static final String NULL_TEXT_MSG = "The text cannot be null.";
@@ -0,0 +1,549 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Compressed bitmap of the positions of a {@link Fingerprint}, for fast set operations on the client.
+ * <p>
+ * The <code>rows * columns</code> positions of a retina are split in chunks of 4096 positions, each stored in the
+ * smallest of three containers: a sorted array of the set positions (sparse chunks), a bitmap (dense chunks), or a
+ * list of runs (contiguous ranges, e.g. regions of a picture). Empty chunks take no space. The operations combine the
+ * chunks pairwise and pick the container of each result chunk again.
+ * </p>
+ * <p>
+ * The instances are immutable; the operations return new instances.
+ * </p>
+ */
+public final class FingerprintBitmap {
+    /**
+     *
+     */
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int WORDS = CHUNK_SIZE / Long.SIZE;
+    /**
+     * The sizes in bytes of the containers of a chunk.
+     */
+    private static final int BITMAP_BYTES = CHUNK_SIZE / Byte.SIZE;
+    private static final int ARRAY_ENTRY_BYTES = 2;
+    private static final int RUN_BYTES = 4;
+    /**
+     *
+     */
+    private final int size;
+    private final Container[] chunks;
+    private final int cardinality;
+
+    private FingerprintBitmap(int size, Container[] chunks) {
+        this.size = size;
+        this.chunks = chunks;
+        int count = 0;
+        for (Container chunk : chunks) {
+            count += chunk == null ? 0 : chunk.cardinality();
+        }
+        this.cardinality = count;
+    }
+
+    /**
+     * Creates the bitmap of positions.
+     *
+     * @param size : the count of positions of the retina, i.e. its rows times its columns.
+     * @param positions : the positions, in any order.
+     * @return the bitmap.
+     * @throws IllegalArgumentException : if a position is out of the retina.
+     */
+    public static FingerprintBitmap of(int size, int... positions) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be positive.");
+        }
+        long[][] words = new long[(size + CHUNK_MASK) >>> CHUNK_BITS][];
+        for (int position : positions) {
+            if (position < 0 || position >= size) {
+                throw new IllegalArgumentException("Position " + position + " out of the retina of size " + size);
+            }
+            int chunk = position >>> CHUNK_BITS;
+            if (words[chunk] == null) {
+                words[chunk] = new long[WORDS];
+            }
+            words[chunk][(position & CHUNK_MASK) >>> 6] |= 1L << position;
+        }
+        Container[] chunks = new Container[words.length];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = words[i] == null ? null : Container.of(words[i]);
+        }
+        return new FingerprintBitmap(size, chunks);
+    }
+
+    /**
+     * Creates the bitmap of a fingerprint.
+     *
+     * @param fingerprint : the fingerprint.
+     * @param retina : the retina of the fingerprint.
+     * @return the bitmap.
+     * @throws IllegalArgumentException : if a position is out of the retina.
+     */
+    public static FingerprintBitmap of(Fingerprint fingerprint, Retina retina) {
+        return of(retina.getNumberOfRows() * retina.getNumberOfColumns(), fingerprint.getPositions());
+    }
+
+    /**
+     * Gets the count of positions of the retina.
+     *
+     * @return the size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the count of set positions.
+     *
+     * @return the cardinality.
+     */
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Tells whether a position is set.
+     *
+     * @param position : the position.
+     * @return <code>true</code> if the position is set.
+     */
+    public boolean contains(int position) {
+        if (position < 0 || position >= size) {
+            return false;
+        }
+        Container chunk = chunks[position >>> CHUNK_BITS];
+        return chunk != null && chunk.contains(position & CHUNK_MASK);
+    }
+
+    /**
+     * Gets the set positions.
+     *
+     * @return the sorted positions.
+     */
+    public int[] toPositions() {
+        int[] positions = new int[cardinality];
+        int count = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                count = chunks[i].positions(positions, count, i << CHUNK_BITS);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Converts the bitmap to a fingerprint, e.g. to use it in an expression.
+     *
+     * @return the fingerprint.
+     */
+    public Fingerprint toFingerprint() {
+        return new Fingerprint(toPositions());
+    }
+
+    /**
+     * Computes the positions set in both bitmaps.
+     *
+     * @param other : the other bitmap, of the same size.
+     * @return the intersection.
+     */
+    public FingerprintBitmap and(FingerprintBitmap other) {
+        return combine(other, Operation.AND);
+    }
+
+    /**
+     * Computes the positions set in either bitmap.
+     *
+     * @param other : the other bitmap, of the same size.
+     * @return the union.
+     */
+    public FingerprintBitmap or(FingerprintBitmap other) {
+        return combine(other, Operation.OR);
+    }
+
+    /**
+     * Computes the positions set in exactly one of the bitmaps.
+     *
+     * @param other : the other bitmap, of the same size.
+     * @return the symmetric difference.
+     */
+    public FingerprintBitmap xor(FingerprintBitmap other) {
+        return combine(other, Operation.XOR);
+    }
+
+    /**
+     * Computes the positions set in this bitmap and not in the other.
+     *
+     * @param other : the other bitmap, of the same size.
+     * @return the difference.
+     */
+    public FingerprintBitmap andNot(FingerprintBitmap other) {
+        return combine(other, Operation.AND_NOT);
+    }
+
+    /**
+     * Counts the positions set in both bitmaps, without creating their intersection; the overlap of two fingerprints.
+     *
+     * @param other : the other bitmap, of the same size.
+     * @return the cardinality of the intersection.
+     */
+    public int andCardinality(FingerprintBitmap other) {
+        checkSize(other);
+        int count = 0;
+        long[] left = new long[WORDS];
+        long[] right = new long[WORDS];
+        for (int i = 0; i < chunks.length; i++) {
+            Container a = chunks[i];
+            Container b = other.chunks[i];
+            if (a == null || b == null) {
+                continue;
+            }
+            if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+                Container container = array == a ? b : a;
+                for (char value : array.values) {
+                    if (container.contains(value)) {
+                        count++;
+                    }
+                }
+                continue;
+            }
+            Arrays.fill(left, 0);
+            Arrays.fill(right, 0);
+            a.fill(left);
+            b.fill(right);
+            for (int w = 0; w < WORDS; w++) {
+                count += Long.bitCount(left[w] & right[w]);
+            }
+        }
+        return count;
+    }
+
+    private void checkSize(FingerprintBitmap other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Bitmaps of different retinas: " + size + " and " + other.size
+                    + " positions.");
+        }
+    }
+
+    private FingerprintBitmap combine(FingerprintBitmap other, Operation operation) {
+        checkSize(other);
+        Container[] result = new Container[chunks.length];
+        long[] words = new long[WORDS];
+        long[] right = new long[WORDS];
+        for (int i = 0; i < chunks.length; i++) {
+            Container a = chunks[i];
+            Container b = other.chunks[i];
+            if (a == null && b == null) {
+                continue;
+            }
+            if (a == null || b == null) {
+                // the empty chunk is neutral, or absorbing for the intersections.
+                boolean keep = operation == Operation.OR || operation == Operation.XOR || b == null
+                        && operation == Operation.AND_NOT;
+                result[i] = keep ? (a == null ? b : a) : null;
+                continue;
+            }
+            if (operation == Operation.AND && (a instanceof ArrayContainer || b instanceof ArrayContainer)) {
+                ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+                result[i] = array.filter(array == a ? b : a);
+                continue;
+            }
+            Arrays.fill(words, 0);
+            Arrays.fill(right, 0);
+            a.fill(words);
+            b.fill(right);
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = operation.apply(words[w], right[w]);
+            }
+            result[i] = Container.of(words);
+        }
+        return new FingerprintBitmap(size, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FingerprintBitmap)) {
+            return false;
+        }
+        FingerprintBitmap other = (FingerprintBitmap) obj;
+        return size == other.size && cardinality == other.cardinality && andCardinality(other) == cardinality;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(toPositions());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "FingerprintBitmap[" + cardinality + "/" + size + "]";
+    }
+
+    /**
+     *
+     * The word-wise operations.
+     */
+    private enum Operation {
+        AND, OR, XOR, AND_NOT;
+
+        long apply(long left, long right) {
+            switch (this) {
+                case AND:
+                    return left & right;
+                case OR:
+                    return left | right;
+                case XOR:
+                    return left ^ right;
+                default:
+                    return left & ~right;
+            }
+        }
+    }
+
+    /**
+     *
+     * The set positions of a chunk, relative to its start.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int value);
+
+        /**
+         * Sets the bits of the positions in a chunk bitmap.
+         */
+        abstract void fill(long[] words);
+
+        /**
+         * Writes the positions, offset by the start of the chunk; returns the next index.
+         */
+        abstract int positions(int[] target, int index, int base);
+
+        /**
+         * Creates the smallest container of a chunk bitmap, <code>null</code> if it is empty.
+         */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            int runs = 0;
+            long carry = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+                // the bits set whose predecessor is not.
+                runs += Long.bitCount(word & ~(word << 1 | carry));
+                carry = word >>> 63;
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            int arrayBytes = cardinality * ARRAY_ENTRY_BYTES;
+            int runBytes = runs * RUN_BYTES;
+            if (runBytes < arrayBytes && runBytes < BITMAP_BYTES) {
+                return new RunContainer(words, runs, cardinality);
+            }
+            if (arrayBytes <= BITMAP_BYTES) {
+                return new ArrayContainer(words, cardinality);
+            }
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+
+    /**
+     *
+     * The sorted positions of a sparse chunk.
+     */
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        ArrayContainer(long[] words, int cardinality) {
+            this.values = new char[cardinality];
+            int count = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[count++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        Container filter(Container other) {
+            char[] kept = new char[values.length];
+            int count = 0;
+            for (char value : values) {
+                if (other.contains(value)) {
+                    kept[count++] = value;
+                }
+            }
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(kept, count));
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, (char) value) >= 0;
+        }
+
+        @Override
+        void fill(long[] words) {
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        @Override
+        int positions(int[] target, int index, int base) {
+            for (char value : values) {
+                target[index++] = base + value;
+            }
+            return index;
+        }
+    }
+
+    /**
+     *
+     * The bitmap of a dense chunk.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        void fill(long[] target) {
+            for (int w = 0; w < WORDS; w++) {
+                target[w] |= words[w];
+            }
+        }
+
+        @Override
+        int positions(int[] target, int index, int base) {
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    target[index++] = base + (w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     *
+     * The ranges of contiguous positions of a chunk, as sorted starts and inclusive ends.
+     */
+    private static final class RunContainer extends Container {
+        private final char[] starts;
+        private final char[] ends;
+        private final int cardinality;
+
+        RunContainer(long[] words, int runs, int cardinality) {
+            this.starts = new char[runs];
+            this.ends = new char[runs];
+            this.cardinality = cardinality;
+            int count = 0;
+            int position = 0;
+            while (count < runs) {
+                position = nextBit(words, position, true);
+                starts[count] = (char) position;
+                position = nextBit(words, position, false);
+                ends[count++] = (char) (position - 1);
+            }
+        }
+
+        /**
+         * Finds the first position from <code>from</code> whose bit is set, or clear; the chunk size if none.
+         */
+        private static int nextBit(long[] words, int from, boolean set) {
+            int w = from >>> 6;
+            if (w >= WORDS) {
+                return CHUNK_SIZE;
+            }
+            long word = (set ? words[w] : ~words[w]) & -1L << from;
+            while (word == 0) {
+                if (++w == WORDS) {
+                    return CHUNK_SIZE;
+                }
+                word = set ? words[w] : ~words[w];
+            }
+            return w << 6 | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value) {
+            int index = Arrays.binarySearch(starts, (char) value);
+            if (index >= 0) {
+                return true;
+            }
+            index = -index - 2;
+            return index >= 0 && value <= ends[index];
+        }
+
+        @Override
+        void fill(long[] words) {
+            for (int r = 0; r < starts.length; r++) {
+                int start = starts[r];
+                int end = ends[r] + 1;
+                int first = start >>> 6;
+                int last = (end - 1) >>> 6;
+                if (first == last) {
+                    words[first] |= (-1L << start) & (-1L >>> -end);
+                    continue;
+                }
+                words[first] |= -1L << start;
+                for (int w = first + 1; w < last; w++) {
+                    words[w] = -1L;
+                }
+                words[last] |= -1L >>> -end;
+            }
+        }
+
+        @Override
+        int positions(int[] target, int index, int base) {
+            for (int r = 0; r < starts.length; r++) {
+                for (int value = starts[r]; value <= ends[r]; value++) {
+                    target[index++] = base + value;
+                }
+            }
+            return index;
+        }
+    }
+}
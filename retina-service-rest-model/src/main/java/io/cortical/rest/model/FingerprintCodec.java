@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Compact binary form of the {@link Fingerprint} positions, for storage and transfer.
+ * <p>
+ * The positions are sorted and written in one of two forms, whichever is shorter:
+ * <ul>
+ * <li>sparse: the first position and the gaps between consecutive positions as varints, mostly one byte per
+ * position for the usual fingerprint densities;</li>
+ * <li>dense: a bitmap of one bit per position up to the highest one.</li>
+ * </ul>
+ * Both start with a format byte and the varint count of positions. The {@link ByteBuffer} methods read and write the
+ * buffer in place from its position, so that fingerprints can be stored in, or read from, direct and mapped buffers
+ * without intermediate copies.
+ * </p>
+ */
+public final class FingerprintCodec {
+    /**
+     *
+     */
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private FingerprintCodec() {
+    }
+
+    /**
+     * Gets the size of the encoded positions.
+     *
+     * @param positions : the positions, in any order.
+     * @return the count of bytes written by {@link #encode(int[], ByteBuffer)}.
+     */
+    public static int encodedLength(int[] positions) {
+        int[] sorted = sorted(positions);
+        return 1 + varintLength(sorted.length) + Math.min(sparseLength(sorted), denseLength(sorted));
+    }
+
+    /**
+     * Encodes positions.
+     *
+     * @param positions : the positions, in any order; the duplicates are dropped.
+     * @return the encoded positions.
+     */
+    public static byte[] encode(int[] positions) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(positions));
+        encode(positions, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes positions into a buffer, from its position which is advanced past them.
+     *
+     * @param positions : the positions, in any order; the duplicates are dropped.
+     * @param target : the buffer, with at least {@link #encodedLength(int[])} bytes remaining.
+     * @throws BufferOverflowException : if the buffer is too small.
+     */
+    public static void encode(int[] positions, ByteBuffer target) {
+        int[] sorted = sorted(positions);
+        int sparseLength = sparseLength(sorted);
+        int denseLength = denseLength(sorted);
+        if (sparseLength <= denseLength) {
+            target.put(SPARSE);
+            putVarint(target, sorted.length);
+            int previous = -1;
+            for (int position : sorted) {
+                putVarint(target, position - previous - 1);
+                previous = position;
+            }
+        }
+        else {
+            target.put(DENSE);
+            putVarint(target, sorted.length);
+            int bytes = denseBytes(sorted);
+            putVarint(target, bytes);
+            if (target.remaining() < bytes) {
+                throw new BufferOverflowException();
+            }
+            int start = target.position();
+            for (int i = 0; i < bytes; i++) {
+                target.put(start + i, (byte) 0);
+            }
+            for (int position : sorted) {
+                int index = start + (position >>> 3);
+                target.put(index, (byte) (target.get(index) | 1 << (position & 7)));
+            }
+            target.position(start + bytes);
+        }
+    }
+
+    /**
+     * Decodes positions.
+     *
+     * @param encoded : the encoded positions.
+     * @return the sorted positions.
+     * @throws IllegalArgumentException : if the bytes are not encoded positions.
+     */
+    public static int[] decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Decodes positions from a buffer, from its position which is advanced past them.
+     *
+     * @param source : the buffer.
+     * @return the sorted positions.
+     * @throws IllegalArgumentException : if the bytes are not encoded positions.
+     * @throws java.nio.BufferUnderflowException : if the buffer ends before the positions.
+     */
+    public static int[] decode(ByteBuffer source) {
+        byte format = source.get();
+        if (format != SPARSE && format != DENSE) {
+            throw new IllegalArgumentException("Unknown fingerprint format: " + format);
+        }
+        int count = getVarint(source);
+        // a position takes at least a byte, or a bit.
+        if (count > (format == SPARSE ? source.remaining() : source.remaining() * 8L)) {
+            throw new IllegalArgumentException("Truncated fingerprint of " + count + " positions.");
+        }
+        int[] positions = new int[count];
+        if (format == SPARSE) {
+            int previous = -1;
+            for (int i = 0; i < count; i++) {
+                previous += getVarint(source) + 1;
+                if (previous < 0) {
+                    throw new IllegalArgumentException("Position out of range.");
+                }
+                positions[i] = previous;
+            }
+            return positions;
+        }
+        int bytes = getVarint(source);
+        int found = 0;
+        for (int i = 0; i < bytes; i++) {
+            int bits = source.get() & 0xff;
+            while (bits != 0) {
+                if (found == count) {
+                    throw new IllegalArgumentException("More positions than the " + count + " expected.");
+                }
+                positions[found++] = i << 3 | Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        if (found != count) {
+            throw new IllegalArgumentException(found + " positions found instead of " + count + ".");
+        }
+        return positions;
+    }
+
+    private static int[] sorted(int[] positions) {
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] <= positions[i - 1]) {
+                return distinct(positions);
+            }
+        }
+        if (positions.length > 0 && positions[0] < 0) {
+            throw new IllegalArgumentException("Negative position: " + positions[0]);
+        }
+        return positions;
+    }
+
+    private static int[] distinct(int[] positions) {
+        int[] sorted = positions.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] < 0) {
+            throw new IllegalArgumentException("Negative position: " + sorted[0]);
+        }
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[count - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    private static int sparseLength(int[] sorted) {
+        int length = 0;
+        int previous = -1;
+        for (int position : sorted) {
+            length += varintLength(position - previous - 1);
+            previous = position;
+        }
+        return length;
+    }
+
+    private static int denseBytes(int[] sorted) {
+        return sorted.length == 0 ? 0 : (sorted[sorted.length - 1] >>> 3) + 1;
+    }
+
+    private static int denseLength(int[] sorted) {
+        int bytes = denseBytes(sorted);
+        return varintLength(bytes) + bytes;
+    }
+
+    private static int varintLength(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+    private static void putVarint(ByteBuffer target, int value) {
+        while ((value & ~0x7f) != 0) {
+            target.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer source) {
+        int value = 0;
+        for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+            int b = source.get();
+            value |= (b & 0x7f) << 7 * i;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Varint out of range.");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+}
@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+
+/**
+ * The fingerprints of a retina as dense bitsets, one row of <code>size / 64</code> words each in a single array, to
+ * compare a query with many cached fingerprints on the client: the overlap of a row is the population count of the
+ * words of the row and-ed with those of the query, and the other values of a {@link Metric} derive from the overlap
+ * and the sizes of the fingerprints.
+ * <p>
+ * The rows are scanned in order, so that scoring a query against a large matrix is bound by the memory bandwidth.
+ * The {@link Kernel} of the scans is selected at runtime, with the system property {@link #KERNEL_PROPERTY}. The
+ * {@link Kernel#VECTOR} kernel is provided by the retina-service-vector module, built on JDK 19+ only, and used if
+ * its jar is on the classpath and the JVM runs with <code>--add-modules jdk.incubator.vector</code>; otherwise it
+ * falls back to {@link Kernel#SCALAR}.
+ * </p>
+ * <p>
+ * The instances are not thread-safe while fingerprints are added; once filled, they can be scanned by concurrent
+ * threads, e.g. each over a range of rows.
+ * </p>
+ */
+public final class FingerprintMatrix {
+    /**
+     * The system property naming the {@link Kernel} of the scans, in any case, {@link Kernel#SCALAR} by default.
+     */
+    public static final String KERNEL_PROPERTY = "io.cortical.rest.model.FingerprintMatrix.kernel";
+    /**
+     *
+     */
+    private static final Logger LOG = Logger.getLogger(FingerprintMatrix.class.getName());
+    private static final Kernel DEFAULT_KERNEL = defaultKernel(System.getProperty(KERNEL_PROPERTY));
+    private static final int MAX_WORDS = Integer.MAX_VALUE - 8;
+    /**
+     *
+     */
+    private final int size;
+    private final int words;
+    private long[] bits;
+    private int[] cardinalities;
+    private int rows;
+
+    /**
+     * Creates a new instance of {@link FingerprintMatrix}.
+     *
+     * @param size : the count of positions of the retina, i.e. its rows times its columns.
+     * @param capacity : the initial count of rows; the matrix grows as needed.
+     */
+    public FingerprintMatrix(int size, int capacity) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be positive.");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be negative.");
+        }
+        this.size = size;
+        this.words = (size + Long.SIZE - 1) / Long.SIZE;
+        if ((long) capacity * words > MAX_WORDS) {
+            throw new IllegalArgumentException("The capacity exceeds the maximum count of rows: " + capacity);
+        }
+        this.bits = new long[capacity * words];
+        this.cardinalities = new int[capacity];
+    }
+
+    /**
+     * Creates the matrix of the fingerprints of a retina.
+     *
+     * @param retina : the retina of the fingerprints.
+     * @param capacity : the initial count of rows; the matrix grows as needed.
+     * @return the empty matrix.
+     */
+    public static FingerprintMatrix of(Retina retina, int capacity) {
+        return new FingerprintMatrix(retina.getNumberOfRows() * retina.getNumberOfColumns(), capacity);
+    }
+
+    /**
+     * Adds the row of a fingerprint.
+     *
+     * @param positions : the positions, in any order.
+     * @return the index of the row.
+     * @throws IllegalArgumentException : if a position is out of the retina.
+     */
+    public int add(int... positions) {
+        if (rows == cardinalities.length) {
+            grow();
+        }
+        int offset = rows * words;
+        int cardinality = 0;
+        for (int position : positions) {
+            if (position < 0 || position >= size) {
+                Arrays.fill(bits, offset, offset + words, 0);
+                throw new IllegalArgumentException("Position " + position + " out of the retina of size " + size);
+            }
+            long bit = 1L << position;
+            int word = offset + (position >>> 6);
+            if ((bits[word] & bit) == 0) {
+                bits[word] |= bit;
+                cardinality++;
+            }
+        }
+        cardinalities[rows] = cardinality;
+        return rows++;
+    }
+
+    /**
+     * Adds the row of a fingerprint.
+     *
+     * @param fingerprint : the fingerprint.
+     * @return the index of the row.
+     * @throws IllegalArgumentException : if a position is out of the retina.
+     */
+    public int add(Fingerprint fingerprint) {
+        return add(fingerprint.getPositions());
+    }
+
+    /**
+     * Creates the dense bitset of a query, to scan the rows with.
+     *
+     * @param positions : the positions of the query, in any order.
+     * @return the words of the query.
+     * @throws IllegalArgumentException : if a position is out of the retina.
+     */
+    public long[] query(int... positions) {
+        long[] query = new long[words];
+        for (int position : positions) {
+            if (position < 0 || position >= size) {
+                throw new IllegalArgumentException("Position " + position + " out of the retina of size " + size);
+            }
+            query[position >>> 6] |= 1L << position;
+        }
+        return query;
+    }
+
+    /**
+     * Gets the count of positions of the retina.
+     *
+     * @return the size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the count of rows.
+     *
+     * @return the count of fingerprints added.
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Gets the count of positions of a row.
+     *
+     * @param row : the index of the row.
+     * @return the size of the fingerprint.
+     */
+    public int getCardinality(int row) {
+        checkRow(row);
+        return cardinalities[row];
+    }
+
+    /**
+     * Counts the positions of a row which are set in the query, with the default kernel.
+     *
+     * @param query : the words of the query, see {@link #query(int...)}.
+     * @param row : the index of the row.
+     * @return the overlap.
+     */
+    public int overlap(long[] query, int row) {
+        checkQuery(query);
+        checkRow(row);
+        return DEFAULT_KERNEL.overlap(query, bits, row * words, words);
+    }
+
+    /**
+     * Computes the overlaps of every row with the query, with the default kernel.
+     *
+     * @param query : the words of the query, see {@link #query(int...)}.
+     * @param overlaps : the overlaps, by row; at least {@link #getRowCount()} items.
+     */
+    public void overlaps(long[] query, int[] overlaps) {
+        overlaps(query, 0, rows, overlaps, DEFAULT_KERNEL);
+    }
+
+    /**
+     * Computes the overlaps of a range of rows with the query.
+     *
+     * @param query : the words of the query, see {@link #query(int...)}.
+     * @param from : the index of the first row, inclusive.
+     * @param to : the index of the last row, exclusive.
+     * @param overlaps : the overlaps, by row index.
+     * @param kernel : the kernel of the scan.
+     */
+    public void overlaps(long[] query, int from, int to, int[] overlaps, Kernel kernel) {
+        checkQuery(query);
+        if (from < 0 || to > rows || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of " + rows);
+        }
+        if (overlaps.length < to) {
+            throw new IllegalArgumentException("The overlaps hold " + overlaps.length + " rows, not " + to);
+        }
+        for (int row = from, offset = from * words; row < to; row++, offset += words) {
+            overlaps[row] = kernel.overlap(query, bits, offset, words);
+        }
+    }
+
+    /**
+     * Computes the metric of the comparison of the query with a row.
+     *
+     * @param query : the words of the query, see {@link #query(int...)}.
+     * @param row : the index of the row.
+     * @return the metric, the query on the left.
+     */
+    public Metric metric(long[] query, int row) {
+        int querySize = 0;
+        for (long word : query) {
+            querySize += Long.bitCount(word);
+        }
+        return metric(overlap(query, row), querySize, cardinalities[row]);
+    }
+
+    /**
+     * Derives the metric of the comparison of two fingerprints from their overlap, as the Retina API does. The
+     * euclidean distance is the count of positions set in a single fingerprint, relative to the sum of the sizes. The
+     * weighted scoring is not computed locally: it depends on the retina, and is left at 0.
+     *
+     * @param overlap : the count of common positions.
+     * @param sizeLeft : the count of positions of the left fingerprint.
+     * @param sizeRight : the count of positions of the right fingerprint.
+     * @return the metric.
+     */
+    public static Metric metric(int overlap, int sizeLeft, int sizeRight) {
+        int union = sizeLeft + sizeRight - overlap;
+        double cosine = sizeLeft == 0 || sizeRight == 0 ? 0 : overlap / Math.sqrt((double) sizeLeft * sizeRight);
+        Metric metric = new Metric();
+        metric.setCosineSimilarity(cosine);
+        int sizes = sizeLeft + sizeRight;
+        metric.setEuclideanDistance(sizes == 0 ? 0 : (double) (sizes - 2 * overlap) / sizes);
+        metric.setJaccardDistance(union == 0 ? 0 : 1 - (double) overlap / union);
+        metric.setOverlappingAll(overlap);
+        metric.setOverlappingLeftRight(sizeLeft == 0 ? 0 : (double) overlap / sizeLeft);
+        metric.setOverlappingRightLeft(sizeRight == 0 ? 0 : (double) overlap / sizeRight);
+        metric.setSizeLeft(sizeLeft);
+        metric.setSizeRight(sizeRight);
+        return metric;
+    }
+
+    /**
+     * Gets the kernel of the scans, from {@link #KERNEL_PROPERTY}.
+     *
+     * @return the default {@link Kernel}.
+     */
+    public static Kernel getDefaultKernel() {
+        return DEFAULT_KERNEL;
+    }
+
+    /**
+     * Parses the name of a kernel, ignoring its case.
+     *
+     * @param name : the name, or <code>null</code>.
+     * @param defaultKernel : the kernel if the name is missing or unknown.
+     * @return the named kernel, or the default one.
+     */
+    public static Kernel parseKernel(String name, Kernel defaultKernel) {
+        if (name == null || name.trim().isEmpty()) {
+            return defaultKernel;
+        }
+        try {
+            return Kernel.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            LOG.warning("Unknown kernel '" + name + "' in " + KERNEL_PROPERTY + ", using " + defaultKernel + ".");
+            return defaultKernel;
+        }
+    }
+
+    private static Kernel defaultKernel(String name) {
+        Kernel kernel = parseKernel(name, Kernel.SCALAR);
+        if (!kernel.isAvailable()) {
+            LOG.warning("The " + kernel + " kernel is not available, using " + Kernel.SCALAR + ".");
+            return Kernel.SCALAR;
+        }
+        return kernel;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row: " + row);
+        }
+    }
+
+    private void checkQuery(long[] query) {
+        if (query.length != words) {
+            throw new IllegalArgumentException("Query of " + query.length + " words, not " + words);
+        }
+    }
+
+    private void grow() {
+        long capacity = Math.min(Math.max(8, cardinalities.length * 3L / 2), MAX_WORDS / words);
+        if (capacity <= cardinalities.length) {
+            throw new IllegalStateException("The matrix is full: " + rows + " rows.");
+        }
+        bits = Arrays.copyOf(bits, (int) capacity * words);
+        cardinalities = Arrays.copyOf(cardinalities, (int) capacity);
+    }
+
+    /**
+     *
+     * The loops counting the common bits of the query and a row.
+     */
+    public enum Kernel {
+        /**
+         * One word at a time.
+         */
+        SCALAR {
+            @Override
+            int overlap(long[] query, long[] bits, int offset, int words) {
+                int count = 0;
+                for (int w = 0; w < words; w++) {
+                    count += Long.bitCount(query[w] & bits[offset + w]);
+                }
+                return count;
+            }
+        },
+        /**
+         * The vector lanes of the CPU, with the {@link VectorKernel} of the classpath; {@link #SCALAR} without one.
+         */
+        VECTOR {
+            @Override
+            int overlap(long[] query, long[] bits, int offset, int words) {
+                VectorKernel kernel = VectorKernelHolder.KERNEL;
+                return kernel == null ? SCALAR.overlap(query, bits, offset, words)
+                        : kernel.overlap(query, bits, offset, words);
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return VectorKernelHolder.KERNEL != null;
+            }
+        };
+
+        abstract int overlap(long[] query, long[] bits, int offset, int words);
+
+        /**
+         * Tells whether the kernel runs its own loop, rather than falling back to {@link #SCALAR}.
+         *
+         * @return <code>true</code> if the kernel is available.
+         */
+        public boolean isAvailable() {
+            return true;
+        }
+    }
+
+    /**
+     *
+     * The implementation of {@link Kernel#VECTOR}, loaded with {@link ServiceLoader}.
+     */
+    public interface VectorKernel {
+        /**
+         * Counts the bits set in both the query and a row.
+         *
+         * @param query : the words of the query.
+         * @param bits : the words of the matrix.
+         * @param offset : the index of the first word of the row.
+         * @param words : the count of words of a row.
+         * @return the overlap.
+         */
+        int overlap(long[] query, long[] bits, int offset, int words);
+    }
+
+    /**
+     *
+     * Loads the {@link VectorKernel} on first use.
+     */
+    private static final class VectorKernelHolder {
+        private static final VectorKernel KERNEL = load();
+
+        private static VectorKernel load() {
+            try {
+                Iterator<VectorKernel> kernels = ServiceLoader.load(VectorKernel.class,
+                        FingerprintMatrix.class.getClassLoader()).iterator();
+                if (kernels.hasNext()) {
+                    return kernels.next();
+                }
+            }
+            catch (ServiceConfigurationError | LinkageError e) {
+                // the jar is there, but not the jdk.incubator.vector module.
+                LOG.warning("The vector kernel could not be loaded: " + e);
+            }
+            return null;
+        }
+    }
+}
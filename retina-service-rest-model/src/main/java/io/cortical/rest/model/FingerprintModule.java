@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+
+
+/**
+ * Jackson module writing the {@link Fingerprint}s in the compact form of {@link FingerprintCodec}: a base64 string in
+ * JSON, raw bytes in the binary formats.
+ * <p>
+ * The fingerprints are read from this form as well as from the usual <code>{"positions":[...]}</code> object. Register
+ * the module only with mappers whose readers understand the compact form; the Retina API expects the usual one.
+ * </p>
+ */
+public class FingerprintModule extends SimpleModule {
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new instance of {@link FingerprintModule}.
+     */
+    public FingerprintModule() {
+        super("FingerprintModule", Version.unknownVersion());
+        addSerializer(Fingerprint.class, new Serializer());
+        addDeserializer(Fingerprint.class, new Deserializer());
+    }
+
+    /**
+     *
+     * Writes the encoded positions.
+     */
+    private static final class Serializer extends StdSerializer<Fingerprint> {
+        Serializer() {
+            super(Fingerprint.class);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void serialize(Fingerprint value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (value.getPositions() == null) {
+                gen.writeNull();
+            }
+            else {
+                gen.writeBinary(FingerprintCodec.encode(value.getPositions()));
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads the encoded positions, or the positions object.
+     */
+    private static final class Deserializer extends StdDeserializer<Fingerprint> {
+        private static final long serialVersionUID = 1L;
+
+        Deserializer() {
+            super(Fingerprint.class);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Fingerprint deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                try {
+                    return new Fingerprint(FingerprintCodec.decode(parser.getBinaryValue()));
+                }
+                catch (IllegalArgumentException | BufferUnderflowException e) {
+                    throw context.mappingException("Invalid fingerprint: " + e.getMessage());
+                }
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw context.mappingException(Fingerprint.class, token);
+            }
+            JsonNode tree = parser.readValueAsTree();
+            JsonNode positions = tree.get("positions");
+            if (positions == null || positions.isNull()) {
+                return new Fingerprint();
+            }
+            if (!positions.isArray()) {
+                throw context.mappingException("The fingerprint positions must be an array.");
+            }
+            int[] values = new int[positions.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = positions.get(i).asInt();
+            }
+            return new Fingerprint(values);
+        }
+    }
+}
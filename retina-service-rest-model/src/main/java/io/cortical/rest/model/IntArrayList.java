@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * A modifiable list of integers stored in an <code>int[]</code>: the elements are only boxed when read through the
+ * {@link java.util.List} methods.
+ */
+final class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+    /**
+     *
+     */
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates a new instance of {@link IntArrayList}.
+     *
+     * @param values : the elements, not copied.
+     */
+    IntArrayList(int[] values) {
+        this.values = values;
+        this.size = values.length;
+    }
+
+    /**
+     * Gets an element without boxing it.
+     *
+     * @param index : the index of the element.
+     * @return the element.
+     */
+    int getInt(int index) {
+        checkIndex(index, size);
+        return values[index];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer set(int index, Integer element) {
+        int previous = getInt(index);
+        values[index] = element;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(int index, Integer element) {
+        checkIndex(index, size + 1);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(8, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = element;
+        size++;
+        modCount++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer remove(int index) {
+        int previous = getInt(index);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+    }
+}
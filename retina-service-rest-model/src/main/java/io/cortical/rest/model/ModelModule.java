@@ -0,0 +1,662 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Jackson module reading the model returned by the Retina server with streaming deserializers, instead of the
+ * reflective bean ones.
+ * <p>
+ * The deserializers read the tokens straight into the model: the positions go to an <code>int</code> buffer which is
+ * reused by the thread and copied to an exact-size array, so that no position is boxed. The positions of the
+ * {@link CategoryFilter}s are kept in an <code>int[]</code> behind their <code>List</code>. The unknown properties are
+ * handled as configured on the mapper. The fingerprints in the compact form of {@link FingerprintModule} are read
+ * too.
+ * </p>
+ * <p>
+ * The bulk terms can also be read into {@link TermColumns}, which only this module reads. The terms and the context
+ * labels are interned in the {@link TermDictionary} of the module, if any.
+ * </p>
+ */
+public class ModelModule extends SimpleModule {
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The largest buffer kept for the next fingerprint, in positions.
+     */
+    private static final int MAX_RETAINED_BUFFER = 1 << 16;
+    /**
+     * The buffer of the positions being read; a fingerprint has a few hundred positions.
+     */
+    private static final ThreadLocal<int[]> BUFFER = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1024];
+        }
+    };
+
+    /**
+     * The dictionary of the terms read, <code>null</code> if the terms are not interned.
+     */
+    private transient volatile TermDictionary termDictionary;
+
+    /**
+     * Creates a new instance of {@link ModelModule}.
+     */
+    public ModelModule() {
+        super("ModelModule", Version.unknownVersion());
+        addDeserializer(Fingerprint.class, FingerprintDeserializer.INSTANCE);
+        addDeserializer(Term.class, new TermDeserializer(this));
+        addDeserializer(Context.class, new ContextDeserializer(this));
+        addDeserializer(Text.class, new TextDeserializer());
+        addDeserializer(Metric.class, new MetricDeserializer());
+        addDeserializer(CategoryFilter.class, new CategoryFilterDeserializer());
+        addDeserializer(TermColumns.class, new TermColumnsDeserializer(this));
+    }
+
+    /**
+     * Creates a new instance of {@link ModelModule} interning the terms.
+     *
+     * @param termDictionary : the dictionary of the terms read, <code>null</code> not to intern them.
+     */
+    public ModelModule(TermDictionary termDictionary) {
+        this();
+        this.termDictionary = termDictionary;
+    }
+
+    /**
+     * Sets the dictionary of the terms read, which applies to all the mappers the module is registered with.
+     *
+     * @param termDictionary : the dictionary, <code>null</code> not to intern the terms.
+     */
+    public void setTermDictionary(TermDictionary termDictionary) {
+        this.termDictionary = termDictionary;
+    }
+
+    /**
+     * @return the dictionary of the terms read, <code>null</code> if the terms are not interned.
+     */
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    /**
+     * Reads a term, interned in the dictionary if any.
+     *
+     * @return the term, <code>null</code> for a JSON null.
+     */
+    private String readTerm(JsonParser parser) throws IOException {
+        TermDictionary dictionary = termDictionary;
+        if (dictionary == null || parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return readString(parser);
+        }
+        return dictionary.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Reads an array of integers.
+     *
+     * @return the integers, <code>null</code> for a JSON null.
+     */
+    private static int[] readInts(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw context.mappingException(int[].class, token);
+        }
+        int[] buffer = BUFFER.get();
+        int count = 0;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw context.mappingException(int.class, token);
+            }
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, count * 2);
+                BUFFER.set(buffer);
+            }
+            buffer[count++] = parser.getIntValue();
+        }
+        if (buffer.length > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Reads an array of strings.
+     *
+     * @return the strings, <code>null</code> for a JSON null.
+     */
+    private static String[] readStrings(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw context.mappingException(String[].class, token);
+        }
+        List<String> strings = new ArrayList<String>(4);
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            strings.add(token == JsonToken.VALUE_NULL ? null : parser.getText());
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    private static double readDouble(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        throw context.mappingException(double.class, token);
+    }
+
+    private static int readInt(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getIntValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        throw context.mappingException(int.class, token);
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static Fingerprint readFingerprint(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return FingerprintDeserializer.INSTANCE.deserialize(parser, context);
+    }
+
+    /**
+     * Moves to the first property of an object.
+     *
+     * @return the token of the property name, or the end of the object.
+     */
+    private static JsonToken startObject(JsonParser parser, DeserializationContext context, Class<?> type)
+            throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parser.nextToken();
+        }
+        if (token != JsonToken.FIELD_NAME) {
+            throw context.mappingException(type, token);
+        }
+        return token;
+    }
+
+    /**
+     *
+     * The base of the deserializers of the objects: iterates over their properties.
+     */
+    private abstract static class ObjectDeserializer<T> extends StdDeserializer<T> {
+        private static final long serialVersionUID = 1L;
+
+        ObjectDeserializer(Class<T> type) {
+            super(type);
+        }
+
+        /**
+         * Reads the value of a property, the parser being on its first token.
+         *
+         * @return <code>false</code> if the property is unknown.
+         */
+        abstract boolean readProperty(T value, String name, JsonParser parser, DeserializationContext context)
+                throws IOException;
+
+        abstract T create();
+
+        /** {@inheritDoc} */
+        @Override
+        public T deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            T value = create();
+            for (JsonToken token = startObject(parser, context, handledType()); token == JsonToken.FIELD_NAME;
+                    token = parser.nextToken()) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (!readProperty(value, name, parser, context)) {
+                    handleUnknownProperty(parser, context, value, name);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     *
+     * Reads the positions object, or the compact form.
+     */
+    private static final class FingerprintDeserializer extends StdDeserializer<Fingerprint> {
+        private static final long serialVersionUID = 1L;
+        private static final FingerprintDeserializer INSTANCE = new FingerprintDeserializer();
+
+        FingerprintDeserializer() {
+            super(Fingerprint.class);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Fingerprint deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                try {
+                    return new Fingerprint(FingerprintCodec.decode(parser.getBinaryValue()));
+                }
+                catch (IllegalArgumentException | BufferUnderflowException e) {
+                    throw context.mappingException("Invalid fingerprint: " + e.getMessage());
+                }
+            }
+            Fingerprint fingerprint = new Fingerprint();
+            for (token = startObject(parser, context, Fingerprint.class); token == JsonToken.FIELD_NAME;
+                    token = parser.nextToken()) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("positions".equals(name)) {
+                    fingerprint.setPositions(readInts(parser, context));
+                }
+                else {
+                    handleUnknownProperty(parser, context, fingerprint, name);
+                }
+            }
+            return fingerprint;
+        }
+    }
+
+    /**
+     *
+     * Reads a {@link Term}.
+     */
+    private static final class TermDeserializer extends ObjectDeserializer<Term> {
+        private static final long serialVersionUID = 1L;
+        private final ModelModule module;
+
+        TermDeserializer(ModelModule module) {
+            super(Term.class);
+            this.module = module;
+        }
+
+        @Override
+        Term create() {
+            return new Term();
+        }
+
+        @Override
+        boolean readProperty(Term term, String name, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            switch (name) {
+                case SerializationConstants.TERM_STRING_PROPERTYLABEL:
+                    term.setTerm(module.readTerm(parser));
+                    return true;
+                case SerializationConstants.DF_STRING_PROPERTYLABEL:
+                    term.setDf(readDouble(parser, context));
+                    return true;
+                case SerializationConstants.SCORE_PROPRETY_LABEL:
+                    term.setScore(readDouble(parser, context));
+                    return true;
+                case SerializationConstants.POS_TYPES_PROPRETY_LABEL:
+                    term.setPosTypes(readStrings(parser, context));
+                    return true;
+                case SerializationConstants.FINGERPRINT_PROPERTY_LABEL:
+                    term.setFingerprint(readFingerprint(parser, context));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads a {@link Context}.
+     */
+    private static final class ContextDeserializer extends ObjectDeserializer<Context> {
+        private static final long serialVersionUID = 1L;
+        private final ModelModule module;
+
+        ContextDeserializer(ModelModule module) {
+            super(Context.class);
+            this.module = module;
+        }
+
+        @Override
+        Context create() {
+            return new Context();
+        }
+
+        @Override
+        boolean readProperty(Context value, String name, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            switch (name) {
+                case SerializationConstants.CONTEXT_ID_PROPERTYLABEL:
+                    value.setContextId(readInt(parser, context));
+                    return true;
+                case SerializationConstants.CONTEXT_LABEL_PROPERYLABEL:
+                    value.setContextLabel(module.readTerm(parser));
+                    return true;
+                case SerializationConstants.FINGERPRINT_PROPERTY_LABEL:
+                    value.setFingerprint(readFingerprint(parser, context));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads a {@link Text}.
+     */
+    private static final class TextDeserializer extends ObjectDeserializer<Text> {
+        private static final long serialVersionUID = 1L;
+
+        TextDeserializer() {
+            super(Text.class);
+        }
+
+        @Override
+        Text create() {
+            return new Text();
+        }
+
+        @Override
+        boolean readProperty(Text text, String name, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            switch (name) {
+                case SerializationConstants.TEXT_STRING_PROPERTYLABEL:
+                    text.setText(readString(parser));
+                    return true;
+                case SerializationConstants.FINGERPRINT_PROPERTY_LABEL:
+                    text.setFingerprint(readFingerprint(parser, context));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads a {@link Metric}.
+     */
+    private static final class MetricDeserializer extends ObjectDeserializer<Metric> {
+        private static final long serialVersionUID = 1L;
+
+        MetricDeserializer() {
+            super(Metric.class);
+        }
+
+        @Override
+        Metric create() {
+            return new Metric();
+        }
+
+        @Override
+        boolean readProperty(Metric metric, String name, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            switch (name) {
+                case "cosineSimilarity":
+                    metric.setCosineSimilarity(readDouble(parser, context));
+                    return true;
+                case "euclideanDistance":
+                    metric.setEuclideanDistance(readDouble(parser, context));
+                    return true;
+                case "jaccardDistance":
+                    metric.setJaccardDistance(readDouble(parser, context));
+                    return true;
+                case "overlappingAll":
+                    metric.setOverlappingAll(readInt(parser, context));
+                    return true;
+                case "overlappingLeftRight":
+                    metric.setOverlappingLeftRight(readDouble(parser, context));
+                    return true;
+                case "overlappingRightLeft":
+                    metric.setOverlappingRightLeft(readDouble(parser, context));
+                    return true;
+                case "sizeLeft":
+                    metric.setSizeLeft(readInt(parser, context));
+                    return true;
+                case "sizeRight":
+                    metric.setSizeRight(readInt(parser, context));
+                    return true;
+                case "weightedScoring":
+                    metric.setWeightedScoring(readDouble(parser, context));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads a {@link CategoryFilter}.
+     */
+    private static final class CategoryFilterDeserializer extends ObjectDeserializer<CategoryFilter> {
+        private static final long serialVersionUID = 1L;
+
+        CategoryFilterDeserializer() {
+            super(CategoryFilter.class);
+        }
+
+        @Override
+        CategoryFilter create() {
+            return new CategoryFilter();
+        }
+
+        @Override
+        boolean readProperty(CategoryFilter filter, String name, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            switch (name) {
+                case "categoryName":
+                    filter.setCategoryName(readString(parser));
+                    return true;
+                case "positions":
+                    int[] positions = readInts(parser, context);
+                    filter.setPositions(positions == null ? null : new IntArrayList(positions));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Reads a list of lists of terms, or a list of terms, into {@link TermColumns}: the values and the positions are
+     * appended to columns reused by the thread as they are read, then copied once.
+     */
+    private static final class TermColumnsDeserializer extends StdDeserializer<TermColumns> {
+        private static final long serialVersionUID = 1L;
+        /**
+         * The columns being read, reused by the thread; softly referenced so that a thread of a container does not pin
+         * the class loader, and dropped once oversized so that a single large response does not pin its columns.
+         */
+        private static final ThreadLocal<SoftReference<TermColumns.Builder>> COLUMNS =
+                new ThreadLocal<SoftReference<TermColumns.Builder>>();
+
+        private final ModelModule module;
+
+        TermColumnsDeserializer(ModelModule module) {
+            super(TermColumns.class);
+            this.module = module;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public TermColumns deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token != JsonToken.START_ARRAY) {
+                throw context.mappingException(TermColumns.class, token);
+            }
+            TermColumns.Builder columns = columns();
+            try {
+                token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    columns.startGroup();
+                    readTerms(columns, parser, context);
+                    return columns.build();
+                }
+                for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    columns.startGroup();
+                    if (token == JsonToken.START_ARRAY) {
+                        parser.nextToken();
+                        readTerms(columns, parser, context);
+                    }
+                    else if (token != JsonToken.VALUE_NULL) {
+                        throw context.mappingException(TermColumns.class, token);
+                    }
+                }
+                return columns.build();
+            }
+            finally {
+                if (columns.isOversized()) {
+                    COLUMNS.remove();
+                }
+            }
+        }
+
+        /**
+         * Gets the empty columns of the thread.
+         */
+        private static TermColumns.Builder columns() {
+            SoftReference<TermColumns.Builder> reference = COLUMNS.get();
+            TermColumns.Builder columns = reference == null ? null : reference.get();
+            if (columns == null) {
+                columns = new TermColumns.Builder();
+                COLUMNS.set(new SoftReference<TermColumns.Builder>(columns));
+            }
+            return columns.reset();
+        }
+
+        /**
+         * Reads the terms of a group, the parser being on the token after the start of the array.
+         */
+        private void readTerms(TermColumns.Builder columns, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            for (JsonToken token = parser.getCurrentToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw context.mappingException(Term.class, token);
+                }
+                columns.startRow();
+                for (token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    readProperty(columns, name, parser, context);
+                }
+            }
+        }
+
+        private void readProperty(TermColumns.Builder columns, String name, JsonParser parser,
+                DeserializationContext context) throws IOException {
+            switch (name) {
+                case SerializationConstants.TERM_STRING_PROPERTYLABEL:
+                    columns.setTerm(module.readTerm(parser));
+                    break;
+                case SerializationConstants.DF_STRING_PROPERTYLABEL:
+                    columns.setDf(readDouble(parser, context));
+                    break;
+                case SerializationConstants.SCORE_PROPRETY_LABEL:
+                    columns.setScore(readDouble(parser, context));
+                    break;
+                case SerializationConstants.POS_TYPES_PROPRETY_LABEL:
+                    readPosTypes(columns, parser, context);
+                    break;
+                case SerializationConstants.FINGERPRINT_PROPERTY_LABEL:
+                    columns.clearPositions();
+                    readPositions(columns, parser, context);
+                    break;
+                default:
+                    handleUnknownProperty(parser, context, columns, name);
+            }
+        }
+
+        private static void readPosTypes(TermColumns.Builder columns, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw context.mappingException(String[].class, token);
+            }
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_NULL) {
+                    columns.addPosType(TermColumns.posTypeBit(parser.getText()));
+                }
+            }
+        }
+
+        /**
+         * Reads the positions of a fingerprint, in the positions object or in the compact form.
+         */
+        private void readPositions(TermColumns.Builder columns, JsonParser parser, DeserializationContext context)
+                throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                try {
+                    for (int position : FingerprintCodec.decode(parser.getBinaryValue())) {
+                        columns.addPosition(position);
+                    }
+                    return;
+                }
+                catch (IllegalArgumentException | BufferUnderflowException e) {
+                    throw context.mappingException("Invalid fingerprint: " + e.getMessage());
+                }
+            }
+            for (token = startObject(parser, context, Fingerprint.class); token == JsonToken.FIELD_NAME;
+                    token = parser.nextToken()) {
+                String name = parser.getCurrentName();
+                token = parser.nextToken();
+                if (!"positions".equals(name)) {
+                    handleUnknownProperty(parser, context, columns, name);
+                    continue;
+                }
+                columns.clearPositions();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                if (token != JsonToken.START_ARRAY) {
+                    throw context.mappingException(int[].class, token);
+                }
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.VALUE_NUMBER_INT) {
+                        throw context.mappingException(int.class, token);
+                    }
+                    columns.addPosition(parser.getIntValue());
+                }
+            }
+        }
+    }
+}
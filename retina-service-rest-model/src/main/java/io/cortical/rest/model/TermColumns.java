@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The terms of a bulk response held in columns: a row per term, with the strings, the dfs, the scores and the parts of
+ * speech in parallel arrays, and the positions of all the fingerprints in a single array indexed by offsets. The rows
+ * are grouped by the item of the request they were returned for.
+ * <p>
+ * A response of <code>n</code> terms takes a handful of arrays instead of <code>n</code> {@link Term}s, their
+ * {@link Fingerprint}s and their position arrays. The instances are read by the deserializer of {@link ModelModule},
+ * from a list of lists of terms or from a single list of terms; they are immutable.
+ * </p>
+ */
+public final class TermColumns {
+    /**
+     * The bits of the parts of speech.
+     */
+    public static final int NOUN = 1;
+    public static final int ADJECTIVE = 2;
+    public static final int VERB = 4;
+    /**
+     *
+     */
+    private static final String[] POS_TYPE_NAMES = { "NOUN", "ADJECTIVE", "VERB" };
+    /**
+     *
+     */
+    private final int[] groupOffsets;
+    private final String[] terms;
+    private final double[] dfs;
+    private final double[] scores;
+    private final int[] posTypes;
+    private final int[] positionOffsets;
+    private final int[] positions;
+
+    private TermColumns(Builder builder) {
+        this.groupOffsets = Arrays.copyOf(builder.groupOffsets, builder.groupCount + 1);
+        this.groupOffsets[builder.groupCount] = builder.rowCount;
+        this.terms = Arrays.copyOf(builder.terms, builder.rowCount);
+        this.dfs = Arrays.copyOf(builder.dfs, builder.rowCount);
+        this.scores = Arrays.copyOf(builder.scores, builder.rowCount);
+        this.posTypes = Arrays.copyOf(builder.posTypes, builder.rowCount);
+        this.positionOffsets = Arrays.copyOf(builder.positionOffsets, builder.rowCount + 1);
+        this.positionOffsets[builder.rowCount] = builder.positionCount;
+        this.positions = Arrays.copyOf(builder.positions, builder.positionCount);
+    }
+
+    /**
+     * Gets the bit of a part of speech.
+     *
+     * @param posType : the name of the part of speech, as returned by the server.
+     * @return the bit, <code>0</code> if the part of speech is unknown.
+     */
+    public static int posTypeBit(String posType) {
+        for (int i = 0; i < POS_TYPE_NAMES.length; i++) {
+            if (POS_TYPE_NAMES[i].equals(posType)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the count of groups, one per item of the request.
+     */
+    public int getGroupCount() {
+        return groupOffsets.length - 1;
+    }
+
+    /**
+     * @return the count of rows of all the groups.
+     */
+    public int getRowCount() {
+        return terms.length;
+    }
+
+    /**
+     * @param group : the index of the group.
+     * @return the first row of the group.
+     */
+    public int getGroupStart(int group) {
+        checkIndex(group, getGroupCount());
+        return groupOffsets[group];
+    }
+
+    /**
+     * @param group : the index of the group.
+     * @return the row after the last row of the group.
+     */
+    public int getGroupEnd(int group) {
+        checkIndex(group, getGroupCount());
+        return groupOffsets[group + 1];
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return the term string.
+     */
+    public String getTerm(int row) {
+        return terms[row];
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return the df of the term, <code>0</code> if not returned.
+     */
+    public double getDf(int row) {
+        return dfs[row];
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return the score of the term, <code>0</code> if not returned.
+     */
+    public double getScore(int row) {
+        return scores[row];
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return the bits of the parts of speech of the term: {@link #NOUN}, {@link #ADJECTIVE} and {@link #VERB}.
+     */
+    public int getPosTypes(int row) {
+        return posTypes[row];
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return the count of positions of the fingerprint of the term, <code>0</code> if not returned.
+     */
+    public int getPositionCount(int row) {
+        checkIndex(row, terms.length);
+        return positionOffsets[row + 1] - positionOffsets[row];
+    }
+
+    /**
+     * Gets a position of the fingerprint of a term.
+     *
+     * @param row : the index of the row.
+     * @param index : the index of the position in the fingerprint.
+     * @return the position.
+     */
+    public int getPosition(int row, int index) {
+        checkIndex(index, getPositionCount(row));
+        return positions[positionOffsets[row] + index];
+    }
+
+    /**
+     * Copies the positions of the fingerprint of a term without allocating.
+     *
+     * @param row : the index of the row.
+     * @param destination : the array receiving the positions.
+     * @param offset : the index of the first position in the destination.
+     * @return the count of positions copied.
+     */
+    public int copyPositions(int row, int[] destination, int offset) {
+        int count = getPositionCount(row);
+        System.arraycopy(positions, positionOffsets[row], destination, offset, count);
+        return count;
+    }
+
+    /**
+     * @param row : the index of the row.
+     * @return a copy of the positions of the fingerprint of the term.
+     */
+    public int[] getPositions(int row) {
+        int[] copy = new int[getPositionCount(row)];
+        copyPositions(row, copy, 0);
+        return copy;
+    }
+
+    /**
+     * Creates the {@link Term} of a row. The parts of speech and the fingerprint of a row without any are
+     * <code>null</code>.
+     *
+     * @param row : the index of the row.
+     * @return the term.
+     */
+    public Term toTerm(int row) {
+        Term term = new Term(terms[row]);
+        term.setDf(dfs[row]);
+        term.setScore(scores[row]);
+        List<String> names = new ArrayList<String>(POS_TYPE_NAMES.length);
+        for (int i = 0; i < POS_TYPE_NAMES.length; i++) {
+            if ((posTypes[row] & 1 << i) != 0) {
+                names.add(POS_TYPE_NAMES[i]);
+            }
+        }
+        if (!names.isEmpty()) {
+            term.setPosTypes(names.toArray(new String[names.size()]));
+        }
+        if (getPositionCount(row) > 0) {
+            term.setFingerprint(new Fingerprint(getPositions(row)));
+        }
+        return term;
+    }
+
+    /**
+     * Creates the {@link Term}s of all the groups, as returned by the bulk calls.
+     *
+     * @return a list of terms per group.
+     */
+    public List<List<Term>> toTerms() {
+        List<List<Term>> groups = new ArrayList<List<Term>>(getGroupCount());
+        for (int group = 0; group < getGroupCount(); group++) {
+            List<Term> terms = new ArrayList<Term>(groupOffsets[group + 1] - groupOffsets[group]);
+            for (int row = groupOffsets[group]; row < groupOffsets[group + 1]; row++) {
+                terms.add(toTerm(row));
+            }
+            groups.add(terms);
+        }
+        return groups;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+    }
+
+    /**
+     *
+     * Appends the groups and their rows, in order, to growable columns; the columns are copied to exact-size arrays
+     * when built, so that a builder can be reset and reused.
+     */
+    static final class Builder {
+        /**
+         * The largest columns kept for reuse: a bulk response of a few hundred terms with fingerprints.
+         */
+        private static final int MAX_RETAINED_ROWS = 4096;
+        private static final int MAX_RETAINED_POSITIONS = 1 << 18;
+        /**
+         *
+         */
+        private int[] groupOffsets = new int[4];
+        private String[] terms = new String[16];
+        private double[] dfs = new double[16];
+        private double[] scores = new double[16];
+        private int[] posTypes = new int[16];
+        private int[] positionOffsets = new int[17];
+        private int[] positions = new int[1024];
+        private int groupCount;
+        private int rowCount;
+        private int positionCount;
+
+        /**
+         * Drops all the groups, and the references to their terms.
+         *
+         * @return this builder.
+         */
+        Builder reset() {
+            Arrays.fill(terms, 0, rowCount, null);
+            groupCount = 0;
+            rowCount = 0;
+            positionCount = 0;
+            return this;
+        }
+
+        /**
+         * Starts a group; the rows appended next belong to it.
+         */
+        void startGroup() {
+            if (groupCount + 1 >= groupOffsets.length) {
+                groupOffsets = Arrays.copyOf(groupOffsets, groupOffsets.length * 2);
+            }
+            groupOffsets[groupCount++] = rowCount;
+        }
+
+        /**
+         * Starts a row; its values are set until the next row is started.
+         */
+        void startRow() {
+            if (rowCount + 1 >= positionOffsets.length) {
+                int capacity = terms.length * 2;
+                terms = Arrays.copyOf(terms, capacity);
+                dfs = Arrays.copyOf(dfs, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                posTypes = Arrays.copyOf(posTypes, capacity);
+                positionOffsets = Arrays.copyOf(positionOffsets, capacity + 1);
+            }
+            terms[rowCount] = null;
+            dfs[rowCount] = 0;
+            scores[rowCount] = 0;
+            posTypes[rowCount] = 0;
+            positionOffsets[rowCount++] = positionCount;
+        }
+
+        void setTerm(String term) {
+            terms[rowCount - 1] = term;
+        }
+
+        void setDf(double df) {
+            dfs[rowCount - 1] = df;
+        }
+
+        void setScore(double score) {
+            scores[rowCount - 1] = score;
+        }
+
+        void addPosType(int bit) {
+            posTypes[rowCount - 1] |= bit;
+        }
+
+        /**
+         * Drops the positions of the current row, before its fingerprint is read.
+         */
+        void clearPositions() {
+            positionCount = positionOffsets[rowCount - 1];
+        }
+
+        void addPosition(int position) {
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, positionCount * 2);
+            }
+            positions[positionCount++] = position;
+        }
+
+        TermColumns build() {
+            return new TermColumns(this);
+        }
+
+        /**
+         * Tells whether the columns grew past the size worth keeping for the next response.
+         *
+         * @return <code>true</code> if the builder should be dropped after use.
+         */
+        boolean isOversized() {
+            return terms.length > MAX_RETAINED_ROWS || positions.length > MAX_RETAINED_POSITIONS;
+        }
+    }
+}
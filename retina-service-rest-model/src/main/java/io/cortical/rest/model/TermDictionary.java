@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A bounded table of canonical term strings, shared by the threads: each term added gets a stable id, from
+ * <code>0</code> in the order of addition. The terms of the responses read by {@link ModelModule} are interned in the
+ * dictionary it is given, so that the same term read by many calls takes a single <code>String</code>, and that the
+ * equal terms are the same instance.
+ * <p>
+ * The lookups do not lock, and do not allocate when the term is found: the parser's characters are compared to the
+ * entries. The additions are serialized. Once the capacity is reached the new terms are not added, but returned as
+ * they are; the dictionary never evicts a term, so that its id stays valid.
+ * </p>
+ */
+public final class TermDictionary {
+    /**
+     *
+     */
+    public static final int NO_ID = -1;
+    /**
+     * The entries by the hash of their term, with linear probing; the table is never more than half full.
+     */
+    private final AtomicReferenceArray<Entry> slots;
+    private final Entry[] entries;
+    private volatile int size;
+
+    /**
+     * Creates a new instance of {@link TermDictionary}.
+     *
+     * @param capacity : the maximum count of terms.
+     */
+    public TermDictionary(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^28: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<Entry>(Integer.highestOneBit(capacity) << 2);
+        this.entries = new Entry[capacity];
+    }
+
+    /**
+     * Gets the canonical instance of a term, adding it if the dictionary is not full.
+     *
+     * @param term : the term, may be <code>null</code>.
+     * @return the canonical instance, or the term if it is not in the dictionary.
+     */
+    public String intern(String term) {
+        if (term == null) {
+            return null;
+        }
+        Entry entry = find(term.hashCode(), term, null, 0, term.length());
+        if (entry == null) {
+            entry = add(term.hashCode(), term, null, 0, term.length());
+        }
+        return entry == null ? term : entry.term;
+    }
+
+    /**
+     * Gets the canonical instance of the term in a range of characters, adding it if the dictionary is not full. No
+     * string is created if the term is found.
+     *
+     * @param chars : the characters, e.g. of a parser.
+     * @param offset : the index of the first character of the term.
+     * @param length : the count of characters of the term.
+     * @return the canonical instance, or a new string if the term is not in the dictionary.
+     */
+    public String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        Entry entry = find(hash, null, chars, offset, length);
+        if (entry == null) {
+            entry = add(hash, null, chars, offset, length);
+        }
+        return entry == null ? new String(chars, offset, length) : entry.term;
+    }
+
+    /**
+     * Gets the id of a term.
+     *
+     * @param term : the term.
+     * @return the id, or {@link #NO_ID} if the term is not in the dictionary.
+     */
+    public int id(String term) {
+        Entry entry = term == null ? null : find(term.hashCode(), term, null, 0, term.length());
+        return entry == null ? NO_ID : entry.id;
+    }
+
+    /**
+     * Gets the term of an id.
+     *
+     * @param id : the id.
+     * @return the canonical term.
+     */
+    public String term(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Id: " + id);
+        }
+        return entries[id].term;
+    }
+
+    /**
+     * @return the count of terms in the dictionary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum count of terms.
+     */
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Probes the table for a term, given as a string or as characters.
+     *
+     * @return the entry, <code>null</code> if not found.
+     */
+    private Entry find(int hash, String term, char[] chars, int offset, int length) {
+        int mask = slots.length() - 1;
+        for (int slot = spread(hash) & mask;; slot = slot + 1 & mask) {
+            Entry entry = slots.get(slot);
+            if (entry == null || entry.hash == hash && entry.matches(term, chars, offset, length)) {
+                return entry;
+            }
+        }
+    }
+
+    private synchronized Entry add(int hash, String term, char[] chars, int offset, int length) {
+        Entry entry = find(hash, term, chars, offset, length);
+        if (entry != null || size == entries.length) {
+            return entry;
+        }
+        entry = new Entry(term != null ? term : new String(chars, offset, length), hash, size);
+        entries[entry.id] = entry;
+        size = entry.id + 1;
+        int mask = slots.length() - 1;
+        int slot = spread(hash) & mask;
+        while (slots.get(slot) != null) {
+            slot = slot + 1 & mask;
+        }
+        slots.set(slot, entry);
+        return entry;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     *
+     * A term, its hash and its id.
+     */
+    private static final class Entry {
+        private final String term;
+        private final int hash;
+        private final int id;
+
+        Entry(String term, int hash, int id) {
+            this.term = term;
+            this.hash = hash;
+            this.id = id;
+        }
+
+        boolean matches(String other, char[] chars, int offset, int length) {
+            if (other != null) {
+                return term.equals(other);
+            }
+            if (term.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (term.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
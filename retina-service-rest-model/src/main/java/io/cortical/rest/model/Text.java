@@ -68,6 +68,24 @@ public class Text extends Model {
     public Fingerprint getFingerprint() {
         return fingerprint;
     }
+
+    /**
+     * Sets the text.
+     *
+     * @param text the text to set
+     */
+    void setText(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Sets the fingerprint.
+     *
+     * @param fingerprint the fingerprint to set
+     */
+    void setFingerprint(Fingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
     
     
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.FingerprintBitmap;
+import io.cortical.rest.model.Retina;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Testing the FingerprintBitmap class against {@link BitSet}.
+ */
+public class TestFingerprintBitmap {
+    /**
+     *
+     */
+    private static final int SIZE = 128 * 128;
+    private static final Random RANDOM = new Random(7);
+
+    private static BitSet random(int count) {
+        BitSet bits = new BitSet(SIZE);
+        for (int i = 0; i < count; i++) {
+            bits.set(RANDOM.nextInt(SIZE));
+        }
+        return bits;
+    }
+
+    private static BitSet runs(int count, int length) {
+        BitSet bits = new BitSet(SIZE);
+        for (int i = 0; i < count; i++) {
+            int start = RANDOM.nextInt(SIZE - length);
+            bits.set(start, start + length);
+        }
+        return bits;
+    }
+
+    private static FingerprintBitmap bitmap(BitSet bits) {
+        return FingerprintBitmap.of(SIZE, positions(bits));
+    }
+
+    private static int[] positions(BitSet bits) {
+        int[] positions = new int[bits.cardinality()];
+        for (int i = 0, p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1)) {
+            positions[i++] = p;
+        }
+        return positions;
+    }
+
+    /**
+     * The sparse, dense and contiguous chunks keep their positions.
+     */
+    @Test
+    public void conversionTest() {
+        BitSet[] sets = {new BitSet(), random(50), random(300), random(8000), runs(20, 300), runs(3, 5000)};
+        for (BitSet bits : sets) {
+            FingerprintBitmap bitmap = bitmap(bits);
+            assertEquals(bits.cardinality(), bitmap.getCardinality());
+            assertArrayEquals(positions(bits), bitmap.toPositions());
+            for (int p = 0; p < SIZE; p += 7) {
+                assertEquals(bits.get(p), bitmap.contains(p));
+            }
+        }
+        assertFalse(bitmap(random(10)).contains(SIZE));
+    }
+
+    /**
+     * The operations match those of {@link BitSet}, for every combination of containers.
+     */
+    @Test
+    public void operationsTest() {
+        BitSet[] sets = {new BitSet(), random(100), random(9000), runs(10, 700)};
+        for (BitSet left : sets) {
+            for (BitSet right : sets) {
+                FingerprintBitmap a = bitmap(left);
+                FingerprintBitmap b = bitmap(right);
+
+                BitSet expected = (BitSet) left.clone();
+                expected.and(right);
+                assertArrayEquals(positions(expected), a.and(b).toPositions());
+                assertEquals(expected.cardinality(), a.andCardinality(b));
+
+                expected = (BitSet) left.clone();
+                expected.or(right);
+                assertArrayEquals(positions(expected), a.or(b).toPositions());
+
+                expected = (BitSet) left.clone();
+                expected.xor(right);
+                assertArrayEquals(positions(expected), a.xor(b).toPositions());
+
+                expected = (BitSet) left.clone();
+                expected.andNot(right);
+                assertArrayEquals(positions(expected), a.andNot(b).toPositions());
+            }
+        }
+    }
+
+    /**
+     * The bitmaps convert to and from fingerprints.
+     */
+    @Test
+    public void fingerprintTest() {
+        Retina retina = new Retina("en_associative", "", 0, 128, 128);
+        Fingerprint fingerprint = new Fingerprint(new int[] {3, 1, 4096, 16383, 2});
+        FingerprintBitmap bitmap = FingerprintBitmap.of(fingerprint, retina);
+        assertEquals(SIZE, bitmap.getSize());
+        assertArrayEquals(new int[] {1, 2, 3, 4096, 16383}, bitmap.toFingerprint().getPositions());
+        assertEquals(bitmap, FingerprintBitmap.of(SIZE, 1, 2, 3, 4096, 16383));
+        assertTrue(bitmap.hashCode() == FingerprintBitmap.of(SIZE, 16383, 4096, 3, 2, 1).hashCode());
+    }
+
+    /**
+     * The positions must be within the retina.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRetinaTest() {
+        FingerprintBitmap.of(SIZE, 1, SIZE);
+    }
+
+    /**
+     * Bitmaps of different retinas cannot be combined.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSizesTest() {
+        FingerprintBitmap.of(SIZE, 1).and(FingerprintBitmap.of(SIZE / 2, 1));
+    }
+}
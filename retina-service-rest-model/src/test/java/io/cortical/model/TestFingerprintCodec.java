@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.Fingerprint;
+import io.cortical.rest.model.FingerprintCodec;
+import io.cortical.rest.model.FingerprintModule;
+import io.cortical.rest.model.Term;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Testing the FingerprintCodec and FingerprintModule classes.
+ */
+public class TestFingerprintCodec {
+    /**
+     *
+     */
+    private static final int[] POSITIONS = new int[] {1, 2, 3, 130, 1000, 16383};
+    private static final int RETINA_SIZE = 16384;
+
+    private static int[] randomPositions(int count, long seed) {
+        Random random = new Random(seed);
+        boolean[] set = new boolean[RETINA_SIZE];
+        int[] positions = new int[count];
+        for (int i = 0; i < count;) {
+            int position = random.nextInt(RETINA_SIZE);
+            if (!set[position]) {
+                set[position] = true;
+                i++;
+            }
+        }
+        for (int i = 0, j = 0; i < RETINA_SIZE; i++) {
+            if (set[i]) {
+                positions[j++] = i;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Sparse fingerprints take about a byte per position.
+     */
+    @Test
+    public void sparseTest() {
+        int[] positions = randomPositions(330, 1);
+        byte[] encoded = FingerprintCodec.encode(positions);
+        assertEquals(FingerprintCodec.encodedLength(positions), encoded.length);
+        assertTrue(encoded.length < 400);
+        assertArrayEquals(positions, FingerprintCodec.decode(encoded));
+        assertArrayEquals(POSITIONS, FingerprintCodec.decode(FingerprintCodec.encode(POSITIONS)));
+        assertArrayEquals(new int[0], FingerprintCodec.decode(FingerprintCodec.encode(new int[0])));
+    }
+
+    /**
+     * Dense fingerprints are written as a bitmap.
+     */
+    @Test
+    public void denseTest() {
+        int[] positions = randomPositions(4000, 2);
+        byte[] encoded = FingerprintCodec.encode(positions);
+        assertTrue(encoded.length <= RETINA_SIZE / 8 + 6);
+        assertArrayEquals(positions, FingerprintCodec.decode(encoded));
+    }
+
+    /**
+     * The positions are sorted and the duplicates dropped.
+     */
+    @Test
+    public void unsortedTest() {
+        int[] positions = new int[] {16383, 3, 1000, 2, 3, 130, 1};
+        assertArrayEquals(POSITIONS, FingerprintCodec.decode(FingerprintCodec.encode(positions)));
+    }
+
+    /**
+     * The fingerprints are read and written in place, in direct buffers.
+     */
+    @Test
+    public void byteBufferTest() {
+        int[] dense = randomPositions(4000, 3);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        buffer.put((byte) 42);
+        FingerprintCodec.encode(POSITIONS, buffer);
+        FingerprintCodec.encode(dense, buffer);
+        int end = buffer.position();
+        assertEquals(1 + FingerprintCodec.encodedLength(POSITIONS) + FingerprintCodec.encodedLength(dense), end);
+        buffer.flip();
+        assertEquals(42, buffer.get());
+        assertArrayEquals(POSITIONS, FingerprintCodec.decode(buffer));
+        assertArrayEquals(dense, FingerprintCodec.decode(buffer));
+        assertEquals(end, buffer.position());
+    }
+
+    /**
+     * Malformed bytes are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedTest() {
+        FingerprintCodec.decode(new byte[] {0, 127, 1, 2});
+    }
+
+    /**
+     * Negative positions cannot be encoded.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void negativePositionTest() {
+        FingerprintCodec.encode(new int[] {3, -1});
+    }
+
+    /**
+     * The fingerprints round-trip through base64 strings, and the usual form is still read.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void moduleTest() throws IOException {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new FingerprintModule());
+        String json = mapper.writeValueAsString(new Fingerprint(POSITIONS));
+        assertTrue(json.startsWith("\""));
+        assertArrayEquals(POSITIONS, mapper.readValue(json, Fingerprint.class).getPositions());
+        assertArrayEquals(POSITIONS,
+                mapper.readValue("{\"positions\":[1,2,3,130,1000,16383]}", Fingerprint.class).getPositions());
+
+        Term term = new Term("apple", POSITIONS);
+        Term read = mapper.readValue(mapper.writeValueAsString(term), Term.class);
+        assertEquals("apple", read.getTerm());
+        assertArrayEquals(POSITIONS, read.getFingerprint().getPositions());
+    }
+
+    /**
+     * Invalid base64 fingerprints fail the mapping.
+     *
+     * @throws IOException : expected
+     */
+    @Test(expected = JsonMappingException.class)
+    public void moduleMalformedTest() throws IOException {
+        new ObjectMapper().registerModule(new FingerprintModule()).readValue("\"AH8BAg==\"", Fingerprint.class);
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.FingerprintMatrix;
+import io.cortical.rest.model.FingerprintMatrix.Kernel;
+import io.cortical.rest.model.Metric;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Testing the FingerprintMatrix class against {@link BitSet}.
+ */
+public class TestFingerprintMatrix {
+    /**
+     *
+     */
+    private static final Random RANDOM = new Random(11);
+
+    private static int[] positions(int size, int count) {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = RANDOM.nextInt(size);
+        }
+        return positions;
+    }
+
+    private static BitSet bits(int[] positions) {
+        BitSet bits = new BitSet();
+        for (int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+
+    /**
+     * The overlaps of the kernels are those of {@link BitSet}, for sizes which are not a multiple of the unrolling.
+     */
+    @Test
+    public void overlapsTest() {
+        for (int size : new int[] {16384, 1000, 100}) {
+            FingerprintMatrix matrix = new FingerprintMatrix(size, 0);
+            BitSet[] rows = new BitSet[30];
+            for (int row = 0; row < rows.length; row++) {
+                int[] positions = positions(size, row * 10);
+                rows[row] = bits(positions);
+                assertEquals(row, matrix.add(positions));
+                assertEquals(rows[row].cardinality(), matrix.getCardinality(row));
+            }
+            int[] query = positions(size, size / 10);
+            long[] words = matrix.query(query);
+            for (Kernel kernel : Kernel.values()) {
+                int[] overlaps = new int[rows.length];
+                matrix.overlaps(words, 0, rows.length, overlaps, kernel);
+                for (int row = 0; row < rows.length; row++) {
+                    BitSet and = bits(query);
+                    and.and(rows[row]);
+                    assertEquals(and.cardinality(), overlaps[row]);
+                    assertEquals(and.cardinality(), matrix.overlap(words, row));
+                }
+            }
+        }
+        assertSame(Kernel.SCALAR, FingerprintMatrix.getDefaultKernel());
+        // without the retina-service-vector module.
+        assertFalse(Kernel.VECTOR.isAvailable());
+    }
+
+    /**
+     * The kernel names are parsed in any case, and a missing or unknown name selects the default.
+     */
+    @Test
+    public void parseKernelTest() {
+        assertSame(Kernel.SCALAR, FingerprintMatrix.parseKernel("scalar", Kernel.VECTOR));
+        assertSame(Kernel.SCALAR, FingerprintMatrix.parseKernel(" Scalar ", Kernel.VECTOR));
+        assertSame(Kernel.VECTOR, FingerprintMatrix.parseKernel("VECTOR", Kernel.SCALAR));
+        assertSame(Kernel.VECTOR, FingerprintMatrix.parseKernel("scaler", Kernel.VECTOR));
+        assertSame(Kernel.VECTOR, FingerprintMatrix.parseKernel("", Kernel.VECTOR));
+        assertSame(Kernel.VECTOR, FingerprintMatrix.parseKernel(null, Kernel.VECTOR));
+    }
+
+    /**
+     * The metric derives from the overlap and the sizes as in the Retina API.
+     */
+    @Test
+    public void metricTest() {
+        FingerprintMatrix matrix = new FingerprintMatrix(128, 1);
+        matrix.add(1, 2);
+        Metric metric = matrix.metric(matrix.query(2, 3, 70, 127), 0);
+        assertEquals(1, metric.getOverlappingAll());
+        assertEquals(4, metric.getSizeLeft());
+        assertEquals(2, metric.getSizeRight());
+        assertEquals(1 / Math.sqrt(8), metric.getCosineSimilarity(), 1e-12);
+        assertEquals(1 - 1 / 5.0, metric.getJaccardDistance(), 1e-12);
+        assertEquals(4 / 6.0, metric.getEuclideanDistance(), 1e-12);
+        assertEquals(0.25, metric.getOverlappingLeftRight(), 0);
+        assertEquals(0.5, metric.getOverlappingRightLeft(), 0);
+        assertEquals(0, metric.getWeightedScoring(), 0);
+
+        Metric empty = FingerprintMatrix.metric(0, 0, 0);
+        assertEquals(0, empty.getCosineSimilarity(), 0);
+        assertEquals(0, empty.getJaccardDistance(), 0);
+    }
+
+    /**
+     * The metric matches a response of the Retina API (see TestCompareApi), but for the weighted scoring.
+     */
+    @Test
+    public void retinaApiMetricTest() {
+        Metric metric = FingerprintMatrix.metric(61, 328, 328);
+        assertEquals(0.18597560975609753, metric.getCosineSimilarity(), 1e-12);
+        assertEquals(0.8140243902439024, metric.getEuclideanDistance(), 1e-12);
+        assertEquals(0.8974789915966387, metric.getJaccardDistance(), 1e-12);
+        assertEquals(61, metric.getOverlappingAll());
+        assertEquals(0.18597560975609756, metric.getOverlappingLeftRight(), 1e-12);
+        assertEquals(0.18597560975609756, metric.getOverlappingRightLeft(), 1e-12);
+        assertEquals(328, metric.getSizeLeft());
+        assertEquals(328, metric.getSizeRight());
+    }
+
+    /**
+     * The positions out of the retina are rejected, without adding a row.
+     */
+    @Test
+    public void positionOutOfRetinaTest() {
+        FingerprintMatrix matrix = new FingerprintMatrix(100, 1);
+        try {
+            matrix.add(5, 100);
+            fail("position out of the retina added");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(0, matrix.getRowCount());
+        }
+        matrix.add(7);
+        assertEquals(0, matrix.overlap(matrix.query(5), 0));
+    }
+}
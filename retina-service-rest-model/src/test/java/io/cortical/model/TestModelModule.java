@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.CategoryFilter;
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.FingerprintCodec;
+import io.cortical.rest.model.Metric;
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.Text;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Testing the streaming deserializers of ModelModule against the bean ones.
+ */
+public class TestModelModule {
+    /**
+     *
+     */
+    private static final String TERMS = "[[{\"term\":\"apple\",\"df\":1.5E-4,\"score\":12,\"pos_types\":[\"NOUN\",\"VERB\"],"
+            + "\"fingerprint\":{\"positions\":[1,5,300,16383]}}],[{\"term\":\"pear\",\"fingerprint\":null}]]";
+    private static final String CONTEXTS = "[{\"context_label\":\"fruit\",\"fingerprint\":{\"positions\":[2,4]},"
+            + "\"context_id\":3}]";
+    private static final String TEXT = "{\"text\":\"an apple\",\"fingerprint\":{\"positions\":[7,8,9]}}";
+    private static final String METRIC = "{\"cosineSimilarity\":0.5,\"euclideanDistance\":0.25,\"jaccardDistance\":0.75,"
+            + "\"overlappingAll\":12,\"overlappingLeftRight\":0.1,\"overlappingRightLeft\":0.2,\"sizeLeft\":300,"
+            + "\"sizeRight\":320,\"weightedScoring\":42.5}";
+    private static final String FILTER = "{\"categoryName\":\"fruits\",\"positions\":[3,6,7,8,18]}";
+    /**
+     *
+     */
+    private final ObjectMapper streaming = new ObjectMapper().registerModule(new ModelModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ObjectMapper bean = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * The terms and contexts are read like the bean deserializers do.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void termsAndContextsTest() throws IOException {
+        TypeReference<List<List<Term>>> type = new TypeReference<List<List<Term>>>() { };
+        List<List<Term>> expected = bean.readValue(TERMS, type);
+        List<List<Term>> actual = streaming.readValue(TERMS, type);
+        assertEquals(expected.size(), actual.size());
+        Term apple = actual.get(0).get(0);
+        assertEquals(expected.get(0).get(0).toJson(), apple.toJson());
+        assertArrayEquals(new int[] {1, 5, 300, 16383}, apple.getFingerprint().getPositions());
+        assertArrayEquals(new String[] {"NOUN", "VERB"}, apple.getPosTypes());
+        assertNull(actual.get(1).get(0).getFingerprint());
+
+        List<Context> contexts = streaming.readValue(CONTEXTS, new TypeReference<List<Context>>() { });
+        Context context = contexts.get(0);
+        assertEquals(3, context.getContextId());
+        assertEquals("fruit", context.getContextLabel());
+        assertArrayEquals(new int[] {2, 4}, context.getFingerprint().getPositions());
+    }
+
+    /**
+     * The texts, metrics and category filters are read like the bean deserializers do.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void otherModelsTest() throws IOException {
+        Text text = streaming.readValue(TEXT, Text.class);
+        assertEquals(bean.readValue(TEXT, Text.class).toJson(), text.toJson());
+
+        Metric metric = streaming.readValue(METRIC, Metric.class);
+        assertEquals(bean.writeValueAsString(bean.readValue(METRIC, Metric.class)), bean.writeValueAsString(metric));
+        assertEquals(320, metric.getSizeRight());
+
+        CategoryFilter filter = streaming.readValue(FILTER, CategoryFilter.class);
+        assertEquals("fruits", filter.getCategoryName());
+        assertEquals(bean.readValue(FILTER, CategoryFilter.class).getPositions(), filter.getPositions());
+        filter.getPositions().add(20);
+        filter.getPositions().remove(0);
+        assertEquals(Arrays.asList(6, 7, 8, 18, 20), filter.getPositions());
+    }
+
+    /**
+     * The unknown properties are skipped, or rejected if the mapper is strict; compact fingerprints are read.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void propertiesTest() throws IOException {
+        String json = "{\"term\":\"apple\",\"extra\":{\"nested\":[1,2]},\"fingerprint\":\""
+                + DatatypeConverter.printBase64Binary(FingerprintCodec.encode(new int[] {4, 2})) + "\"}";
+        Term term = streaming.readValue(json, Term.class);
+        assertEquals("apple", term.getTerm());
+        assertArrayEquals(new int[] {2, 4}, term.getFingerprint().getPositions());
+        try {
+            new ObjectMapper().registerModule(new ModelModule()).readValue(json, Term.class);
+            throw new AssertionError("unknown property accepted");
+        }
+        catch (JsonMappingException e) {
+            assertTrue(e.getMessage().contains("extra"));
+        }
+    }
+}
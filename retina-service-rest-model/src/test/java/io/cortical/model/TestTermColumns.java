@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.FingerprintCodec;
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Testing the {@link TermColumns} read by ModelModule.
+ */
+public class TestTermColumns {
+    /**
+     *
+     */
+    private static final String TERMS = "[[{\"term\":\"apple\",\"df\":1.5E-4,\"score\":12,\"pos_types\":[\"NOUN\",\"VERB\"],"
+            + "\"fingerprint\":{\"positions\":[1,5,300,16383]}},{\"term\":\"fruit\",\"extra\":[1],\"score\":3,"
+            + "\"fingerprint\":{\"positions\":[2]}}],null,[{\"term\":\"pear\",\"fingerprint\":null,"
+            + "\"pos_types\":[\"ADJECTIVE\"]}]]";
+    /**
+     *
+     */
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new ModelModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * The groups and the rows are read in order.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void groupsTest() throws IOException {
+        TermColumns columns = mapper.readValue(TERMS, TermColumns.class);
+        assertEquals(3, columns.getGroupCount());
+        assertEquals(3, columns.getRowCount());
+        assertEquals(0, columns.getGroupStart(0));
+        assertEquals(2, columns.getGroupEnd(0));
+        assertEquals(2, columns.getGroupStart(1));
+        assertEquals(2, columns.getGroupEnd(1));
+        assertEquals(2, columns.getGroupStart(2));
+        assertEquals(3, columns.getGroupEnd(2));
+
+        assertEquals("apple", columns.getTerm(0));
+        assertEquals(1.5E-4, columns.getDf(0), 0);
+        assertEquals(12, columns.getScore(0), 0);
+        assertEquals(TermColumns.NOUN | TermColumns.VERB, columns.getPosTypes(0));
+        assertArrayEquals(new int[] {1, 5, 300, 16383}, columns.getPositions(0));
+        assertEquals(300, columns.getPosition(0, 2));
+        int[] destination = new int[3];
+        assertEquals(1, columns.copyPositions(1, destination, 2));
+        assertArrayEquals(new int[] {0, 0, 2}, destination);
+        assertEquals(TermColumns.ADJECTIVE, columns.getPosTypes(2));
+        assertEquals(0, columns.getPositionCount(2));
+
+        TermColumns flat = mapper.readValue("[{\"term\":\"apple\"},{\"term\":\"pear\"}]", TermColumns.class);
+        assertEquals(1, flat.getGroupCount());
+        assertEquals("pear", flat.getTerm(flat.getGroupEnd(0) - 1));
+        assertEquals(0, mapper.readValue("[]", TermColumns.class).getGroupCount());
+    }
+
+    /**
+     * The terms of the columns are the terms read by the bean deserializers.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void toTermsTest() throws IOException {
+        List<List<Term>> expected = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(TERMS, new TypeReference<List<List<Term>>>() { });
+        List<List<Term>> actual = mapper.readValue(TERMS, TermColumns.class).toTerms();
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.get(0).size(), actual.get(0).size());
+        assertEquals(0, actual.get(1).size());
+        for (int i = 0; i < expected.get(0).size(); i++) {
+            assertEquals(expected.get(0).get(i).toJson(), actual.get(0).get(i).toJson());
+        }
+        assertEquals(expected.get(2).get(0).toJson(), actual.get(2).get(0).toJson());
+        assertNull(actual.get(2).get(0).getFingerprint());
+    }
+
+    /**
+     * The fingerprints in the compact form are read, the positions of a large response span the grown columns.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void compactAndLargeTest() throws IOException {
+        StringBuilder json = new StringBuilder("[[");
+        for (int row = 0; row < 100; row++) {
+            int[] positions = new int[50];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = row + i * 300;
+            }
+            json.append(row == 0 ? "" : ",").append("{\"term\":\"t").append(row).append("\",\"fingerprint\":\"")
+                    .append(DatatypeConverter.printBase64Binary(FingerprintCodec.encode(positions))).append("\"}");
+        }
+        TermColumns columns = mapper.readValue(json.append("]]").toString(), TermColumns.class);
+        assertEquals(100, columns.getRowCount());
+        for (int row = 0; row < 100; row++) {
+            assertEquals("t" + row, columns.getTerm(row));
+            assertEquals(50, columns.getPositionCount(row));
+            assertEquals(row + 49 * 300, columns.getPosition(row, 49));
+        }
+    }
+
+    /**
+     * The columns of the thread are dropped after a response too large to keep, and the next response is read anew.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void oversizedTest() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int row = 0; row < 5000; row++) {
+            json.append(row == 0 ? "" : ",").append("{\"term\":\"t").append(row).append("\"}");
+        }
+        TermColumns large = mapper.readValue(json.append("]").toString(), TermColumns.class);
+        assertEquals(5000, large.getRowCount());
+        assertEquals("t4999", large.getTerm(4999));
+
+        TermColumns small = mapper.readValue(TERMS, TermColumns.class);
+        assertEquals(3, small.getRowCount());
+        assertEquals("apple", small.getTerm(0));
+        assertEquals("t4999", large.getTerm(4999));
+    }
+}
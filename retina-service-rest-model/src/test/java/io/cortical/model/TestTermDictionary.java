@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.model;
+
+import io.cortical.rest.model.Context;
+import io.cortical.rest.model.ModelModule;
+import io.cortical.rest.model.Term;
+import io.cortical.rest.model.TermColumns;
+import io.cortical.rest.model.TermDictionary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Testing the {@link TermDictionary}.
+ */
+public class TestTermDictionary {
+
+    /**
+     * The terms get canonical instances and stable ids, until the dictionary is full.
+     */
+    @Test
+    public void internTest() {
+        TermDictionary dictionary = new TermDictionary(3);
+        String apple = dictionary.intern(new String("apple"));
+        assertSame(apple, dictionary.intern(new String("apple")));
+        char[] chars = "a pear".toCharArray();
+        String pear = dictionary.intern(chars, 2, 4);
+        assertEquals("pear", pear);
+        assertSame(pear, dictionary.intern("pear"));
+        assertEquals(0, dictionary.id("apple"));
+        assertEquals(1, dictionary.id("pear"));
+        assertSame(apple, dictionary.term(0));
+
+        dictionary.intern("plum");
+        String fig = new String("fig");
+        assertSame(fig, dictionary.intern(fig));
+        assertNotSame(dictionary.intern(new String("fig")), fig);
+        assertEquals(TermDictionary.NO_ID, dictionary.id("fig"));
+        assertEquals(3, dictionary.size());
+        assertEquals(2, dictionary.id("plum"));
+    }
+
+    /**
+     * The threads adding the same terms get the same instances and ids.
+     *
+     * @throws Exception : should never be thrown
+     */
+    @Test
+    public void concurrencyTest() throws Exception {
+        final TermDictionary dictionary = new TermDictionary(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String[]>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(new Callable<String[]>() {
+                    @Override
+                    public String[] call() {
+                        String[] terms = new String[5000];
+                        for (int i = 0; i < terms.length; i++) {
+                            terms[i] = dictionary.intern(new String("term" + i));
+                        }
+                        return terms;
+                    }
+                }));
+            }
+            String[] expected = results.get(0).get();
+            for (Future<String[]> result : results) {
+                String[] terms = result.get();
+                for (int i = 0; i < terms.length; i++) {
+                    assertSame(expected[i], terms[i]);
+                    assertSame(terms[i], dictionary.term(dictionary.id(terms[i])));
+                }
+            }
+            assertEquals(5000, dictionary.size());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The terms, the context labels and the columns read by the module are interned.
+     *
+     * @throws IOException : should never be thrown
+     */
+    @Test
+    public void moduleTest() throws IOException {
+        TermDictionary dictionary = new TermDictionary(10);
+        ObjectMapper mapper = new ObjectMapper().registerModule(new ModelModule(dictionary));
+        Term term = mapper.readValue("{\"term\":\"apple\"}", Term.class);
+        Context context = mapper.readValue("{\"context_label\":\"apple\",\"context_id\":0}", Context.class);
+        TermColumns columns = mapper.readValue("[[{\"term\":\"apple\"}]]", TermColumns.class);
+        assertSame(term.getTerm(), context.getContextLabel());
+        assertSame(term.getTerm(), columns.getTerm(0));
+        assertEquals(1, dictionary.size());
+    }
+}
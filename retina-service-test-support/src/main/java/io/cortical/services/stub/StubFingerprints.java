@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.stub;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ *
+ * The deterministic fingerprints and metrics served by the {@link StubRetinaServer}.
+ * <p>
+ * A fingerprint depends only on its key, so tests can compute the expected response of any request.
+ * </p>
+ */
+public final class StubFingerprints {
+    /**
+     * The count of rows and columns of the stub retina.
+     */
+    public static final int RETINA_WIDTH = 128;
+    /**
+     * The size of the semantic space of the stub retina.
+     */
+    public static final int RETINA_SIZE = RETINA_WIDTH * RETINA_WIDTH;
+    /**
+     * The count of positions of a fingerprint: the default sparsity of 2%.
+     */
+    public static final int FINGERPRINT_SIZE = 328;
+
+    private StubFingerprints() {
+    }
+
+    /**
+     * Gets the fingerprint of a term.
+     *
+     * @param term : the term.
+     * @return the sorted positions.
+     */
+    public static int[] forTerm(String term) {
+        return forKey("term:" + term.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Gets the fingerprint of a text.
+     *
+     * @param text : the text.
+     * @return the sorted positions.
+     */
+    public static int[] forText(String text) {
+        return forKey("text:" + text);
+    }
+
+    /**
+     * Gets the fingerprint of an arbitrary key.
+     *
+     * @param key : the key.
+     * @return the sorted positions.
+     */
+    public static int[] forKey(String key) {
+        Random random = new Random(key.hashCode() * 0x9E3779B97F4A7C15L);
+        boolean[] set = new boolean[RETINA_SIZE];
+        int[] positions = new int[FINGERPRINT_SIZE];
+        for (int i = 0; i < FINGERPRINT_SIZE;) {
+            int position = random.nextInt(RETINA_SIZE);
+            if (!set[position]) {
+                set[position] = true;
+                positions[i++] = position;
+            }
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Applies a sparsity to a fingerprint by keeping its lowest positions.
+     *
+     * @param positions : the sorted positions.
+     * @param sparsity : the sparsity in the range 0..1, <code>null</code> to keep all positions.
+     * @return the positions.
+     */
+    public static int[] sparsify(int[] positions, Double sparsity) {
+        if (sparsity == null) {
+            return positions;
+        }
+        int count = (int) (sparsity * RETINA_SIZE);
+        return count >= positions.length ? positions : Arrays.copyOf(positions, Math.max(0, count));
+    }
+
+    /**
+     * Computes the comparison metric of two fingerprints, with the property names of the Retina API; the weighted
+     * scoring depends on the retina and is omitted.
+     *
+     * @param left : the sorted positions of the left fingerprint.
+     * @param right : the sorted positions of the right fingerprint.
+     * @return the metric.
+     */
+    public static Map<String, Object> metric(int[] left, int[] right) {
+        int overlap = overlap(left, right);
+        int union = left.length + right.length - overlap;
+        Map<String, Object> metric = new LinkedHashMap<String, Object>();
+        double cosine = left.length == 0 || right.length == 0 ? 0 : overlap / Math.sqrt((double) left.length
+                * right.length);
+        metric.put("cosineSimilarity", cosine);
+        int sizes = left.length + right.length;
+        metric.put("euclideanDistance", sizes == 0 ? 0 : (double) (sizes - 2 * overlap) / sizes);
+        metric.put("jaccardDistance", union == 0 ? 0 : 1 - (double) overlap / union);
+        metric.put("overlappingAll", overlap);
+        metric.put("overlappingLeftRight", left.length == 0 ? 0 : (double) overlap / left.length);
+        metric.put("overlappingRightLeft", right.length == 0 ? 0 : (double) overlap / right.length);
+        metric.put("sizeLeft", left.length);
+        metric.put("sizeRight", right.length);
+        return metric;
+    }
+
+    /**
+     * Counts the common positions of two fingerprints.
+     *
+     * @param left : the sorted positions of the left fingerprint.
+     * @param right : the sorted positions of the right fingerprint.
+     * @return the count of common positions.
+     */
+    public static int overlap(int[] left, int[] right) {
+        int count = 0;
+        for (int i = 0, j = 0; i < left.length && j < right.length;) {
+            if (left[i] < right[j]) {
+                i++;
+            }
+            else if (left[i] > right[j]) {
+                j++;
+            }
+            else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,946 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.services.stub;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+
+/**
+ *
+ * A local stub of the Retina REST server, serving every endpoint called by the generated <code>*Api</code> classes
+ * under <code>http://127.0.0.1:&lt;port&gt;/rest</code>.
+ * <p>
+ * The responses are deterministic: fingerprints are derived from the terms and texts (see {@link StubFingerprints}),
+ * expressions are evaluated with the set operations of their fingerprints and metrics are computed from the compared
+ * fingerprints. Latency and errors can be injected to test throughput and tail latency without network access.
+ * </p>
+ */
+public class StubRetinaServer implements Closeable {
+    /**
+     * The retinas served by the stub.
+     */
+    public static final String DEFAULT_RETINA = "en_associative";
+    public static final String SYNONYMOUS_RETINA = "en_synonymous";
+    /**
+     *
+     */
+    private static final int DEFAULT_MAX_RESULTS = 10;
+    private static final int CONTEXT_COUNT = 7;
+    private static final int SIMILAR_TERM_COUNT = 50;
+    private static final int LOWEST_DEFAULT_PORT = 20000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String JSON = "application/json";
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    /**
+     *
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+    private final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final int requestedPort;
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double slowRate;
+    private volatile long slowLatencyNanos;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a new instance of {@link StubRetinaServer} listening on a free port below 32768, so it can be addressed
+     * through the <code>Short</code> port of <code>RetinaApis</code>.
+     */
+    public StubRetinaServer() {
+        this(-1);
+    }
+
+    /**
+     * Creates a new instance of {@link StubRetinaServer}.
+     *
+     * @param port : the port to listen on, 0 for any free port.
+     */
+    public StubRetinaServer(int port) {
+        this.requestedPort = port;
+        registerEndpoints();
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @throws IOException : if the server cannot listen on the port.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server is already started.");
+        }
+        // without TCP_NODELAY, delayed ACKs add ~40ms to every exchange with the JDK server. The JDK reads the property
+        // once, when the first server of the JVM is created, so it is only set for that and then restored.
+        String nodelay = System.getProperty(NODELAY_PROPERTY);
+        System.setProperty(NODELAY_PROPERTY, "true");
+        try {
+            server = bind();
+        }
+        finally {
+            if (nodelay == null) {
+                System.clearProperty(NODELAY_PROPERTY);
+            }
+            else {
+                System.setProperty(NODELAY_PROPERTY, nodelay);
+            }
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/rest/", new Dispatcher());
+        server.start();
+    }
+
+    private HttpServer bind() throws IOException {
+        if (requestedPort >= 0) {
+            return HttpServer.create(new InetSocketAddress("127.0.0.1", requestedPort), 1024);
+        }
+        for (int attempt = 0;; attempt++) {
+            int port = LOWEST_DEFAULT_PORT + ThreadLocalRandom.current().nextInt(Short.MAX_VALUE - LOWEST_DEFAULT_PORT);
+            try {
+                return HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+            }
+            catch (BindException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the server, aborting the requests in progress.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Gets the IP the server listens on.
+     *
+     * @return the IP.
+     */
+    public String getIp() {
+        return "127.0.0.1";
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port.
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The server is not started.");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the base path of the REST API, as expected by the generated <code>*Api</code> classes.
+     *
+     * @return the base path.
+     */
+    public String getBasePath() {
+        return "http://" + getIp() + ":" + getPort() + "/rest";
+    }
+
+    /**
+     * Sets the count of threads serving the requests; must be called before {@link #start()}.
+     *
+     * @param threads : the count of threads.
+     */
+    public synchronized void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The count of threads must be positive.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Delays every response by a latency and a uniformly distributed jitter.
+     *
+     * @param latency : the minimum latency.
+     * @param jitter : the maximum additional latency.
+     * @param unit : the unit of the latencies.
+     */
+    public void setLatency(long latency, long jitter, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+        this.jitterNanos = unit.toNanos(jitter);
+    }
+
+    /**
+     * Delays a random share of the responses by an additional latency, to simulate a latency tail.
+     *
+     * @param rate : the share of the slow responses in the range 0..1.
+     * @param latency : the additional latency.
+     * @param unit : the unit of the latency.
+     */
+    public void setSlowResponses(double rate, long latency, TimeUnit unit) {
+        this.slowRate = rate;
+        this.slowLatencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Fails a random share of the requests.
+     *
+     * @param rate : the share of the failed requests in the range 0..1.
+     * @param status : the HTTP status of the failed requests.
+     */
+    public void setErrors(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * Gets the count of requests received.
+     *
+     * @return the count.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the count of requests received by an endpoint.
+     *
+     * @param path : the endpoint path, e.g. <code>/terms</code>.
+     * @return the count.
+     */
+    public long getRequestCount(String path) {
+        AtomicLong count = requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Resets the request counts.
+     */
+    public void resetRequestCounts() {
+        requestCounts.clear();
+        requestCount.set(0);
+    }
+
+    private void registerEndpoints() {
+        endpoints.put("/retinas", new Endpoint("GET", false) {
+            @Override
+            Object respond(Request request) {
+                List<Object> retinas = new ArrayList<Object>();
+                for (String name : new String[] { DEFAULT_RETINA, SYNONYMOUS_RETINA }) {
+                    if (request.param("retina_name") == null || name.equals(request.param("retina_name"))) {
+                        Map<String, Object> retina = new LinkedHashMap<String, Object>();
+                        retina.put("retinaName", name);
+                        retina.put("description", "Stub retina " + name);
+                        retina.put("numberOfTermsInRetina", 854523);
+                        retina.put("numberOfRows", StubFingerprints.RETINA_WIDTH);
+                        retina.put("numberOfColumns", StubFingerprints.RETINA_WIDTH);
+                        retinas.add(retina);
+                    }
+                }
+                return retinas;
+            }
+        });
+        endpoints.put("/terms", new Endpoint("GET", true) {
+            @Override
+            Object respond(Request request) {
+                String term = request.param("term");
+                if (term == null) {
+                    List<Object> terms = new ArrayList<Object>();
+                    for (int i = 0; i < SIMILAR_TERM_COUNT; i++) {
+                        terms.add(term("term" + i, 0, null, request.flag("get_fingerprint")));
+                    }
+                    return page(terms, request);
+                }
+                return Collections.singletonList(term(term, 0, null, request.flag("get_fingerprint")));
+            }
+        });
+        endpoints.put("/terms/contexts", new Endpoint("GET", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return page(contexts(request.required("term"), request.flag("get_fingerprint")), request);
+            }
+        });
+        endpoints.put("/terms/similar_terms", new Endpoint("GET", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return page(similarTerms(request.required("term"), request), request);
+            }
+        });
+        endpoints.put("/fingerprints", new Endpoint("GET", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return fingerprint(StubFingerprints.forKey("id:" + request.required("fingerprint_id")));
+            }
+        });
+        endpoints.put("/fingerprints/byName", new Endpoint("GET", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return fingerprint(StubFingerprints.forKey("name:" + request.required("logical_name")));
+            }
+        });
+        endpoints.put("/fingerprints/update", new Endpoint("PUT", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                request.required("fingerprint_id");
+                return null;
+            }
+        });
+        endpoints.put("/fingerprints/delete", new Endpoint("DELETE", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                request.required("fingerprint_id");
+                return null;
+            }
+        });
+        endpoints.put("/text", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) {
+                return Collections.singletonList(fingerprint(StubFingerprints.forText(request.body)));
+            }
+        });
+        endpoints.put("/text/keywords", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) {
+                Set<String> keywords = new LinkedHashSet<String>();
+                for (String token : tokens(request.body)) {
+                    if (token.length() > 3) {
+                        keywords.add(token.toLowerCase(Locale.ENGLISH));
+                    }
+                }
+                return new ArrayList<String>(keywords);
+            }
+        });
+        endpoints.put("/text/tokenize", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) {
+                List<String> sentences = new ArrayList<String>();
+                for (String sentence : sentences(request.body)) {
+                    StringBuilder joined = new StringBuilder();
+                    for (String token : tokens(sentence)) {
+                        joined.append(joined.length() == 0 ? "" : ",").append(token.toLowerCase(Locale.ENGLISH));
+                    }
+                    sentences.add(joined.toString());
+                }
+                return sentences;
+            }
+        });
+        endpoints.put("/text/slices", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) {
+                List<Object> slices = new ArrayList<Object>();
+                for (String sentence : sentences(request.body)) {
+                    Map<String, Object> slice = new LinkedHashMap<String, Object>();
+                    slice.put("text", sentence);
+                    slice.put("fingerprint", request.flag("get_fingerprint") ? fingerprint(StubFingerprints
+                            .forText(sentence)) : fingerprint(new int[0]));
+                    slices.add(slice);
+                }
+                return page(slices, request);
+            }
+        });
+        endpoints.put("/text/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                List<Object> fingerprints = new ArrayList<Object>();
+                for (JsonNode text : request.json()) {
+                    fingerprints.add(fingerprint(StubFingerprints.sparsify(StubFingerprints.forText(text.path("text")
+                            .asText()), request.number("sparsity"))));
+                }
+                return fingerprints;
+            }
+        });
+        endpoints.put("/text/detect_language", new Endpoint("POST", false) {
+            @Override
+            Object respond(Request request) {
+                Map<String, Object> language = new LinkedHashMap<String, Object>();
+                language.put("language", "English");
+                language.put("iso_tag", "en");
+                language.put("wiki_url", "http://en.wikipedia.org/wiki/English_language");
+                return language;
+            }
+        });
+        endpoints.put("/expressions", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return fingerprint(expression(request.json(), request));
+            }
+        });
+        endpoints.put("/expressions/contexts", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return page(contexts(key(request.json()), request.flag("get_fingerprint")), request);
+            }
+        });
+        endpoints.put("/expressions/similar_terms", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return page(similarTerms(key(request.json()), request), request);
+            }
+        });
+        endpoints.put("/expressions/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                List<Object> fingerprints = new ArrayList<Object>();
+                for (JsonNode expression : request.json()) {
+                    fingerprints.add(fingerprint(expression(expression, request)));
+                }
+                return fingerprints;
+            }
+        });
+        endpoints.put("/expressions/contexts/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                List<Object> contexts = new ArrayList<Object>();
+                for (JsonNode expression : request.json()) {
+                    contexts.add(page(contexts(key(expression), request.flag("get_fingerprint")), request));
+                }
+                return contexts;
+            }
+        });
+        endpoints.put("/expressions/similar_terms/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                List<Object> terms = new ArrayList<Object>();
+                for (JsonNode expression : request.json()) {
+                    terms.add(page(similarTerms(key(expression), request), request));
+                }
+                return terms;
+            }
+        });
+        endpoints.put("/compare", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                return compare(request.json(), request);
+            }
+        });
+        endpoints.put("/compare/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                List<Object> metrics = new ArrayList<Object>();
+                for (JsonNode pair : request.json()) {
+                    metrics.add(compare(pair, request));
+                }
+                return metrics;
+            }
+        });
+        endpoints.put("/image", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException, IOException {
+                byte[] png = png(request, expression(request.json(), request));
+                return "base64/png".equals(request.param("image_encoding")) ? new Reply(200, "text/plain",
+                        Base64Variants.getDefaultVariant().encode(png).getBytes(UTF8)) : new Reply(200, "image/png",
+                        png);
+            }
+        });
+        endpoints.put("/image/compare", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException, IOException {
+                JsonNode pair = request.json();
+                if (pair.size() != 2) {
+                    throw new BadRequestException("Two expressions are required.");
+                }
+                byte[] png = png(request, expression(pair.get(0), request), expression(pair.get(1), request));
+                return "base64/png".equals(request.param("image_encoding")) ? new Reply(200, "text/plain",
+                        Base64Variants.getDefaultVariant().encode(png).getBytes(UTF8)) : new Reply(200, "image/png",
+                        png);
+            }
+        });
+        endpoints.put("/image/bulk", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException, IOException {
+                List<Object> images = new ArrayList<Object>();
+                for (JsonNode expression : request.json()) {
+                    int[] positions = expression(expression, request);
+                    Map<String, Object> image = new LinkedHashMap<String, Object>();
+                    image.put("image_data", png(request, positions));
+                    if (request.flag("get_fingerprint")) {
+                        image.put("fingerprint", fingerprint(positions));
+                    }
+                    images.add(image);
+                }
+                return images;
+            }
+        });
+        endpoints.put("/classify/create_category_filter", new Endpoint("POST", true) {
+            @Override
+            Object respond(Request request) throws BadRequestException {
+                JsonNode body = request.json();
+                BitSet positions = new BitSet(StubFingerprints.RETINA_SIZE);
+                for (JsonNode example : examples(body, "positiveExamples", "positive_examples")) {
+                    for (int position : expression(example, request)) {
+                        positions.set(position);
+                    }
+                }
+                for (JsonNode example : examples(body, "negativeExamples", "negative_examples")) {
+                    for (int position : expression(example, request)) {
+                        positions.clear(position);
+                    }
+                }
+                Map<String, Object> filter = new LinkedHashMap<String, Object>();
+                filter.put("categoryName", request.required("filter_name"));
+                List<Integer> list = new ArrayList<Integer>();
+                for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                    list.add(i);
+                }
+                filter.put("positions", list);
+                return filter;
+            }
+        });
+    }
+
+    private static JsonNode examples(JsonNode body, String name, String alternativeName) {
+        return body.has(name) ? body.get(name) : body.path(alternativeName);
+    }
+
+    private static Map<String, Object> fingerprint(int[] positions) {
+        Map<String, Object> fingerprint = new LinkedHashMap<String, Object>();
+        fingerprint.put("positions", positions);
+        return fingerprint;
+    }
+
+    private static Map<String, Object> term(String term, double score, String posType, boolean withFingerprint) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("term", term);
+        result.put("df", (Math.abs(term.hashCode()) % 10000) / 1e6);
+        result.put("score", score);
+        result.put("pos_types", Collections.singletonList(posType == null ? "NOUN" : posType));
+        result.put("fingerprint", fingerprint(withFingerprint ? StubFingerprints.forTerm(term) : new int[0]));
+        return result;
+    }
+
+    private static List<Object> contexts(String key, boolean withFingerprint) {
+        List<Object> contexts = new ArrayList<Object>();
+        for (int i = 0; i < CONTEXT_COUNT; i++) {
+            String label = key + "_context" + i;
+            Map<String, Object> context = new LinkedHashMap<String, Object>();
+            context.put("context_label", label);
+            context.put("fingerprint", fingerprint(withFingerprint ? StubFingerprints.forKey("context:" + label)
+                    : new int[0]));
+            context.put("context_id", i);
+            contexts.add(context);
+        }
+        return contexts;
+    }
+
+    private static List<Object> similarTerms(String key, Request request) {
+        String contextId = request.param("context_id");
+        List<Object> terms = new ArrayList<Object>();
+        for (int i = 0; i < SIMILAR_TERM_COUNT; i++) {
+            String term = key + (contextId == null ? "" : "_context" + contextId) + "_similar" + i;
+            terms.add(term(term, SIMILAR_TERM_COUNT - i, request.param("pos_type"), request.flag("get_fingerprint")));
+        }
+        return terms;
+    }
+
+    private static List<Object> page(List<Object> items, Request request) {
+        int start = (int) request.number("start_index", 0);
+        int max = (int) request.number("max_results", DEFAULT_MAX_RESULTS);
+        if (start >= items.size()) {
+            return Collections.emptyList();
+        }
+        return items.subList(start, Math.min(items.size(), start + max));
+    }
+
+    private static Map<String, Object> compare(JsonNode pair, Request request) throws BadRequestException {
+        if (pair == null || !pair.isArray() || pair.size() != 2) {
+            throw new BadRequestException("Two expressions are required.");
+        }
+        return StubFingerprints.metric(expression(pair.get(0), request), expression(pair.get(1), request));
+    }
+
+    private static int[] expression(JsonNode node, Request request) throws BadRequestException {
+        return StubFingerprints.sparsify(evaluate(node), request.number("sparsity"));
+    }
+
+    private static int[] evaluate(JsonNode node) throws BadRequestException {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            throw new BadRequestException("Missing expression.");
+        }
+        if (node.isTextual()) {
+            return StubFingerprints.forText(node.asText());
+        }
+        if (node.has("positions")) {
+            int[] positions = new int[node.get("positions").size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = node.get("positions").get(i).asInt();
+            }
+            Arrays.sort(positions);
+            return positions;
+        }
+        if (node.has("term")) {
+            return StubFingerprints.forTerm(node.get("term").asText());
+        }
+        if (node.has("text")) {
+            return StubFingerprints.forText(node.get("text").asText());
+        }
+        for (String operator : new String[] { "and", "or", "xor", "sub" }) {
+            if (node.has(operator)) {
+                return combine(operator, node.get(operator));
+            }
+        }
+        throw new BadRequestException("Invalid expression: " + node);
+    }
+
+    private static int[] combine(String operator, JsonNode operands) throws BadRequestException {
+        Iterator<JsonNode> iterator = operands.elements();
+        if (!iterator.hasNext()) {
+            return new int[0];
+        }
+        BitSet result = toBitSet(evaluate(iterator.next()));
+        while (iterator.hasNext()) {
+            BitSet operand = toBitSet(evaluate(iterator.next()));
+            if ("and".equals(operator)) {
+                result.and(operand);
+            }
+            else if ("or".equals(operator)) {
+                result.or(operand);
+            }
+            else if ("xor".equals(operator)) {
+                result.xor(operand);
+            }
+            else {
+                result.andNot(operand);
+            }
+        }
+        int[] positions = new int[result.cardinality()];
+        for (int i = result.nextSetBit(0), j = 0; i >= 0; i = result.nextSetBit(i + 1)) {
+            positions[j++] = i;
+        }
+        return positions;
+    }
+
+    private static BitSet toBitSet(int[] positions) {
+        BitSet set = new BitSet(StubFingerprints.RETINA_SIZE);
+        for (int position : positions) {
+            set.set(position);
+        }
+        return set;
+    }
+
+    private static String key(JsonNode expression) {
+        if (expression.has("term") && expression.size() == 1) {
+            return expression.get("term").asText();
+        }
+        return "expression" + Integer.toHexString(expression.toString().hashCode());
+    }
+
+    private static byte[] png(Request request, int[]... fingerprints) throws IOException {
+        int scalar = (int) request.number("image_scalar", 2);
+        int width = StubFingerprints.RETINA_WIDTH * scalar;
+        BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+        int[] colors = { 0x000000, 0x0000FF, 0xFF0000 };
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < width; y++) {
+                image.setRGB(x, y, 0xFFFFFF);
+            }
+        }
+        for (int f = 0; f < fingerprints.length; f++) {
+            for (int position : fingerprints[f]) {
+                int row = position / StubFingerprints.RETINA_WIDTH;
+                int column = position % StubFingerprints.RETINA_WIDTH;
+                int color = fingerprints.length == 1 ? colors[0] : colors[1 + f % 2];
+                for (int dx = 0; dx < scalar; dx++) {
+                    for (int dy = 0; dy < scalar; dy++) {
+                        image.setRGB(column * scalar + dx, row * scalar + dy, color);
+                    }
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<String>();
+        for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> sentences(String text) {
+        List<String> sentences = new ArrayList<String>();
+        for (String sentence : text.split("(?<=[.!?])\\s+")) {
+            if (!sentence.trim().isEmpty()) {
+                sentences.add(sentence.trim());
+            }
+        }
+        return sentences;
+    }
+
+    private void delay() throws InterruptedException {
+        long nanos = latencyNanos;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (jitterNanos > 0) {
+            nanos += (long) (random.nextDouble() * jitterNanos);
+        }
+        if (slowRate > 0 && random.nextDouble() < slowRate) {
+            nanos += slowLatencyNanos;
+        }
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private Reply handle(String method, String path, Request request) throws IOException {
+        Endpoint endpoint = endpoints.get(path);
+        if (endpoint == null) {
+            return error(404, "Unknown endpoint " + path);
+        }
+        if (!endpoint.method.equals(method)) {
+            return error(405, "Method " + method + " not allowed on " + path);
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            return error(errorStatus, "Injected failure");
+        }
+        try {
+            if (endpoint.requiresRetina) {
+                String retina = request.required("retina_name");
+                if (!DEFAULT_RETINA.equals(retina) && !SYNONYMOUS_RETINA.equals(retina)) {
+                    throw new BadRequestException("Unknown retina " + retina);
+                }
+            }
+            Object response = endpoint.respond(request);
+            if (response == null) {
+                return new Reply(204, null, new byte[0]);
+            }
+            if (response instanceof Reply) {
+                return (Reply) response;
+            }
+            return new Reply(200, JSON, mapper.writeValueAsBytes(response));
+        }
+        catch (BadRequestException e) {
+            return error(400, e.getMessage());
+        }
+    }
+
+    private Reply error(int status, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("error", message);
+        return new Reply(status, JSON, mapper.writeValueAsBytes(error));
+    }
+
+    /**
+     *
+     * Dispatches the requests to the endpoints.
+     */
+    private final class Dispatcher implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String path = exchange.getRequestURI().getPath().substring("/rest".length());
+                requestCount.incrementAndGet();
+                AtomicLong count = requestCounts.get(path);
+                if (count == null) {
+                    AtomicLong created = new AtomicLong();
+                    count = requestCounts.putIfAbsent(path, created);
+                    count = count == null ? created : count;
+                }
+                count.incrementAndGet();
+
+                Request request = new Request(mapper, parseQuery(exchange.getRequestURI().getRawQuery()),
+                        read(exchange.getRequestBody()));
+                delay();
+                Reply reply = StubRetinaServer.this.handle(exchange.getRequestMethod(), path, request);
+                if (reply.contentType != null) {
+                    exchange.getResponseHeaders().add("Content-Type", reply.contentType);
+                }
+                exchange.sendResponseHeaders(reply.status, reply.status == 204 ? -1 : reply.body.length);
+                if (reply.status != 204) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(reply.body);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                exchange.close();
+            }
+        }
+
+        private String read(InputStream in) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) >= 0;) {
+                body.write(buffer, 0, read);
+            }
+            in.close();
+            return new String(body.toByteArray(), UTF8);
+        }
+
+        private Map<String, String> parseQuery(String query) throws IOException {
+            Map<String, String> params = new HashMap<String, String>();
+            if (query == null) {
+                return params;
+            }
+            for (String pair : query.split("&")) {
+                int index = pair.indexOf('=');
+                if (index > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+                }
+            }
+            return params;
+        }
+    }
+
+    /**
+     *
+     * An endpoint of the Retina API.
+     */
+    private abstract static class Endpoint {
+        private final String method;
+        private final boolean requiresRetina;
+
+        Endpoint(String method, boolean requiresRetina) {
+            this.method = method;
+            this.requiresRetina = requiresRetina;
+        }
+
+        /**
+         * @return the model to send as JSON, a {@link Reply}, or <code>null</code> for no content.
+         */
+        abstract Object respond(Request request) throws BadRequestException, IOException;
+    }
+
+    /**
+     *
+     * A received request.
+     */
+    private static final class Request {
+        private final ObjectMapper mapper;
+        private final Map<String, String> params;
+        private final String body;
+
+        Request(ObjectMapper mapper, Map<String, String> params, String body) {
+            this.mapper = mapper;
+            this.params = params;
+            this.body = body;
+        }
+
+        String param(String name) {
+            return params.get(name);
+        }
+
+        String required(String name) throws BadRequestException {
+            String value = params.get(name);
+            if (value == null || value.isEmpty()) {
+                throw new BadRequestException("Missing parameter " + name);
+            }
+            return value;
+        }
+
+        boolean flag(String name) {
+            return Boolean.parseBoolean(params.get(name));
+        }
+
+        Double number(String name) {
+            String value = params.get(name);
+            return value == null ? null : Double.valueOf(value);
+        }
+
+        double number(String name, double defaultValue) {
+            Double value = number(name);
+            return value == null ? defaultValue : value;
+        }
+
+        JsonNode json() throws BadRequestException {
+            try {
+                return mapper.readTree(body);
+            }
+            catch (IOException e) {
+                throw new BadRequestException("Invalid JSON body: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     *
+     * A response to send.
+     */
+    private static final class Reply {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        Reply(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     *
+     * A request the server refuses with status 400.
+     */
+    private static final class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model.vector;
+
+import io.cortical.rest.model.FingerprintMatrix;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ *
+ * The {@link FingerprintMatrix.Kernel#VECTOR} kernel: ands the query and the row in the widest vector lanes of the
+ * CPU, counts the bits of every lane and sums the lanes once per row.
+ */
+public class VectorOverlapKernel implements FingerprintMatrix.VectorKernel {
+    /**
+     *
+     */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /** {@inheritDoc} */
+    @Override
+    public int overlap(long[] query, long[] bits, int offset, int words) {
+        LongVector counts = LongVector.zero(SPECIES);
+        int w = 0;
+        for (int bound = SPECIES.loopBound(words); w < bound; w += SPECIES.length()) {
+            LongVector and = LongVector.fromArray(SPECIES, query, w).and(LongVector.fromArray(SPECIES, bits,
+                    offset + w));
+            counts = counts.add(and.lanewise(VectorOperators.BIT_COUNT));
+        }
+        int count = (int) counts.reduceLanes(VectorOperators.ADD);
+        for (; w < words; w++) {
+            count += Long.bitCount(query[w] & bits[offset + w]);
+        }
+        return count;
+    }
+}
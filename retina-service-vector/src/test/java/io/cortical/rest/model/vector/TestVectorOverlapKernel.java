@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) cortical.io GmbH. All rights reserved.
+ *
+ * This software is confidential and proprietary information.
+ * You shall use it only in accordance with the terms of the
+ * license agreement you entered into with cortical.io GmbH.
+ ******************************************************************************/
+package io.cortical.rest.model.vector;
+
+import io.cortical.rest.model.FingerprintMatrix;
+import io.cortical.rest.model.FingerprintMatrix.Kernel;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * {@link VectorOverlapKernel} test class.
+ */
+public class TestVectorOverlapKernel {
+
+    /**
+     * The kernel is discovered, and its overlaps are those of the scalar kernel, for sizes which are not a multiple
+     * of the vector length.
+     */
+    @Test
+    public void overlapsTest() {
+        assertTrue(Kernel.VECTOR.isAvailable());
+        Random random = new Random(5);
+        for (int size : new int[] {16384, 1000, 100, 64}) {
+            FingerprintMatrix matrix = new FingerprintMatrix(size, 0);
+            for (int row = 0; row < 30; row++) {
+                int[] positions = new int[row * 10];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = random.nextInt(size);
+                }
+                matrix.add(positions);
+            }
+            int[] positions = new int[size / 5];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = random.nextInt(size);
+            }
+            long[] query = matrix.query(positions);
+            int[] expected = new int[30];
+            int[] overlaps = new int[30];
+            matrix.overlaps(query, 0, 30, expected, Kernel.SCALAR);
+            matrix.overlaps(query, 0, 30, overlaps, Kernel.VECTOR);
+            for (int row = 0; row < 30; row++) {
+                assertEquals(expected[row], overlaps[row]);
+            }
+        }
+    }
+}